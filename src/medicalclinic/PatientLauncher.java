@@ -6,6 +6,7 @@ import jade.core.Runtime;
 import jade.wrapper.AgentController;
 import jade.wrapper.ContainerController;
 import jade.wrapper.StaleProxyException;
+import medicalclinic.gui.HeadlessView;
 import medicalclinic.gui.PatientGUI;
 
 import javax.swing.*;
@@ -17,6 +18,12 @@ import java.util.UUID;
 public class PatientLauncher {
 
     public static void main(String[] args) {
+        // Mode sans affichage : nom en argument, le patient répond seul aux formulaires
+        if (HeadlessView.isRequested(args)) {
+            launchHeadless(args);
+            return;
+        }
+
         // Demander le nom du patient avec une boîte de dialogue
         String patientName = JOptionPane.showInputDialog(
             null,
@@ -65,4 +72,36 @@ public class PatientLauncher {
                 JOptionPane.ERROR_MESSAGE);
         }
     }
+
+    /**
+     * Lance un patient automatisé, sans interface graphique
+     */
+    private static void launchHeadless(String[] args) {
+        String patientId = null;
+        for (String arg : args) {
+            if (!HeadlessView.HEADLESS_ARGUMENT.equals(arg)) {
+                patientId = arg;
+                break;
+            }
+        }
+        if (patientId == null) {
+            patientId = "patient" + UUID.randomUUID().toString().substring(0, 8);
+        }
+
+        Runtime runtime = Runtime.instance();
+        Profile profile = new ProfileImpl();
+        profile.setParameter(Profile.MAIN_HOST, "localhost");
+        ContainerController container = runtime.createAgentContainer(profile);
+
+        try {
+            AgentController patientAgent = container.createNewAgent(
+                patientId,
+                "medicalclinic.agents.PatientAgent",
+                new Object[] { HeadlessView.HEADLESS_ARGUMENT });
+            patientAgent.start();
+            System.out.println("Agent patient automatisé " + patientId + " démarré avec succès.");
+        } catch (StaleProxyException e) {
+            e.printStackTrace();
+        }
+    }
 }
@@ -2,17 +2,24 @@ package medicalclinic.agents;
 
 import jade.core.AID;
 import jade.core.Agent;
-import jade.core.behaviours.CyclicBehaviour;
+import jade.core.behaviours.FSMBehaviour;
+import jade.core.behaviours.OneShotBehaviour;
+import jade.core.behaviours.TickerBehaviour;
+import jade.core.behaviours.WakerBehaviour;
 import jade.domain.DFService;
 import jade.domain.FIPAAgentManagement.DFAgentDescription;
 import jade.domain.FIPAAgentManagement.ServiceDescription;
 import jade.domain.FIPAException;
 import jade.lang.acl.ACLMessage;
-import jade.lang.acl.MessageTemplate;
 
 import java.util.Date;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
@@ -22,29 +29,85 @@ import com.google.gson.reflect.TypeToken;
 import medicalclinic.database.DiseaseDatabase;
 import medicalclinic.database.TreatmentDatabase;
 import medicalclinic.gui.DoctorGUI;
+import medicalclinic.gui.DoctorView;
+import medicalclinic.gui.HeadlessView;
 import medicalclinic.models.Consultation;
 import medicalclinic.models.Disease;
 import medicalclinic.models.Medication;
 import medicalclinic.models.PatientRecord;
 
 public class DoctorAgent extends Agent {
-    private boolean available;
+    // Propriété système fixant le nombre de consultations simultanées (si non passé en argument)
+    public static final String MAX_CONSULTATIONS_PROPERTY = "medicalclinic.doctor.maxConsultations";
+    public static final int DEFAULT_MAX_CONSULTATIONS = 3;
+    // Paramètre du message de fin de consultation indiquant le patient concerné
+    public static final String CONSULTATION_PATIENT_PARAM = "X-clinic-consultation-patient";
+    // Délais d'ouverture d'une consultation : salutation, puis questionnaire
+    public static final long GREETING_DELAY_MS = 1500;
+    public static final long QUESTIONS_DELAY_MS = 1000;
+    // Identifiant du questionnaire médical dans le FormRegistry (complété par la spécialité)
+    private static final String DOCTOR_FORM_ID = "doctorQuestions";
+    // Propriété système fixant la durée d'inactivité (en secondes) après laquelle une consultation est abandonnée
+    public static final String SESSION_TIMEOUT_PROPERTY = "medicalclinic.doctor.sessionTimeoutSeconds";
+    public static final int DEFAULT_SESSION_TIMEOUT_SECONDS = 900;
+    // Période de vérification des consultations expirées
+    private static final long TIMEOUT_CHECK_PERIOD_MS = 15000;
+    // Période de resynchronisation de la liste des réceptionnistes avec l'annuaire
+    private static final long RECEPTIONIST_REFRESH_PERIOD_MS = 30000;
+
     private String specialty;
     private int roomNumber;
-    private HashMap<String, String> patientResponses;
-    private AID currentPatientAID;
-    private PatientRecord currentPatientRecord;
-    private DoctorGUI gui;
+    private String qualification;
+    private int experience;
+    private int maxConsultations;
+    // Consultations en cours, indexées par l'identifiant du patient (une conversation par visite)
+    private LinkedHashMap<String, ConsultationSession> sessions;
+    // Places réservées par une réceptionniste (mode accueil réparti) : patient -> échéance du bail
+    private HashMap<String, Long> leases;
+    // Réceptionnistes à qui une place a été refusée depuis la dernière libération
+    private LinkedHashSet<AID> refusedReceptionists;
+    // Réceptionnistes connues, rafraîchies périodiquement plutôt qu'à chaque consultation
+    private List<AID> receptionists = new ArrayList<>();
+    private long sessionTimeoutMillis;
+    private DoctorView gui;
+    private MessageDispatcher dispatcher;
     private Gson gson = new Gson();
 
+    // État d'une consultation en cours avec un patient
+    private static class ConsultationSession {
+        private final String patientId;
+        private final PatientRecord record;
+        private final HashMap<String, String> responses = new HashMap<>();
+        // Réceptionniste qui a transmis le dossier et qui gère le patient
+        private AID receptionistAID;
+        private AID patientAID;
+        private boolean awaitingResponses;
+        private ConsultationOpeningBehaviour opening;
+        private long lastActivityTime;
+
+        ConsultationSession(PatientRecord record) {
+            this.patientId = record.getPatientId();
+            this.record = record;
+            this.lastActivityTime = System.currentTimeMillis();
+        }
+
+        void touch() {
+            lastActivityTime = System.currentTimeMillis();
+        }
+    }
+
     @Override
     protected void setup() {
         // Initialiser les attributs
-        available = true;
-        patientResponses = new HashMap<>();
-
-        // Récupérer les arguments (spécialité et numéro de salle)
-        Object[] args = getArguments();
+        sessions = new LinkedHashMap<>();
+        leases = new HashMap<>();
+        refusedReceptionists = new LinkedHashSet<>();
+        sessionTimeoutMillis = Integer.getInteger(SESSION_TIMEOUT_PROPERTY, DEFAULT_SESSION_TIMEOUT_SECONDS) * 1000L;
+
+        // Récupérer les arguments (spécialité, salle, qualification, expérience, consultations simultanées)
+        // L'option "headless" peut suivre les arguments positionnels
+        boolean headless = HeadlessView.isRequested(getArguments());
+        Object[] args = HeadlessView.withoutFlag(getArguments());
         if (args != null && args.length > 0) {
             specialty = (String) args[0];
             roomNumber = Integer.parseInt((String) args[1]);
@@ -52,10 +115,21 @@ public class DoctorAgent extends Agent {
             specialty = "generaliste";
             roomNumber = 100;
         }
-
-        // Créer et afficher l'interface graphique
-        gui = new DoctorGUI(this);
-        gui.setVisible(true);
+        qualification = args != null && args.length > 2 ? (String) args[2] : "Médecin " + specialty;
+        experience = args != null && args.length > 3 ? Integer.parseInt((String) args[3]) : 5;
+        maxConsultations = args != null && args.length > 4 ?
+            Integer.parseInt((String) args[4]) :
+            Integer.getInteger(MAX_CONSULTATIONS_PROPERTY, DEFAULT_MAX_CONSULTATIONS);
+        maxConsultations = Math.max(1, maxConsultations);
+
+        // Créer et afficher l'interface graphique, sauf en mode sans affichage
+        if (headless) {
+            gui = new HeadlessView(getLocalName());
+        } else {
+            DoctorGUI frame = new DoctorGUI(this);
+            frame.setVisible(true);
+            gui = frame;
+        }
         gui.displayMessage("Agent Médecin en cours de démarrage...");
 
         // S'enregistrer auprès du DF
@@ -74,16 +148,85 @@ public class DoctorAgent extends Agent {
             gui.displayMessage("Erreur d'enregistrement: " + fe.getMessage());
         }
 
-        // Ajouter les comportements
-        addBehaviour(new ReceivePatientInfoBehaviour());
-        addBehaviour(new WaitForPatientArrivalBehaviour());
+        // Un seul comportement lit la boîte aux lettres et route chaque message
+        dispatcher = new MessageDispatcher(this)
+            .register("patient-info", this::handlePatientInfo)
+            .register("patient-location", this::handlePatientLocation)
+            .register("doctor-consultation", this::handleConsultationResponses)
+            .register("doctor-info-request", this::handleDoctorInfoRequest)
+            .register("doctor-lease", this::handleLeaseRequest);
+        addBehaviour(dispatcher);
+
+        // Libérer les places des consultations restées sans nouvelles du patient
+        addBehaviour(new TickerBehaviour(this, TIMEOUT_CHECK_PERIOD_MS) {
+            @Override
+            protected void onTick() {
+                dispatcher.getMetrics().time("sessionTimeouts", DoctorAgent.this::checkSessionTimeouts);
+            }
+        });
+
+        // Rechercher les réceptionnistes et suivre les arrivées et départs
+        refreshReceptionists();
+        addBehaviour(new TickerBehaviour(this, RECEPTIONIST_REFRESH_PERIOD_MS) {
+            @Override
+            protected void onTick() {
+                dispatcher.getMetrics().time("refreshReceptionists", DoctorAgent.this::refreshReceptionists);
+            }
+        });
+
+        // Se présenter à la réceptionniste avec sa capacité de consultation
+        announceToReceptionist();
 
-        gui.displayMessage("Agent Médecin " + specialty + " prêt dans la salle " + roomNumber);
+        gui.displayMessage("Agent Médecin " + specialty + " prêt dans la salle " + roomNumber +
+            " (" + maxConsultations + " consultation(s) simultanée(s))");
     }
 
-    // Méthode pour inviter le patient à venir dans la salle de consultation
-    private void invitePatientToConsultation() {
-        // Rechercher l'agent réceptionniste
+    // Informations transmises à la réceptionniste pour l'affectation des patients
+    private String buildDoctorInfo() {
+        JsonObject info = new JsonObject();
+        info.addProperty("specialty", specialty);
+        info.addProperty("qualification", qualification);
+        info.addProperty("experience", experience);
+        info.addProperty("roomNumber", roomNumber);
+        info.addProperty("maxConsultations", maxConsultations);
+        info.addProperty("activeConsultations", getActiveConsultations());
+        return info.toString();
+    }
+
+    // Envoie spontanément ses informations aux réceptionnistes au démarrage
+    private void announceToReceptionist() {
+        List<AID> receptionists = findReceptionists();
+        if (receptionists.isEmpty()) {
+            gui.displayMessage("Réceptionniste non trouvée, présentation différée à sa demande");
+            return;
+        }
+
+        ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
+        for (AID receptionistAID : receptionists) {
+            msg.addReceiver(receptionistAID);
+        }
+        msg.setContent(buildDoctorInfo());
+        msg.setConversationId("doctor-info");
+        dispatcher.send(msg);
+    }
+
+    // Recherche l'agent réceptionniste dans le DF
+    private AID findReceptionist() {
+        List<AID> receptionists = findReceptionists();
+        return receptionists.isEmpty() ? null : receptionists.get(0);
+    }
+
+    // Réceptionnistes connues (plusieurs en mode accueil réparti) ; l'annuaire n'est interrogé
+    // ici que si aucune n'a encore été trouvée
+    private List<AID> findReceptionists() {
+        if (receptionists.isEmpty()) {
+            refreshReceptionists();
+        }
+        return receptionists;
+    }
+
+    // Synchronise la liste des réceptionnistes avec l'annuaire
+    private void refreshReceptionists() {
         DFAgentDescription template = new DFAgentDescription();
         ServiceDescription sd = new ServiceDescription();
         sd.setType("receptionist");
@@ -91,162 +234,162 @@ public class DoctorAgent extends Agent {
 
         try {
             DFAgentDescription[] result = DFService.search(this, template);
-            if (result.length > 0) {
-                AID receptionistAID = result[0].getName();
-
-                // Créer et configurer le message pour demander à la réceptionniste d'inviter le patient
-                ACLMessage msg = new ACLMessage(ACLMessage.REQUEST);
-                msg.addReceiver(receptionistAID);
-
-                // Créer un objet JSON avec les informations nécessaires
-                JsonObject requestInfo = new JsonObject();
-                requestInfo.addProperty("patientId", currentPatientRecord.getPatientId());
-                requestInfo.addProperty("doctorId", getLocalName());
-                requestInfo.addProperty("roomNumber", roomNumber);
-
-                msg.setContent(requestInfo.toString());
-                msg.setConversationId("invite-patient");
-                send(msg);
-
-                gui.displayMessage("Demande envoyée à la réceptionniste pour faire venir le patient " +
-                    currentPatientRecord.getPatientId() + " dans la salle " + roomNumber);
-
-                // Log supplémentaire pour débogage
-                System.out.println("Médecin " + getLocalName() + " a demandé au patient " +
-                    currentPatientRecord.getPatientId() + " de venir en salle " + roomNumber);
-            } else {
-                gui.displayMessage("Erreur: Réceptionniste non trouvée, impossible d'inviter le patient");
+            List<AID> registered = new ArrayList<>();
+            for (DFAgentDescription receptionist : result) {
+                registered.add(receptionist.getName());
             }
+            receptionists = registered;
         } catch (FIPAException fe) {
+            // Conserver la dernière liste connue
             fe.printStackTrace();
             gui.displayMessage("Erreur lors de la recherche de la réceptionniste: " + fe.getMessage());
         }
     }
 
+    // Réceptionniste à qui adresser les messages concernant une consultation
+    private AID getReceptionistFor(ConsultationSession session) {
+        return session.receptionistAID != null ? session.receptionistAID : findReceptionist();
+    }
+
+    // Méthode pour inviter le patient à venir dans la salle de consultation
+    private void invitePatientToConsultation(ConsultationSession session) {
+        AID receptionistAID = getReceptionistFor(session);
+        if (receptionistAID == null) {
+            gui.displayMessage("Erreur: Réceptionniste non trouvée, impossible d'inviter le patient");
+            return;
+        }
+
+        // Créer et configurer le message pour demander à la réceptionniste d'inviter le patient
+        ACLMessage msg = new ACLMessage(ACLMessage.REQUEST);
+        msg.addReceiver(receptionistAID);
+
+        // Créer un objet JSON avec les informations nécessaires
+        JsonObject requestInfo = new JsonObject();
+        requestInfo.addProperty("patientId", session.patientId);
+        requestInfo.addProperty("doctorId", getLocalName());
+        requestInfo.addProperty("roomNumber", roomNumber);
+
+        msg.setContent(requestInfo.toString());
+        msg.setConversationId("invite-patient");
+        dispatcher.send(msg);
+
+        gui.displayMessage("Demande envoyée à la réceptionniste pour faire venir le patient " +
+            session.patientId + " dans la salle " + roomNumber);
+
+        // Log supplémentaire pour débogage
+        System.out.println("Médecin " + getLocalName() + " a demandé au patient " +
+            session.patientId + " de venir en salle " + roomNumber);
+    }
+
     // Salue le patient
-    private void greetPatient() {
+    private void greetPatient(ConsultationSession session) {
         // Créer et configurer le message
         ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
-        msg.addReceiver(currentPatientAID);
+        msg.addReceiver(session.patientAID);
         msg.setContent("Bonjour, je suis le Dr. " + getDoctorName() + ". Je vais vous examiner aujourd'hui.");
         msg.setConversationId("doctor-greeting");
-        send(msg);
+        dispatcher.send(msg);
 
         // Journaliser l'action
-        gui.displayMessage("Patient " + currentPatientAID.getLocalName() + " accueilli");
+        gui.displayMessage("Patient " + session.patientId + " accueilli");
     }
 
     // Pose des questions supplémentaires
-    private void askAdditionalQuestions() {
-        if (currentPatientAID == null) {
+    private void askAdditionalQuestions(ConsultationSession session) {
+        if (session.patientAID == null) {
             gui.displayMessage("Erreur: Impossible d'envoyer des questions - Patient non identifié");
             return;
         }
 
         // Créer et configurer le message
         ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
-        msg.addReceiver(currentPatientAID);
+        msg.addReceiver(session.patientAID);
 
-        // Création du formulaire de questions (structure JSON)
-        JsonObject form = new JsonObject();
-        form.addProperty("formId", "doctorQuestions");
-        form.addProperty("title", "Questions Médicales Supplémentaires");
-
-        JsonArray fields = new JsonArray();
-
-        // Questions générales
-        JsonObject medicalHistoryField = new JsonObject();
-        medicalHistoryField.addProperty("name", "medicalHistory");
-        medicalHistoryField.addProperty("label", "Avez-vous des antécédents médicaux particuliers ?");
-        medicalHistoryField.addProperty("type", "text");
-        medicalHistoryField.addProperty("required", true);
-        fields.add(medicalHistoryField);
-
-        JsonObject familyHistoryField = new JsonObject();
-        familyHistoryField.addProperty("name", "familyHistory");
-        familyHistoryField.addProperty("label", "Y a-t-il des maladies héréditaires dans votre famille ?");
-        familyHistoryField.addProperty("type", "text");
-        familyHistoryField.addProperty("required", true);
-        fields.add(familyHistoryField);
+        // Partie fixe du questionnaire (questions générales et propres à la spécialité) : construite une seule fois
+        FormRegistry.FormBuilder form = FormRegistry.getInstance().extend(
+            DOCTOR_FORM_ID + ":" + specialty, this::buildDoctorQuestionsForm);
 
         // Identifier les maladies possibles
-        List<Disease> possibleDiseases = DiseaseDatabase.getInstance().findDiseasesBySymptoms(currentPatientRecord.getSymptomsInfo());
+        List<Disease> possibleDiseases = DiseaseDatabase.getInstance().findDiseasesBySymptoms(session.record.getSymptomsInfo());
 
         // Log des maladies possibles
-        gui.displayMessage("Analyse des symptômes du patient:");
+        gui.displayMessage("Analyse des symptômes du patient " + session.patientId + ":");
         for (Disease disease : possibleDiseases) {
-            int matchScore = disease.matchSymptoms(currentPatientRecord.getSymptomsInfo());
+            int matchScore = disease.matchSymptoms(session.record.getSymptomsInfo());
             gui.displayMessage("- Maladie possible: " + disease.getName() + " (" + matchScore + "% de correspondance)");
 
-            // Ajouter des questions spécifiques pour cette maladie
+            // Ajouter des questions spécifiques pour cette maladie (en cache par maladie)
             if (matchScore > 40) { // Seulement pour les maladies avec une correspondance significative
-                List<String> specificQuestions = DiseaseDatabase.getInstance().generateDiagnosticQuestionsForDisease(disease);
-
-                // Ajouter les questions spécifiques au formulaire (max 3 questions par maladie)
-                int questionCount = 0;
-                for (String question : specificQuestions) {
-                    if (questionCount >= 3) break;
-
-                    JsonObject questionField = new JsonObject();
-                    String fieldName = "disease_" + disease.getId() + "_q" + questionCount;
-                    questionField.addProperty("name", fieldName);
-                    questionField.addProperty("label", question);
-                    questionField.addProperty("type", "text");
-                    questionField.addProperty("required", true);
-                    fields.add(questionField);
-                    questionCount++;
-                }
+                form.addFragment("disease:" + disease.getId(), () -> buildDiseaseQuestionFields(disease));
             }
         }
 
+        // Envoyer le formulaire
+        msg.setContent(form.build());
+        msg.setConversationId("doctor-questions");
+        dispatcher.send(msg);
+
+        int fieldCount = form.getFieldCount();
+
+        // Log pour débogage
+        System.out.println("Médecin " + getLocalName() + " a envoyé des questions au patient " +
+            session.patientId + " avec " + fieldCount + " questions.");
+
+        // Journaliser l'action
+        gui.displayMessage("Questions supplémentaires envoyées à " + session.patientId);
+        gui.displayMessage("Nombre de questions envoyées: " + fieldCount);
+
+        // Les réponses seront traitées par le gestionnaire "doctor-consultation"
+        session.awaitingResponses = true;
+        session.touch();
+    }
+
+    // Construit la partie fixe du questionnaire médical pour la spécialité du médecin
+    private JsonObject buildDoctorQuestionsForm() {
+        JsonArray fields = new JsonArray();
+
+        // Questions générales
+        fields.add(FormRegistry.field("medicalHistory", "Avez-vous des antécédents médicaux particuliers ?", "text", true));
+        fields.add(FormRegistry.field("familyHistory", "Y a-t-il des maladies héréditaires dans votre famille ?", "text", true));
+
         // Ajouter des questions spécifiques à la spécialité
         if ("cardiologue".equals(specialty)) {
-            JsonObject chestPainField = new JsonObject();
-            chestPainField.addProperty("name", "chestPain");
-            chestPainField.addProperty("label", "Pouvez-vous décrire précisément vos douleurs thoraciques ?");
-            chestPainField.addProperty("type", "text");
-            chestPainField.addProperty("required", true);
-            fields.add(chestPainField);
-
-            JsonObject heartRateField = new JsonObject();
-            heartRateField.addProperty("name", "heartRate");
-            heartRateField.addProperty("label", "Avez-vous remarqué des palpitations ou des irrégularités dans votre rythme cardiaque ?");
-            heartRateField.addProperty("type", "text");
-            heartRateField.addProperty("required", true);
-            fields.add(heartRateField);
+            fields.add(FormRegistry.field("chestPain",
+                "Pouvez-vous décrire précisément vos douleurs thoraciques ?", "text", true));
+            fields.add(FormRegistry.field("heartRate",
+                "Avez-vous remarqué des palpitations ou des irrégularités dans votre rythme cardiaque ?", "text", true));
         }
 
         // Ajouter les autres questions spécifiques aux différentes spécialités comme avant...
 
-        form.add("fields", fields);
-
-        // Envoyer le formulaire
-        msg.setContent(form.toString());
-        msg.setConversationId("doctor-questions");
-        send(msg);
+        return FormRegistry.form(DOCTOR_FORM_ID, "Questions Médicales Supplémentaires", fields);
+    }
 
-        // Log pour débogage
-        System.out.println("Médecin " + getLocalName() + " a envoyé des questions au patient " +
-            currentPatientAID.getLocalName() + " avec " + fields.size() + " questions.");
+    // Questions propres à une maladie (max 3 questions par maladie)
+    private static JsonArray buildDiseaseQuestionFields(Disease disease) {
+        JsonArray fields = new JsonArray();
+        List<String> specificQuestions = DiseaseDatabase.getInstance().generateDiagnosticQuestionsForDisease(disease);
 
-        // Journaliser l'action
-        gui.displayMessage("Questions supplémentaires envoyées à " + currentPatientAID.getLocalName());
-        gui.displayMessage("Nombre de questions envoyées: " + fields.size());
+        int questionCount = 0;
+        for (String question : specificQuestions) {
+            if (questionCount >= 3) break;
 
-        // Ajouter un comportement pour attendre les réponses
-        addBehaviour(new WaitForResponsesBehaviour());
+            String fieldName = "disease_" + disease.getId() + "_q" + questionCount;
+            fields.add(FormRegistry.field(fieldName, question, "text", true));
+            questionCount++;
+        }
+        return fields;
     }
 
     // Établit un diagnostic
-    private String diagnosisPatient() {
+    private String diagnosisPatient(ConsultationSession session, List<Disease> possibleDiseases) {
         // Initialiser le diagnostic
         StringBuilder diagnosis = new StringBuilder("Diagnostic: ");
 
         // Analyser les symptômes du dossier du patient
-        HashMap<String, String> symptomsInfo = currentPatientRecord.getSymptomsInfo();
+        HashMap<String, String> symptomsInfo = session.record.getSymptomsInfo();
+        HashMap<String, String> patientResponses = session.responses;
 
-        // Identifier les maladies possibles
-        List<Disease> possibleDiseases = DiseaseDatabase.getInstance().findDiseasesBySymptoms(symptomsInfo);
         Disease probableDisease = null;
 
         if (!possibleDiseases.isEmpty()) {
@@ -325,11 +468,8 @@ public class DoctorAgent extends Agent {
         return diagnosis.toString();
     }
 
-    // Identifie la maladie la plus probable
-    private Disease identifyDisease(HashMap<String, String> symptoms) {
-        // Utiliser la base de données de maladies pour identifier la plus probable
-        List<Disease> potentialDiseases = DiseaseDatabase.getInstance().findDiseasesBySymptoms(symptoms);
-
+    // Identifie la maladie la plus probable parmi celles retenues par la recherche
+    private Disease identifyDisease(List<Disease> potentialDiseases) {
         if (!potentialDiseases.isEmpty()) {
             return potentialDiseases.get(0); // Retourne la maladie avec la meilleure correspondance
         }
@@ -341,20 +481,28 @@ public class DoctorAgent extends Agent {
     }
 
     // Prescrit un traitement
-    private void prescribeTreatment() {
+    private void prescribeTreatment(ConsultationSession session) {
+        PatientRecord patientRecord = session.record;
+
+        // Identifier une seule fois les maladies possibles, triées par correspondance décroissante
+        List<Disease> possibleDiseases = DiseaseDatabase.getInstance().findDiseasesBySymptoms(patientRecord.getSymptomsInfo());
+
         // Générer le diagnostic
-        String diagnosisText = diagnosisPatient();
+        String diagnosisText = diagnosisPatient(session, possibleDiseases);
 
         // Déterminer la maladie la plus probable
-        Disease probableDisease = identifyDisease(currentPatientRecord.getSymptomsInfo());
+        Disease probableDisease = identifyDisease(possibleDiseases);
 
         // Créer une consultation
         Consultation consultation = new Consultation();
         consultation.setDoctorId(getLocalName());
         consultation.setDiagnosis(diagnosisText);
         consultation.setTimestamp(new Date());
-        consultation.setSymptoms(currentPatientRecord.getSymptomsInfo());
+        consultation.setSymptoms(patientRecord.getSymptomsInfo());
         consultation.setDisease(probableDisease);
+        // Score calculé par la recherche ; nul pour une maladie hors catalogue
+        consultation.setDiseaseMatchScore(possibleDiseases.isEmpty() ? 0 :
+            Integer.parseInt(probableDisease.getAdditionalInfo().getOrDefault("matchScore", "0")));
 
         // Sélectionner le traitement adapté au patient (supposons un âge et un poids moyens)
         int estimatedAge = 40; // Valeur par défaut
@@ -362,7 +510,7 @@ public class DoctorAgent extends Agent {
 
         // Essayer d'extraire l'âge du dossier patient si disponible
         try {
-            String birthDateStr = currentPatientRecord.getPersonalInfo().get("birthDate");
+            String birthDateStr = patientRecord.getPersonalInfo().get("birthDate");
             if (birthDateStr != null && !birthDateStr.isEmpty()) {
                 // Format simple: YYYY-MM-DD
                 int birthYear = Integer.parseInt(birthDateStr.substring(0, 4));
@@ -388,7 +536,7 @@ public class DoctorAgent extends Agent {
         consultation.setNotes(guidelines);
 
         // Ajouter la consultation au dossier du patient
-        currentPatientRecord.addConsultation(consultation);
+        patientRecord.addConsultation(consultation);
 
         // Préparer la réponse pour le patient
         StringBuilder response = new StringBuilder(diagnosisText);
@@ -406,88 +554,123 @@ public class DoctorAgent extends Agent {
 
         // Envoyer le diagnostic et la prescription au patient
         ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
-        msg.addReceiver(currentPatientAID);
+        msg.addReceiver(session.patientAID);
         msg.setContent(response.toString());
         msg.setConversationId("diagnosis");
-        send(msg);
+        dispatcher.send(msg);
 
         // Journaliser l'action
-        gui.displayMessage("Diagnostic envoyé à " + currentPatientAID.getLocalName());
+        gui.displayMessage("Diagnostic envoyé à " + session.patientId);
         gui.displayMessage(response.toString());
 
         // Mettre à jour le dossier patient auprès de la réceptionniste
-        updatePatientRecordAtReceptionist(currentPatientRecord);
+        updatePatientRecordAtReceptionist(session);
 
-        // Marquer le médecin comme disponible
-        available = true;
+        // Libérer la place de consultation
+        sessions.remove(session.patientId);
 
         // Informer la réceptionniste que la consultation est terminée
-        informReceptionistConsultationCompleted();
+        informReceptionistConsultationCompleted(session);
     }
 
-    // Informe la réceptionniste que la consultation est terminée
-    private void informReceptionistConsultationCompleted() {
-        // Rechercher l'agent réceptionniste
-        DFAgentDescription template = new DFAgentDescription();
-        ServiceDescription sd = new ServiceDescription();
-        sd.setType("receptionist");
-        template.addServices(sd);
+    /**
+     * Abandonne les consultations sans activité depuis la durée configurée : patient jamais arrivé
+     * en salle (agent disparu, par exemple remis en liste d'attente après un redémarrage) ou
+     * questionnaire resté sans réponse. La place est rendue à la réceptionniste.
+     */
+    private void checkSessionTimeouts() {
+        long now = System.currentTimeMillis();
+        Iterator<ConsultationSession> it = sessions.values().iterator();
+        List<ConsultationSession> expired = new ArrayList<>();
+
+        while (it.hasNext()) {
+            ConsultationSession session = it.next();
+            long idle = now - session.lastActivityTime;
+            if (idle < sessionTimeoutMillis) {
+                continue;
+            }
 
-        try {
-            DFAgentDescription[] result = DFService.search(this, template);
-            if (result.length > 0) {
-                AID receptionistAID = result[0].getName();
+            it.remove();
+            expired.add(session);
+            if (session.opening != null) {
+                removeBehaviour(session.opening);
+            }
 
-                // Créer et configurer le message
+            // Prévenir le patient s'il s'était présenté
+            if (session.patientAID != null) {
                 ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
-                msg.addReceiver(receptionistAID);
-                msg.setContent("CONSULTATION_COMPLETED");
-                msg.setConversationId("doctor-status");
-                send(msg);
-
-                // Journaliser l'action
-                gui.displayMessage("Réceptionniste informée que la consultation est terminée");
-            } else {
-                gui.displayMessage("Erreur: Réceptionniste non trouvée");
+                msg.addReceiver(session.patientAID);
+                msg.setContent("Sans réponse de votre part, votre consultation a été clôturée.");
+                msg.setConversationId("doctor-greeting");
+                dispatcher.send(msg);
             }
-        } catch (FIPAException fe) {
-            fe.printStackTrace();
-            gui.displayMessage("Erreur lors de la recherche de la réceptionniste: " + fe.getMessage());
+
+            gui.displayMessage("Consultation du patient " + session.patientId + " abandonnée après " +
+                (idle / 1000) + " s d'inactivité");
+        }
+
+        // Libérer les places une fois toutes les sessions expirées retirées
+        for (ConsultationSession session : expired) {
+            informReceptionistConsultationCompleted(session);
         }
     }
 
-    // Met à jour le dossier du patient auprès de la réceptionniste
-    private void updatePatientRecordAtReceptionist(PatientRecord record) {
-        // Rechercher l'agent réceptionniste
-        DFAgentDescription template = new DFAgentDescription();
-        ServiceDescription sd = new ServiceDescription();
-        sd.setType("receptionist");
-        template.addServices(sd);
+    /**
+     * Informe que la consultation est terminée et qu'une place est libre : la réceptionniste qui
+     * a affecté le patient, ainsi que celles à qui une place a été refusée entre-temps (mode
+     * accueil réparti) pour qu'elles reprennent leur liste d'attente. Les autres n'ont rien à
+     * libérer. Toutes sont prévenues si la réceptionniste du patient est inconnue.
+     */
+    private void informReceptionistConsultationCompleted(ConsultationSession session) {
+        LinkedHashSet<AID> recipients = new LinkedHashSet<>();
+        if (session.receptionistAID != null) {
+            recipients.add(session.receptionistAID);
+            recipients.addAll(refusedReceptionists);
+        } else {
+            recipients.addAll(findReceptionists());
+        }
+        refusedReceptionists.clear();
+        if (recipients.isEmpty()) {
+            gui.displayMessage("Erreur: Réceptionniste non trouvée");
+            return;
+        }
 
-        try {
-            DFAgentDescription[] result = DFService.search(this, template);
-            if (result.length > 0) {
-                AID receptionistAID = result[0].getName();
+        ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
+        for (AID receptionistAID : recipients) {
+            msg.addReceiver(receptionistAID);
+        }
+        msg.setContent("CONSULTATION_COMPLETED");
+        // Permet à la réceptionniste qui a affecté le patient de mesurer la durée de la consultation
+        msg.addUserDefinedParameter(CONSULTATION_PATIENT_PARAM, session.patientId);
+        msg.setConversationId("doctor-status");
+        dispatcher.send(msg);
 
-                // Créer et configurer le message
-                ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
-                msg.addReceiver(receptionistAID);
-                msg.setConversationId("patient-record-update");
-
-                // Convertir le dossier en JSON et l'envoyer
-                String jsonData = gson.toJson(record);
-                msg.setContent(jsonData);
-                send(msg);
-
-                // Journaliser l'action
-                gui.displayMessage("Dossier patient mis à jour envoyé à la réceptionniste");
-            } else {
-                gui.displayMessage("Erreur: Réceptionniste non trouvée");
-            }
-        } catch (FIPAException fe) {
-            fe.printStackTrace();
-            gui.displayMessage("Erreur lors de la mise à jour du dossier: " + fe.getMessage());
+        // Journaliser l'action
+        gui.displayMessage("Réceptionniste informée que la consultation est terminée (" +
+            sessions.size() + "/" + maxConsultations + " en cours)");
+    }
+
+    // Met à jour le dossier du patient auprès de la réceptionniste qui le gère
+    private void updatePatientRecordAtReceptionist(ConsultationSession session) {
+        PatientRecord record = session.record;
+        AID receptionistAID = getReceptionistFor(session);
+        if (receptionistAID == null) {
+            gui.displayMessage("Erreur: Réceptionniste non trouvée");
+            return;
         }
+
+        // Créer et configurer le message
+        ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
+        msg.addReceiver(receptionistAID);
+        msg.setConversationId("patient-record-update");
+
+        // Convertir le dossier en JSON et l'envoyer
+        String jsonData = gson.toJson(record);
+        msg.setContent(jsonData);
+        dispatcher.send(msg);
+
+        // Journaliser l'action
+        gui.displayMessage("Dossier patient mis à jour envoyé à la réceptionniste");
     }
 
     // Retourne le nom du médecin basé sur sa spécialité
@@ -504,9 +687,31 @@ public class DoctorAgent extends Agent {
         }
     }
 
-    // Vérifie si le médecin est disponible
+    // Vérifie si le médecin peut accepter une consultation supplémentaire
     public boolean isAvailable() {
-        return available;
+        return getActiveConsultations() < maxConsultations;
+    }
+
+    // Nombre de consultations simultanées autorisées
+    public int getMaxConsultations() {
+        return maxConsultations;
+    }
+
+    // Nombre de consultations en cours, places réservées comprises
+    public int getActiveConsultations() {
+        purgeExpiredLeases();
+        return sessions.size() + leases.size();
+    }
+
+    // Libère les places réservées dont le dossier n'est jamais arrivé
+    private void purgeExpiredLeases() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Long>> it = leases.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue() < now) {
+                it.remove();
+            }
+        }
     }
 
     // Récupère la spécialité du médecin
@@ -519,138 +724,200 @@ public class DoctorAgent extends Agent {
         return roomNumber;
     }
 
-    // Comportement pour recevoir les informations du patient
-    private class ReceivePatientInfoBehaviour extends CyclicBehaviour {
-        @Override
-        public void action() {
-            // Configurer un filtre pour les messages avec conversationId "patient-info"
-            MessageTemplate mt = MessageTemplate.MatchConversationId("patient-info");
-            ACLMessage msg = receive(mt);
+    // Reçoit le dossier du patient transmis par la réceptionniste et ouvre une consultation
+    private void handlePatientInfo(ACLMessage msg) {
+        try {
+            // Récupérer et stocker le dossier du patient
+            PatientRecord record = gson.fromJson(msg.getContent(), PatientRecord.class);
 
-            if (msg != null) {
-                try {
-                    // Récupérer et stocker le dossier du patient
-                    currentPatientRecord = gson.fromJson(msg.getContent(), PatientRecord.class);
+            if (sessions.size() >= maxConsultations && !leases.containsKey(record.getPatientId())) {
+                // La réceptionniste ne devrait pas dépasser la capacité annoncée ; on accepte quand même
+                gui.displayMessage("Attention: capacité de " + maxConsultations +
+                    " consultation(s) dépassée pour le patient " + record.getPatientId());
+            }
 
-                    // Marquer le médecin comme occupé
-                    available = false;
+            ConsultationSession session = new ConsultationSession(record);
+            session.receptionistAID = msg.getSender();
+            leases.remove(session.patientId);
+            sessions.put(session.patientId, session);
 
-                    // Journaliser l'action
-                    gui.displayMessage("Dossier du patient reçu: " + currentPatientRecord.getPatientId());
+            // Journaliser l'action
+            gui.displayMessage("Dossier du patient reçu: " + record.getPatientId() +
+                " (" + sessions.size() + "/" + maxConsultations + " consultation(s) en cours)");
 
-                    // Afficher les informations du patient dans l'interface
-                    gui.displayPatientInfo(currentPatientRecord);
+            // Afficher les informations du patient dans l'interface
+            gui.displayPatientInfo(record);
 
-                    // NOUVEAU: Inviter le patient à venir dans la salle de consultation
-                    invitePatientToConsultation();
+            // NOUVEAU: Inviter le patient à venir dans la salle de consultation
+            invitePatientToConsultation(session);
 
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    gui.displayMessage("Erreur lors de la réception du dossier patient: " + e.getMessage());
-                }
-            } else {
-                block();
-            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            gui.displayMessage("Erreur lors de la réception du dossier patient: " + e.getMessage());
         }
     }
 
-    // Comportement pour attendre l'arrivée du patient
-    private class WaitForPatientArrivalBehaviour extends CyclicBehaviour {
-        @Override
-        public void action() {
-            // Élargir le filtre pour capturer tous les messages de localisation patient
-            MessageTemplate mt = MessageTemplate.MatchConversationId("patient-location");
-
-            ACLMessage msg = receive(mt);
-
-            if (msg != null) {
-                String content = msg.getContent();
-
-                // Log pour débogage plus détaillé
-                System.out.println("Médecin a reçu un message de localisation: '" + content +
-                    "' de " + msg.getSender().getLocalName() + " à " + new java.util.Date());
-
-                if ("PATIENT_ARRIVED".equals(content)) {
-                    // Stocker l'AID du patient
-                    currentPatientAID = msg.getSender();
-
-                    // Journaliser l'action
-                    gui.displayMessage("Patient " + currentPatientAID.getLocalName() + " arrivé en salle de consultation");
-
-                    // Délai plus long pour laisser le temps à l'interface de s'actualiser
-                    try {
-                        System.out.println("Attente avant de communiquer avec le patient...");
-                        Thread.sleep(1500); // Augmenté à 1,5 secondes
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-
-                    // Saluer le patient
-                    greetPatient();
-
-                    // Délai supplémentaire après la salutation
-                    try {
-                        System.out.println("Délai après salutation...");
-                        Thread.sleep(1000); // 1 seconde de plus
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-
-                    // Poser des questions supplémentaires dans un comportement séparé
-                    addBehaviour(new jade.core.behaviours.OneShotBehaviour() {
-                        @Override
-                        public void action() {
-                            System.out.println("Préparation du questionnaire pour " + currentPatientAID.getLocalName());
-                            askAdditionalQuestions();
-                            System.out.println("Questionnaire envoyé à " + currentPatientAID.getLocalName());
-                        }
-                    });
-                }
-            } else {
-                block();
+    // Gère l'arrivée d'un patient en salle de consultation
+    private void handlePatientLocation(ACLMessage msg) {
+        String content = msg.getContent();
+
+        // Log pour débogage plus détaillé
+        System.out.println("Médecin a reçu un message de localisation: '" + content +
+            "' de " + msg.getSender().getLocalName() + " à " + new java.util.Date());
+
+        if ("PATIENT_ARRIVED".equals(content)) {
+            ConsultationSession session = sessions.get(msg.getSender().getLocalName());
+            if (session == null) {
+                gui.displayMessage("Patient " + msg.getSender().getLocalName() +
+                    " arrivé sans dossier transmis par la réceptionniste, ignoré");
+                return;
             }
+
+            // Notification d'arrivée répétée : la séquence d'accueil est déjà lancée
+            if (session.patientAID != null) {
+                return;
+            }
+
+            // Stocker l'AID du patient
+            session.patientAID = msg.getSender();
+            session.touch();
+
+            // Journaliser l'action
+            gui.displayMessage("Patient " + session.patientId + " arrivé en salle de consultation");
+
+            // Accueil puis questionnaire, cadencés par des minuteries sans bloquer l'agent
+            session.opening = new ConsultationOpeningBehaviour(session);
+            addBehaviour(session.opening);
         }
     }
 
-    // Comportement pour attendre les réponses du patient
-    private class WaitForResponsesBehaviour extends CyclicBehaviour {
-        @Override
-        public void action() {
-            // Configurer un filtre pour les messages avec conversationId "doctor-consultation"
-            MessageTemplate mt = MessageTemplate.MatchConversationId("doctor-consultation");
-            ACLMessage msg = receive(mt);
-
-            if (msg != null) {
-                try {
-                    // Récupérer les réponses du patient
-                    HashMap<String, String> responses = gson.fromJson(
-                        msg.getContent(),
-                        new TypeToken<HashMap<String, String>>(){}.getType());
-
-                    // Stocker les réponses
-                    patientResponses.putAll(responses);
-
-                    // Journaliser l'action
-                    gui.displayMessage("Réponses du patient reçues");
-
-                    // Présenter un résumé des réponses dans l'interface
-                    for (String key : responses.keySet()) {
-                        gui.displayMessage(key + ": " + responses.get(key));
-                    }
-
-                    // Prescrire un traitement
-                    prescribeTreatment();
-
-                    // Supprimer ce comportement
-                    myAgent.removeBehaviour(this);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    gui.displayMessage("Erreur lors du traitement des réponses: " + e.getMessage());
+    /**
+     * Séquence d'ouverture de consultation : attente, salutation, attente, questionnaire.
+     * Les délais laissent à l'interface du patient le temps de s'actualiser ; ils sont gérés
+     * par des WakerBehaviour afin que le médecin continue de traiter ses autres messages.
+     */
+    private class ConsultationOpeningBehaviour extends FSMBehaviour {
+        private static final String WAIT_BEFORE_GREETING = "attente-salutation";
+        private static final String GREET = "salutation";
+        private static final String WAIT_BEFORE_QUESTIONS = "attente-questionnaire";
+        private static final String ASK_QUESTIONS = "questionnaire";
+
+        private final ConsultationSession session;
+
+        ConsultationOpeningBehaviour(ConsultationSession session) {
+            super(DoctorAgent.this);
+            this.session = session;
+
+            registerFirstState(new WakerBehaviour(DoctorAgent.this, GREETING_DELAY_MS) {
+                @Override
+                protected void onWake() {
+                    // Rien à faire : la transition vers la salutation suit l'expiration du délai
+                }
+            }, WAIT_BEFORE_GREETING);
+
+            registerState(new OneShotBehaviour(DoctorAgent.this) {
+                @Override
+                public void action() {
+                    greetPatient(session);
                 }
-            } else {
-                block();
+            }, GREET);
+
+            registerState(new WakerBehaviour(DoctorAgent.this, QUESTIONS_DELAY_MS) {
+                @Override
+                protected void onWake() {
+                    // Rien à faire : la transition vers le questionnaire suit l'expiration du délai
+                }
+            }, WAIT_BEFORE_QUESTIONS);
+
+            registerLastState(new OneShotBehaviour(DoctorAgent.this) {
+                @Override
+                public void action() {
+                    askAdditionalQuestions(session);
+                }
+            }, ASK_QUESTIONS);
+
+            registerDefaultTransition(WAIT_BEFORE_GREETING, GREET);
+            registerDefaultTransition(GREET, WAIT_BEFORE_QUESTIONS);
+            registerDefaultTransition(WAIT_BEFORE_QUESTIONS, ASK_QUESTIONS);
+        }
+
+        @Override
+        public int onEnd() {
+            session.opening = null;
+            return super.onEnd();
+        }
+    }
+
+    // Traite les réponses d'un patient au questionnaire du médecin
+    private void handleConsultationResponses(ACLMessage msg) {
+        ConsultationSession session = sessions.get(msg.getSender().getLocalName());
+
+        // Ignorer les réponses qui ne correspondent à aucun questionnaire en cours
+        if (session == null || !session.awaitingResponses) {
+            gui.displayMessage("Réponses reçues de " + msg.getSender().getLocalName() +
+                " sans questionnaire en cours, ignorées");
+            return;
+        }
+
+        try {
+            // Récupérer les réponses du patient
+            HashMap<String, String> responses = gson.fromJson(
+                msg.getContent(),
+                new TypeToken<HashMap<String, String>>(){}.getType());
+
+            // Stocker les réponses
+            session.responses.putAll(responses);
+            session.awaitingResponses = false;
+            session.touch();
+
+            // Journaliser l'action
+            gui.displayMessage("Réponses du patient " + session.patientId + " reçues");
+
+            // Présenter un résumé des réponses dans l'interface
+            for (String key : responses.keySet()) {
+                gui.displayMessage(key + ": " + responses.get(key));
             }
+
+            // Prescrire un traitement
+            prescribeTreatment(session);
+        } catch (Exception e) {
+            e.printStackTrace();
+            gui.displayMessage("Erreur lors du traitement des réponses: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Demande de réservation d'une place de consultation (mode accueil réparti).
+     * Le médecin est seul propriétaire de sa capacité : il accepte tant qu'il reste une place,
+     * la réservation expirant si le dossier du patient n'arrive pas avant la fin du bail.
+     */
+    private void handleLeaseRequest(ACLMessage msg) {
+        JsonObject request = gson.fromJson(msg.getContent(), JsonObject.class);
+        String patientId = request.get("patientId").getAsString();
+        long ttlMillis = request.has("ttlMillis") ? request.get("ttlMillis").getAsLong() : 10000;
+
+        ACLMessage reply = msg.createReply();
+        if (leases.containsKey(patientId) || getActiveConsultations() < maxConsultations) {
+            leases.put(patientId, System.currentTimeMillis() + ttlMillis);
+            reply.setPerformative(ACLMessage.AGREE);
+            gui.displayMessage("Place réservée pour le patient " + patientId + " par " +
+                msg.getSender().getLocalName());
+        } else {
+            reply.setPerformative(ACLMessage.REFUSE);
+            // Elle sera prévenue à la prochaine place libérée
+            refusedReceptionists.add(msg.getSender());
         }
+        reply.setContent(buildDoctorInfo());
+        dispatcher.send(reply);
+    }
+
+    // Répond à la demande d'informations de la réceptionniste
+    private void handleDoctorInfoRequest(ACLMessage msg) {
+        ACLMessage reply = msg.createReply();
+        reply.setPerformative(ACLMessage.INFORM);
+        reply.setContent(buildDoctorInfo());
+        reply.setConversationId("doctor-info-request-response");
+        dispatcher.send(reply);
     }
 
     @Override
@@ -670,5 +937,9 @@ public class DoctorAgent extends Agent {
 
         // Journaliser la terminaison
         System.out.println("Agent Médecin " + getAID().getName() + " terminé.");
+        if (dispatcher != null) {
+            System.out.print(dispatcher.formatStats());
+            dispatcher.close();
+        }
     }
 }
@@ -0,0 +1,70 @@
+package medicalclinic.agents;
+
+import java.util.List;
+
+import medicalclinic.models.Disease;
+
+/**
+ * Score de compatibilité entre un médecin et les maladies potentielles d'un patient, utilisé par la
+ * réceptionniste pour choisir le médecin. Le calcul ne dépend que de ses paramètres, ce qui permet
+ * de le mesurer et de le réutiliser hors de l'agent.
+ */
+public final class DoctorCompatibility {
+
+    private DoctorCompatibility() {
+    }
+
+    /**
+     * Score d'un médecin
+     * @param specialty Spécialité du médecin
+     * @param expertises Expertises déclarées par le médecin
+     * @param experience Années d'expérience
+     * @param capacity Nombre maximal de consultations simultanées
+     * @param freeSlots Places de consultation libres
+     * @param potentialDiseases Maladies potentielles, avec leur "matchScore" dans les informations complémentaires
+     * @return Score, plus élevé pour un médecin plus adapté
+     */
+    public static int score(String specialty, List<String> expertises, int experience,
+                            int capacity, int freeSlots, List<Disease> potentialDiseases) {
+        // Score initial basé sur la disponibilité : proportionnel aux places de consultation libres
+        int score = 50 * freeSlots / capacity;
+
+        // Si le médecin n'est pas disponible, il aura un score bas mais pas nul
+        // pour pouvoir quand même être considéré en cas d'urgence ou si aucun médecin
+        // n'est disponible
+
+        String doctorSpecialty = specialty.toLowerCase();
+
+        // Analyser chaque maladie potentielle
+        for (Disease disease : potentialDiseases) {
+            int diseaseMatchScore = Integer.parseInt(disease.getAdditionalInfo().getOrDefault("matchScore", "0"));
+            String category = disease.getCategory().toLowerCase();
+            String name = disease.getName().toLowerCase();
+
+            // Ajuster le score en fonction de la spécialité du médecin et de la catégorie de la maladie
+            if (doctorSpecialty.contains(category) || category.contains(doctorSpecialty)) {
+                // Bonus majeur si la spécialité correspond directement à la catégorie de la maladie
+                score += diseaseMatchScore * 1.5;
+            }
+
+            // Bonus pour les expertises spécifiques
+            for (String expertise : expertises) {
+                String lowerExpertise = expertise.toLowerCase();
+                if (name.contains(lowerExpertise) || lowerExpertise.contains(name)) {
+                    score += diseaseMatchScore * 1.3;
+                    break;
+                }
+            }
+
+            // Bonus léger pour les médecins généralistes (ils peuvent traiter la plupart des maladies)
+            if ("generaliste".equals(doctorSpecialty)) {
+                score += diseaseMatchScore * 0.8;
+            }
+
+            // Bonus pour l'expérience du médecin
+            score += Math.min(experience * 2, 20); // Maximum de 20 points pour l'expérience
+        }
+
+        return score;
+    }
+}
@@ -0,0 +1,200 @@
+package medicalclinic.agents;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Cache des formulaires envoyés aux patients.
+ * Chaque formulaire statique est construit une seule fois puis conservé sous sa forme sérialisée ;
+ * les envois suivants réutilisent la même chaîne. Les parties dynamiques (questions propres à une
+ * maladie) sont ajoutées au texte du formulaire au moment de l'envoi, sans arbre JSON intermédiaire.
+ *
+ * Les formulaires doivent avoir le tableau {@code fields} comme dernier attribut.
+ */
+public class FormRegistry {
+    private static FormRegistry instance;
+
+    // Formulaire construit une fois : modèle, texte complet et texte ouvert avant la fin du tableau des champs
+    private static class CachedForm {
+        private final JsonObject template;
+        private final String json;
+        private final String openJson;
+        private final int fieldCount;
+
+        CachedForm(JsonObject template) {
+            this.template = template;
+            this.json = template.toString();
+            if (!json.endsWith("]}")) {
+                throw new IllegalArgumentException("Le tableau 'fields' doit terminer le formulaire");
+            }
+            this.openJson = json.substring(0, json.length() - 2);
+            this.fieldCount = template.getAsJsonArray("fields").size();
+        }
+    }
+
+    // Liste de champs réutilisable, sérialisée sans crochets
+    private static class CachedFragment {
+        private final String json;
+        private final int fieldCount;
+
+        CachedFragment(JsonArray fields) {
+            String array = fields.toString();
+            this.json = array.substring(1, array.length() - 1);
+            this.fieldCount = fields.size();
+        }
+    }
+
+    private final ConcurrentHashMap<String, CachedForm> forms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CachedFragment> fragments = new ConcurrentHashMap<>();
+    private final AtomicLong builds = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+
+    private FormRegistry() {
+    }
+
+    public static synchronized FormRegistry getInstance() {
+        if (instance == null) {
+            instance = new FormRegistry();
+        }
+        return instance;
+    }
+
+    // Texte du formulaire, construit par la fabrique au premier appel seulement
+    public String getSerialized(String formId, Supplier<JsonObject> factory) {
+        return getForm(formId, factory).json;
+    }
+
+    // Copie modifiable du formulaire, pour un envoi personnalisé (formulaire pré-rempli)
+    public JsonObject copyOf(String formId, Supplier<JsonObject> factory) {
+        return getForm(formId, factory).template.deepCopy();
+    }
+
+    // Formulaire à compléter par des champs propres à ce patient
+    public FormBuilder extend(String formId, Supplier<JsonObject> factory) {
+        return new FormBuilder(getForm(formId, factory));
+    }
+
+    private CachedForm getForm(String formId, Supplier<JsonObject> factory) {
+        CachedForm form = forms.get(formId);
+        if (form != null) {
+            hits.incrementAndGet();
+            return form;
+        }
+        return forms.computeIfAbsent(formId, id -> {
+            builds.incrementAndGet();
+            return new CachedForm(factory.get());
+        });
+    }
+
+    private CachedFragment getFragment(String fragmentId, Supplier<JsonArray> factory) {
+        CachedFragment fragment = fragments.get(fragmentId);
+        if (fragment != null) {
+            hits.incrementAndGet();
+            return fragment;
+        }
+        return fragments.computeIfAbsent(fragmentId, id -> {
+            builds.incrementAndGet();
+            return new CachedFragment(factory.get());
+        });
+    }
+
+    /**
+     * Ajout de champs à la fin d'un formulaire en cache, directement dans son texte.
+     */
+    public class FormBuilder {
+        private final StringBuilder json;
+        private int fieldCount;
+
+        private FormBuilder(CachedForm form) {
+            this.json = new StringBuilder(form.openJson.length() + 512).append(form.openJson);
+            this.fieldCount = form.fieldCount;
+        }
+
+        public FormBuilder addField(String name, String label, String type, boolean required) {
+            separate();
+            json.append("{\"name\":");
+            appendString(name);
+            json.append(",\"label\":");
+            appendString(label);
+            json.append(",\"type\":");
+            appendString(type);
+            json.append(",\"required\":").append(required).append('}');
+            fieldCount++;
+            return this;
+        }
+
+        // Ajoute une liste de champs construite une seule fois pour toute la clinique
+        public FormBuilder addFragment(String fragmentId, Supplier<JsonArray> factory) {
+            CachedFragment fragment = getFragment(fragmentId, factory);
+            if (fragment.fieldCount > 0) {
+                separate();
+                json.append(fragment.json);
+                fieldCount += fragment.fieldCount;
+            }
+            return this;
+        }
+
+        public int getFieldCount() {
+            return fieldCount;
+        }
+
+        public String build() {
+            return json.toString() + "]}";
+        }
+
+        private void separate() {
+            if (fieldCount > 0) {
+                json.append(',');
+            }
+        }
+
+        // Chaîne JSON échappée comme le fait Gson pour les caractères de contrôle, guillemets et barres obliques inverses
+        private void appendString(String value) {
+            json.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"': json.append("\\\""); break;
+                    case '\\': json.append("\\\\"); break;
+                    case '\n': json.append("\\n"); break;
+                    case '\r': json.append("\\r"); break;
+                    case '\t': json.append("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            json.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            json.append(c);
+                        }
+                }
+            }
+            json.append('"');
+        }
+    }
+
+    // Utilitaire de construction d'un champ de formulaire, partagé par les fabriques
+    public static JsonObject field(String name, String label, String type, boolean required) {
+        JsonObject field = new JsonObject();
+        field.addProperty("name", name);
+        field.addProperty("label", label);
+        field.addProperty("type", type);
+        field.addProperty("required", required);
+        return field;
+    }
+
+    // Formulaire vide avec son identifiant et son titre ; les champs sont ajoutés au tableau retourné
+    public static JsonObject form(String formId, String title, JsonArray fields) {
+        JsonObject form = new JsonObject();
+        form.addProperty("formId", formId);
+        form.addProperty("title", title);
+        form.add("fields", fields);
+        return form;
+    }
+
+    public long getBuilds() { return builds.get(); }
+    public long getHits() { return hits.get(); }
+    public int getCachedFormCount() { return forms.size() + fragments.size(); }
+}
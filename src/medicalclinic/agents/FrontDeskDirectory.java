@@ -0,0 +1,95 @@
+package medicalclinic.agents;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Répartition des patients entre plusieurs réceptionnistes par hachage cohérent.
+ * Chaque réceptionniste occupe plusieurs points virtuels sur un anneau ; un patient est
+ * confié à la première réceptionniste rencontrée après le hachage de son identifiant.
+ * L'ajout ou le retrait d'une réceptionniste ne déplace que les patients de sa portion d'anneau.
+ */
+public class FrontDeskDirectory {
+    // Nombre de points virtuels par réceptionniste, pour lisser la répartition
+    public static final int DEFAULT_VIRTUAL_NODES = 64;
+
+    private final int virtualNodes;
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+    private final List<String> receptionists = new ArrayList<>();
+
+    public FrontDeskDirectory() {
+        this(DEFAULT_VIRTUAL_NODES);
+    }
+
+    public FrontDeskDirectory(int virtualNodes) {
+        this.virtualNodes = Math.max(1, virtualNodes);
+    }
+
+    // Ajoute une réceptionniste à l'anneau
+    public void addReceptionist(String receptionistId) {
+        if (receptionists.contains(receptionistId)) {
+            return;
+        }
+        receptionists.add(receptionistId);
+        for (int i = 0; i < virtualNodes; i++) {
+            ring.put(hash(receptionistId + "#" + i), receptionistId);
+        }
+    }
+
+    // Retire une réceptionniste de l'anneau
+    public void removeReceptionist(String receptionistId) {
+        if (!receptionists.remove(receptionistId)) {
+            return;
+        }
+        for (int i = 0; i < virtualNodes; i++) {
+            ring.remove(hash(receptionistId + "#" + i));
+        }
+    }
+
+    // Remplace l'ensemble des réceptionnistes par celles actuellement enregistrées
+    public void setReceptionists(Collection<String> receptionistIds) {
+        for (String receptionistId : new ArrayList<>(receptionists)) {
+            if (!receptionistIds.contains(receptionistId)) {
+                removeReceptionist(receptionistId);
+            }
+        }
+        for (String receptionistId : receptionistIds) {
+            addReceptionist(receptionistId);
+        }
+    }
+
+    // Réceptionniste responsable d'un patient ; null si aucune réceptionniste n'est connue
+    public String getReceptionistFor(String patientId) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(patientId));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public List<String> getReceptionists() {
+        return Collections.unmodifiableList(receptionists);
+    }
+
+    public boolean isEmpty() {
+        return receptionists.isEmpty();
+    }
+
+    // Hachage FNV-1a 64 bits suivi d'un brassage final, stable d'une exécution à l'autre
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        return h;
+    }
+}
@@ -0,0 +1,112 @@
+package medicalclinic.agents;
+
+import jade.core.Agent;
+import jade.core.behaviours.TickerBehaviour;
+import jade.domain.DFService;
+import jade.domain.FIPAAgentManagement.DFAgentDescription;
+import jade.domain.FIPAAgentManagement.ServiceDescription;
+import jade.domain.FIPAException;
+import jade.lang.acl.ACLMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Point d'entrée du mode accueil réparti : indique à chaque patient la réceptionniste
+ * qui gère son dossier, choisie par hachage cohérent de son identifiant.
+ */
+public class FrontDeskRouterAgent extends Agent {
+    // Période de resynchronisation avec les réceptionnistes enregistrées dans le DF
+    private static final long REFRESH_PERIOD_MS = 10000;
+
+    private FrontDeskDirectory directory;
+    private MessageDispatcher dispatcher;
+
+    @Override
+    protected void setup() {
+        directory = new FrontDeskDirectory();
+
+        // S'enregistrer auprès du DF
+        DFAgentDescription dfd = new DFAgentDescription();
+        dfd.setName(getAID());
+        ServiceDescription sd = new ServiceDescription();
+        sd.setType("receptionist-router");
+        sd.setName("clinic-front-desk-router");
+        dfd.addServices(sd);
+
+        try {
+            DFService.register(this, dfd);
+        } catch (FIPAException fe) {
+            fe.printStackTrace();
+            System.err.println("Erreur d'enregistrement du routeur d'accueil: " + fe.getMessage());
+        }
+
+        dispatcher = new MessageDispatcher(this)
+            .register("front-desk-route", this::handleRouteRequest);
+        addBehaviour(dispatcher);
+
+        refreshReceptionists();
+        addBehaviour(new TickerBehaviour(this, REFRESH_PERIOD_MS) {
+            @Override
+            protected void onTick() {
+                dispatcher.getMetrics().time("refreshReceptionists", FrontDeskRouterAgent.this::refreshReceptionists);
+            }
+        });
+
+        System.out.println("Routeur d'accueil " + getLocalName() + " démarré");
+    }
+
+    // Met à jour l'anneau avec les réceptionnistes actuellement enregistrées
+    private void refreshReceptionists() {
+        DFAgentDescription template = new DFAgentDescription();
+        ServiceDescription sd = new ServiceDescription();
+        sd.setType("receptionist");
+        template.addServices(sd);
+
+        try {
+            DFAgentDescription[] result = DFService.search(this, template);
+            List<String> receptionistIds = new ArrayList<>();
+            for (DFAgentDescription receptionist : result) {
+                receptionistIds.add(receptionist.getName().getLocalName());
+            }
+            directory.setReceptionists(receptionistIds);
+        } catch (FIPAException fe) {
+            fe.printStackTrace();
+        }
+    }
+
+    // Répond au patient avec le nom de sa réceptionniste
+    private void handleRouteRequest(ACLMessage msg) {
+        String patientId = msg.getSender().getLocalName();
+        if (directory.isEmpty()) {
+            refreshReceptionists();
+        }
+        String receptionistId = directory.getReceptionistFor(patientId);
+
+        ACLMessage reply = msg.createReply();
+        if (receptionistId != null) {
+            reply.setPerformative(ACLMessage.INFORM);
+            reply.setContent(receptionistId);
+        } else {
+            reply.setPerformative(ACLMessage.FAILURE);
+            reply.setContent("NO_RECEPTIONIST");
+        }
+        dispatcher.send(reply);
+
+        System.out.println("Patient " + patientId + " orienté vers " + receptionistId);
+    }
+
+    @Override
+    protected void takeDown() {
+        try {
+            DFService.deregister(this);
+        } catch (FIPAException fe) {
+            fe.printStackTrace();
+        }
+        System.out.println("Routeur d'accueil " + getAID().getName() + " terminé.");
+        if (dispatcher != null) {
+            System.out.print(dispatcher.formatStats());
+            dispatcher.close();
+        }
+    }
+}
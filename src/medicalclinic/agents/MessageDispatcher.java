@@ -0,0 +1,421 @@
+package medicalclinic.agents;
+
+import jade.core.AID;
+import jade.core.Agent;
+import jade.core.behaviours.CyclicBehaviour;
+import jade.lang.acl.ACLMessage;
+import jade.util.leap.Iterator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import medicalclinic.monitoring.AgentMetrics;
+import medicalclinic.monitoring.MetricsRegistry;
+import medicalclinic.tracing.TraceCollector;
+
+/**
+ * Comportement unique de lecture de la boîte aux lettres d'un agent.
+ * Chaque message est retiré une seule fois de la file puis routé, via une table
+ * de hachage, vers le gestionnaire enregistré pour son identifiant de conversation.
+ *
+ * A chaque activation, jusqu'à {@code batchSize} messages sont traités d'affilée.
+ * Les messages envoyés par les gestionnaires via {@link #send(ACLMessage)} pendant
+ * ce lot sont regroupés puis émis en fin de lot.
+ *
+ * Le répartiteur propage aussi l'identifiant de trace des visites ({@link TraceCollector#TRACE_PARAM}) :
+ * un message envoyé sans trace reçoit celle de l'agent (patient), sinon celle du patient destinataire,
+ * sinon celle du message en cours de traitement. Le temps de traitement des messages tracés est
+ * enregistré par étape {@code <classe de l'agent>/<conversation>}.
+ *
+ * Les mesures de l'agent ({@link AgentMetrics} : profondeur de la file, durée des activations,
+ * messages par conversation, réveils après {@code block()}) sont publiées au démarrage du
+ * comportement et retirées par {@link #close()}, à appeler depuis {@code takeDown()}.
+ */
+public class MessageDispatcher extends CyclicBehaviour {
+    // Clé utilisée dans les statistiques pour les messages sans gestionnaire
+    public static final String UNHANDLED_KEY = "<non géré>";
+
+    // Propriété système permettant d'ajuster la taille des lots
+    public static final String BATCH_SIZE_PROPERTY = "medicalclinic.dispatch.batchSize";
+    public static final int DEFAULT_BATCH_SIZE = 16;
+
+    /**
+     * Gestionnaire d'un type de conversation.
+     */
+    public interface MessageHandler {
+        void handle(ACLMessage msg);
+    }
+
+    /**
+     * Statistiques de traitement d'un gestionnaire.
+     */
+    public static class HandlerStats {
+        private long count;
+        private long errors;
+        private long totalNanos;
+        private long maxNanos;
+
+        private void record(long elapsedNanos, boolean failed) {
+            count++;
+            totalNanos += elapsedNanos;
+            if (elapsedNanos > maxNanos) {
+                maxNanos = elapsedNanos;
+            }
+            if (failed) {
+                errors++;
+            }
+        }
+
+        public long getCount() { return count; }
+        public long getErrors() { return errors; }
+        public long getTotalNanos() { return totalNanos; }
+        public long getMaxNanos() { return maxNanos; }
+
+        public double getAverageMillis() {
+            return count == 0 ? 0.0 : (totalNanos / (double) count) / 1_000_000.0;
+        }
+    }
+
+    private final HashMap<String, MessageHandler> handlers = new HashMap<>();
+    private final LinkedHashMap<String, HandlerStats> stats = new LinkedHashMap<>();
+    private MessageHandler defaultHandler;
+
+    // Traçage : trace propre à l'agent, trace du message en cours, dernières traces vues par patient
+    private static final int MAX_KNOWN_TRACES = 10000;
+    private String traceId;
+    private String currentTraceId;
+    private final LinkedHashMap<String, String> traceByPatient = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_KNOWN_TRACES;
+        }
+    };
+
+    // Traitement par lots
+    private final int batchSize;
+    private final List<ACLMessage> outbox = new ArrayList<>();
+    private Thread drainingThread;
+
+    // Statistiques des lots
+    private long activations;
+    private long drainedMessages;
+    private int lastBatchSize;
+    private int maxBatchSize;
+    private long queuedMessages;
+    // Incrémenté aussi par les envois hors du fil de l'agent (interface graphique)
+    private final AtomicLong sentMessages = new AtomicLong();
+
+    // Mesures de l'agent ; vrai si la dernière activation s'est terminée par block()
+    private AgentMetrics metrics;
+    private boolean blocked;
+
+    public MessageDispatcher(Agent agent) {
+        this(agent, Integer.getInteger(BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE));
+    }
+
+    public MessageDispatcher(Agent agent, int batchSize) {
+        super(agent);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    // Enregistre le gestionnaire d'un identifiant de conversation
+    public MessageDispatcher register(String conversationId, MessageHandler handler) {
+        handlers.put(conversationId, handler);
+        stats.put(conversationId, new HandlerStats());
+        return this;
+    }
+
+    // Trace ajoutée à tous les messages envoyés par cet agent (la visite d'un patient)
+    public MessageDispatcher setTraceId(String traceId) {
+        this.traceId = traceId;
+        return this;
+    }
+
+    // Gestionnaire appelé pour les messages dont la conversation n'est pas enregistrée
+    public MessageDispatcher setDefaultHandler(MessageHandler handler) {
+        this.defaultHandler = handler;
+        return this;
+    }
+
+    // Mesures de l'agent, partagées avec ses autres comportements
+    public AgentMetrics getMetrics() {
+        if (metrics == null) {
+            metrics = new AgentMetrics(myAgent);
+        }
+        return metrics;
+    }
+
+    @Override
+    public void onStart() {
+        MetricsRegistry.getInstance().register(getMetrics());
+    }
+
+    // Retire les mesures de l'agent du registre
+    public void close() {
+        if (metrics != null) {
+            MetricsRegistry.getInstance().unregister(metrics);
+        }
+    }
+
+    @Override
+    public void action() {
+        AgentMetrics agentMetrics = getMetrics();
+        agentMetrics.sampleQueue();
+        long actionStart = System.nanoTime();
+        int drained = 0;
+        drainingThread = Thread.currentThread();
+        try {
+            ACLMessage msg;
+            while (drained < batchSize && (msg = myAgent.receive()) != null) {
+                dispatch(msg);
+                drained++;
+            }
+        } finally {
+            drainingThread = null;
+            flush();
+        }
+        agentMetrics.recordAction(getClass().getSimpleName(), System.nanoTime() - actionStart);
+        if (blocked) {
+            agentMetrics.recordWakeUp(drained == 0);
+            blocked = false;
+        }
+
+        if (drained == 0) {
+            block();
+            blocked = true;
+            return;
+        }
+
+        activations++;
+        drainedMessages += drained;
+        lastBatchSize = drained;
+        if (drained > maxBatchSize) {
+            maxBatchSize = drained;
+        }
+        // Lot incomplet : la file est vide, inutile de repasser avant le prochain message
+        if (drained < batchSize) {
+            block();
+            blocked = true;
+        }
+    }
+
+    /**
+     * Envoie un message. Pendant le traitement d'un lot, sur le fil de l'agent, le message
+     * est mis en attente et émis à la fin du lot ; sinon il est envoyé immédiatement
+     * (appels depuis l'interface graphique ou d'autres comportements).
+     */
+    public void send(ACLMessage msg) {
+        stampTrace(msg);
+        if (drainingThread != null && drainingThread == Thread.currentThread()) {
+            outbox.add(msg);
+            queuedMessages++;
+        } else {
+            myAgent.send(msg);
+            sentMessages.incrementAndGet();
+        }
+    }
+
+    // Émet les messages en attente en fusionnant ceux qui ne diffèrent que par leurs destinataires.
+    // Une fusion n'est faite que si elle ne change pas l'ordre de réception d'aucun destinataire.
+    private void flush() {
+        if (outbox.isEmpty()) {
+            return;
+        }
+
+        List<ACLMessage> batch = new ArrayList<>();
+        HashMap<String, Integer> positionByKey = new HashMap<>();
+        HashMap<AID, Integer> lastPositionByReceiver = new HashMap<>();
+        // Lots fusionnés : une copie remplace le message d'origine, qui appartient à l'appelant
+        HashSet<Integer> mergedPositions = new HashSet<>();
+
+        for (ACLMessage msg : outbox) {
+            List<AID> receivers = new ArrayList<>();
+            Iterator it = msg.getAllReceiver();
+            while (it.hasNext()) {
+                receivers.add((AID) it.next());
+            }
+
+            String key = mergeKey(msg);
+            Integer target = key != null ? positionByKey.get(key) : null;
+            if (target != null) {
+                for (AID receiver : receivers) {
+                    Integer last = lastPositionByReceiver.get(receiver);
+                    if (last != null && last > target) {
+                        target = null;
+                        break;
+                    }
+                }
+            }
+
+            int position;
+            if (target != null) {
+                position = target;
+                ACLMessage merged = batch.get(position);
+                if (mergedPositions.add(position)) {
+                    merged = (ACLMessage) merged.clone();
+                    batch.set(position, merged);
+                }
+                for (AID receiver : receivers) {
+                    merged.addReceiver(receiver);
+                }
+                // Message commun à plusieurs visites : il n'appartient plus à aucune trace
+                String mergedTrace = merged.getUserDefinedParameter(TraceCollector.TRACE_PARAM);
+                if (mergedTrace != null && !mergedTrace.equals(msg.getUserDefinedParameter(TraceCollector.TRACE_PARAM))) {
+                    merged.removeUserDefinedParameter(TraceCollector.TRACE_PARAM);
+                }
+            } else {
+                position = batch.size();
+                batch.add(msg);
+                if (key != null) {
+                    positionByKey.put(key, position);
+                }
+            }
+            for (AID receiver : receivers) {
+                lastPositionByReceiver.put(receiver, position);
+            }
+        }
+        outbox.clear();
+
+        for (ACLMessage msg : batch) {
+            myAgent.send(msg);
+            sentMessages.incrementAndGet();
+        }
+    }
+
+    // Clé de fusion ; null pour les messages liés à un échange question/réponse précis.
+    // La trace n'en fait pas partie : des messages identiques pour plusieurs visites restent fusionnables.
+    private static String mergeKey(ACLMessage msg) {
+        if (msg.getReplyWith() != null || msg.getInReplyTo() != null) {
+            return null;
+        }
+        Properties params = msg.getAllUserDefinedParameters();
+        if (params != null && params.containsKey(TraceCollector.TRACE_PARAM)) {
+            params = (Properties) params.clone();
+            params.remove(TraceCollector.TRACE_PARAM);
+        }
+        return msg.getPerformative() + "|" + msg.getConversationId() + "|" +
+            params + "|" + msg.getContent();
+    }
+
+    // Ajoute la trace de la visite concernée à un message qui n'en porte pas
+    private void stampTrace(ACLMessage msg) {
+        if (msg.getUserDefinedParameter(TraceCollector.TRACE_PARAM) != null) {
+            return;
+        }
+        String trace = traceId;
+        if (trace == null) {
+            // Message adressé à un seul patient connu : sa visite
+            Iterator it = msg.getAllReceiver();
+            if (it.hasNext()) {
+                AID receiver = (AID) it.next();
+                if (!it.hasNext()) {
+                    trace = traceByPatient.get(receiver.getLocalName());
+                }
+            }
+        }
+        if (trace == null) {
+            trace = currentTraceId;
+        }
+        if (trace != null) {
+            msg.addUserDefinedParameter(TraceCollector.TRACE_PARAM, trace);
+        }
+    }
+
+    // Route un message vers son gestionnaire et mesure le temps de traitement
+    private void dispatch(ACLMessage msg) {
+        String conversationId = msg.getConversationId();
+        MessageHandler handler = conversationId != null ? handlers.get(conversationId) : null;
+        String key = conversationId;
+
+        if (handler == null) {
+            handler = defaultHandler;
+            key = UNHANDLED_KEY;
+        }
+
+        HandlerStats handlerStats = stats.get(key);
+        if (handlerStats == null) {
+            handlerStats = new HandlerStats();
+            stats.put(key, handlerStats);
+        }
+
+        if (handler == null) {
+            handlerStats.record(0, false);
+            getMetrics().recordMessage(key, 0, false);
+            return;
+        }
+
+        // Trace de la visite : retenue pour le patient émetteur et propagée aux réponses
+        String trace = msg.getUserDefinedParameter(TraceCollector.TRACE_PARAM);
+        AID sender = msg.getSender();
+        if (trace != null && sender != null && TraceCollector.isTraceOf(trace, sender.getLocalName())) {
+            traceByPatient.put(sender.getLocalName(), trace);
+        }
+        currentTraceId = trace;
+
+        long startMillis = System.currentTimeMillis();
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            handler.handle(msg);
+        } catch (RuntimeException e) {
+            // Un message invalide ne doit pas interrompre la lecture de la boîte aux lettres
+            failed = true;
+            System.err.println("Agent " + myAgent.getLocalName() + " : erreur dans le gestionnaire '" +
+                key + "' : " + e.getMessage());
+            e.printStackTrace();
+        }
+        long elapsed = System.nanoTime() - start;
+        handlerStats.record(elapsed, failed);
+        getMetrics().recordMessage(key, elapsed, failed);
+        currentTraceId = null;
+
+        if (trace != null) {
+            TraceCollector.getInstance().record(trace, myAgent.getClass().getSimpleName() + "/" + key,
+                startMillis, elapsed / 1_000_000);
+        }
+    }
+
+    // Retourne les statistiques par identifiant de conversation
+    public Map<String, HandlerStats> getStats() {
+        return Collections.unmodifiableMap(stats);
+    }
+
+    public int getBatchSize() { return batchSize; }
+    public int getLastBatchSize() { return lastBatchSize; }
+    public int getMaxBatchSize() { return maxBatchSize; }
+
+    public double getAverageBatchSize() {
+        return activations == 0 ? 0.0 : drainedMessages / (double) activations;
+    }
+
+    // Nombre de messages émis après fusion, à comparer au nombre de messages mis en attente
+    public long getSentMessages() { return sentMessages.get(); }
+    public long getQueuedMessages() { return queuedMessages; }
+
+    // Résumé lisible des statistiques, une ligne par gestionnaire
+    public String formatStats() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("Lots (max %d) : %d activation(s), moyenne %.2f, dernier %d, max %d message(s)%n",
+            batchSize, activations, getAverageBatchSize(), lastBatchSize, maxBatchSize));
+        summary.append(String.format("Envois : %d message(s) émis pour %d mis en attente pendant les lots%n",
+            sentMessages.get(), queuedMessages));
+        for (Map.Entry<String, HandlerStats> entry : stats.entrySet()) {
+            HandlerStats s = entry.getValue();
+            if (s.getCount() == 0) {
+                continue;
+            }
+            summary.append(String.format("- %s : %d message(s), moyenne %.2f ms, max %.2f ms, %d erreur(s)%n",
+                entry.getKey(), s.getCount(), s.getAverageMillis(), s.getMaxNanos() / 1_000_000.0, s.getErrors()));
+        }
+        return summary.toString();
+    }
+}
@@ -2,16 +2,18 @@ package medicalclinic.agents;
 
 import jade.core.AID;
 import jade.core.Agent;
-import jade.core.behaviours.CyclicBehaviour;
+import jade.core.behaviours.TickerBehaviour;
 import jade.domain.DFService;
 import jade.domain.FIPAAgentManagement.DFAgentDescription;
 import jade.domain.FIPAAgentManagement.ServiceDescription;
 import jade.domain.FIPAException;
 import jade.lang.acl.ACLMessage;
-import jade.lang.acl.MessageTemplate;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 
 import com.google.gson.Gson;
@@ -19,12 +21,32 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
 
+import medicalclinic.gui.HeadlessView;
 import medicalclinic.gui.NurseGUI;
+import medicalclinic.gui.NurseView;
 
 public class NurseAgent extends Agent {
     private List<SymptomQuestion> symptomQuestions;
-    private AID currentPatientAID;
-    private NurseGUI gui;
+    // Identifiant du questionnaire de symptômes dans le FormRegistry
+    private static final String SYMPTOM_FORM_ID = "symptomQuestions";
+    // Propriété système fixant la durée d'inactivité (en secondes) après laquelle un triage est abandonné
+    public static final String TRIAGE_TIMEOUT_PROPERTY = "medicalclinic.nurse.triageTimeoutSeconds";
+    public static final int DEFAULT_TRIAGE_TIMEOUT_SECONDS = 900;
+    // Période de vérification des sessions expirées
+    private static final long TIMEOUT_CHECK_PERIOD_MS = 15000;
+    // Période de resynchronisation de la liste des réceptionnistes avec l'annuaire
+    private static final long RECEPTIONIST_REFRESH_PERIOD_MS = 30000;
+
+    // Triages en cours, indexés par l'identifiant du patient (une conversation par visite)
+    private LinkedHashMap<String, TriageSession> triageSessions;
+    private long triageTimeoutMillis;
+    // Statistiques transmises à la réceptionniste pour la répartition des patients
+    private long completedTriages;
+    private long totalTriageMillis;
+    // Réceptionnistes connues, rafraîchies périodiquement plutôt qu'à chaque triage
+    private List<AID> receptionists = new ArrayList<>();
+    private NurseView gui;
+    private MessageDispatcher dispatcher;
     private Gson gson = new Gson();
 
     // Classe interne pour représenter une question avec un titre et une description
@@ -50,15 +72,45 @@ public class NurseAgent extends Agent {
         public String getCategory() { return category; }
     }
 
+    // État du triage d'un patient
+    private static class TriageSession {
+        private final String patientId;
+        private final AID patientAID;
+        // Réceptionniste qui gère le dossier du patient
+        private AID receptionistAID;
+        private final long startTime;
+        private long lastActivityTime;
+        private boolean reminderSent;
+
+        TriageSession(AID patientAID) {
+            this.patientId = patientAID.getLocalName();
+            this.patientAID = patientAID;
+            this.startTime = System.currentTimeMillis();
+            this.lastActivityTime = startTime;
+        }
+
+        void touch() {
+            lastActivityTime = System.currentTimeMillis();
+            reminderSent = false;
+        }
+    }
+
     @Override
     protected void setup() {
         // Initialiser les attributs
         symptomQuestions = new ArrayList<>();
         initializeSymptomQuestions();
-
-        // Créer et afficher l'interface graphique
-        gui = new NurseGUI(this);
-        gui.setVisible(true);
+        triageSessions = new LinkedHashMap<>();
+        triageTimeoutMillis = Integer.getInteger(TRIAGE_TIMEOUT_PROPERTY, DEFAULT_TRIAGE_TIMEOUT_SECONDS) * 1000L;
+
+        // Créer et afficher l'interface graphique, sauf en mode sans affichage
+        if (HeadlessView.isRequested(getArguments())) {
+            gui = new HeadlessView(getLocalName());
+        } else {
+            NurseGUI frame = new NurseGUI(this);
+            frame.setVisible(true);
+            gui = frame;
+        }
         gui.displayMessage("Agent Infirmier démarré");
 
         // S'enregistrer auprès du DF
@@ -77,8 +129,32 @@ public class NurseAgent extends Agent {
             gui.displayMessage("Erreur d'enregistrement: " + fe.getMessage());
         }
 
-        // Ajouter les comportements
-        addBehaviour(new WaitForPatientBehaviour());
+        // Un seul comportement lit la boîte aux lettres et route chaque message
+        dispatcher = new MessageDispatcher(this)
+            .register("patient-location", this::handlePatientLocation)
+            .register("symptom-answers", this::handleSymptomAnswers)
+            .register("symptom-info-confirm", this::handleSymptomInfoConfirm);
+        addBehaviour(dispatcher);
+
+        // Surveiller les triages restés sans réponse
+        addBehaviour(new TickerBehaviour(this, TIMEOUT_CHECK_PERIOD_MS) {
+            @Override
+            protected void onTick() {
+                dispatcher.getMetrics().time("triageTimeouts", NurseAgent.this::checkTriageTimeouts);
+            }
+        });
+
+        // Rechercher les réceptionnistes et suivre les arrivées et départs
+        refreshReceptionists();
+        addBehaviour(new TickerBehaviour(this, RECEPTIONIST_REFRESH_PERIOD_MS) {
+            @Override
+            protected void onTick() {
+                dispatcher.getMetrics().time("refreshReceptionists", NurseAgent.this::refreshReceptionists);
+            }
+        });
+
+        // Se signaler à la réceptionniste qui répartit les patients entre infirmiers
+        reportStatus(false);
 
         gui.displayMessage("Agent Infirmier démarré et prêt");
     }
@@ -210,59 +286,49 @@ public class NurseAgent extends Agent {
     }
 
     // Salue le patient
-    public void greetPatient(AID patientAID) {
-        // Stocker l'AID du patient courant
-        currentPatientAID = patientAID;
+    private void greetPatient(TriageSession session) {
+        AID patientAID = session.patientAID;
 
         // Créer et envoyer le message de salutation
         ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
         msg.addReceiver(patientAID);
         msg.setContent("Bonjour, je suis l'infirmier(ère). Je vais vous poser quelques questions pour mieux comprendre vos symptômes et établir un premier bilan de santé. Veuillez répondre à toutes les questions de manière précise pour que nous puissions vous orienter vers le médecin approprié.");
         msg.setConversationId("nurse-greeting");
-        send(msg);
+        dispatcher.send(msg);
 
         // Journaliser l'action
         gui.displayMessage("Patient " + patientAID.getLocalName() + " salué");
-        gui.setCurrentPatient(patientAID.getLocalName());
-        gui.setStatus("Consultation en cours");
+        updateSessionsDisplay();
     }
 
     // Pose les questions sur les symptômes
-    public void askSymptomQuestions() {
+    private void askSymptomQuestions(TriageSession session) {
         // Créer et configurer le message
         ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
-        msg.addReceiver(currentPatientAID);
+        msg.addReceiver(session.patientAID);
+
+        // Le questionnaire est le même pour tous les patients : texte construit une seule fois
+        msg.setContent(FormRegistry.getInstance().getSerialized(SYMPTOM_FORM_ID, this::buildSymptomQuestionsForm));
+        msg.setConversationId("nurse-questions");
+        dispatcher.send(msg);
 
-        // Création du formulaire de questions (structure JSON)
-        JsonObject form = new JsonObject();
-        form.addProperty("formId", "symptomQuestions");
-        form.addProperty("title", "Questionnaire de Symptômes");
+        // Journaliser l'action
+        gui.displayMessage("Questions sur les symptômes envoyées à " + session.patientId);
+    }
 
+    // Construit le questionnaire de symptômes (mis en cache par le FormRegistry)
+    private JsonObject buildSymptomQuestionsForm() {
         JsonArray fields = new JsonArray();
 
         // Ajouter chaque question comme un champ du formulaire
         for (SymptomQuestion question : symptomQuestions) {
-            JsonObject field = new JsonObject();
-            field.addProperty("name", question.getId());
-            field.addProperty("label", question.getTitle() + " : " + question.getDescription());
-            field.addProperty("type", "text");
-            field.addProperty("required", question.isRequired());
+            JsonObject field = FormRegistry.field(question.getId(),
+                question.getTitle() + " : " + question.getDescription(), "text", question.isRequired());
             field.addProperty("category", question.getCategory());
             fields.add(field);
         }
 
-        form.add("fields", fields);
-
-        // Envoyer le formulaire
-        msg.setContent(form.toString());
-        msg.setConversationId("nurse-questions");
-        send(msg);
-
-        // Journaliser l'action
-        gui.displayMessage("Questions sur les symptômes envoyées à " + currentPatientAID.getLocalName());
-
-        // Ajouter un comportement pour attendre les réponses
-        addBehaviour(new WaitForAnswersBehaviour());
+        return FormRegistry.form(SYMPTOM_FORM_ID, "Questionnaire de Symptômes", fields);
     }
 
     // Vérifie si toutes les questions requises ont été répondues
@@ -281,106 +347,109 @@ public class NurseAgent extends Agent {
         return true;
     }
 
-    // Envoie les informations sur les symptômes à la réceptionniste
-    private void sendSymptomInfoToReceptionist(String patientId, HashMap<String, String> symptomsInfo) {
-        // Rechercher l'agent réceptionniste
-        DFAgentDescription template = new DFAgentDescription();
-        ServiceDescription sd = new ServiceDescription();
-        sd.setType("receptionist");
-        template.addServices(sd);
-
-        try {
-            DFAgentDescription[] result = DFService.search(this, template);
-            if (result.length > 0) {
-                AID receptionistAID = result[0].getName();
+    // Envoie les informations sur les symptômes à la réceptionniste qui gère le patient
+    private void sendSymptomInfoToReceptionist(TriageSession session, HashMap<String, String> symptomsInfo) {
+        AID receptionistAID = session.receptionistAID != null ? session.receptionistAID : findReceptionist();
+        if (receptionistAID == null) {
+            gui.displayMessage("Erreur: Réceptionniste non trouvée");
+            return;
+        }
 
-                // Ajouter l'ID du patient aux informations sur les symptômes
-                symptomsInfo.put("patientId", patientId);
+        // Ajouter l'ID du patient aux informations sur les symptômes
+        symptomsInfo.put("patientId", session.patientId);
 
-                // Créer et configurer le message
-                ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
-                msg.addReceiver(receptionistAID);
-                msg.setConversationId("symptom-info");
+        // Créer et configurer le message
+        ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
+        msg.addReceiver(receptionistAID);
+        msg.setConversationId("symptom-info");
 
-                // Convertir les informations en JSON et envoyer
-                String jsonData = gson.toJson(symptomsInfo);
-                msg.setContent(jsonData);
-                send(msg);
+        // Convertir les informations en JSON et envoyer
+        String jsonData = gson.toJson(symptomsInfo);
+        msg.setContent(jsonData);
+        dispatcher.send(msg);
 
-                // Analyser les symptômes pour détecter une urgence
-                boolean isUrgent = analyzeSymptomResponses(symptomsInfo);
+        // Analyser les symptômes pour détecter une urgence
+        boolean isUrgent = analyzeSymptomResponses(symptomsInfo);
 
-                // Journaliser l'action
-                gui.displayMessage("Informations sur les symptômes envoyées à la réceptionniste");
+        // Journaliser l'action
+        gui.displayMessage("Informations sur les symptômes envoyées à la réceptionniste " +
+            receptionistAID.getLocalName());
 
-                // Si c'est une urgence, notifier la réceptionniste
-                if (isUrgent) {
-                    notifyReceptionistOfUrgency(patientId);
-                }
-            } else {
-                gui.displayMessage("Erreur: Réceptionniste non trouvée");
-            }
-        } catch (FIPAException fe) {
-            fe.printStackTrace();
-            gui.displayMessage("Erreur lors de la recherche de la réceptionniste: " + fe.getMessage());
+        // Si c'est une urgence, notifier la réceptionniste
+        if (isUrgent) {
+            notifyReceptionistOfUrgency(receptionistAID, session.patientId);
         }
     }
 
     // Informe le patient que les informations ont été transmises
-    private void informPatientOfDataTransmission() {
+    private void informPatientOfDataTransmission(TriageSession session) {
         // Créer et configurer le message
         ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
-        msg.addReceiver(currentPatientAID);
+        msg.addReceiver(session.patientAID);
         msg.setContent("Merci pour vos réponses. J'ai bien noté toutes vos informations sur les symptômes que vous présentez. Ces informations ont été transmises à la réceptionniste qui va maintenant vous orienter vers le médecin le plus approprié pour votre cas. Veuillez patienter dans la salle d'attente jusqu'à ce que la réceptionniste vous appelle.");
         msg.setConversationId("nurse-feedback");
-        send(msg);
+        dispatcher.send(msg);
 
         // Journaliser l'action
-        gui.displayMessage("Patient informé que ses informations ont été transmises");
-        gui.setStatus("En attente");
-        gui.setCurrentPatient(null);
+        gui.displayMessage("Patient " + session.patientId + " informé que ses informations ont été transmises");
     }
 
-    // Analyse les réponses pour identifier des urgences potentielles
-    private boolean analyzeSymptomResponses(HashMap<String, String> answers) {
-        // Vérifier des conditions d'urgence potentielles
-        boolean urgencePotentielle = false;
-
-        // Parcourir toutes les réponses
-        for (String questionId : answers.keySet()) {
-            String answer = answers.get(questionId).toLowerCase();
-
-            // Vérifier si les réponses contiennent des mots-clés indiquant une urgence
-            if (answer.contains("insupportable") ||
-                answer.contains("extrême") ||
-                answer.contains("très forte douleur") ||
-                (questionId.equals("fever") && (answer.contains("40") || answer.contains("41") || answer.contains("42"))) ||
-                (questionId.equals("breathing") && (answer.contains("très difficile") || answer.contains("impossible"))) ||
-                (questionId.equals("painIntensity") && (answer.contains("9") || answer.contains("10"))) ||
-                answer.contains("sang") && (questionId.equals("coughing") || questionId.equals("digestive"))) {
-
-                urgencePotentielle = true;
-                gui.displayMessage("ALERTE: Situation d'urgence potentielle détectée - " + getQuestionTitleById(questionId) + ": " + answer);
-                break;
-            }
+    // Transmet la charge de l'infirmier à la réceptionniste (ou son départ)
+    private void reportStatus(boolean leaving) {
+        List<AID> receptionists = findReceptionists();
+        if (receptionists.isEmpty()) {
+            return;
         }
 
-        return urgencePotentielle;
+        JsonObject status = new JsonObject();
+        status.addProperty("activeSessions", triageSessions.size());
+        status.addProperty("averageTriageMillis", completedTriages == 0 ? 0 : totalTriageMillis / completedTriages);
+        status.addProperty("completedTriages", completedTriages);
+        status.addProperty("leaving", leaving);
+
+        // Chaque réceptionniste (une seule, ou une par partition de l'accueil) tient son propre groupe
+        ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
+        for (AID receptionistAID : receptionists) {
+            msg.addReceiver(receptionistAID);
+        }
+        msg.setContent(status.toString());
+        msg.setConversationId("nurse-status");
+        dispatcher.send(msg);
     }
 
-    // Retourne le titre d'une question à partir de son ID
-    private String getQuestionTitleById(String id) {
-        for (SymptomQuestion question : symptomQuestions) {
-            if (question.getId().equals(id)) {
-                return question.getTitle();
-            }
+    // Signale l'abandon d'un triage à la réceptionniste du patient (à toutes si elle est inconnue)
+    private void informReceptionistOfExpiredTriage(TriageSession session) {
+        List<AID> receptionists = session.receptionistAID != null ?
+            Collections.singletonList(session.receptionistAID) : findReceptionists();
+        if (receptionists.isEmpty()) {
+            return;
         }
-        return id;
+
+        ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
+        for (AID receptionistAID : receptionists) {
+            msg.addReceiver(receptionistAID);
+        }
+        msg.setContent(session.patientId);
+        msg.setConversationId("triage-expired");
+        dispatcher.send(msg);
     }
 
-    // Notifie la réceptionniste d'une urgence
-    private void notifyReceptionistOfUrgency(String patientId) {
-        // Rechercher l'agent réceptionniste
+    // Recherche l'agent réceptionniste dans le DF
+    private AID findReceptionist() {
+        List<AID> receptionists = findReceptionists();
+        return receptionists.isEmpty() ? null : receptionists.get(0);
+    }
+
+    // Réceptionnistes connues ; l'annuaire n'est interrogé ici que si aucune n'a encore été trouvée
+    private List<AID> findReceptionists() {
+        if (receptionists.isEmpty()) {
+            refreshReceptionists();
+        }
+        return receptionists;
+    }
+
+    // Synchronise la liste des réceptionnistes avec l'annuaire
+    private void refreshReceptionists() {
         DFAgentDescription template = new DFAgentDescription();
         ServiceDescription sd = new ServiceDescription();
         sd.setType("receptionist");
@@ -388,25 +457,110 @@ public class NurseAgent extends Agent {
 
         try {
             DFAgentDescription[] result = DFService.search(this, template);
-            if (result.length > 0) {
-                AID receptionistAID = result[0].getName();
+            List<AID> registered = new ArrayList<>();
+            for (DFAgentDescription receptionist : result) {
+                registered.add(receptionist.getName());
+            }
+            receptionists = registered;
+        } catch (FIPAException fe) {
+            // Conserver la dernière liste connue
+            fe.printStackTrace();
+            gui.displayMessage("Erreur lors de la recherche de la réceptionniste: " + fe.getMessage());
+        }
+    }
+
+    // Met à jour l'interface avec les triages en cours
+    private void updateSessionsDisplay() {
+        if (triageSessions.isEmpty()) {
+            gui.setStatus("En attente");
+            gui.setCurrentPatient(null);
+        } else {
+            gui.setStatus("Triage en cours (" + triageSessions.size() + ")");
+            gui.setCurrentPatient(String.join(", ", triageSessions.keySet()));
+        }
+    }
+
+    // Relance puis abandonne les triages restés sans réponse
+    private void checkTriageTimeouts() {
+        long now = System.currentTimeMillis();
+        Iterator<TriageSession> it = triageSessions.values().iterator();
+        boolean changed = false;
+
+        while (it.hasNext()) {
+            TriageSession session = it.next();
+            long idle = now - session.lastActivityTime;
+
+            if (idle >= triageTimeoutMillis) {
+                // Abandonner le triage : le patient devra se représenter en salle d'attente
+                it.remove();
+                changed = true;
 
-                // Créer et configurer le message d'urgence
                 ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
-                msg.addReceiver(receptionistAID);
-                msg.setContent("URGENT_CASE:" + patientId);
-                msg.setConversationId("urgent-notification");
-                send(msg);
+                msg.addReceiver(session.patientAID);
+                msg.setContent("Sans réponse de votre part, votre questionnaire de symptômes a été annulé. " +
+                    "La réceptionniste va vous indiquer la suite.");
+                msg.setConversationId("nurse-feedback");
+                dispatcher.send(msg);
 
-                // Journaliser l'action
-                gui.displayMessage("Notification d'urgence envoyée pour le patient " + patientId);
-            } else {
-                gui.displayMessage("Erreur: Impossible de notifier l'urgence - Réceptionniste non trouvée");
+                // La réceptionniste libère l'affectation et décide de réorienter ou non le patient
+                informReceptionistOfExpiredTriage(session);
+
+                gui.displayMessage("Triage du patient " + session.patientId + " abandonné après " +
+                    (idle / 1000) + " s d'inactivité");
+            } else if (idle >= triageTimeoutMillis / 2 && !session.reminderSent) {
+                // Relance unique à mi-parcours
+                session.reminderSent = true;
+
+                ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
+                msg.addReceiver(session.patientAID);
+                msg.setContent("Rappel : nous attendons toujours vos réponses au questionnaire de symptômes.");
+                msg.setConversationId("nurse-feedback");
+                dispatcher.send(msg);
+
+                gui.displayMessage("Relance envoyée au patient " + session.patientId);
+            }
+        }
+
+        if (changed) {
+            updateSessionsDisplay();
+            reportStatus(false);
+        }
+    }
+
+    // Analyse les réponses pour identifier des urgences potentielles
+    private boolean analyzeSymptomResponses(HashMap<String, String> answers) {
+        // Vérifier des conditions d'urgence potentielles (règles partagées avec la simulation)
+        String questionId = TriageRules.findUrgentAnswer(answers);
+        if (questionId == null) {
+            return false;
+        }
+
+        gui.displayMessage("ALERTE: Situation d'urgence potentielle détectée - " + getQuestionTitleById(questionId) +
+            ": " + answers.get(questionId).toLowerCase());
+        return true;
+    }
+
+    // Retourne le titre d'une question à partir de son ID
+    private String getQuestionTitleById(String id) {
+        for (SymptomQuestion question : symptomQuestions) {
+            if (question.getId().equals(id)) {
+                return question.getTitle();
             }
-        } catch (FIPAException fe) {
-            fe.printStackTrace();
-            gui.displayMessage("Erreur lors de la notification d'urgence: " + fe.getMessage());
         }
+        return id;
+    }
+
+    // Notifie la réceptionniste d'une urgence
+    private void notifyReceptionistOfUrgency(AID receptionistAID, String patientId) {
+        // Créer et configurer le message d'urgence
+        ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
+        msg.addReceiver(receptionistAID);
+        msg.setContent("URGENT_CASE:" + patientId);
+        msg.setConversationId("urgent-notification");
+        dispatcher.send(msg);
+
+        // Journaliser l'action
+        gui.displayMessage("Notification d'urgence envoyée pour le patient " + patientId);
     }
 
     // Catégorise les symptômes
@@ -443,97 +597,110 @@ public class NurseAgent extends Agent {
         return categorizedSymptoms;
     }
 
-    // Comportement pour attendre l'arrivée d'un patient
-    private class WaitForPatientBehaviour extends CyclicBehaviour {
-        @Override
-        public void action() {
-            // Configurer un filtre pour les messages INFORM avec conversationId "patient-location"
-            MessageTemplate mt = MessageTemplate.and(
-                MessageTemplate.MatchPerformative(ACLMessage.INFORM),
-                MessageTemplate.MatchConversationId("patient-location"));
-
-            ACLMessage msg = receive(mt);
+    // Gère l'arrivée d'un patient dans la salle d'attente
+    private void handlePatientLocation(ACLMessage msg) {
+        if (msg.getPerformative() != ACLMessage.INFORM || !"PATIENT_IN_WAITING_ROOM".equals(msg.getContent())) {
+            return;
+        }
 
-            if (msg != null && "PATIENT_IN_WAITING_ROOM".equals(msg.getContent())) {
-                AID patientAID = msg.getSender();
+        AID patientAID = msg.getSender();
 
-                // Saluer le patient
-                greetPatient(patientAID);
+        // Notification répétée : le questionnaire a déjà été envoyé
+        if (triageSessions.containsKey(patientAID.getLocalName())) {
+            gui.displayMessage("Patient " + patientAID.getLocalName() + " déjà en cours de triage");
+            return;
+        }
 
-                // Poser les questions sur les symptômes
-                askSymptomQuestions();
-            } else {
-                block();
-            }
+        TriageSession session = new TriageSession(patientAID);
+        String frontDesk = msg.getUserDefinedParameter(PatientAgent.FRONT_DESK_PARAM);
+        if (frontDesk != null) {
+            session.receptionistAID = new AID(frontDesk, AID.ISLOCALNAME);
         }
+        triageSessions.put(session.patientId, session);
+        reportStatus(false);
+
+        // Saluer le patient
+        greetPatient(session);
+
+        // Poser les questions sur les symptômes
+        askSymptomQuestions(session);
     }
 
-    // Comportement pour attendre les réponses aux questions
-    private class WaitForAnswersBehaviour extends CyclicBehaviour {
-        @Override
-        public void action() {
-            // Configurer un filtre pour les messages avec conversationId "symptom-answers"
-            MessageTemplate mt = MessageTemplate.MatchConversationId("symptom-answers");
-            ACLMessage msg = receive(mt);
-
-            if (msg != null) {
-                try {
-                    // Récupérer les réponses du patient
-                    HashMap<String, String> answers = gson.fromJson(
-                        msg.getContent(),
-                        new TypeToken<HashMap<String, String>>(){}.getType());
-
-                    // Vérifier si toutes les questions ont été répondues
-                    if (verifyAllQuestionsAnswered(answers)) {
-                        // Catégoriser les symptômes
-                        HashMap<String, String> categorizedSymptoms = categorizeSymptoms(answers);
-
-                        // Envoyer les informations à la réceptionniste
-                        sendSymptomInfoToReceptionist(currentPatientAID.getLocalName(), answers);
-
-                        // Informer le patient que les informations ont été transmises
-                        informPatientOfDataTransmission();
-
-                        // Journaliser l'action
-                        gui.displayMessage("Réponses reçues et traitées");
-
-                        // Afficher les réponses dans l'interface
-                        gui.displayMessage("Résumé des réponses du patient :");
-                        for (String key : answers.keySet()) {
-                            if (!key.equals("patientId")) {
-                                String questionTitle = getQuestionTitleById(key);
-                                gui.displayMessage("- " + questionTitle + " : " + answers.get(key));
-                            }
-                        }
-
-                        // Réinitialiser le patient actuel
-                        currentPatientAID = null;
-
-                        // Supprimer ce comportement
-                        myAgent.removeBehaviour(this);
-                    } else {
-                        // Demander au patient de compléter toutes les questions
-                        ACLMessage response = new ACLMessage(ACLMessage.INFORM);
-                        response.addReceiver(currentPatientAID);
-                        response.setContent("Veuillez répondre à toutes les questions requises s'il vous plaît. Ces informations sont importantes pour votre prise en charge.");
-                        response.setConversationId("nurse-feedback");
-                        send(response);
-
-                        // Journaliser l'action
-                        gui.displayMessage("Réponses incomplètes, demande de compléter envoyée");
+    // Traite les réponses d'un patient aux questions sur les symptômes
+    private void handleSymptomAnswers(ACLMessage msg) {
+        TriageSession session = triageSessions.get(msg.getSender().getLocalName());
+
+        // Ignorer les réponses qui ne correspondent à aucun triage en cours (expiré ou inconnu)
+        if (session == null) {
+            gui.displayMessage("Réponses reçues de " + msg.getSender().getLocalName() +
+                " sans questionnaire en cours, ignorées");
+            return;
+        }
+        session.touch();
+
+        try {
+            // Récupérer les réponses du patient
+            HashMap<String, String> answers = gson.fromJson(
+                msg.getContent(),
+                new TypeToken<HashMap<String, String>>(){}.getType());
+
+            // Vérifier si toutes les questions ont été répondues
+            if (verifyAllQuestionsAnswered(answers)) {
+                // Catégoriser les symptômes
+                HashMap<String, String> categorizedSymptoms = categorizeSymptoms(answers);
+
+                // Envoyer les informations à la réceptionniste
+                sendSymptomInfoToReceptionist(session, answers);
+
+                // Informer le patient que les informations ont été transmises
+                informPatientOfDataTransmission(session);
+
+                // Journaliser l'action
+                gui.displayMessage("Réponses de " + session.patientId + " reçues et traitées en " +
+                    ((System.currentTimeMillis() - session.startTime) / 1000) + " s");
+
+                // Afficher les réponses dans l'interface
+                gui.displayMessage("Résumé des réponses du patient :");
+                for (String key : answers.keySet()) {
+                    if (!key.equals("patientId")) {
+                        String questionTitle = getQuestionTitleById(key);
+                        gui.displayMessage("- " + questionTitle + " : " + answers.get(key));
                     }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    gui.displayMessage("Erreur lors du traitement des réponses: " + e.getMessage());
                 }
+
+                // Clore le triage
+                triageSessions.remove(session.patientId);
+                completedTriages++;
+                totalTriageMillis += System.currentTimeMillis() - session.startTime;
+                updateSessionsDisplay();
+                reportStatus(false);
             } else {
-                block();
+                // Demander au patient de compléter toutes les questions
+                ACLMessage response = new ACLMessage(ACLMessage.INFORM);
+                response.addReceiver(session.patientAID);
+                response.setContent("Veuillez répondre à toutes les questions requises s'il vous plaît. Ces informations sont importantes pour votre prise en charge.");
+                response.setConversationId("nurse-feedback");
+                dispatcher.send(response);
+
+                // Journaliser l'action
+                gui.displayMessage("Réponses incomplètes de " + session.patientId + ", demande de compléter envoyée");
             }
+        } catch (Exception e) {
+            e.printStackTrace();
+            gui.displayMessage("Erreur lors du traitement des réponses: " + e.getMessage());
         }
     }
 
+    // Accusé de réception de la réceptionniste après transmission des symptômes
+    private void handleSymptomInfoConfirm(ACLMessage msg) {
+        gui.displayMessage("Réceptionniste : " + msg.getContent());
+    }
+
     @Override
     protected void takeDown() {
+        // Prévenir la réceptionniste pour qu'elle réoriente les patients en attente de triage
+        reportStatus(true);
+
         // Se désinscrire du Directory Facilitator
         try {
             DFService.deregister(this);
@@ -549,5 +716,9 @@ public class NurseAgent extends Agent {
 
         // Journaliser la terminaison
         System.out.println("Agent Infirmier " + getAID().getName() + " terminé.");
+        if (dispatcher != null) {
+            System.out.print(dispatcher.formatStats());
+            dispatcher.close();
+        }
     }
 }
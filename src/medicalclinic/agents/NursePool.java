@@ -0,0 +1,145 @@
+package medicalclinic.agents;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Vue de la réceptionniste sur le groupe d'infirmiers.
+ * Chaque patient est confié à l'infirmier dont le délai de prise en charge estimé
+ * (triages en cours et patients envoyés, multipliés par la durée moyenne de triage) est le plus faible.
+ * Les affectations sont suivies jusqu'à la réception des symptômes pour pouvoir
+ * réaffecter les patients d'un infirmier qui quitte le cabinet.
+ * La simulation du cabinet répartit ses patients avec la même classe.
+ */
+public class NursePool {
+    // Durée de triage supposée tant qu'un infirmier n'a terminé aucun triage
+    static final long DEFAULT_TRIAGE_MILLIS = 5 * 60 * 1000L;
+
+    // Charge connue d'un infirmier
+    static class NurseLoad {
+        private final String nurseId;
+        private int activeSessions;
+        private int pendingAssignments;
+        private long averageTriageMillis;
+        private long completedTriages;
+
+        NurseLoad(String nurseId) {
+            this.nurseId = nurseId;
+        }
+
+        // Délai estimé avant qu'un nouveau patient soit pris en charge
+        long getExpectedDelayMillis() {
+            long triageMillis = averageTriageMillis > 0 ? averageTriageMillis : DEFAULT_TRIAGE_MILLIS;
+            return (activeSessions + pendingAssignments) * triageMillis;
+        }
+
+        String getNurseId() { return nurseId; }
+        int getActiveSessions() { return activeSessions; }
+        int getPendingAssignments() { return pendingAssignments; }
+        long getAverageTriageMillis() { return averageTriageMillis; }
+        long getCompletedTriages() { return completedTriages; }
+    }
+
+    private final LinkedHashMap<String, NurseLoad> nurses = new LinkedHashMap<>();
+    // Infirmier affecté à chaque patient dont les symptômes n'ont pas encore été reçus
+    private final LinkedHashMap<String, String> assignments = new LinkedHashMap<>();
+
+    // Ajoute un infirmier au groupe s'il n'est pas déjà connu
+    public boolean addNurse(String nurseId) {
+        if (nurses.containsKey(nurseId)) {
+            return false;
+        }
+        nurses.put(nurseId, new NurseLoad(nurseId));
+        return true;
+    }
+
+    // Met à jour la charge rapportée par un infirmier
+    public void updateStatus(String nurseId, int activeSessions, long averageTriageMillis, long completedTriages) {
+        addNurse(nurseId);
+        NurseLoad load = nurses.get(nurseId);
+        load.activeSessions = activeSessions;
+        load.averageTriageMillis = averageTriageMillis;
+        load.completedTriages = completedTriages;
+
+        // Les patients envoyés et pas encore arrivés restent en attente
+        int unconfirmed = 0;
+        for (String assignedNurse : assignments.values()) {
+            if (assignedNurse.equals(nurseId)) {
+                unconfirmed++;
+            }
+        }
+        load.pendingAssignments = Math.max(0, unconfirmed - activeSessions);
+    }
+
+    /**
+     * Choisit l'infirmier le moins chargé pour un patient et enregistre l'affectation.
+     * Retourne null si aucun infirmier n'est connu.
+     */
+    public String assign(String patientId) {
+        NurseLoad best = null;
+        for (NurseLoad load : nurses.values()) {
+            if (best == null || load.getExpectedDelayMillis() < best.getExpectedDelayMillis()) {
+                best = load;
+            }
+        }
+
+        if (best == null) {
+            return null;
+        }
+
+        String previous = assignments.put(patientId, best.nurseId);
+        if (previous != null && nurses.containsKey(previous)) {
+            NurseLoad previousLoad = nurses.get(previous);
+            previousLoad.pendingAssignments = Math.max(0, previousLoad.pendingAssignments - 1);
+        }
+        best.pendingAssignments++;
+        return best.nurseId;
+    }
+
+    // Le triage du patient est terminé : l'affectation n'a plus besoin d'être suivie
+    public void complete(String patientId) {
+        assignments.remove(patientId);
+    }
+
+    /**
+     * Retire un infirmier du groupe et retourne les patients qui lui étaient affectés,
+     * afin qu'ils soient redirigés vers un autre infirmier.
+     */
+    List<String> removeNurse(String nurseId) {
+        nurses.remove(nurseId);
+        List<String> orphans = new ArrayList<>();
+        for (Map.Entry<String, String> entry : assignments.entrySet()) {
+            if (entry.getValue().equals(nurseId)) {
+                orphans.add(entry.getKey());
+            }
+        }
+        for (String patientId : orphans) {
+            assignments.remove(patientId);
+        }
+        return orphans;
+    }
+
+    // Infirmiers connus qui ne figurent plus dans l'annuaire
+    Set<String> findMissing(Collection<String> registeredNurseIds) {
+        Set<String> missing = new HashSet<>(nurses.keySet());
+        missing.removeAll(registeredNurseIds);
+        return missing;
+    }
+
+    String getAssignedNurse(String patientId) {
+        return assignments.get(patientId);
+    }
+
+    Collection<NurseLoad> getLoads() {
+        return nurses.values();
+    }
+
+    boolean isEmpty() {
+        return nurses.isEmpty();
+    }
+}
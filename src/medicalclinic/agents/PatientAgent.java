@@ -2,7 +2,6 @@ package medicalclinic.agents;
 
 import jade.core.AID;
 import jade.core.Agent;
-import jade.core.behaviours.CyclicBehaviour;
 import jade.domain.DFService;
 import jade.domain.FIPAAgentManagement.DFAgentDescription;
 import jade.domain.FIPAAgentManagement.ServiceDescription;
@@ -10,26 +9,46 @@ import jade.domain.FIPAException;
 import jade.lang.acl.ACLMessage;
 
 import java.util.HashMap;
+import java.util.Map;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
-import medicalclinic.gui.PatientGUI;
+import medicalclinic.gui.AutomatedPatientView;
+import medicalclinic.gui.HeadlessView;
+import medicalclinic.gui.PatientView;
+import medicalclinic.tracing.PatientTrace;
+import medicalclinic.tracing.PatientTrace.Stage;
 
 /**
  * Agent patient pour le cabinet médical.
  * Représente un patient interagissant avec le système.
  */
 public class PatientAgent extends Agent {
+    // Paramètre de message indiquant la réceptionniste responsable du patient
+    public static final String FRONT_DESK_PARAM = "X-clinic-front-desk";
+    // Téléphone transmis à la connexion, pour être reconnu par la réceptionniste
+    public static final String PHONE_PARAM = "X-clinic-phone";
+    // Indique que le formulaire personnel ne contient que les champs modifiés
+    public static final String PERSONAL_INFO_DELTA_PARAM = "X-clinic-delta";
+
     private String id;
     private HashMap<String, String> personalInfo;
     private HashMap<String, String> symptomsInfo;
+    // Valeurs pré-remplies par la réceptionniste pour un patient déjà connu
+    private HashMap<String, String> prefilledInfo;
+    private String phone;
     private AID receptionistAID;
+    private AID frontDeskRouterAID;
     private AID nurseAID;
     private AID doctorAID;
     private String location;
-    private PatientGUI gui;
+    private PatientView gui;
+    private MessageDispatcher dispatcher;
+    // Trace de la visite, transmise dans tous les messages envoyés
+    private PatientTrace trace;
     private Gson gson = new Gson();
 
     // Ajouter un flag pour suivre si le patient a envoyé son message d'arrivée
@@ -40,33 +59,87 @@ public class PatientAgent extends Agent {
         id = getAID().getLocalName();
         personalInfo = new HashMap<>();
         symptomsInfo = new HashMap<>();
+        prefilledInfo = new HashMap<>();
         location = "Entrée";
+        trace = new PatientTrace(id);
+        trace.begin(Stage.VISIT);
+        trace.begin(Stage.CONNECTION);
 
-        // Récupérer l'interface graphique passée en argument
+        // Récupérer l'interface graphique passée en argument ; en mode sans affichage,
+        // le patient répond lui-même aux formulaires
         Object[] args = getArguments();
-        if (args != null && args.length > 0 && args[0] instanceof PatientGUI) {
-            gui = (PatientGUI) args[0];
+        if (args != null && args.length > 0 && args[0] instanceof PatientView) {
+            gui = (PatientView) args[0];
+        } else if (HeadlessView.isRequested(args)) {
+            // Troisième argument facultatif : symptômes à déclarer (générateur de charge)
+            gui = new AutomatedPatientView(args != null && args.length > 2 && args[2] instanceof String ?
+                (String) args[2] : null);
+        }
+        if (gui != null) {
             gui.setPatientAgent(this);
             gui.displayMessage("Agent patient " + id + " démarré");
         } else {
             System.err.println("Interface graphique non trouvée pour le patient " + id);
         }
+        // Second argument facultatif : téléphone du patient
+        if (args != null && args.length > 1 && args[1] instanceof String) {
+            phone = (String) args[1];
+        }
 
         // Trouver l'agent réceptionniste
         findReceptionist();
 
-        // Ajouter le comportement pour la réception des messages
-        addBehaviour(new ReceiveMessageBehaviour());
+        // Ajouter le comportement pour la réception des messages, routés selon la conversation
+        dispatcher = new MessageDispatcher(this)
+            .setTraceId(trace.getTraceId())
+            .register("welcome", msg -> handleWelcomeMessage(msg.getContent(), msg.getSender()))
+            .register("personal-form", msg -> handlePersonalFormMessage(msg.getContent()))
+            .register("move-request", msg -> handleMoveRequestMessage(msg.getContent()))
+            .register("nurse-questions", msg -> handleNurseQuestionsMessage(msg.getContent()))
+            .register("doctor-questions", msg -> handleDoctorQuestionsMessage(msg.getContent()))
+            .register("diagnosis", msg -> handleDiagnosisMessage(msg.getContent()))
+            .register("doctor-assignment", msg -> handleDoctorAssignmentMessage(msg.getContent(), msg.getSender()))
+            .register("waiting-info", msg -> handleWaitingInfoMessage(msg.getContent()))
+            .register("waiting-position", msg -> handleWaitingInfoMessage(msg.getContent()))
+            .register("urgent-info", msg -> handleUrgentInfoMessage(msg.getContent()))
+            .register("front-desk-route", this::handleFrontDeskRoute)
+            .setDefaultHandler(this::handleUnknownMessage);
+        for (String feedbackId : new String[] {
+                "nurse-greeting", "doctor-greeting", "nurse-feedback", "receptionist-feedback"}) {
+            dispatcher.register(feedbackId,
+                msg -> handleGreetingOrFeedbackMessage(msg.getContent(), msg.getConversationId(), msg.getSender()));
+        }
+        addBehaviour(dispatcher);
 
         // Informer l'utilisateur que l'agent a démarré
         System.out.println("Agent patient " + id + " démarré");
 
-        // Envoyer un message de connexion à la réceptionniste
-        informReceptionistOfConnection();
+        // Envoyer un message de connexion à la réceptionniste (après orientation en mode réparti)
+        if (frontDeskRouterAID != null) {
+            requestFrontDeskRoute();
+        } else {
+            informReceptionistOfConnection();
+        }
     }
 
     // Recherche l'agent réceptionniste dans le DF
     private void findReceptionist() {
+        // En mode accueil réparti, le routeur indique la réceptionniste qui gère ce patient
+        DFAgentDescription routerTemplate = new DFAgentDescription();
+        ServiceDescription routerSd = new ServiceDescription();
+        routerSd.setType("receptionist-router");
+        routerTemplate.addServices(routerSd);
+
+        try {
+            DFAgentDescription[] routers = DFService.search(this, routerTemplate);
+            if (routers.length > 0) {
+                frontDeskRouterAID = routers[0].getName();
+                return;
+            }
+        } catch (FIPAException fe) {
+            fe.printStackTrace();
+        }
+
         DFAgentDescription template = new DFAgentDescription();
         ServiceDescription sd = new ServiceDescription();
         sd.setType("receptionist");
@@ -94,13 +167,38 @@ public class PatientAgent extends Agent {
         }
     }
 
+    // Demande au routeur d'accueil la réceptionniste responsable de ce patient
+    private void requestFrontDeskRoute() {
+        ACLMessage msg = new ACLMessage(ACLMessage.REQUEST);
+        msg.addReceiver(frontDeskRouterAID);
+        msg.setContent(id);
+        msg.setConversationId("front-desk-route");
+        dispatcher.send(msg);
+    }
+
+    // Réponse du routeur d'accueil : se présenter à la réceptionniste désignée
+    private void handleFrontDeskRoute(ACLMessage msg) {
+        if (msg.getPerformative() == ACLMessage.INFORM) {
+            receptionistAID = new AID(msg.getContent(), AID.ISLOCALNAME);
+            System.out.println("Réceptionniste attribuée: " + receptionistAID.getLocalName());
+            if (gui != null) {
+                gui.displayMessage("Connexion au cabinet médical établie");
+            }
+        }
+        informReceptionistOfConnection();
+    }
+
     // Informe la réceptionniste de la connexion du patient
     private void informReceptionistOfConnection() {
         if (receptionistAID != null) {
             ACLMessage msg = new ACLMessage(ACLMessage.REQUEST);
             msg.addReceiver(receptionistAID);
             msg.setContent("PATIENT_CONNECTED");
-            send(msg);
+            msg.setConversationId("patient-connection");
+            if (phone != null) {
+                msg.addUserDefinedParameter(PHONE_PARAM, phone);
+            }
+            dispatcher.send(msg);
             System.out.println("Message de connexion envoyé à la réceptionniste");
 
             if (gui != null) {
@@ -123,8 +221,21 @@ public class PatientAgent extends Agent {
             ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
             msg.addReceiver(receptionistAID);
             msg.setConversationId("personal-info");
-            msg.setContent(gson.toJson(personalInfo));
-            send(msg);
+
+            // Formulaire pré-rempli : n'envoyer que les champs modifiés
+            if (!prefilledInfo.isEmpty()) {
+                HashMap<String, String> changes = new HashMap<>();
+                for (Map.Entry<String, String> entry : formData.entrySet()) {
+                    if (!entry.getValue().equals(prefilledInfo.get(entry.getKey()))) {
+                        changes.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                msg.setContent(gson.toJson(changes));
+                msg.addUserDefinedParameter(PERSONAL_INFO_DELTA_PARAM, "true");
+            } else {
+                msg.setContent(gson.toJson(personalInfo));
+            }
+            dispatcher.send(msg);
 
             if (gui != null) {
                 gui.displayMessage("Informations personnelles envoyées");
@@ -145,7 +256,8 @@ public class PatientAgent extends Agent {
             msg.addReceiver(nurseAID);
             msg.setConversationId("symptom-answers");
             msg.setContent(gson.toJson(symptomsInfo));
-            send(msg);
+            dispatcher.send(msg);
+            trace.next(Stage.TRIAGE, Stage.ASSIGNMENT);
 
             if (gui != null) {
                 gui.displayMessage("Réponses aux questions de l'infirmier envoyées");
@@ -165,7 +277,8 @@ public class PatientAgent extends Agent {
             msg.addReceiver(doctorAID);
             msg.setConversationId("doctor-consultation");
             msg.setContent(gson.toJson(answers));
-            send(msg);
+            dispatcher.send(msg);
+            trace.next(Stage.CONSULTATION, Stage.DIAGNOSIS);
 
             if (gui != null) {
                 gui.displayMessage("Réponses aux questions du médecin envoyées");
@@ -180,6 +293,16 @@ public class PatientAgent extends Agent {
 
     // Déplace le patient vers la salle d'attente
     public void moveToWaitingRoom() {
+        moveToWaitingRoom(null);
+    }
+
+    // Déplace le patient vers la salle d'attente, auprès de l'infirmier désigné s'il est connu
+    public void moveToWaitingRoom(String nurseId) {
+        if (nurseId != null && !nurseId.isEmpty()) {
+            notifyNurseOfArrival(new AID(nurseId, AID.ISLOCALNAME));
+            return;
+        }
+
         // Trouver l'infirmier
         DFAgentDescription template = new DFAgentDescription();
         ServiceDescription sd = new ServiceDescription();
@@ -189,21 +312,8 @@ public class PatientAgent extends Agent {
         try {
             DFAgentDescription[] result = DFService.search(this, template);
             if (result.length > 0) {
-                nurseAID = result[0].getName();
+                notifyNurseOfArrival(result[0].getName());
 
-                // Informer l'infirmier
-                ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
-                msg.addReceiver(nurseAID);
-                msg.setContent("PATIENT_IN_WAITING_ROOM");
-                msg.setConversationId("patient-location");
-                send(msg);
-
-                // Mettre à jour l'emplacement
-                location = "Salle d'attente";
-                if (gui != null) {
-                    gui.updateLocation(location);
-                    gui.displayMessage("Vous vous rendez dans la salle d'attente pour rencontrer l'infirmier");
-                }
             } else {
                 System.out.println("Aucun infirmier trouvé");
                 if (gui != null) {
@@ -218,11 +328,36 @@ public class PatientAgent extends Agent {
         }
     }
 
+    // Informe l'infirmier de l'arrivée du patient en salle d'attente
+    private void notifyNurseOfArrival(AID nurse) {
+        nurseAID = nurse;
+
+        // Informer l'infirmier
+        ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
+        msg.addReceiver(nurseAID);
+        msg.setContent("PATIENT_IN_WAITING_ROOM");
+        msg.setConversationId("patient-location");
+        if (receptionistAID != null) {
+            // Réceptionniste qui gère le dossier, à qui l'infirmier transmettra les symptômes
+            msg.addUserDefinedParameter(FRONT_DESK_PARAM, receptionistAID.getLocalName());
+        }
+        dispatcher.send(msg);
+        trace.next(Stage.FORM_COMPLETION, Stage.TRIAGE);
+
+        // Mettre à jour l'emplacement
+        location = "Salle d'attente";
+        if (gui != null) {
+            gui.updateLocation(location);
+            gui.displayMessage("Vous vous rendez dans la salle d'attente pour rencontrer l'infirmier");
+        }
+    }
+
     // Déplace le patient vers la salle du médecin
     public void moveToDoctorRoom(int roomNumber) {
         if (doctorAID != null) {
             // Mettre à jour l'emplacement
             location = "Salle de consultation " + roomNumber;
+            trace.next(Stage.WAITING, Stage.CONSULTATION);
             if (gui != null) {
                 gui.updateLocation(location);
                 gui.displayMessage("Vous entrez dans la salle de consultation " + roomNumber);
@@ -236,7 +371,7 @@ public class PatientAgent extends Agent {
             msg.addReceiver(doctorAID);
             msg.setContent("PATIENT_ARRIVED");
             msg.setConversationId("patient-location");
-            send(msg);
+            dispatcher.send(msg);
             hasNotifiedArrival = true;
 
             if (gui != null) {
@@ -260,7 +395,7 @@ public class PatientAgent extends Agent {
             msg.addReceiver(receptionistAID);
             msg.setContent("PATIENT_EXIT");
             msg.setConversationId("patient-location");
-            send(msg);
+            dispatcher.send(msg);
 
             if (gui != null) {
                 gui.displayMessage("Vous quittez le cabinet médical. Merci de votre visite et prompt rétablissement!");
@@ -271,217 +406,187 @@ public class PatientAgent extends Agent {
         doDelete();
     }
 
-    // Comportement pour recevoir les messages
-    private class ReceiveMessageBehaviour extends CyclicBehaviour {
-        @Override
-        public void action() {
-            ACLMessage msg = receive();
-
-            if (msg != null) {
-                String content = msg.getContent();
-                String conversationId = msg.getConversationId();
+    // Message de bienvenue
+    private void handleWelcomeMessage(String content, AID sender) {
+        if (gui != null) {
+            gui.displayMessage("Réceptionniste: " + content);
+        }
+        // Stocker l'AID de la réceptionniste
+        receptionistAID = sender;
+    }
 
-                // Tracer le message reçu pour le déboguer
-                System.out.println("Patient " + id + " a reçu un message: ConversationId = " +
-                    conversationId + ", Content = " + (content.length() > 50 ? content.substring(0, 50) + "..." : content));
+    // Formulaire d'informations personnelles
+    private void handlePersonalFormMessage(String content) {
+        trace.next(Stage.CONNECTION, Stage.FORM_COMPLETION);
 
-                // Traiter selon le type de conversation
-                if ("welcome".equals(conversationId)) {
-                    // Message de bienvenue de la réceptionniste
-                    handleWelcomeMessage(content, msg.getSender());
-                }
-                else if ("personal-form".equals(conversationId)) {
-                    // Formulaire d'informations personnelles
-                    handlePersonalFormMessage(content);
-                }
-                else if ("move-request".equals(conversationId)) {
-                    // Demande de déplacement
-                    handleMoveRequestMessage(content, msg.getSender());
-                }
-                else if ("nurse-questions".equals(conversationId)) {
-                    // Questions de l'infirmier
-                    handleNurseQuestionsMessage(content);
-                }
-                else if ("doctor-questions".equals(conversationId)) {
-                    // Questions du médecin
-                    handleDoctorQuestionsMessage(content);
-                }
-                else if ("diagnosis".equals(conversationId)) {
-                    // Diagnostic du médecin
-                    handleDiagnosisMessage(content);
-                }
-                else if ("doctor-assignment".equals(conversationId)) {
-                    // Affectation à un médecin
-                    handleDoctorAssignmentMessage(content, msg.getSender());
-                }
-                else if ("nurse-greeting".equals(conversationId) ||
-                    "doctor-greeting".equals(conversationId) ||
-                    "nurse-feedback".equals(conversationId) ||
-                    "receptionist-feedback".equals(conversationId)) {
-                    // Message de salutation ou feedback
-                    handleGreetingOrFeedbackMessage(content, conversationId, msg.getSender());
-                }
-                else if ("waiting-info".equals(conversationId) ||
-                    "waiting-position".equals(conversationId)) {
-                    // Information sur l'attente
-                    handleWaitingInfoMessage(content);
-                }
-                else if ("urgent-info".equals(conversationId)) {
-                    // Information sur l'urgence
-                    handleUrgentInfoMessage(content);
+        // Retenir les valeurs pré-remplies pour n'envoyer ensuite que les modifications
+        prefilledInfo.clear();
+        try {
+            JsonObject formObj = JsonParser.parseString(content).getAsJsonObject();
+            for (JsonElement fieldElement : formObj.getAsJsonArray("fields")) {
+                JsonObject field = fieldElement.getAsJsonObject();
+                if (field.has("value")) {
+                    prefilledInfo.put(field.get("name").getAsString(), field.get("value").getAsString());
                 }
-            } else {
-                block();
             }
+        } catch (Exception e) {
+            System.out.println("Erreur d'analyse du formulaire personnel: " + e.getMessage());
         }
 
-        // Message de bienvenue
-        private void handleWelcomeMessage(String content, AID sender) {
-            if (gui != null) {
-                gui.displayMessage("Réceptionniste: " + content);
-            }
-            // Stocker l'AID de la réceptionniste
-            receptionistAID = sender;
+        if (gui != null) {
+            gui.displayPersonalForm(content);
         }
+    }
 
-        // Formulaire d'informations personnelles
-        private void handlePersonalFormMessage(String content) {
-            if (gui != null) {
-                gui.displayPersonalForm(content);
-            }
+    // Demande de déplacement
+    private void handleMoveRequestMessage(String content) {
+        if (content.startsWith("MOVE_TO_WAITING_ROOM")) {
+            // La réceptionniste peut désigner l'infirmier : MOVE_TO_WAITING_ROOM:<infirmier>
+            String nurseId = content.startsWith("MOVE_TO_WAITING_ROOM:") ?
+                content.substring("MOVE_TO_WAITING_ROOM:".length()) : null;
+            moveToWaitingRoom(nurseId);
         }
-
-        // Demande de déplacement
-        private void handleMoveRequestMessage(String content, AID sender) {
-            if ("MOVE_TO_WAITING_ROOM".equals(content)) {
-                moveToWaitingRoom();
-            }
-            else if (content.startsWith("MOVE_TO_DOCTOR_")) {
-                // Extraire le numéro de salle
-                int roomNumber = Integer.parseInt(content.substring("MOVE_TO_DOCTOR_".length()));
-                doctorAID = sender;
-                moveToDoctorRoom(roomNumber);
-            }
+        else if (content.startsWith("MOVE_TO_DOCTOR_")) {
+            // Extraire le numéro de salle
+            // Le médecin est connu par l'affectation : l'expéditeur ici est la réceptionniste
+            int roomNumber = Integer.parseInt(content.substring("MOVE_TO_DOCTOR_".length()));
+            moveToDoctorRoom(roomNumber);
         }
+    }
 
-        // Questions de l'infirmier
-        private void handleNurseQuestionsMessage(String content) {
-            if (gui != null) {
-                gui.displayNurseQuestions(content);
-            }
+    // Questions de l'infirmier
+    private void handleNurseQuestionsMessage(String content) {
+        if (gui != null) {
+            gui.displayNurseQuestions(content);
         }
+    }
 
-        // Questions du médecin
-        private void handleDoctorQuestionsMessage(String content) {
-            if (gui != null) {
-                // Afficher explicitement que le médecin envoie un questionnaire
-                gui.displayMessage("Le médecin vous envoie un questionnaire médical à remplir");
-
-                // Log pour débogage
-                System.out.println("Patient " + myAgent.getLocalName() + " a reçu un questionnaire du médecin");
-
-                // Analyse du formulaire pour vérifier qu'il est bien formé
-                try {
-                    JsonObject formObj = JsonParser.parseString(content).getAsJsonObject();
-                    if (formObj.has("formId") && formObj.has("fields")) {
-                        System.out.println("Formulaire valide reçu: " + formObj.get("formId").getAsString() +
-                            " avec " + formObj.getAsJsonArray("fields").size() + " champs");
-                    } else {
-                        System.out.println("Formulaire reçu mais structure invalide: " + content.substring(0, 100));
-                    }
-                } catch (Exception e) {
-                    System.out.println("Erreur d'analyse du formulaire: " + e.getMessage() + " | Contenu: " +
-                        content.substring(0, 100));
-                }
+    // Questions du médecin
+    private void handleDoctorQuestionsMessage(String content) {
+        if (gui != null) {
+            // Afficher explicitement que le médecin envoie un questionnaire
+            gui.displayMessage("Le médecin vous envoie un questionnaire médical à remplir");
 
-                gui.displayDoctorQuestions(content);
-            }
-        }
+            // Log pour débogage
+            System.out.println("Patient " + getLocalName() + " a reçu un questionnaire du médecin");
 
-        // Diagnostic du médecin
-        private void handleDiagnosisMessage(String content) {
-            if (gui != null) {
-                gui.displayDiagnosis(content);
+            // Analyse du formulaire pour vérifier qu'il est bien formé
+            try {
+                JsonObject formObj = JsonParser.parseString(content).getAsJsonObject();
+                if (formObj.has("formId") && formObj.has("fields")) {
+                    System.out.println("Formulaire valide reçu: " + formObj.get("formId").getAsString() +
+                        " avec " + formObj.getAsJsonArray("fields").size() + " champs");
+                } else {
+                    System.out.println("Formulaire reçu mais structure invalide: " + content.substring(0, 100));
+                }
+            } catch (Exception e) {
+                System.out.println("Erreur d'analyse du formulaire: " + e.getMessage() + " | Contenu: " +
+                    content.substring(0, 100));
             }
+
+            gui.displayDoctorQuestions(content);
         }
+    }
 
-        // Affectation à un médecin
-        private void handleDoctorAssignmentMessage(String content, AID sender) {
-            try {
-                JsonObject assignment = JsonParser.parseString(content).getAsJsonObject();
-                doctorAID = sender;
-                String doctorName = assignment.get("doctorName").getAsString();
-                String specialty = assignment.get("specialty").getAsString();
-                int roomNumber = assignment.get("roomNumber").getAsInt();
+    // Diagnostic du médecin
+    private void handleDiagnosisMessage(String content) {
+        trace.end(Stage.DIAGNOSIS);
+        trace.end(Stage.VISIT);
+        if (gui != null) {
+            gui.displayDiagnosis(content);
+        }
+    }
 
-                if (gui != null) {
-                    gui.displayMessage("Vous avez été affecté au Dr. " + doctorName +
-                        " (" + specialty + ") en salle " + roomNumber);
+    // Affectation à un médecin
+    private void handleDoctorAssignmentMessage(String content, AID sender) {
+        try {
+            JsonObject assignment = JsonParser.parseString(content).getAsJsonObject();
+            doctorAID = assignment.has("doctorId") ?
+                new AID(assignment.get("doctorId").getAsString(), AID.ISLOCALNAME) : sender;
+            String doctorName = assignment.get("doctorName").getAsString();
+            String specialty = assignment.get("specialty").getAsString();
+            int roomNumber = assignment.get("roomNumber").getAsInt();
+            trace.next(Stage.ASSIGNMENT, Stage.WAITING);
 
-                    // Afficher d'autres informations si disponibles
-                    if (assignment.has("qualification")) {
-                        gui.displayMessage("Qualification: " + assignment.get("qualification").getAsString());
-                    }
+            if (gui != null) {
+                gui.displayMessage("Vous avez été affecté au Dr. " + doctorName +
+                    " (" + specialty + ") en salle " + roomNumber);
 
-                    if (assignment.has("experience")) {
-                        gui.displayMessage("Expérience: " + assignment.get("experience").getAsString());
-                    }
+                // Afficher d'autres informations si disponibles
+                if (assignment.has("qualification")) {
+                    gui.displayMessage("Qualification: " + assignment.get("qualification").getAsString());
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
-                if (gui != null) {
-                    gui.displayMessage("Erreur lors du traitement de l'affectation au médecin: " + e.getMessage());
+
+                if (assignment.has("experience")) {
+                    gui.displayMessage("Expérience: " + assignment.get("experience").getAsString());
                 }
             }
+        } catch (Exception e) {
+            e.printStackTrace();
+            if (gui != null) {
+                gui.displayMessage("Erreur lors du traitement de l'affectation au médecin: " + e.getMessage());
+            }
         }
+    }
 
-        // Message de salutation ou feedback
-        private void handleGreetingOrFeedbackMessage(String content, String conversationId, AID sender) {
-            if (gui != null) {
-                if (conversationId.contains("nurse")) {
-                    gui.displayMessage("Infirmier: " + content);
-                    nurseAID = sender;
-                } else if (conversationId.contains("doctor")) {
-                    gui.displayMessage("Médecin: " + content);
-                    doctorAID = sender;
-
-                    // Si c'est une salutation du médecin et que nous sommes dans sa salle, vérifier si nous avons notifié notre arrivée
-                    if (conversationId.equals("doctor-greeting") && location.startsWith("Salle de consultation") && !hasNotifiedArrival) {
-                        // Le médecin nous a salué mais pense peut-être que nous venons d'arriver
-                        // Envoyer une notification d'arrivée au cas où
-                        ACLMessage notificationMsg = new ACLMessage(ACLMessage.INFORM);
-                        notificationMsg.addReceiver(doctorAID);
-                        notificationMsg.setContent("PATIENT_ARRIVED");
-                        notificationMsg.setConversationId("patient-location");
-                        send(notificationMsg);
-                        hasNotifiedArrival = true;
-
-                        gui.displayMessage("(Notification d'arrivée envoyée au médecin)");
-                    }
-                } else if (conversationId.contains("receptionist")) {
-                    gui.displayMessage("Réceptionniste: " + content);
+    // Message de salutation ou feedback
+    private void handleGreetingOrFeedbackMessage(String content, String conversationId, AID sender) {
+        if (gui != null) {
+            if (conversationId.contains("nurse")) {
+                gui.displayMessage("Infirmier: " + content);
+                nurseAID = sender;
+            } else if (conversationId.contains("doctor")) {
+                gui.displayMessage("Médecin: " + content);
+                doctorAID = sender;
+
+                // Si c'est une salutation du médecin et que nous sommes dans sa salle, vérifier si nous avons notifié notre arrivée
+                if (conversationId.equals("doctor-greeting") && location.startsWith("Salle de consultation") && !hasNotifiedArrival) {
+                    // Le médecin nous a salué mais pense peut-être que nous venons d'arriver
+                    // Envoyer une notification d'arrivée au cas où
+                    ACLMessage notificationMsg = new ACLMessage(ACLMessage.INFORM);
+                    notificationMsg.addReceiver(doctorAID);
+                    notificationMsg.setContent("PATIENT_ARRIVED");
+                    notificationMsg.setConversationId("patient-location");
+                    dispatcher.send(notificationMsg);
+                    hasNotifiedArrival = true;
+
+                    gui.displayMessage("(Notification d'arrivée envoyée au médecin)");
                 }
+            } else if (conversationId.contains("receptionist")) {
+                gui.displayMessage("Réceptionniste: " + content);
             }
         }
+    }
 
-        // Information sur l'attente
-        private void handleWaitingInfoMessage(String content) {
-            if (gui != null) {
-                gui.displayMessage("Information: " + content);
-            }
+    // Information sur l'attente
+    private void handleWaitingInfoMessage(String content) {
+        if (gui != null) {
+            gui.displayMessage("Information: " + content);
         }
+    }
 
-        // Information sur l'urgence
-        private void handleUrgentInfoMessage(String content) {
-            if (gui != null) {
-                gui.displayMessage("⚠️ URGENT: " + content);
-            }
+    // Information sur l'urgence
+    private void handleUrgentInfoMessage(String content) {
+        if (gui != null) {
+            gui.displayMessage("⚠️ URGENT: " + content);
         }
     }
 
+    // Message sans gestionnaire : tracé pour le débogage puis ignoré
+    private void handleUnknownMessage(ACLMessage msg) {
+        String content = msg.getContent();
+        System.out.println("Patient " + id + " a reçu un message non géré: ConversationId = " +
+            msg.getConversationId() + ", Content = " +
+            (content != null && content.length() > 50 ? content.substring(0, 50) + "..." : content));
+    }
+
     @Override
     protected void takeDown() {
         System.out.println("Agent patient " + id + " terminé");
+        if (dispatcher != null) {
+            System.out.print(dispatcher.formatStats());
+            dispatcher.close();
+        }
 
         if (gui != null) {
             gui.displayMessage("Session terminée");
@@ -496,11 +601,15 @@ public class PatientAgent extends Agent {
         return id;
     }
 
+    public String getPhone() {
+        return phone;
+    }
+
     public String getLocation() {
         return location;
     }
 
-    public void setGUI(PatientGUI gui) {
+    public void setGUI(PatientView gui) {
         this.gui = gui;
     }
 
@@ -2,39 +2,89 @@ package medicalclinic.agents;
 
 import jade.core.AID;
 import jade.core.Agent;
-import jade.core.behaviours.CyclicBehaviour;
+import jade.core.behaviours.OneShotBehaviour;
+import jade.core.behaviours.TickerBehaviour;
+import jade.core.behaviours.WakerBehaviour;
+import jade.domain.AMSService;
 import jade.domain.DFService;
+import jade.domain.FIPAAgentManagement.AMSAgentDescription;
 import jade.domain.FIPAAgentManagement.DFAgentDescription;
+import jade.domain.FIPAAgentManagement.SearchConstraints;
 import jade.domain.FIPAAgentManagement.ServiceDescription;
 import jade.domain.FIPAException;
 import jade.lang.acl.ACLMessage;
-import jade.lang.acl.MessageTemplate;
 
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Comparator;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
 
 import medicalclinic.database.DiseaseDatabase;
+import medicalclinic.gui.HeadlessView;
 import medicalclinic.gui.ReceptionistGUI;
+import medicalclinic.gui.ReceptionistView;
+import medicalclinic.models.Consultation;
 import medicalclinic.models.Disease;
 import medicalclinic.models.PatientRecord;
 import medicalclinic.models.WaitingPatientInfo;
+import medicalclinic.persistence.PatientJournal;
+import medicalclinic.persistence.PatientRecordStore;
+import medicalclinic.persistence.SnapshotManager;
 
 public class ReceptionistAgent extends Agent {
-    private HashMap<String, PatientRecord> patientRecords;
-    private HashMap<String, Boolean> doctorAvailability;
+    // Période de resynchronisation du groupe d'infirmiers avec l'annuaire
+    private static final long NURSE_REFRESH_PERIOD_MS = 30000;
+    // Triages abandonnés faute de réponse avant que le patient ne soit renvoyé de l'accueil
+    private static final int MAX_TRIAGE_ATTEMPTS = 2;
+    // Propriété système : répertoire racine des données persistantes de l'accueil
+    public static final String DATA_DIR_PROPERTY = "medicalclinic.dataDir";
+    // Identifiant du formulaire d'informations personnelles dans le FormRegistry
+    private static final String PERSONAL_INFO_FORM_ID = "personalInfo";
+    // Propriété système : un patient déjà connu passe directement en salle d'attente sans formulaire
+    public static final String SKIP_KNOWN_FORM_PROPERTY = "medicalclinic.returning.skipForm";
+    // Nombre de consultations passées rappelées à un patient déjà connu
+    private static final int RECENT_VISITS_SHOWN = 3;
+    // Période de vérification du besoin d'un nouvel instantané
+    private static final long SNAPSHOT_CHECK_PERIOD_MS = 15000;
+    // Durée de validité d'une place réservée auprès d'un médecin (mode accueil réparti)
+    private static final long DOCTOR_LEASE_TTL_MS = 10000;
+
+    private PatientRecordStore patientRecords; // Dossiers en mémoire (LRU borné) et sur disque
+    private PatientJournal journal; // Journal des modifications, rejoué au redémarrage
+    private SnapshotManager snapshots; // Instantanés périodiques bornant la durée du rejeu
+    private HashMap<String, Integer> doctorLoads; // Nombre de consultations en cours par médecin
     private HashMap<String, DoctorInfo> doctorInfos; // Informations détaillées sur les médecins
     private ArrayList<AID> doctorAIDs;
     private LinkedList<WaitingPatientInfo> waitingPatients;
-    private ReceptionistGUI gui;
+    private NursePool nursePool;
+    // Triages abandonnés par patient, jusqu'à la réception de ses symptômes
+    private HashMap<String, Integer> expiredTriages;
+    private WaitTimePredictor waitTimePredictor; // Durées des consultations et attente estimée
+    // Mode accueil réparti : plusieurs réceptionnistes se partagent les patients et
+    // réservent les places des médecins par bail au lieu de suivre leur charge localement
+    private boolean sharded;
+    private HashMap<String, PendingLease> pendingLeases;
+    private boolean waitingListLeasePending;
+    // Faux tant que l'état n'a pas été reconstruit : rien n'est alors écrit sur disque à l'arrêt
+    private boolean stateRecovered;
+    // Patients remis en liste d'attente par la reprise : leur agent a pu disparaître avec l'ancienne plateforme
+    private HashSet<String> restoredWaiting;
+    private ReceptionistView gui;
+    private MessageDispatcher dispatcher;
     private Gson gson = new Gson();
 
     // Classe interne pour stocker les informations des médecins
@@ -45,15 +95,17 @@ public class ReceptionistAgent extends Agent {
         private int experience;
         private List<String> expertises;
         private int roomNumber;
+        private int maxConsultations;
 
         public DoctorInfo(String id, String specialty, String qualification, int experience,
-                          List<String> expertises, int roomNumber) {
+                          List<String> expertises, int roomNumber, int maxConsultations) {
             this.id = id;
             this.specialty = specialty;
             this.qualification = qualification;
             this.experience = experience;
             this.expertises = expertises;
             this.roomNumber = roomNumber;
+            this.maxConsultations = maxConsultations;
         }
 
         public String getId() { return id; }
@@ -62,22 +114,73 @@ public class ReceptionistAgent extends Agent {
         public int getExperience() { return experience; }
         public List<String> getExpertises() { return expertises; }
         public int getRoomNumber() { return roomNumber; }
+        public int getMaxConsultations() { return maxConsultations; }
+    }
+
+    // Demande de place en cours auprès des médecins candidats, dans l'ordre de compatibilité
+    private static class PendingLease {
+        private final String patientId;
+        private final HashMap<String, String> symptomsInfo;
+        private final LinkedList<String> candidates;
+        private final boolean fromWaitingList;
+        // Médecin interrogé et numéro de la demande en cours : une réponse tardive ou un délai
+        // dépassé d'une demande précédente sont ignorés
+        private String currentDoctor;
+        private int attempt;
+
+        PendingLease(String patientId, HashMap<String, String> symptomsInfo,
+                     LinkedList<String> candidates, boolean fromWaitingList) {
+            this.patientId = patientId;
+            this.symptomsInfo = symptomsInfo;
+            this.candidates = candidates;
+            this.fromWaitingList = fromWaitingList;
+        }
     }
 
     @Override
     protected void setup() {
         // Initialiser les structures de données
-        patientRecords = new HashMap<>();
-        doctorAvailability = new HashMap<>();
+        patientRecords = new PatientRecordStore(new File(
+            System.getProperty(DATA_DIR_PROPERTY, "data"), getLocalName() + File.separator + "records"));
+        doctorLoads = new HashMap<>();
         doctorInfos = new HashMap<>();
         doctorAIDs = new ArrayList<>();
         waitingPatients = new LinkedList<>();
-
-        // Créer et afficher l'interface graphique
-        gui = new ReceptionistGUI(this);
-        gui.setVisible(true);
+        nursePool = new NursePool();
+        expiredTriages = new HashMap<>();
+        waitTimePredictor = new WaitTimePredictor();
+        pendingLeases = new HashMap<>();
+
+        // Argument "sharded" : cette réceptionniste est une partition de l'accueil
+        Object[] args = getArguments();
+        sharded = args != null && args.length > 0 && "sharded".equals(args[0]);
+
+        // Créer et afficher l'interface graphique, sauf en mode sans affichage
+        if (HeadlessView.isRequested(args)) {
+            gui = new HeadlessView(getLocalName());
+        } else {
+            ReceptionistGUI frame = new ReceptionistGUI(this);
+            frame.setVisible(true);
+            gui = frame;
+        }
         gui.displayMessage("Agent Réceptionniste démarré");
 
+        // Reconstruire les dossiers et la liste d'attente à partir du dernier instantané et du journal
+        File dataDir = new File(System.getProperty(DATA_DIR_PROPERTY, "data"), getLocalName());
+        journal = new PatientJournal(new File(dataDir, "journal"));
+        snapshots = new SnapshotManager(new File(dataDir, "snapshots"), journal, patientRecords);
+        if (!recoverState()) {
+            // Démarrer avec un état partiel perdrait des patients : l'agent s'arrête sans rien écrire
+            doDelete();
+            return;
+        }
+        stateRecovered = true;
+        restoredWaiting = new HashSet<>();
+        for (WaitingPatientInfo info : waitingPatients) {
+            restoredWaiting.add(info.getPatientId());
+        }
+        journal.start();
+
         // S'enregistrer auprès du DF
         DFAgentDescription dfd = new DFAgentDescription();
         dfd.setName(getAID());
@@ -94,15 +197,53 @@ public class ReceptionistAgent extends Agent {
             gui.displayMessage("Erreur d'enregistrement: " + fe.getMessage());
         }
 
-        // Ajouter les comportements
-        addBehaviour(new PatientConnectionBehaviour());
-        addBehaviour(new ReceiveInfoBehaviour());
-        addBehaviour(new DoctorStatusBehaviour());
-        addBehaviour(new RequestDoctorInfoBehaviour());
+        // Un seul comportement lit la boîte aux lettres et route chaque message
+        dispatcher = new MessageDispatcher(this)
+            .register("patient-connection", this::handlePatientConnection)
+            .register("personal-info", this::handlePersonalInfo)
+            .register("symptom-info", this::handleSymptomInfo)
+            .register("urgent-notification", this::handleUrgentNotification)
+            .register("patient-record-update", this::handlePatientRecordUpdate)
+            .register("patient-location", this::handlePatientLocation)
+            .register("doctor-info", this::handleDoctorInfo)
+            .register("doctor-info-request-response", this::handleDoctorInfo)
+            .register("doctor-status", this::handleDoctorStatus)
+            .register("nurse-status", this::handleNurseStatus)
+            .register("triage-expired", this::handleTriageExpired)
+            .register("doctor-lease", this::handleDoctorLease)
+            .register("invite-patient", this::handleInviteRequest)
+            .setDefaultHandler(this::handleUnknownMessage);
+        addBehaviour(dispatcher);
 
         // Rechercher les médecins disponibles
         findDoctors();
 
+        // Rechercher les infirmiers et suivre les arrivées et départs
+        refreshNurses();
+        addBehaviour(new TickerBehaviour(this, NURSE_REFRESH_PERIOD_MS) {
+            @Override
+            protected void onTick() {
+                dispatcher.getMetrics().time("refreshNurses", ReceptionistAgent.this::refreshNurses);
+            }
+        });
+
+        // Prendre un instantané lorsque suffisamment d'entrées se sont accumulées dans le journal
+        addBehaviour(new TickerBehaviour(this, SNAPSHOT_CHECK_PERIOD_MS) {
+            @Override
+            protected void onTick() {
+                dispatcher.getMetrics().time("snapshotCheck", () -> {
+                    if (journal.isFailed()) {
+                        // Les modifications ne sont plus journalisées : s'arrêter (un dernier instantané est tenté)
+                        System.err.println("Journal de " + getLocalName() + " en échec, arrêt de l'agent");
+                        gui.displayMessage("ERREUR: le journal ne peut plus être écrit, arrêt de la réceptionniste");
+                        doDelete();
+                    } else if (snapshots.isDue(journal.getLastSeq())) {
+                        takeSnapshot();
+                    }
+                });
+            }
+        });
+
         gui.displayMessage("Agent Réceptionniste démarré et prêt");
     }
 
@@ -119,8 +260,10 @@ public class ReceptionistAgent extends Agent {
 
             for (DFAgentDescription doctor : result) {
                 AID doctorAID = doctor.getName();
-                doctorAIDs.add(doctorAID);
-                doctorAvailability.put(doctorAID.getLocalName(), true);
+                if (!doctorAIDs.contains(doctorAID)) {
+                    doctorAIDs.add(doctorAID);
+                }
+                doctorLoads.putIfAbsent(doctorAID.getLocalName(), 0);
 
                 // Initialiser les informations de base du médecin
                 String specialty = getDoctorSpecialty(doctorAID.getLocalName());
@@ -132,10 +275,14 @@ public class ReceptionistAgent extends Agent {
                     getDoctorQualification(doctorAID.getLocalName()),
                     5, // Expérience par défaut
                     new ArrayList<>(), // Expertises vides par défaut
-                    getDoctorRoomNumber(doctorAID.getLocalName())
+                    getDoctorRoomNumber(doctorAID.getLocalName()),
+                    1 // Une consultation à la fois tant que le médecin n'a pas annoncé sa capacité
                 );
 
-                doctorInfos.put(doctorAID.getLocalName(), doctorInfo);
+                doctorInfos.putIfAbsent(doctorAID.getLocalName(), doctorInfo);
+                DoctorInfo knownInfo = doctorInfos.get(doctorAID.getLocalName());
+                waitTimePredictor.registerDoctor(doctorAID.getLocalName(), knownInfo.getSpecialty(),
+                    knownInfo.getMaxConsultations());
 
                 gui.displayMessage("Médecin trouvé: " + doctorAID.getLocalName() +
                     " - Spécialité: " + specialty);
@@ -149,13 +296,66 @@ public class ReceptionistAgent extends Agent {
         }
     }
 
+    // Synchronise le groupe d'infirmiers avec l'annuaire
+    private void refreshNurses() {
+        DFAgentDescription template = new DFAgentDescription();
+        ServiceDescription sd = new ServiceDescription();
+        sd.setType("nurse");
+        template.addServices(sd);
+
+        try {
+            DFAgentDescription[] result = DFService.search(this, template);
+            List<String> registered = new ArrayList<>();
+            for (DFAgentDescription nurse : result) {
+                String nurseId = nurse.getName().getLocalName();
+                registered.add(nurseId);
+                if (nursePool.addNurse(nurseId)) {
+                    gui.displayMessage("Infirmier trouvé: " + nurseId);
+                }
+            }
+
+            // Les infirmiers disparus de l'annuaire ont quitté le cabinet
+            for (String nurseId : nursePool.findMissing(registered)) {
+                rebalanceNursePatients(nurseId);
+            }
+        } catch (FIPAException fe) {
+            fe.printStackTrace();
+            gui.displayMessage("Erreur lors de la recherche des infirmiers: " + fe.getMessage());
+        }
+    }
+
+    // Redirige vers un autre infirmier les patients d'un infirmier qui quitte le cabinet
+    private void rebalanceNursePatients(String nurseId) {
+        List<String> orphans = nursePool.removeNurse(nurseId);
+        gui.displayMessage("Infirmier " + nurseId + " retiré du service, " + orphans.size() +
+            " patient(s) à réorienter");
+
+        for (String patientId : orphans) {
+            sendToWaitingRoom(new AID(patientId, AID.ISLOCALNAME));
+        }
+    }
+
+    // Dirige le patient vers la salle d'attente, auprès de l'infirmier le moins chargé
+    private void sendToWaitingRoom(AID patientAID) {
+        String nurseId = nursePool.assign(patientAID.getLocalName());
+
+        ACLMessage moveMsg = new ACLMessage(ACLMessage.REQUEST);
+        moveMsg.addReceiver(patientAID);
+        moveMsg.setContent(nurseId != null ? "MOVE_TO_WAITING_ROOM:" + nurseId : "MOVE_TO_WAITING_ROOM");
+        moveMsg.setConversationId("move-request");
+        dispatcher.send(moveMsg);
+
+        gui.displayMessage("Patient " + patientAID.getLocalName() + " dirigé vers la salle d'attente" +
+            (nurseId != null ? " (infirmier " + nurseId + ")" : ""));
+    }
+
     // Demande des informations détaillées sur un médecin
     private void requestDoctorInfo(AID doctorAID) {
         ACLMessage request = new ACLMessage(ACLMessage.REQUEST);
         request.addReceiver(doctorAID);
         request.setContent("REQUEST_DOCTOR_INFO");
         request.setConversationId("doctor-info-request");
-        send(request);
+        dispatcher.send(request);
 
         gui.displayMessage("Demande d'informations détaillées envoyée au médecin " + doctorAID.getLocalName());
     }
@@ -166,16 +366,56 @@ public class ReceptionistAgent extends Agent {
         msg.addReceiver(patientAID);
         msg.setContent("Bienvenue au Cabinet Médical. Je suis la réceptionniste et je vais vous accompagner tout au long de votre parcours dans notre établissement. Pour commencer, merci de remplir le formulaire suivant avec vos informations personnelles.");
         msg.setConversationId("welcome");
-        send(msg);
+        dispatcher.send(msg);
 
         gui.displayMessage("Message de bienvenue envoyé à " + patientAID.getLocalName());
     }
 
     // Envoie un formulaire d'informations personnelles au patient
     private void sendPersonalInfoForm(AID patientAID) {
+        sendPersonalInfoForm(patientAID, null);
+    }
+
+    // Envoie le formulaire, pré-rempli avec le dossier d'un patient déjà connu s'il est fourni
+    private void sendPersonalInfoForm(AID patientAID, PatientRecord knownRecord) {
         ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
         msg.addReceiver(patientAID);
 
+        if (knownRecord == null) {
+            // Formulaire identique pour tous les nouveaux patients : texte construit une seule fois
+            msg.setContent(FormRegistry.getInstance().getSerialized(PERSONAL_INFO_FORM_ID,
+                ReceptionistAgent::buildPersonalInfoForm));
+        } else {
+            // Patient déjà connu : copie du formulaire avec les valeurs enregistrées et les dernières consultations
+            JsonObject form = FormRegistry.getInstance().copyOf(PERSONAL_INFO_FORM_ID,
+                ReceptionistAgent::buildPersonalInfoForm);
+            HashMap<String, String> knownInfo = knownRecord.getPersonalInfo();
+            for (JsonElement fieldElement : form.getAsJsonArray("fields")) {
+                JsonObject field = fieldElement.getAsJsonObject();
+                String value = knownInfo.get(field.get("name").getAsString());
+                if (value != null) {
+                    field.addProperty("value", value);
+                }
+            }
+            form.addProperty("prefilled", true);
+
+            JsonArray recentVisits = new JsonArray();
+            for (String visit : describeRecentVisits(knownRecord)) {
+                recentVisits.add(visit);
+            }
+            form.add("recentVisits", recentVisits);
+            msg.setContent(form.toString());
+        }
+
+        // Envoyer le formulaire
+        msg.setConversationId("personal-form");
+        dispatcher.send(msg);
+
+        gui.displayMessage("Formulaire d'informations personnelles envoyé à " + patientAID.getLocalName());
+    }
+
+    // Construit le formulaire d'informations personnelles (mis en cache par le FormRegistry)
+    private static JsonObject buildPersonalInfoForm() {
         // Création du formulaire (structure JSON)
         JsonObject form = new JsonObject();
         form.addProperty("formId", "personalInfo");
@@ -272,27 +512,149 @@ public class ReceptionistAgent extends Agent {
         fields.add(medicalHistoryField);
 
         form.add("fields", fields);
-
-        // Envoyer le formulaire
-        msg.setContent(form.toString());
-        msg.setConversationId("personal-form");
-        send(msg);
-
-        gui.displayMessage("Formulaire d'informations personnelles envoyé à " + patientAID.getLocalName());
+        return form;
     }
 
     // Vérifie si un formulaire est complet
     private boolean verifyFormCompletion(HashMap<String, String> formData) {
+        String missingField = findMissingFormField(formData);
+        if (missingField != null) {
+            gui.displayMessage("Formulaire incomplet: champ '" + missingField + "' manquant");
+            return false;
+        }
+
+        return true;
+    }
+
+    // Premier champ obligatoire manquant, ou null si le formulaire est complet
+    private String findMissingFormField(Map<String, String> formData) {
         String[] requiredFields = {"firstName", "lastName", "birthDate", "gender", "address", "city", "phone", "emergencyContact"};
 
         for (String field : requiredFields) {
             if (!formData.containsKey(field) || formData.get(field).isEmpty()) {
-                gui.displayMessage("Formulaire incomplet: champ '" + field + "' manquant");
-                return false;
+                return field;
             }
         }
 
-        return true;
+        return null;
+    }
+
+    /**
+     * Retrouve le dossier complet d'un patient déjà venu : par son identifiant, sinon par son
+     * téléphone s'il l'a transmis à la connexion. Dans ce second cas, les informations et
+     * l'historique sont recopiés dans un dossier à son identifiant actuel.
+     * Retourne null si le patient est inconnu ou si son dossier est incomplet.
+     */
+    private PatientRecord findReturningRecord(String patientId, String phone) {
+        PatientRecord record = patientRecords.get(patientId);
+
+        if (record == null && phone != null && !phone.isEmpty()) {
+            PatientRecord previous = findLatestRecordByPhone(phone);
+            if (previous != null) {
+                record = new PatientRecord(patientId);
+                record.updatePersonalInfo(new HashMap<>(previous.getPersonalInfo()));
+                for (Consultation consultation : previous.getConsultationHistory()) {
+                    record.addConsultation(consultation);
+                }
+                journal.append(PatientJournal.EntryType.RECORD, patientId, record);
+                patientRecords.put(record);
+                gui.updatePatientsList(patientRecords.getPatientIds());
+                gui.displayMessage("Patient " + patientId + " reconnu par son téléphone (dossier " +
+                    previous.getPatientId() + ")");
+            }
+        }
+
+        if (record == null || findMissingFormField(record.getPersonalInfo()) != null) {
+            return null;
+        }
+        return record;
+    }
+
+    /**
+     * Dossier le plus récent parmi ceux qui portent ce téléphone. Chaque visite reconnue par le
+     * téléphone crée un dossier au nouvel identifiant : un même patient en a donc plusieurs, dont
+     * on retient celui à la consultation la plus récente (ou le plus d'historique à égalité).
+     * Retourne null si le téléphone est partagé par des personnes différentes (nom complet distinct).
+     */
+    private PatientRecord findLatestRecordByPhone(String phone) {
+        PatientRecord latest = null;
+        String fullName = null;
+        for (String candidateId : patientRecords.findByPhone(phone)) {
+            PatientRecord candidate = patientRecords.get(candidateId);
+            if (candidate == null) {
+                continue;
+            }
+            String candidateName = candidate.getFullName().trim().toLowerCase(Locale.ROOT);
+            if (fullName == null) {
+                fullName = candidateName;
+            } else if (!fullName.equals(candidateName)) {
+                return null;
+            }
+            if (latest == null || isMoreRecent(candidate, latest)) {
+                latest = candidate;
+            }
+        }
+        return latest;
+    }
+
+    private static boolean isMoreRecent(PatientRecord a, PatientRecord b) {
+        long lastA = lastConsultationTime(a);
+        long lastB = lastConsultationTime(b);
+        if (lastA != lastB) {
+            return lastA > lastB;
+        }
+        return a.getConsultationHistory().size() > b.getConsultationHistory().size();
+    }
+
+    private static long lastConsultationTime(PatientRecord record) {
+        long last = 0;
+        for (Consultation consultation : record.getConsultationHistory()) {
+            if (consultation.getTimestamp() != null) {
+                last = Math.max(last, consultation.getTimestamp().getTime());
+            }
+        }
+        return last;
+    }
+
+    // Résumé des dernières consultations d'un dossier, de la plus récente à la plus ancienne
+    private List<String> describeRecentVisits(PatientRecord record) {
+        List<String> visits = new ArrayList<>();
+        List<Consultation> history = record.getConsultationHistory();
+        SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy");
+
+        for (int i = history.size() - 1; i >= 0 && visits.size() < RECENT_VISITS_SHOWN; i--) {
+            Consultation consultation = history.get(i);
+            String date = consultation.getTimestamp() != null ? dateFormat.format(consultation.getTimestamp()) : "?";
+            visits.add(date + " - Dr. " + consultation.getDoctorId() +
+                (consultation.getDiagnosis() != null ? " : " + consultation.getDiagnosis() : ""));
+        }
+        return visits;
+    }
+
+    // Accueil d'un patient déjà connu : formulaire pré-rempli, ou aucun formulaire si configuré
+    private void welcomeReturningPatient(AID patientAID, PatientRecord record) {
+        String patientId = patientAID.getLocalName();
+        int visits = record.getConsultationHistory().size();
+        gui.displayMessage("Patient déjà connu: " + patientId + " (" + record.getFullName().trim() + ", " +
+            visits + " consultation(s) précédente(s))");
+        for (String visit : describeRecentVisits(record)) {
+            gui.displayMessage("  - " + visit);
+        }
+        gui.updatePatientRecord(record);
+
+        if (Boolean.getBoolean(SKIP_KNOWN_FORM_PROPERTY)) {
+            ACLMessage feedbackMsg = new ACLMessage(ACLMessage.INFORM);
+            feedbackMsg.addReceiver(patientAID);
+            feedbackMsg.setContent("Bon retour parmi nous. Vos informations personnelles sont déjà enregistrées. " +
+                "Veuillez vous rendre dans la salle d'attente où un infirmier vous recevra.");
+            feedbackMsg.setConversationId("receptionist-feedback");
+            dispatcher.send(feedbackMsg);
+
+            gui.displayMessage("Patient " + patientId + " : formulaire déjà complet, envoi en salle d'attente");
+            sendToWaitingRoom(patientAID);
+        } else {
+            sendPersonalInfoForm(patientAID, record);
+        }
     }
 
     // Détermine les scores de compatibilité entre les symptômes du patient et les médecins
@@ -314,41 +676,11 @@ public class ReceptionistAgent extends Agent {
             String doctorId = entry.getKey();
             DoctorInfo doctorInfo = entry.getValue();
 
-            // Score initial basé sur la disponibilité
-            int score = doctorAvailability.getOrDefault(doctorId, false) ? 50 : 0;
-
-            // Si le médecin n'est pas disponible, il aura un score bas mais pas nul
-            // pour pouvoir quand même être considéré en cas d'urgence ou si aucun médecin
-            // n'est disponible
-
-            // Analyser chaque maladie potentielle
-            for (Disease disease : potentialDiseases) {
-                int diseaseMatchScore = Integer.parseInt(disease.getAdditionalInfo().getOrDefault("matchScore", "0"));
-
-                // Ajuster le score en fonction de la spécialité du médecin et de la catégorie de la maladie
-                if (doctorInfo.getSpecialty().toLowerCase().contains(disease.getCategory().toLowerCase()) ||
-                    disease.getCategory().toLowerCase().contains(doctorInfo.getSpecialty().toLowerCase())) {
-                    // Bonus majeur si la spécialité correspond directement à la catégorie de la maladie
-                    score += diseaseMatchScore * 1.5;
-                }
-
-                // Bonus pour les expertises spécifiques
-                for (String expertise : doctorInfo.getExpertises()) {
-                    if (disease.getName().toLowerCase().contains(expertise.toLowerCase()) ||
-                        expertise.toLowerCase().contains(disease.getName().toLowerCase())) {
-                        score += diseaseMatchScore * 1.3;
-                        break;
-                    }
-                }
-
-                // Bonus léger pour les médecins généralistes (ils peuvent traiter la plupart des maladies)
-                if ("generaliste".equals(doctorInfo.getSpecialty().toLowerCase())) {
-                    score += diseaseMatchScore * 0.8;
-                }
-
-                // Bonus pour l'expérience du médecin
-                score += Math.min(doctorInfo.getExperience() * 2, 20); // Maximum de 20 points pour l'expérience
-            }
+            // Score basé sur les places de consultation libres, la spécialité, les expertises et l'expérience
+            int capacity = doctorInfo.getMaxConsultations();
+            int freeSlots = sharded ? capacity : Math.max(0, capacity - doctorLoads.getOrDefault(doctorId, 0));
+            int score = DoctorCompatibility.score(doctorInfo.getSpecialty(), doctorInfo.getExpertises(),
+                doctorInfo.getExperience(), capacity, freeSlots, potentialDiseases);
 
             // Enregistrer le score final
             compatibilityScores.put(doctorId, score);
@@ -381,19 +713,23 @@ public class ReceptionistAgent extends Agent {
             String doctorId = entry.getKey();
             int score = entry.getValue();
 
-            // Vérifier si le médecin est disponible
-            if (doctorAvailability.getOrDefault(doctorId, false)) {
+            // Vérifier si le médecin a encore une place de consultation libre
+            if (isDoctorAvailable(doctorId)) {
                 // Trouver l'AID du médecin
                 for (AID doctorAID : doctorAIDs) {
                     if (doctorAID.getLocalName().equals(doctorId)) {
-                        // Marquer le médecin comme occupé
-                        doctorAvailability.put(doctorId, false);
+                        // Occuper une place de consultation
+                        int load = doctorLoads.getOrDefault(doctorId, 0) + 1;
+                        doctorLoads.put(doctorId, load);
+                        waitTimePredictor.consultationStarted(doctorId, patientId, System.currentTimeMillis());
 
                         DoctorInfo doctorInfo = doctorInfos.get(doctorId);
                         String specialty = doctorInfo != null ? doctorInfo.getSpecialty() : "Inconnu";
+                        int capacity = doctorInfo != null ? doctorInfo.getMaxConsultations() : 1;
 
                         gui.displayMessage("Médecin sélectionné: " + doctorId +
-                            " (" + specialty + ") avec un score de compatibilité de " + score + " points");
+                            " (" + specialty + ") avec un score de compatibilité de " + score + " points" +
+                            " - consultations: " + load + "/" + capacity);
 
                         return doctorAID;
                     }
@@ -409,6 +745,111 @@ public class ReceptionistAgent extends Agent {
         return null;
     }
 
+    /**
+     * Mode accueil réparti : demande une place aux médecins les plus compatibles, l'un après
+     * l'autre. Chaque médecin arbitre lui-même entre les réceptionnistes (AGREE ou REFUSE).
+     */
+    private void requestDoctorLease(String patientId, HashMap<String, String> symptomsInfo,
+                                    boolean fromWaitingList) {
+        Map<String, Integer> doctorScores = calculateDoctorCompatibilityScores(symptomsInfo);
+        List<Map.Entry<String, Integer>> sortedDoctors = new ArrayList<>(doctorScores.entrySet());
+        sortedDoctors.sort(Map.Entry.comparingByValue(Comparator.reverseOrder()));
+
+        LinkedList<String> candidates = new LinkedList<>();
+        for (Map.Entry<String, Integer> entry : sortedDoctors) {
+            candidates.add(entry.getKey());
+        }
+
+        PendingLease lease = new PendingLease(patientId, symptomsInfo, candidates, fromWaitingList);
+        pendingLeases.put(patientId, lease);
+        tryNextDoctorLease(lease);
+    }
+
+    // Envoie la demande de place au médecin candidat suivant, ou met le patient en attente
+    private void tryNextDoctorLease(PendingLease lease) {
+        if (lease.candidates.isEmpty()) {
+            pendingLeases.remove(lease.patientId);
+            if (lease.fromWaitingList) {
+                waitingListLeasePending = false;
+                gui.displayMessage("Impossible d'affecter le patient en attente " + lease.patientId +
+                    " - toujours aucun médecin disponible");
+                updateWaitingTimesDisplay();
+            } else {
+                gui.displayMessage("Aucun médecin n'a de place pour le patient " + lease.patientId);
+                addPatientToWaitingList(lease.patientId, lease.symptomsInfo);
+            }
+            return;
+        }
+
+        String doctorId = lease.candidates.poll();
+        JsonObject request = new JsonObject();
+        request.addProperty("patientId", lease.patientId);
+        request.addProperty("ttlMillis", DOCTOR_LEASE_TTL_MS);
+
+        ACLMessage msg = new ACLMessage(ACLMessage.REQUEST);
+        msg.addReceiver(new AID(doctorId, AID.ISLOCALNAME));
+        msg.setContent(request.toString());
+        msg.setConversationId("doctor-lease");
+        msg.setReplyWith(lease.patientId);
+        dispatcher.send(msg);
+
+        // Sans réponse avant l'expiration du bail, passer au médecin suivant
+        lease.currentDoctor = doctorId;
+        final int attempt = ++lease.attempt;
+        addBehaviour(new WakerBehaviour(this, DOCTOR_LEASE_TTL_MS) {
+            @Override
+            protected void onWake() {
+                if (pendingLeases.get(lease.patientId) == lease && lease.attempt == attempt) {
+                    gui.displayMessage("Pas de réponse du médecin " + doctorId + " pour le patient " +
+                        lease.patientId + ", médecin suivant");
+                    tryNextDoctorLease(lease);
+                }
+            }
+        });
+    }
+
+    // Réponse d'un médecin à une demande de place
+    private void handleDoctorLease(ACLMessage msg) {
+        PendingLease lease = pendingLeases.get(msg.getInReplyTo());
+        if (lease == null || !msg.getSender().getLocalName().equals(lease.currentDoctor)) {
+            // Réponse arrivée après le délai : le bail accordé expirera de lui-même chez le médecin
+            return;
+        }
+
+        if (msg.getPerformative() != ACLMessage.AGREE) {
+            tryNextDoctorLease(lease);
+            return;
+        }
+
+        pendingLeases.remove(lease.patientId);
+        AID doctorAID = msg.getSender();
+        String doctorId = doctorAID.getLocalName();
+        gui.displayMessage("Place réservée auprès du médecin " + doctorId + " pour le patient " + lease.patientId);
+        waitTimePredictor.consultationStarted(doctorId, lease.patientId, System.currentTimeMillis());
+
+        // Envoyer les informations du patient au médecin et informer le patient
+        sendPatientInfoToDoctor(doctorAID, lease.patientId);
+        int roomNumber = doctorInfos.containsKey(doctorId) ?
+            doctorInfos.get(doctorId).getRoomNumber() : getDoctorRoomNumber(doctorId);
+        informPatientOfDoctorAssignment(new AID(lease.patientId, AID.ISLOCALNAME), doctorAID, roomNumber);
+
+        if (lease.fromWaitingList) {
+            waitingListLeasePending = false;
+            removeWaitingPatient(lease.patientId);
+            showWaitingPatients();
+
+            // Continuer à traiter la liste d'attente
+            manageWaitingList();
+        }
+    }
+
+    // Vérifie si un médecin peut accepter une consultation supplémentaire
+    private boolean isDoctorAvailable(String doctorId) {
+        DoctorInfo doctorInfo = doctorInfos.get(doctorId);
+        int capacity = doctorInfo != null ? doctorInfo.getMaxConsultations() : 1;
+        return doctorLoads.getOrDefault(doctorId, 0) < capacity;
+    }
+
     // Informe le patient de l'affectation à un médecin
     private void informPatientOfDoctorAssignment(AID patientAID, AID doctorAID, int roomNumber) {
         // Récupérer les informations du médecin
@@ -441,14 +882,14 @@ public class ReceptionistAgent extends Agent {
 
         assignmentMsg.setContent(assignment.toString());
         assignmentMsg.setConversationId("doctor-assignment");
-        send(assignmentMsg);
+        dispatcher.send(assignmentMsg);
 
         // Puis demander au patient de se déplacer vers la salle de consultation
         ACLMessage moveMsg = new ACLMessage(ACLMessage.REQUEST);
         moveMsg.addReceiver(patientAID);
         moveMsg.setContent("MOVE_TO_DOCTOR_" + roomNumber);
         moveMsg.setConversationId("move-request");
-        send(moveMsg);
+        dispatcher.send(moveMsg);
 
         gui.displayMessage("Patient " + patientAID.getLocalName() + " affecté au Dr. " +
             doctorName + " (" + specialty + ") dans la salle " + roomNumber);
@@ -466,7 +907,7 @@ public class ReceptionistAgent extends Agent {
             // Convertir le dossier en JSON et l'envoyer
             String jsonData = gson.toJson(record);
             msg.setContent(jsonData);
-            send(msg);
+            dispatcher.send(msg);
 
             gui.displayMessage("Dossier du patient " + patientId + " envoyé au médecin " +
                 doctorAID.getLocalName());
@@ -481,22 +922,35 @@ public class ReceptionistAgent extends Agent {
         PatientRecord record = patientRecords.get(patientId);
         if (record == null) {
             record = new PatientRecord(patientId);
-            patientRecords.put(patientId, record);
             gui.displayMessage("Nouveau dossier créé pour le patient " + patientId);
         }
 
         // Déterminer le type d'information et mettre à jour le dossier
         if (info.containsKey("firstName") && info.containsKey("lastName")) {
             record.updatePersonalInfo(info);
+            journal.append(PatientJournal.EntryType.PERSONAL_INFO, patientId, info);
             gui.displayMessage("Informations personnelles mises à jour pour le patient " + patientId);
-            gui.updatePatientsList(patientRecords);
+
+            // Recherche par index d'un dossier existant pour la même personne
+            String returningId = patientRecords.findReturningPatient(patientId, record.getPersonalInfo());
+            if (returningId != null) {
+                gui.displayMessage("Patient " + patientId + " déjà connu sous l'identifiant " + returningId);
+            }
         }
         else if (info.containsKey("patientId") || info.containsKey("symptomDuration") ||
             info.containsKey("fever") || info.containsKey("mainSymptoms")) {
             record.updateSymptomsInfo(info);
+            journal.append(PatientJournal.EntryType.SYMPTOMS_INFO, patientId, info);
             gui.displayMessage("Informations sur les symptômes mises à jour pour le patient " + patientId);
         }
 
+        // Enregistrer la modification (le dossier peut ensuite être évincé vers le disque)
+        boolean isNewPatient = !patientRecords.contains(patientId);
+        patientRecords.put(record);
+        if (isNewPatient) {
+            gui.updatePatientsList(patientRecords.getPatientIds());
+        }
+
         // Mettre à jour l'interface
         gui.updatePatientRecord(record);
     }
@@ -507,7 +961,7 @@ public class ReceptionistAgent extends Agent {
         WaitingPatientInfo waitingPatientInfo = new WaitingPatientInfo(patientId, symptomsInfo);
 
         // Ajouter à la fin de la liste d'attente
-        waitingPatients.addLast(waitingPatientInfo);
+        enqueueWaitingPatient(waitingPatientInfo, false);
 
         // Informer le patient de sa mise en attente
         AID patientAID = new AID(patientId, AID.ISLOCALNAME);
@@ -515,7 +969,7 @@ public class ReceptionistAgent extends Agent {
         waitingMsg.addReceiver(patientAID);
         waitingMsg.setContent("Vous avez été placé en liste d'attente. Tous nos médecins sont actuellement occupés. Veuillez patienter dans la salle d'attente jusqu'à ce qu'un médecin soit disponible. Notre équipe fera de son mieux pour vous prendre en charge dans les meilleurs délais.");
         waitingMsg.setConversationId("waiting-info");
-        send(waitingMsg);
+        dispatcher.send(waitingMsg);
 
         // Position dans la file d'attente
         int position = waitingPatients.size();
@@ -523,17 +977,30 @@ public class ReceptionistAgent extends Agent {
         // Informer le patient de sa position
         ACLMessage positionMsg = new ACLMessage(ACLMessage.INFORM);
         positionMsg.addReceiver(patientAID);
-        positionMsg.setContent("Votre position dans la file d'attente: " + position);
+        positionMsg.setContent("Votre position dans la file d'attente: " + position +
+            formatEstimatedWait(waitTimePredictor.estimateWaitMillis(position - 1)));
         positionMsg.setConversationId("waiting-position");
-        send(positionMsg);
+        dispatcher.send(positionMsg);
 
         gui.displayMessage("Patient " + patientId + " ajouté à la liste d'attente en position " + position);
-        gui.updateWaitingPatients(waitingPatients);
+        showWaitingPatients();
     }
 
     // Gère la liste d'attente lorsqu'un médecin devient disponible
     private void manageWaitingList() {
         gui.displayMessage("Vérification des patients en attente...");
+        dropDepartedRestoredPatients();
+
+        // En mode réparti, le premier patient en attente passe par une réservation ; la suite
+        // de la liste est traitée à la réponse du médecin
+        if (sharded) {
+            if (!waitingPatients.isEmpty() && !waitingListLeasePending) {
+                WaitingPatientInfo first = waitingPatients.getFirst();
+                waitingListLeasePending = true;
+                requestDoctorLease(first.getPatientId(), first.getSymptomsInfo(), true);
+            }
+            return;
+        }
 
         // Vérifier s'il y a des patients en attente
         if (!waitingPatients.isEmpty()) {
@@ -560,8 +1027,8 @@ public class ReceptionistAgent extends Agent {
                 informPatientOfDoctorAssignment(patientAID, doctorAID, roomNumber);
 
                 // Retirer le patient de la liste d'attente
-                waitingPatients.removeFirst();
-                gui.updateWaitingPatients(waitingPatients);
+                removeWaitingPatient(patientId);
+                showWaitingPatients();
 
                 gui.displayMessage("Patient en attente " + patientId +
                     " maintenant affecté au médecin " + doctorAID.getLocalName());
@@ -583,20 +1050,38 @@ public class ReceptionistAgent extends Agent {
     // Met à jour l'affichage des temps d'attente
     private void updateWaitingTimesDisplay() {
         // Mettre à jour l'interface avec les temps d'attente actualisés
-        gui.updateWaitingPatients(waitingPatients);
+        showWaitingPatients();
 
         // Informer les patients de leur position mise à jour
-        for (int i = 0; i < waitingPatients.size(); i++) {
-            WaitingPatientInfo waitingInfo = waitingPatients.get(i);
+        int position = 0;
+        for (WaitingPatientInfo waitingInfo : waitingPatients) {
             AID patientAID = new AID(waitingInfo.getPatientId(), AID.ISLOCALNAME);
 
             ACLMessage positionMsg = new ACLMessage(ACLMessage.INFORM);
             positionMsg.addReceiver(patientAID);
-            positionMsg.setContent("Mise à jour: Votre position dans la file d'attente: " + (i + 1) +
-                ". Temps d'attente estimé: " + waitingInfo.getWaitingTimeInMinutes() + " minutes.");
+            positionMsg.setContent("Mise à jour: Votre position dans la file d'attente: " + (++position) +
+                formatEstimatedWait(waitingInfo.getEstimatedWaitMillis()));
             positionMsg.setConversationId("waiting-position");
-            send(positionMsg);
+            dispatcher.send(positionMsg);
+        }
+    }
+
+    // Recalcule l'attente estimée de chaque patient en attente, puis met à jour l'interface
+    private void showWaitingPatients() {
+        long now = System.currentTimeMillis();
+        int position = 0;
+        for (WaitingPatientInfo info : waitingPatients) {
+            info.setEstimatedWait(waitTimePredictor.estimateWaitMillis(position++), now);
+        }
+        gui.updateWaitingPatients(waitingPatients);
+    }
+
+    // Texte de l'attente estimée pour les messages aux patients ; vide si aucune estimation
+    private static String formatEstimatedWait(long estimatedMillis) {
+        if (estimatedMillis < 0) {
+            return "";
         }
+        return ". Temps d'attente estimé: " + (estimatedMillis + 59999) / 60000 + " minutes.";
     }
 
     // Retourne la spécialité d'un médecin
@@ -708,316 +1193,548 @@ public class ReceptionistAgent extends Agent {
         }
     }
 
-    // Comportement pour gérer les connexions patients
-    private class PatientConnectionBehaviour extends CyclicBehaviour {
-        @Override
-        public void action() {
-            // Configurer un filtre pour les messages de type REQUEST
-            MessageTemplate mt = MessageTemplate.and(
-                MessageTemplate.MatchPerformative(ACLMessage.REQUEST),
-                MessageTemplate.MatchContent("PATIENT_CONNECTED"));
+    // Gère la connexion d'un nouveau patient
+    private void handlePatientConnection(ACLMessage msg) {
+        if (msg.getPerformative() != ACLMessage.REQUEST || !"PATIENT_CONNECTED".equals(msg.getContent())) {
+            return;
+        }
 
-            ACLMessage msg = receive(mt);
+        AID patientAID = msg.getSender();
+        gui.displayMessage("Nouveau patient connecté: " + patientAID.getLocalName());
 
-            if (msg != null) {
-                AID patientAID = msg.getSender();
-                gui.displayMessage("Nouveau patient connecté: " + patientAID.getLocalName());
+        // Envoyer un message de bienvenue
+        sendWelcomeMessage(patientAID);
 
-                // Envoyer un message de bienvenue
-                sendWelcomeMessage(patientAID);
+        // Patient déjà venu : reprendre son dossier plutôt que de lui refaire remplir le formulaire
+        PatientRecord knownRecord = findReturningRecord(patientAID.getLocalName(),
+            msg.getUserDefinedParameter(PatientAgent.PHONE_PARAM));
+        if (knownRecord != null) {
+            welcomeReturningPatient(patientAID, knownRecord);
+            return;
+        }
 
-                // Envoyer le formulaire d'information personnelle
-                sendPersonalInfoForm(patientAID);
-            } else {
-                block();
+        // Envoyer le formulaire d'information personnelle
+        sendPersonalInfoForm(patientAID);
+    }
+
+    // Traite les informations personnelles envoyées par un patient
+    private void handlePersonalInfo(ACLMessage msg) {
+        AID senderAID = msg.getSender();
+        HashMap<String, String> personalInfo = gson.fromJson(
+            msg.getContent(),
+            new TypeToken<HashMap<String, String>>(){}.getType());
+
+        // Formulaire pré-rempli : seuls les champs modifiés sont transmis
+        boolean changed = true;
+        if ("true".equals(msg.getUserDefinedParameter(PatientAgent.PERSONAL_INFO_DELTA_PARAM))) {
+            PatientRecord knownRecord = patientRecords.get(senderAID.getLocalName());
+            HashMap<String, String> merged = knownRecord != null ?
+                new HashMap<>(knownRecord.getPersonalInfo()) : new HashMap<>();
+            merged.putAll(personalInfo);
+            changed = !personalInfo.isEmpty();
+            gui.displayMessage("Patient " + senderAID.getLocalName() + " : " + personalInfo.size() +
+                " champ(s) modifié(s) dans le formulaire pré-rempli");
+            personalInfo = merged;
+        }
+
+        // Vérifier si le formulaire est complet
+        if (verifyFormCompletion(personalInfo)) {
+            if (changed) {
+                updatePatientRecord(senderAID.getLocalName(), personalInfo);
             }
+
+            // Demander au patient de se déplacer vers la salle d'attente
+            gui.displayMessage("Patient " + senderAID.getLocalName() + " : formulaire complet");
+            sendToWaitingRoom(senderAID);
+
+            // Confirmer la réception des informations
+            ACLMessage confirmMsg = new ACLMessage(ACLMessage.INFORM);
+            confirmMsg.addReceiver(senderAID);
+            confirmMsg.setContent("Vos informations personnelles ont été enregistrées avec succès. " +
+                "Veuillez maintenant vous rendre dans la salle d'attente où un infirmier vous recevra " +
+                "pour recueillir vos symptômes.");
+            confirmMsg.setConversationId("receptionist-feedback");
+            dispatcher.send(confirmMsg);
+        } else {
+            // Demander au patient de compléter le formulaire
+            ACLMessage incompleteMsg = new ACLMessage(ACLMessage.INFORM);
+            incompleteMsg.addReceiver(senderAID);
+            incompleteMsg.setContent("Certaines informations requises sont manquantes. " +
+                "Veuillez compléter tous les champs obligatoires du formulaire.");
+            incompleteMsg.setConversationId("receptionist-feedback");
+            dispatcher.send(incompleteMsg);
+
+            gui.displayMessage("Patient " + senderAID.getLocalName() +
+                " : formulaire incomplet, demande de compléter envoyée");
         }
     }
 
-    // Comportement pour recevoir les informations
-    private class ReceiveInfoBehaviour extends CyclicBehaviour {
-        @Override
-        public void action() {
-            // Configurer un filtre pour les messages de type INFORM
-            MessageTemplate mt = MessageTemplate.MatchPerformative(ACLMessage.INFORM);
-            ACLMessage msg = receive(mt);
-
-            if (msg != null) {
-                String conversationId = msg.getConversationId();
-                AID senderAID = msg.getSender();
-
-                try {
-                    if ("personal-info".equals(conversationId)) {
-                        // Traiter les informations personnelles
-                        HashMap<String, String> personalInfo = gson.fromJson(
-                            msg.getContent(),
-                            new TypeToken<HashMap<String, String>>(){}.getType());
-
-                        // Vérifier si le formulaire est complet
-                        if (verifyFormCompletion(personalInfo)) {
-                            updatePatientRecord(senderAID.getLocalName(), personalInfo);
-
-                            // Demander au patient de se déplacer vers la salle d'attente
-                            ACLMessage moveMsg = new ACLMessage(ACLMessage.REQUEST);
-                            moveMsg.addReceiver(senderAID);
-                            moveMsg.setContent("MOVE_TO_WAITING_ROOM");
-                            moveMsg.setConversationId("move-request");
-                            send(moveMsg);
-
-                            gui.displayMessage("Patient " + senderAID.getLocalName() +
-                                " : formulaire complet, dirigé vers la salle d'attente");
-
-                            // Confirmer la réception des informations
-                            ACLMessage confirmMsg = new ACLMessage(ACLMessage.INFORM);
-                            confirmMsg.addReceiver(senderAID);
-                            confirmMsg.setContent("Vos informations personnelles ont été enregistrées avec succès. " +
-                                "Veuillez maintenant vous rendre dans la salle d'attente où un infirmier vous recevra " +
-                                "pour recueillir vos symptômes.");
-                            confirmMsg.setConversationId("receptionist-feedback");
-                            send(confirmMsg);
-                        } else {
-                            // Demander au patient de compléter le formulaire
-                            ACLMessage incompleteMsg = new ACLMessage(ACLMessage.INFORM);
-                            incompleteMsg.addReceiver(senderAID);
-                            incompleteMsg.setContent("Certaines informations requises sont manquantes. " +
-                                "Veuillez compléter tous les champs obligatoires du formulaire.");
-                            incompleteMsg.setConversationId("receptionist-feedback");
-                            send(incompleteMsg);
-
-                            gui.displayMessage("Patient " + senderAID.getLocalName() +
-                                " : formulaire incomplet, demande de compléter envoyée");
-                        }
-                    }
-                    else if ("symptom-info".equals(conversationId)) {
-                        // Traiter les informations sur les symptômes
-                        HashMap<String, String> symptomsInfo = gson.fromJson(
-                            msg.getContent(),
-                            new TypeToken<HashMap<String, String>>(){}.getType());
-
-                        String patientId = symptomsInfo.get("patientId");
-                        updatePatientRecord(patientId, symptomsInfo);
-
-                        // Confirmer la réception des informations à l'infirmier
-                        ACLMessage confirmMsg = new ACLMessage(ACLMessage.INFORM);
-                        confirmMsg.addReceiver(senderAID);
-                        confirmMsg.setContent("Informations sur les symptômes du patient " + patientId + " reçues. " +
-                            "Affectation à un médecin en cours.");
-                        confirmMsg.setConversationId("symptom-info-confirm");
-                        send(confirmMsg);
-
-                        // Attribuer un médecin au patient
-                        AID patientAID = new AID(patientId, AID.ISLOCALNAME);
-                        AID doctorAID = assignPatientToDoctor(patientId, symptomsInfo);
-
-                        if (doctorAID != null) {
-                            // Envoyer les informations du patient au médecin
-                            sendPatientInfoToDoctor(doctorAID, patientId);
-
-                            // Informer le patient de l'affectation
-                            int roomNumber = doctorInfos.containsKey(doctorAID.getLocalName()) ?
-                                doctorInfos.get(doctorAID.getLocalName()).getRoomNumber() :
-                                getDoctorRoomNumber(doctorAID.getLocalName());
-
-                            informPatientOfDoctorAssignment(patientAID, doctorAID, roomNumber);
-                        } else {
-                            // Aucun médecin disponible, mettre le patient en attente
-                            addPatientToWaitingList(patientId, symptomsInfo);
-                        }
-                    }
-                    else if ("urgent-notification".equals(conversationId)) {
-                        // Traiter la notification d'urgence
-                        String content = msg.getContent();
-                        if (content.startsWith("URGENT_CASE:")) {
-                            String patientId = content.substring("URGENT_CASE:".length());
-                            gui.displayMessage("⚠️ NOTIFICATION D'URGENCE pour le patient " + patientId);
-
-                            // Priorité aux cas urgents - Réaffecter immédiatement un médecin
-                            if (patientRecords.containsKey(patientId)) {
-                                HashMap<String, String> symptomsInfo = patientRecords.get(patientId).getSymptomsInfo();
-
-                                // Forcer l'attribution d'un médecin même s'il est occupé
-                                // On pourrait implémenter une logique plus sophistiquée ici
-
-                                // Pour l'instant, simplement mettre le patient en premier dans la file d'attente
-                                // et essayer de l'affecter en priorité lors de la prochaine disponibilité
-
-                                // Vérifier s'il est déjà dans la liste d'attente
-                                boolean alreadyWaiting = false;
-                                for (WaitingPatientInfo info : waitingPatients) {
-                                    if (info.getPatientId().equals(patientId)) {
-                                        waitingPatients.remove(info);
-                                        alreadyWaiting = true;
-                                        break;
-                                    }
-                                }
-
-                                // Créer une nouvelle info d'attente avec priorité
-                                WaitingPatientInfo urgentInfo = new WaitingPatientInfo(patientId, symptomsInfo);
-                                urgentInfo.setUrgent(true); // Marquer comme urgent
-
-                                // Ajouter en tête de liste
-                                waitingPatients.addFirst(urgentInfo);
-                                gui.updateWaitingPatients(waitingPatients);
-
-                                gui.displayMessage("Patient " + patientId + " marqué comme URGENT et " +
-                                    (alreadyWaiting ? "déplacé" : "ajouté") + " en tête de la file d'attente");
-
-                                // Informer le patient
-                                AID patientAID = new AID(patientId, AID.ISLOCALNAME);
-                                ACLMessage urgentMsg = new ACLMessage(ACLMessage.INFORM);
-                                urgentMsg.addReceiver(patientAID);
-                                urgentMsg.setContent("Votre cas a été identifié comme urgent. Vous êtes maintenant " +
-                                    "en tête de la file d'attente. Un médecin va vous prendre en charge " +
-                                    "dès que possible.");
-                                urgentMsg.setConversationId("urgent-info");
-                                send(urgentMsg);
-                            }
-                        }
-                    }
-                    else if ("patient-record-update".equals(conversationId)) {
-                        // Traiter la mise à jour du dossier patient
-                        PatientRecord updatedRecord = gson.fromJson(
-                            msg.getContent(), PatientRecord.class);
-
-                        if (updatedRecord != null) {
-                            patientRecords.put(updatedRecord.getPatientId(), updatedRecord);
-                            gui.displayMessage("Dossier patient mis à jour: " + updatedRecord.getPatientId());
-                            gui.updatePatientsList(patientRecords);
-                            gui.updatePatientRecord(updatedRecord);
-                        }
-                    }
-                    else if ("patient-location".equals(conversationId) &&
-                        "PATIENT_EXIT".equals(msg.getContent())) {
-                        // Le patient quitte le système
-                        gui.displayMessage("Patient " + senderAID.getLocalName() + " a quitté le cabinet");
-                    }
-                    else if ("doctor-info".equals(conversationId)) {
-                        // Traiter les informations détaillées du médecin
-                        JsonObject doctorInfoJson = gson.fromJson(msg.getContent(), JsonObject.class);
-                        String doctorId = senderAID.getLocalName();
-
-                        String specialty = doctorInfoJson.has("specialty") ?
-                            doctorInfoJson.get("specialty").getAsString() : getDoctorSpecialty(doctorId);
-
-                        String qualification = doctorInfoJson.has("qualification") ?
-                            doctorInfoJson.get("qualification").getAsString() : getDoctorQualification(doctorId);
-
-                        int experience = doctorInfoJson.has("experience") ?
-                            doctorInfoJson.get("experience").getAsInt() : 5;
-
-                        int roomNumber = doctorInfoJson.has("roomNumber") ?
-                            doctorInfoJson.get("roomNumber").getAsInt() : getDoctorRoomNumber(doctorId);
-
-                        List<String> expertises = new ArrayList<>();
-                        if (doctorInfoJson.has("expertises")) {
-                            JsonArray expertisesArray = doctorInfoJson.getAsJsonArray("expertises");
-                            for (int i = 0; i < expertisesArray.size(); i++) {
-                                expertises.add(expertisesArray.get(i).getAsString());
-                            }
-                        }
-
-                        // Mettre à jour les informations du médecin
-                        DoctorInfo doctorInfo = new DoctorInfo(
-                            doctorId, specialty, qualification, experience, expertises, roomNumber);
-                        doctorInfos.put(doctorId, doctorInfo);
-
-                        gui.displayMessage("Informations détaillées reçues du médecin " + doctorId +
-                            " : " + specialty + ", " + qualification + ", " + experience + " ans d'expérience");
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    gui.displayMessage("Erreur lors du traitement du message: " + e.getMessage());
-                }
-            } else {
-                block();
+    // Traite les informations sur les symptômes transmises par l'infirmier
+    private void handleSymptomInfo(ACLMessage msg) {
+        HashMap<String, String> symptomsInfo = gson.fromJson(
+            msg.getContent(),
+            new TypeToken<HashMap<String, String>>(){}.getType());
+
+        String patientId = symptomsInfo.get("patientId");
+        updatePatientRecord(patientId, symptomsInfo);
+        nursePool.complete(patientId);
+        expiredTriages.remove(patientId);
+
+        // Confirmer la réception des informations à l'infirmier
+        ACLMessage confirmMsg = new ACLMessage(ACLMessage.INFORM);
+        confirmMsg.addReceiver(msg.getSender());
+        confirmMsg.setContent("Informations sur les symptômes du patient " + patientId + " reçues. " +
+            "Affectation à un médecin en cours.");
+        confirmMsg.setConversationId("symptom-info-confirm");
+        dispatcher.send(confirmMsg);
+
+        // En mode réparti, la place est réservée auprès du médecin avant l'affectation
+        if (sharded) {
+            requestDoctorLease(patientId, symptomsInfo, false);
+            return;
+        }
+
+        // Attribuer un médecin au patient
+        AID patientAID = new AID(patientId, AID.ISLOCALNAME);
+        AID doctorAID = assignPatientToDoctor(patientId, symptomsInfo);
+
+        if (doctorAID != null) {
+            // Envoyer les informations du patient au médecin
+            sendPatientInfoToDoctor(doctorAID, patientId);
+
+            // Informer le patient de l'affectation
+            int roomNumber = doctorInfos.containsKey(doctorAID.getLocalName()) ?
+                doctorInfos.get(doctorAID.getLocalName()).getRoomNumber() :
+                getDoctorRoomNumber(doctorAID.getLocalName());
+
+            informPatientOfDoctorAssignment(patientAID, doctorAID, roomNumber);
+        } else {
+            // Aucun médecin disponible, mettre le patient en attente
+            addPatientToWaitingList(patientId, symptomsInfo);
+        }
+    }
+
+    // Traite la notification d'urgence envoyée par l'infirmier
+    private void handleUrgentNotification(ACLMessage msg) {
+        String content = msg.getContent();
+        if (!content.startsWith("URGENT_CASE:")) {
+            return;
+        }
+
+        String patientId = content.substring("URGENT_CASE:".length());
+        gui.displayMessage("⚠️ NOTIFICATION D'URGENCE pour le patient " + patientId);
+
+        // Priorité aux cas urgents - Réaffecter immédiatement un médecin
+        PatientRecord urgentRecord = patientRecords.get(patientId);
+        if (urgentRecord != null) {
+            HashMap<String, String> symptomsInfo = urgentRecord.getSymptomsInfo();
+
+            // Forcer l'attribution d'un médecin même s'il est occupé
+            // On pourrait implémenter une logique plus sophistiquée ici
+
+            // Pour l'instant, simplement mettre le patient en premier dans la file d'attente
+            // et essayer de l'affecter en priorité lors de la prochaine disponibilité
+
+            // Vérifier s'il est déjà dans la liste d'attente
+            boolean alreadyWaiting = removeWaitingPatient(patientId);
+
+            // Créer une nouvelle info d'attente avec priorité
+            WaitingPatientInfo urgentInfo = new WaitingPatientInfo(patientId, symptomsInfo);
+            urgentInfo.setUrgent(true); // Marquer comme urgent
+
+            // Ajouter en tête de liste
+            enqueueWaitingPatient(urgentInfo, true);
+            showWaitingPatients();
+
+            gui.displayMessage("Patient " + patientId + " marqué comme URGENT et " +
+                (alreadyWaiting ? "déplacé" : "ajouté") + " en tête de la file d'attente");
+
+            // Informer le patient
+            AID patientAID = new AID(patientId, AID.ISLOCALNAME);
+            ACLMessage urgentMsg = new ACLMessage(ACLMessage.INFORM);
+            urgentMsg.addReceiver(patientAID);
+            urgentMsg.setContent("Votre cas a été identifié comme urgent. Vous êtes maintenant " +
+                "en tête de la file d'attente. Un médecin va vous prendre en charge " +
+                "dès que possible.");
+            urgentMsg.setConversationId("urgent-info");
+            dispatcher.send(urgentMsg);
+        }
+    }
+
+    // Traite la mise à jour du dossier patient envoyée par un médecin
+    private void handlePatientRecordUpdate(ACLMessage msg) {
+        PatientRecord updatedRecord = gson.fromJson(
+            msg.getContent(), PatientRecord.class);
+
+        if (updatedRecord != null) {
+            journalRecordUpdate(patientRecords.get(updatedRecord.getPatientId()), updatedRecord);
+            patientRecords.put(updatedRecord);
+            gui.displayMessage("Dossier patient mis à jour: " + updatedRecord.getPatientId());
+            gui.updatePatientsList(patientRecords.getPatientIds());
+            gui.updatePatientRecord(updatedRecord);
+        }
+    }
+
+    // Journalise un dossier renvoyé par un médecin : les nouvelles consultations seules si
+    // le reste du dossier est inchangé, le dossier complet sinon
+    private void journalRecordUpdate(PatientRecord previous, PatientRecord updated) {
+        String patientId = updated.getPatientId();
+        List<Consultation> history = updated.getConsultationHistory();
+        int knownConsultations = previous != null ? previous.getConsultationHistory().size() : 0;
+
+        if (previous != null && history != null && history.size() >= knownConsultations &&
+            Objects.equals(previous.getPersonalInfo(), updated.getPersonalInfo()) &&
+            Objects.equals(previous.getSymptomsInfo(), updated.getSymptomsInfo())) {
+            for (int i = knownConsultations; i < history.size(); i++) {
+                // La position rend le rejeu idempotent sur un dossier d'instantané plus récent
+                JsonObject payload = new JsonObject();
+                payload.addProperty("index", i);
+                payload.add("consultation", gson.toJsonTree(history.get(i)));
+                journal.append(PatientJournal.EntryType.CONSULTATION, patientId, payload);
             }
+        } else {
+            journal.append(PatientJournal.EntryType.RECORD, patientId, updated);
         }
     }
 
-    // Comportement pour gérer les statuts des médecins
-    private class DoctorStatusBehaviour extends CyclicBehaviour {
-        @Override
-        public void action() {
-            // Configurer un filtre pour les messages INFORM avec conversationId "doctor-status"
-            MessageTemplate mt = MessageTemplate.and(
-                MessageTemplate.MatchPerformative(ACLMessage.INFORM),
-                MessageTemplate.MatchConversationId("doctor-status"));
+    // Ajoute un patient à la liste d'attente (en tête pour un cas urgent) et journalise l'ajout
+    private void enqueueWaitingPatient(WaitingPatientInfo info, boolean atFront) {
+        if (atFront) {
+            waitingPatients.addFirst(info);
+        } else {
+            waitingPatients.addLast(info);
+        }
+
+        JsonObject payload = new JsonObject();
+        payload.add("info", gson.toJsonTree(info));
+        payload.addProperty("atFront", atFront);
+        journal.append(PatientJournal.EntryType.QUEUE_ADD, info.getPatientId(), payload);
+    }
+
+    /**
+     * Retire de la tête de la liste d'attente les patients repris au redémarrage dont l'agent
+     * n'existe plus sur la plateforme : affectés à un médecin, ils occuperaient une place sans
+     * jamais se présenter. Chaque patient repris n'est vérifié qu'une fois, au moment où il
+     * arrive en tête.
+     */
+    private void dropDepartedRestoredPatients() {
+        while (!waitingPatients.isEmpty()) {
+            String patientId = waitingPatients.getFirst().getPatientId();
+            if (!restoredWaiting.remove(patientId)) {
+                return;
+            }
+            if (isAgentAlive(patientId)) {
+                return;
+            }
+            removeWaitingPatient(patientId);
+            gui.displayMessage("Patient " + patientId + " repris en liste d'attente mais absent de la plateforme, retiré");
+            showWaitingPatients();
+        }
+    }
+
+    // Interroge l'AMS ; en cas d'erreur le patient est supposé présent (le médecin libère la place à l'expiration)
+    private boolean isAgentAlive(String localName) {
+        AMSAgentDescription template = new AMSAgentDescription();
+        template.setName(new AID(localName, AID.ISLOCALNAME));
+        SearchConstraints constraints = new SearchConstraints();
+        constraints.setMaxResults(1L);
+        try {
+            AMSAgentDescription[] found = AMSService.search(this, template, constraints);
+            return found != null && found.length > 0;
+        } catch (FIPAException fe) {
+            System.err.println("Recherche AMS impossible pour " + localName + ": " + fe.getMessage());
+            return true;
+        }
+    }
+
+    // Retire un patient de la liste d'attente ; retourne false s'il n'y figurait pas
+    private boolean removeWaitingPatient(String patientId) {
+        boolean removed = waitingPatients.removeIf(info -> info.getPatientId().equals(patientId));
+        if (removed) {
+            journal.append(PatientJournal.EntryType.QUEUE_REMOVE, patientId, new JsonObject());
+        }
+        return removed;
+    }
 
-            ACLMessage msg = receive(mt);
+    /**
+     * Recharge le dernier instantané lisible puis rejoue les entrées du journal qui le suivent
+     * @return false si le journal ne permet pas de compléter l'instantané
+     */
+    private boolean recoverState() {
+        if (!snapshots.hasSnapshots() && !journal.hasSegments()) {
+            // Dossiers hérités sans journal : seuls les index sont à reconstruire
+            if (patientRecords.size() > 0) {
+                patientRecords.rebuildIndexes();
+                gui.updatePatientsList(patientRecords.getPatientIds());
+            }
+            return true;
+        }
 
-            if (msg != null) {
-                String content = msg.getContent();
-                AID doctorAID = msg.getSender();
+        // L'instantané puis le journal sont rejoués par-dessus les dossiers déjà sur disque : le rejeu
+        // est idempotent, et les dossiers écrits avant l'existence du journal sont conservés
+        long start = System.currentTimeMillis();
+        long snapshotSeq = snapshots.load(this::applySnapshotState, patientRecords::put);
+        long lastSeq;
+        try {
+            lastSeq = journal.recover(snapshotSeq, this::applyJournalEntry);
+        } catch (IOException e) {
+            System.err.println("Réceptionniste " + getLocalName() + ": état irrécupérable (" + e.getMessage() +
+                "), démarrage refusé");
+            gui.displayMessage("ERREUR: état sur disque incomplet (" + e.getMessage() + "), démarrage refusé");
+            return false;
+        }
+        patientRecords.rebuildIndexes();
 
-                if ("CONSULTATION_COMPLETED".equals(content)) {
-                    // Marquer le médecin comme disponible
-                    doctorAvailability.put(doctorAID.getLocalName(), true);
-                    gui.displayMessage("Médecin " + doctorAID.getLocalName() + " est maintenant disponible");
+        gui.displayMessage("État restauré (instantané " + snapshotSeq + ", journal jusqu'à l'entrée " + lastSeq +
+            ") en " + (System.currentTimeMillis() - start) + " ms : " + patientRecords.size() + " dossier(s), " +
+            waitingPatients.size() + " patient(s) en attente");
+        gui.updatePatientsList(patientRecords.getPatientIds());
+        showWaitingPatients();
+        return true;
+    }
 
-                    // Vérifier s'il y a des patients en attente
-                    manageWaitingList();
+    // Applique une entrée du journal à l'état de la réceptionniste
+    private void applyJournalEntry(PatientJournal.Entry entry) {
+        String patientId = entry.getPatientId();
+        switch (entry.getType()) {
+            case PERSONAL_INFO:
+            case SYMPTOMS_INFO: {
+                HashMap<String, String> info = gson.fromJson(entry.getPayload(),
+                    new TypeToken<HashMap<String, String>>(){}.getType());
+                PatientRecord record = getOrCreateRecord(patientId);
+                if (entry.getType() == PatientJournal.EntryType.PERSONAL_INFO) {
+                    record.updatePersonalInfo(info);
+                } else {
+                    record.updateSymptomsInfo(info);
                 }
-            } else {
-                block();
+                patientRecords.put(record);
+                break;
+            }
+            case CONSULTATION: {
+                PatientRecord record = getOrCreateRecord(patientId);
+                JsonObject payload = entry.getPayload().getAsJsonObject();
+                // Consultation déjà présente dans le dossier restauré
+                if (payload.get("index").getAsInt() < record.getConsultationHistory().size()) {
+                    break;
+                }
+                record.addConsultation(gson.fromJson(payload.get("consultation"), Consultation.class));
+                patientRecords.put(record);
+                break;
+            }
+            case RECORD:
+                patientRecords.put(gson.fromJson(entry.getPayload(), PatientRecord.class));
+                break;
+            case QUEUE_ADD: {
+                JsonObject payload = entry.getPayload().getAsJsonObject();
+                WaitingPatientInfo info = gson.fromJson(payload.get("info"), WaitingPatientInfo.class);
+                if (payload.get("atFront").getAsBoolean()) {
+                    waitingPatients.addFirst(info);
+                } else {
+                    waitingPatients.addLast(info);
+                }
+                break;
             }
+            case QUEUE_REMOVE:
+                waitingPatients.removeIf(info -> info.getPatientId().equals(patientId));
+                break;
         }
     }
 
-    // Comportement pour demander des informations aux médecins
-    private class RequestDoctorInfoBehaviour extends CyclicBehaviour {
-        @Override
-        public void action() {
-            // Configurer un filtre pour les messages INFORM avec conversationId "doctor-info"
-            MessageTemplate mt = MessageTemplate.and(
-                MessageTemplate.MatchPerformative(ACLMessage.INFORM),
-                MessageTemplate.MatchConversationId("doctor-info-request-response"));
-
-            ACLMessage msg = receive(mt);
-
-            if (msg != null) {
-                try {
-                    // Traiter les informations du médecin
-                    JsonObject doctorInfoJson = gson.fromJson(msg.getContent(), JsonObject.class);
-                    String doctorId = msg.getSender().getLocalName();
-
-                    String specialty = doctorInfoJson.has("specialty") ?
-                        doctorInfoJson.get("specialty").getAsString() : getDoctorSpecialty(doctorId);
-
-                    String qualification = doctorInfoJson.has("qualification") ?
-                        doctorInfoJson.get("qualification").getAsString() : getDoctorQualification(doctorId);
-
-                    int experience = doctorInfoJson.has("experience") ?
-                        doctorInfoJson.get("experience").getAsInt() : 5;
-
-                    int roomNumber = doctorInfoJson.has("roomNumber") ?
-                        doctorInfoJson.get("roomNumber").getAsInt() : getDoctorRoomNumber(doctorId);
-
-                    List<String> expertises = new ArrayList<>();
-                    if (doctorInfoJson.has("expertises")) {
-                        JsonArray expertisesArray = doctorInfoJson.getAsJsonArray("expertises");
-                        for (int i = 0; i < expertisesArray.size(); i++) {
-                            expertises.add(expertisesArray.get(i).getAsString());
-                        }
-                    }
+    // Restaure les médecins connus et la liste d'attente d'un instantané
+    private void applySnapshotState(JsonObject state) {
+        HashMap<String, DoctorInfo> savedDoctors = gson.fromJson(state.get("doctorInfos"),
+            new TypeToken<HashMap<String, DoctorInfo>>(){}.getType());
+        if (savedDoctors != null) {
+            doctorInfos.putAll(savedDoctors);
+        }
 
-                    // Mettre à jour les informations du médecin
-                    DoctorInfo doctorInfo = new DoctorInfo(
-                        doctorId, specialty, qualification, experience, expertises, roomNumber);
-                    doctorInfos.put(doctorId, doctorInfo);
+        LinkedList<WaitingPatientInfo> savedWaiting = gson.fromJson(state.get("waitingPatients"),
+            new TypeToken<LinkedList<WaitingPatientInfo>>(){}.getType());
+        if (savedWaiting != null) {
+            waitingPatients.addAll(savedWaiting);
+        }
+    }
 
-                    gui.displayMessage("Informations détaillées reçues du médecin " + doctorId +
-                        " : " + specialty + ", " + qualification + ", " + experience + " ans d'expérience");
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    gui.displayMessage("Erreur lors du traitement des informations du médecin: " + e.getMessage());
-                }
-            } else {
-                block();
+    // Copie l'état sur le thread de l'agent et confie l'écriture de l'instantané au thread dédié
+    private void takeSnapshot() {
+        JsonObject state = new JsonObject();
+        state.add("doctorInfos", gson.toJsonTree(doctorInfos));
+        state.add("waitingPatients", gson.toJsonTree(waitingPatients));
+        snapshots.takeSnapshot(journal.getLastSeq(), state, patientRecords.copyForSnapshot());
+    }
+
+    private PatientRecord getOrCreateRecord(String patientId) {
+        PatientRecord record = patientRecords.get(patientId);
+        return record != null ? record : new PatientRecord(patientId);
+    }
+
+    // Traite les changements de localisation des patients
+    private void handlePatientLocation(ACLMessage msg) {
+        if ("PATIENT_EXIT".equals(msg.getContent())) {
+            // Le patient quitte le système
+            gui.displayMessage("Patient " + msg.getSender().getLocalName() + " a quitté le cabinet");
+        }
+    }
+
+    // Traite les informations détaillées envoyées par un médecin
+    private void handleDoctorInfo(ACLMessage msg) {
+        JsonObject doctorInfoJson = gson.fromJson(msg.getContent(), JsonObject.class);
+        String doctorId = msg.getSender().getLocalName();
+
+        String specialty = doctorInfoJson.has("specialty") ?
+            doctorInfoJson.get("specialty").getAsString() : getDoctorSpecialty(doctorId);
+
+        String qualification = doctorInfoJson.has("qualification") ?
+            doctorInfoJson.get("qualification").getAsString() : getDoctorQualification(doctorId);
+
+        int experience = doctorInfoJson.has("experience") ?
+            doctorInfoJson.get("experience").getAsInt() : 5;
+
+        int roomNumber = doctorInfoJson.has("roomNumber") ?
+            doctorInfoJson.get("roomNumber").getAsInt() : getDoctorRoomNumber(doctorId);
+
+        DoctorInfo previousInfo = doctorInfos.get(doctorId);
+        int maxConsultations = doctorInfoJson.has("maxConsultations") ?
+            doctorInfoJson.get("maxConsultations").getAsInt() :
+            (previousInfo != null ? previousInfo.getMaxConsultations() : 1);
+
+        List<String> expertises = new ArrayList<>();
+        if (doctorInfoJson.has("expertises")) {
+            JsonArray expertisesArray = doctorInfoJson.getAsJsonArray("expertises");
+            for (int i = 0; i < expertisesArray.size(); i++) {
+                expertises.add(expertisesArray.get(i).getAsString());
             }
         }
+
+        // Mettre à jour les informations du médecin
+        DoctorInfo doctorInfo = new DoctorInfo(
+            doctorId, specialty, qualification, experience, expertises, roomNumber, Math.max(1, maxConsultations));
+        doctorInfos.put(doctorId, doctorInfo);
+        waitTimePredictor.registerDoctor(doctorId, specialty, doctorInfo.getMaxConsultations());
+
+        // Un médecin démarré après la réceptionniste se présente lui-même
+        if (!doctorAIDs.contains(msg.getSender())) {
+            doctorAIDs.add(msg.getSender());
+        }
+        doctorLoads.putIfAbsent(doctorId, 0);
+
+        gui.displayMessage("Informations détaillées reçues du médecin " + doctorId +
+            " : " + specialty + ", " + qualification + ", " + experience + " ans d'expérience, " +
+            doctorInfo.getMaxConsultations() + " consultation(s) simultanée(s)");
+
+        // Une capacité nouvelle peut permettre de prendre des patients en attente
+        if (!waitingPatients.isEmpty() && isDoctorAvailable(doctorId)) {
+            manageWaitingList();
+        }
+    }
+
+    // Traite les changements de statut des médecins
+    private void handleDoctorStatus(ACLMessage msg) {
+        AID doctorAID = msg.getSender();
+
+        if ("CONSULTATION_COMPLETED".equals(msg.getContent())) {
+            // Libérer une place de consultation du médecin
+            String doctorId = doctorAID.getLocalName();
+            int load = Math.max(0, doctorLoads.getOrDefault(doctorId, 0) - 1);
+            doctorLoads.put(doctorId, load);
+            waitTimePredictor.consultationCompleted(doctorId,
+                msg.getUserDefinedParameter(DoctorAgent.CONSULTATION_PATIENT_PARAM), System.currentTimeMillis());
+            gui.displayMessage("Médecin " + doctorId + " a terminé une consultation (" + load + " en cours)");
+
+            // Vérifier s'il y a des patients en attente
+            manageWaitingList();
+        }
+    }
+
+    // Met à jour la charge d'un infirmier, ou réoriente ses patients s'il quitte le cabinet
+    private void handleNurseStatus(ACLMessage msg) {
+        JsonObject status = gson.fromJson(msg.getContent(), JsonObject.class);
+        String nurseId = msg.getSender().getLocalName();
+
+        if (status.has("leaving") && status.get("leaving").getAsBoolean()) {
+            rebalanceNursePatients(nurseId);
+            return;
+        }
+
+        nursePool.updateStatus(nurseId,
+            status.has("activeSessions") ? status.get("activeSessions").getAsInt() : 0,
+            status.has("averageTriageMillis") ? status.get("averageTriageMillis").getAsLong() : 0,
+            status.has("completedTriages") ? status.get("completedTriages").getAsLong() : 0);
     }
+
+    /**
+     * Triage abandonné par l'infirmier faute de réponse : le patient est réorienté vers l'infirmier
+     * le moins chargé, puis renvoyé de l'accueil si le triage est de nouveau abandonné.
+     */
+    private void handleTriageExpired(ACLMessage msg) {
+        String patientId = msg.getContent();
+        nursePool.complete(patientId);
+        gui.displayMessage("Triage du patient " + patientId + " abandonné par l'infirmier " +
+            msg.getSender().getLocalName());
+
+        // Patient géré par une autre réceptionniste (accueil réparti)
+        if (!patientRecords.contains(patientId)) {
+            return;
+        }
+
+        AID patientAID = new AID(patientId, AID.ISLOCALNAME);
+        int attempts = expiredTriages.merge(patientId, 1, Integer::sum);
+        if (attempts < MAX_TRIAGE_ATTEMPTS) {
+            sendToWaitingRoom(patientAID);
+            return;
+        }
+
+        expiredTriages.remove(patientId);
+        ACLMessage feedbackMsg = new ACLMessage(ACLMessage.INFORM);
+        feedbackMsg.addReceiver(patientAID);
+        feedbackMsg.setContent("Votre prise en charge a été interrompue faute de réponse. " +
+            "Veuillez vous présenter de nouveau à l'accueil.");
+        feedbackMsg.setConversationId("receptionist-feedback");
+        dispatcher.send(feedbackMsg);
+        gui.displayMessage("Patient " + patientId + " sans réponse après " + attempts + " triages, prise en charge arrêtée");
+    }
+
+    // Prend acte de la demande d'un médecin de faire venir son patient
+    private void handleInviteRequest(ACLMessage msg) {
+        JsonObject request = gson.fromJson(msg.getContent(), JsonObject.class);
+        gui.displayMessage("Le médecin " + msg.getSender().getLocalName() + " attend le patient " +
+            request.get("patientId").getAsString() + " en salle " + request.get("roomNumber").getAsInt());
+    }
+
+    /**
+     * Recherche de patients demandée depuis l'interface. La recherche est exécutée sur le
+     * thread de l'agent, seul à accéder au stockage des dossiers.
+     */
+    public void searchPatients(String query) {
+        addBehaviour(new OneShotBehaviour(this) {
+            @Override
+            public void action() {
+                if (query == null || query.trim().isEmpty()) {
+                    gui.updatePatientsList(patientRecords.getPatientIds());
+                    return;
+                }
+                List<String> results = patientRecords.search(query, PatientRecordStore.DEFAULT_SEARCH_LIMIT);
+                gui.showSearchResults(query, results);
+            }
+        });
+    }
+
+    // Journalise les messages sans gestionnaire avant de les écarter
+    private void handleUnknownMessage(ACLMessage msg) {
+        gui.displayMessage("Message ignoré (conversation '" + msg.getConversationId() + "') de " +
+            msg.getSender().getLocalName());
+    }
+
     @Override
     protected void takeDown() {
+        if (!stateRecovered) {
+            // Démarrage refusé : l'état sur disque doit rester tel quel pour être réparé
+            if (gui != null) {
+                gui.dispose();
+            }
+            return;
+        }
+
         // Se désinscrire du Directory Facilitator
         try {
             DFService.deregister(this);
@@ -1026,6 +1743,21 @@ public class ReceptionistAgent extends Agent {
             fe.printStackTrace();
         }
 
+        // Dernier instantané pour un redémarrage rapide, puis écriture des dossiers et du journal
+        if (snapshots != null) {
+            if (journal.getLastSeq() > snapshots.getLastSnapshotSeq()) {
+                takeSnapshot();
+            }
+            snapshots.close();
+        }
+        if (patientRecords != null) {
+            patientRecords.flush();
+        }
+        if (journal != null) {
+            journal.close();
+            System.out.print(journal.formatStats());
+        }
+
         // Fermer l'interface graphique
         if (gui != null) {
             gui.dispose();
@@ -1033,5 +1765,9 @@ public class ReceptionistAgent extends Agent {
 
         // Journaliser la terminaison
         System.out.println("Agent Réceptionniste " + getAID().getName() + " terminé.");
+        if (dispatcher != null) {
+            System.out.print(dispatcher.formatStats());
+            dispatcher.close();
+        }
     }
 }
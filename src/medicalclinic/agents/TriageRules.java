@@ -0,0 +1,41 @@
+package medicalclinic.agents;
+
+import java.util.Map;
+
+/**
+ * Règles d'urgence appliquées par l'infirmier aux réponses du questionnaire de symptômes.
+ * Partagées avec la simulation du cabinet pour que les deux trient les patients de la même façon.
+ */
+public final class TriageRules {
+
+    private TriageRules() {
+    }
+
+    /**
+     * Cherche une réponse indiquant une urgence potentielle
+     * @param answers Réponses du patient, par identifiant de question
+     * @return Identifiant de la première question dont la réponse est alarmante, null si aucune
+     */
+    public static String findUrgentAnswer(Map<String, String> answers) {
+        for (Map.Entry<String, String> entry : answers.entrySet()) {
+            String questionId = entry.getKey();
+            String answer = entry.getValue().toLowerCase();
+
+            // Vérifier si les réponses contiennent des mots-clés indiquant une urgence
+            if (answer.contains("insupportable") ||
+                answer.contains("extrême") ||
+                answer.contains("très forte douleur") ||
+                (questionId.equals("fever") && (answer.contains("40") || answer.contains("41") || answer.contains("42"))) ||
+                (questionId.equals("breathing") && (answer.contains("très difficile") || answer.contains("impossible"))) ||
+                (questionId.equals("painIntensity") && (answer.contains("9") || answer.contains("10"))) ||
+                answer.contains("sang") && (questionId.equals("coughing") || questionId.equals("digestive"))) {
+                return questionId;
+            }
+        }
+        return null;
+    }
+
+    public static boolean isUrgent(Map<String, String> answers) {
+        return findUrgentAnswer(answers) != null;
+    }
+}
@@ -0,0 +1,198 @@
+package medicalclinic.agents;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Estimation du temps d'attente des patients de la liste d'attente de la réceptionniste.
+ *
+ * La durée d'occupation d'une place de consultation (de l'affectation du patient à la fin de la
+ * consultation) est suivie par une moyenne mobile exponentielle, par médecin et par spécialité ;
+ * un médecin sans historique part de la moyenne de sa spécialité, ou de la moyenne générale.
+ * Un patient en position k obtient une place quand k + 1 places se sont libérées, en comptant les
+ * places déjà libres ; les places occupées se libérant au débit cumulé des médecins (somme des
+ * places divisées par la durée moyenne de chacun), l'attente estimée est le nombre de fins de
+ * consultation nécessaires divisé par ce débit. Chaque événement et chaque estimation sont en O(1) :
+ * les totaux sont tenus à jour au fil des événements.
+ */
+public class WaitTimePredictor {
+    // Durée de consultation supposée tant qu'aucune consultation n'a été mesurée
+    public static final String DEFAULT_MINUTES_PROPERTY = "medicalclinic.waitEstimate.defaultMinutes";
+    // Poids d'une nouvelle mesure dans la moyenne mobile (0 < alpha <= 1)
+    public static final String SMOOTHING_PROPERTY = "medicalclinic.waitEstimate.smoothing";
+    static final double DEFAULT_MINUTES = 15;
+    static final double DEFAULT_SMOOTHING = 0.2;
+
+    // Moyenne mobile exponentielle de durées
+    private static class DurationStats {
+        private double meanMillis;
+        private long samples;
+
+        DurationStats(double initialMillis) {
+            this.meanMillis = initialMillis;
+        }
+
+        void add(long millis, double smoothing) {
+            meanMillis = samples == 0 && meanMillis <= 0 ? millis : meanMillis + smoothing * (millis - meanMillis);
+            samples++;
+        }
+    }
+
+    // Places et consultations en cours d'un médecin
+    private static class DoctorSlots {
+        private String specialty;
+        private int capacity;
+        private final DurationStats stats;
+        // Consultations en cours : patient -> début, dans l'ordre des affectations
+        private final LinkedHashMap<String, Long> ongoing = new LinkedHashMap<>();
+
+        DoctorSlots(String specialty, int capacity, double initialMillis) {
+            this.specialty = specialty;
+            this.capacity = capacity;
+            this.stats = new DurationStats(initialMillis);
+        }
+
+        int busySlots() {
+            return Math.min(ongoing.size(), capacity);
+        }
+
+        // Consultations terminées par unité de temps quand toutes les places sont occupées
+        double serviceRate() {
+            return capacity / Math.max(1.0, stats.meanMillis);
+        }
+    }
+
+    private final HashMap<String, DoctorSlots> doctors = new HashMap<>();
+    private final HashMap<String, DurationStats> specialties = new HashMap<>();
+    private final DurationStats overall;
+    private final double smoothing;
+
+    // Totaux sur l'ensemble des médecins
+    private int totalCapacity;
+    private int totalBusy;
+    private double totalServiceRate;
+
+    public WaitTimePredictor() {
+        double defaultMinutes = Double.parseDouble(
+            System.getProperty(DEFAULT_MINUTES_PROPERTY, String.valueOf(DEFAULT_MINUTES)));
+        double alpha = Double.parseDouble(
+            System.getProperty(SMOOTHING_PROPERTY, String.valueOf(DEFAULT_SMOOTHING)));
+        this.overall = new DurationStats(defaultMinutes * 60000);
+        this.smoothing = alpha > 0 && alpha <= 1 ? alpha : DEFAULT_SMOOTHING;
+    }
+
+    /**
+     * Déclare un médecin ou met à jour son nombre de places
+     */
+    public void registerDoctor(String doctorId, String specialty, int capacity) {
+        DoctorSlots doctor = doctors.get(doctorId);
+        if (doctor == null) {
+            DurationStats prior = specialty != null ? specialties.get(specialty) : null;
+            doctor = new DoctorSlots(specialty, 0, (prior != null ? prior : overall).meanMillis);
+            doctors.put(doctorId, doctor);
+        }
+        if (specialty != null) {
+            doctor.specialty = specialty;
+        }
+        withdraw(doctor);
+        doctor.capacity = Math.max(1, capacity);
+        deposit(doctor);
+    }
+
+    /**
+     * Un patient vient d'être affecté au médecin : une place est occupée
+     */
+    public void consultationStarted(String doctorId, String patientId, long nowMillis) {
+        DoctorSlots doctor = doctors.get(doctorId);
+        if (doctor == null) {
+            // Médecin dont les informations détaillées ne sont pas encore arrivées : une place
+            registerDoctor(doctorId, null, 1);
+            doctor = doctors.get(doctorId);
+        }
+        withdraw(doctor);
+        doctor.ongoing.put(patientId, nowMillis);
+        deposit(doctor);
+    }
+
+    /**
+     * Une consultation du médecin est terminée : la place est libérée et sa durée mesurée.
+     * Sans identifiant de patient, la plus ancienne consultation en cours est considérée terminée.
+     * Une consultation inconnue (affectée par une autre réceptionniste) est ignorée.
+     */
+    public void consultationCompleted(String doctorId, String patientId, long nowMillis) {
+        DoctorSlots doctor = doctors.get(doctorId);
+        if (doctor == null || doctor.ongoing.isEmpty()) {
+            return;
+        }
+
+        Long start;
+        if (patientId != null) {
+            start = doctor.ongoing.get(patientId);
+            if (start == null) {
+                return;
+            }
+        } else {
+            Iterator<String> oldest = doctor.ongoing.keySet().iterator();
+            patientId = oldest.next();
+            start = doctor.ongoing.get(patientId);
+        }
+
+        withdraw(doctor);
+        doctor.ongoing.remove(patientId);
+        long duration = Math.max(0, nowMillis - start);
+        doctor.stats.add(duration, smoothing);
+        deposit(doctor);
+
+        if (doctor.specialty != null) {
+            specialties.computeIfAbsent(doctor.specialty, s -> new DurationStats(0)).add(duration, smoothing);
+        }
+        overall.add(duration, smoothing);
+    }
+
+    /**
+     * Attente estimée du patient à la position donnée de la liste d'attente
+     * @param position Position dans la liste, 0 pour la tête
+     * @return Attente estimée en millisecondes, -1 si aucun médecin n'est connu
+     */
+    public long estimateWaitMillis(int position) {
+        if (totalCapacity == 0 || totalServiceRate <= 0) {
+            return -1;
+        }
+        int freeSlots = totalCapacity - totalBusy;
+        int completionsNeeded = position + 1 - freeSlots;
+        if (completionsNeeded <= 0) {
+            return 0;
+        }
+        return (long) (completionsNeeded / totalServiceRate);
+    }
+
+    // Durée moyenne d'occupation d'une place chez ce médecin, -1 s'il est inconnu
+    public long getMeanConsultationMillis(String doctorId) {
+        DoctorSlots doctor = doctors.get(doctorId);
+        return doctor != null ? (long) doctor.stats.meanMillis : -1;
+    }
+
+    // Durée moyenne d'occupation d'une place pour cette spécialité, -1 si aucune mesure
+    public long getMeanConsultationMillisForSpecialty(String specialty) {
+        DurationStats stats = specialties.get(specialty);
+        return stats != null ? (long) stats.meanMillis : -1;
+    }
+
+    public int getFreeSlots() {
+        return totalCapacity - totalBusy;
+    }
+
+    // Retire la contribution d'un médecin des totaux, avant de la modifier
+    private void withdraw(DoctorSlots doctor) {
+        totalCapacity -= doctor.capacity;
+        totalBusy -= doctor.busySlots();
+        totalServiceRate -= doctor.capacity == 0 ? 0 : doctor.serviceRate();
+    }
+
+    private void deposit(DoctorSlots doctor) {
+        totalCapacity += doctor.capacity;
+        totalBusy += doctor.busySlots();
+        totalServiceRate += doctor.capacity == 0 ? 0 : doctor.serviceRate();
+    }
+}
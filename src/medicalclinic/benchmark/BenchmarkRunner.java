@@ -0,0 +1,300 @@
+package medicalclinic.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Mesure du temps moyen par opération, dans le même esprit que JMH en mode {@code avgt} :
+ * itérations de chauffe, puis itérations de durée fixe dont on retient la moyenne et l'intervalle
+ * de confiance à 99,9 %. La valeur renvoyée par chaque opération est consommée pour que le JIT ne
+ * puisse pas supprimer le calcul.
+ *
+ * Les résultats sont écrits en JSON au format de JMH ({@code -rf json}), lisible par ses outils de
+ * visualisation, et peuvent être comparés à un fichier de référence pour détecter les régressions.
+ * Paramètres (propriétés système) :
+ * <ul>
+ * <li>{@code medicalclinic.bench.warmupIterations} (défaut 5), {@code medicalclinic.bench.iterations} (défaut 10)</li>
+ * <li>{@code medicalclinic.bench.iterationMillis} : durée d'une itération (défaut 500)</li>
+ * <li>{@code medicalclinic.bench.filter} : expression régulière sur les noms des mesures à lancer</li>
+ * <li>{@code medicalclinic.bench.baseline} : résultats de référence ; {@code medicalclinic.bench.tolerance} :
+ * ralentissement toléré, en fraction (défaut 0.10)</li>
+ * </ul>
+ */
+public class BenchmarkRunner {
+    private static final String PREFIX = "medicalclinic.bench.";
+
+    // Quantiles de la loi de Student à 99,9 % (bilatéral) pour 1 à 30 degrés de liberté, puis loi normale
+    private static final double[] STUDENT_999 = {
+        636.62, 31.60, 12.92, 8.61, 6.87, 5.96, 5.41, 5.04, 4.78, 4.59,
+        4.44, 4.32, 4.22, 4.14, 4.07, 4.01, 3.97, 3.92, 3.88, 3.85,
+        3.82, 3.79, 3.77, 3.75, 3.73, 3.71, 3.69, 3.67, 3.66, 3.65
+    };
+    private static final double NORMAL_999 = 3.29;
+
+    /**
+     * Opération mesurée ; le résultat est consommé par le banc
+     */
+    public interface Operation {
+        long run(int invocation);
+    }
+
+    /**
+     * Résultat d'une mesure, en nanosecondes par opération
+     */
+    public static class Result {
+        private final String benchmark;
+        private final Map<String, String> params;
+        private final double[] samples;
+        private final double score;
+        private final double error;
+
+        Result(String benchmark, Map<String, String> params, double[] samples) {
+            this.benchmark = benchmark;
+            this.params = params;
+            this.samples = samples;
+            double sum = 0;
+            for (double sample : samples) {
+                sum += sample;
+            }
+            this.score = sum / samples.length;
+            double variance = 0;
+            for (double sample : samples) {
+                variance += (sample - score) * (sample - score);
+            }
+            int df = samples.length - 1;
+            this.error = df <= 0 ? Double.NaN :
+                (df <= STUDENT_999.length ? STUDENT_999[df - 1] : NORMAL_999) * Math.sqrt(variance / df / samples.length);
+        }
+
+        Result(String benchmark, Map<String, String> params, double score, double error) {
+            this.benchmark = benchmark;
+            this.params = params;
+            this.samples = new double[0];
+            this.score = score;
+            this.error = error;
+        }
+
+        public String getBenchmark() { return benchmark; }
+        public Map<String, String> getParams() { return params; }
+        public double getScore() { return score; }
+        public double getError() { return error; }
+
+        // Clé de rapprochement avec les résultats de référence
+        String key() {
+            return benchmark + params;
+        }
+    }
+
+    private final int warmupIterations;
+    private final int iterations;
+    private final long iterationNanos;
+    private final Pattern filter;
+    private final List<Result> results = new ArrayList<>();
+    // Somme des résultats des opérations, lue à la fin pour que le calcul ne soit pas éliminé
+    private long sink;
+    // Numéro de l'appel en cours, transmis aux opérations pour varier leurs entrées
+    private int invocation;
+
+    public BenchmarkRunner() {
+        this.warmupIterations = Math.max(0, Integer.getInteger(PREFIX + "warmupIterations", 5));
+        this.iterations = Math.max(1, Integer.getInteger(PREFIX + "iterations", 10));
+        this.iterationNanos = Math.max(1, Long.getLong(PREFIX + "iterationMillis", 500)) * 1_000_000L;
+        String pattern = System.getProperty(PREFIX + "filter");
+        this.filter = pattern != null ? Pattern.compile(pattern) : null;
+    }
+
+    // Vrai si la mesure fait partie de celles demandées
+    public boolean isSelected(String benchmark) {
+        return filter == null || filter.matcher(benchmark).find();
+    }
+
+    /**
+     * Mesure une opération et ajoute le résultat à la liste
+     */
+    public Result run(String benchmark, Map<String, String> params, Operation operation) {
+        invocation = 0;
+        for (int i = 0; i < warmupIterations; i++) {
+            iterate(operation);
+        }
+        double[] samples = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            samples[i] = iterate(operation);
+        }
+
+        Result result = new Result(benchmark, new LinkedHashMap<>(params), samples);
+        results.add(result);
+        System.out.println(String.format("%-56s %-24s %14.1f ± %10.1f ns/op",
+            benchmark, params, result.getScore(), result.getError()));
+        return result;
+    }
+
+    // Une itération : des lots d'opérations de plus en plus grands jusqu'à la durée demandée.
+    // Retourne le temps moyen par opération.
+    private double iterate(Operation operation) {
+        long total = 0;
+        long operations = 0;
+        int batch = 1;
+        long local = 0;
+        while (total < iterationNanos) {
+            long start = System.nanoTime();
+            for (int i = 0; i < batch; i++) {
+                local += operation.run(invocation++ & Integer.MAX_VALUE);
+            }
+            long elapsed = System.nanoTime() - start;
+            total += elapsed;
+            operations += batch;
+            // Lots d'au moins une milliseconde pour que la lecture de l'horloge reste négligeable
+            if (elapsed < 1_000_000L && batch < (1 << 20)) {
+                batch <<= 1;
+            }
+        }
+        sink += local;
+        return total / (double) operations;
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    /**
+     * Écrit les résultats au format JSON de JMH
+     */
+    public void writeJson(File output) throws IOException {
+        JsonArray array = new JsonArray();
+        for (Result result : results) {
+            JsonObject entry = new JsonObject();
+            entry.addProperty("benchmark", result.benchmark);
+            entry.addProperty("mode", "avgt");
+            entry.addProperty("threads", 1);
+            entry.addProperty("forks", 1);
+            entry.addProperty("warmupIterations", warmupIterations);
+            entry.addProperty("measurementIterations", iterations);
+            JsonObject params = new JsonObject();
+            for (Map.Entry<String, String> param : result.params.entrySet()) {
+                params.addProperty(param.getKey(), param.getValue());
+            }
+            entry.add("params", params);
+
+            JsonObject metric = new JsonObject();
+            metric.addProperty("score", result.score);
+            if (!Double.isNaN(result.error)) {
+                metric.addProperty("scoreError", result.error);
+            }
+            metric.addProperty("scoreUnit", "ns/op");
+            JsonArray raw = new JsonArray();
+            JsonArray fork = new JsonArray();
+            for (double sample : result.samples) {
+                fork.add(sample);
+            }
+            raw.add(fork);
+            metric.add("rawData", raw);
+            entry.add("primaryMetric", metric);
+            array.add(entry);
+        }
+
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8)) {
+            gson.toJson(array, writer);
+        }
+    }
+
+    // Lit des résultats écrits par writeJson (ou par JMH)
+    static List<Result> readJson(File input) throws IOException {
+        List<Result> read = new ArrayList<>();
+        try (Reader reader = new InputStreamReader(new FileInputStream(input), StandardCharsets.UTF_8)) {
+            for (JsonElement element : JsonParser.parseReader(reader).getAsJsonArray()) {
+                JsonObject entry = element.getAsJsonObject();
+                Map<String, String> params = new LinkedHashMap<>();
+                if (entry.has("params")) {
+                    for (Map.Entry<String, JsonElement> param : entry.getAsJsonObject("params").entrySet()) {
+                        params.put(param.getKey(), param.getValue().getAsString());
+                    }
+                }
+                JsonObject metric = entry.getAsJsonObject("primaryMetric");
+                read.add(new Result(entry.get("benchmark").getAsString(), params,
+                    metric.get("score").getAsDouble(),
+                    metric.has("scoreError") ? metric.get("scoreError").getAsDouble() : 0.0));
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Compare les résultats au fichier de référence {@code medicalclinic.bench.baseline}, s'il est donné.
+     * Une mesure a régressé si elle est plus lente que la référence au-delà de la tolérance et que
+     * les intervalles de confiance ne se recouvrent pas.
+     * @return Description des régressions, vide si aucune
+     */
+    public List<String> compareWithBaseline() throws IOException {
+        List<String> regressions = new ArrayList<>();
+        String baselinePath = System.getProperty(PREFIX + "baseline");
+        if (baselinePath == null) {
+            return regressions;
+        }
+        double tolerance = Double.parseDouble(System.getProperty(PREFIX + "tolerance", "0.10"));
+
+        Map<String, Result> baseline = new HashMap<>();
+        for (Result result : readJson(new File(baselinePath))) {
+            baseline.put(result.key(), result);
+        }
+        for (Result current : results) {
+            Result reference = baseline.get(current.key());
+            if (reference == null) {
+                continue;
+            }
+            double currentError = Double.isNaN(current.error) ? 0.0 : current.error;
+            if (current.score > reference.score * (1 + tolerance)
+                    && current.score - currentError > reference.score + reference.error) {
+                regressions.add(String.format("%s %s : %.1f ns/op contre %.1f ns/op (+%.0f %%)",
+                    current.benchmark, current.params, current.score, reference.score,
+                    (current.score / reference.score - 1) * 100));
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * Écrit les résultats, les compare à la référence et termine la JVM avec le code 1 en cas de régression
+     */
+    public void finish(File output) {
+        // Empêche l'élimination des opérations mesurées
+        if (sink == 42) {
+            System.out.println();
+        }
+        try {
+            writeJson(output);
+            System.out.println("Résultats écrits dans " + output.getAbsolutePath());
+            List<String> regressions = compareWithBaseline();
+            if (!regressions.isEmpty()) {
+                System.err.println("Régressions par rapport à la référence :");
+                for (String regression : regressions) {
+                    System.err.println("- " + regression);
+                }
+                System.exit(1);
+            }
+        } catch (IOException e) {
+            System.err.println("Erreur d'écriture des résultats: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+}
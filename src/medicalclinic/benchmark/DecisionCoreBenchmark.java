@@ -0,0 +1,189 @@
+package medicalclinic.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import medicalclinic.agents.DoctorCompatibility;
+import medicalclinic.database.DiseaseDatabase;
+import medicalclinic.database.TreatmentDatabase;
+import medicalclinic.models.Disease;
+import medicalclinic.utils.SymptomProfiles;
+
+/**
+ * Mesures du cœur de décision clinique : correspondance des symptômes, recherche des maladies
+ * potentielles, questions de diagnostic, choix du traitement et score de compatibilité des médecins.
+ *
+ * Chaque mesure est faite pour plusieurs tailles de catalogue ({@code medicalclinic.bench.sizes},
+ * défaut {@code 25,100,1000,10000}). Au-delà des maladies de la base, le catalogue est complété par
+ * des variantes des maladies existantes (mêmes catégories, symptômes en partie différents), pour que
+ * les correspondances restent réalistes. Les symptômes sont ceux que déclarent les patients simulés
+ * ({@link SymptomProfiles}), complétés des autres réponses du questionnaire de l'infirmier.
+ * Les résultats sont écrits dans {@code medicalclinic.bench.output} (défaut {@code bench-decision.json}) ;
+ * voir {@link BenchmarkRunner} pour les autres paramètres.
+ */
+public class DecisionCoreBenchmark {
+    private static final String PREFIX = "medicalclinic.bench.";
+    // Nombre de dossiers de symptômes différents parcourus par les mesures
+    private static final int SYMPTOM_MAPS = 256;
+
+    private static final int DOCTOR_CAPACITY = 3;
+
+    // Médecin du cabinet, tel que lancé par StartSystem
+    private static class DoctorProfile {
+        private final String specialty;
+        private final int experience;
+        private final List<String> expertises;
+
+        DoctorProfile(String specialty, int experience, String... expertises) {
+            this.specialty = specialty;
+            this.experience = experience;
+            this.expertises = Arrays.asList(expertises);
+        }
+    }
+
+    private static final DoctorProfile[] DOCTORS = {
+        new DoctorProfile("generaliste", 15, "Grippe", "Rhume commun"),
+        new DoctorProfile("generaliste", 8),
+        new DoctorProfile("cardiologue", 12, "Hypertension artérielle"),
+        new DoctorProfile("pneumologue", 10, "Asthme", "Tuberculose"),
+        new DoctorProfile("gastroenterologue", 7, "Gastrite", "Hépatite virale"),
+        new DoctorProfile("infectiologue", 9, "Paludisme", "Fièvre typhoïde", "Choléra"),
+        new DoctorProfile("neurologue", 11, "Épilepsie", "Méningite"),
+        new DoctorProfile("endocrinologue", 6, "Diabète")
+    };
+
+    public static void main(String[] args) {
+        long seed = Long.getLong(PREFIX + "seed", 42);
+        File output = new File(System.getProperty(PREFIX + "output", "bench-decision.json"));
+        BenchmarkRunner runner = new BenchmarkRunner();
+
+        List<Disease> base = new ArrayList<>(DiseaseDatabase.getInstance().getAllDiseases());
+        base.sort(Comparator.comparing(Disease::getId));
+        List<HashMap<String, String>> symptomMaps = symptomMaps(new Random(seed), SYMPTOM_MAPS);
+        TreatmentDatabase treatments = TreatmentDatabase.getInstance();
+
+        for (String sizeText : System.getProperty(PREFIX + "sizes", "25,100,1000,10000").split(",")) {
+            int size = Integer.parseInt(sizeText.trim());
+            List<Disease> catalogue = catalogue(base, size, new Random(seed + size));
+            DiseaseDatabase database = DiseaseDatabase.withCatalogue(catalogue);
+            Map<String, String> params = new LinkedHashMap<>();
+            params.put("catalogueSize", String.valueOf(size));
+
+            // Résultats de la recherche, figés pour les mesures qui en dépendent
+            List<List<Disease>> potentials = new ArrayList<>();
+            List<Disease> diagnosed = new ArrayList<>();
+            for (HashMap<String, String> symptoms : symptomMaps) {
+                List<Disease> found = snapshot(database.findDiseasesBySymptoms(symptoms));
+                potentials.add(found);
+                if (!found.isEmpty()) {
+                    diagnosed.add(database.getDisease(found.get(0).getId()));
+                }
+            }
+            if (diagnosed.isEmpty()) {
+                diagnosed.add(catalogue.get(0));
+            }
+
+            if (runner.isSelected("Disease.matchSymptoms")) {
+                runner.run("Disease.matchSymptoms", params, i ->
+                    catalogue.get(i % catalogue.size()).matchSymptoms(symptomMaps.get(i % SYMPTOM_MAPS)));
+            }
+            if (runner.isSelected("DiseaseDatabase.findDiseasesBySymptoms")) {
+                runner.run("DiseaseDatabase.findDiseasesBySymptoms", params, i ->
+                    database.findDiseasesBySymptoms(symptomMaps.get(i % SYMPTOM_MAPS)).size());
+            }
+            if (runner.isSelected("DiseaseDatabase.generateDiagnosticQuestionsForDisease")) {
+                runner.run("DiseaseDatabase.generateDiagnosticQuestionsForDisease", params, i ->
+                    database.generateDiagnosticQuestionsForDisease(diagnosed.get(i % diagnosed.size())).size());
+            }
+            if (runner.isSelected("TreatmentDatabase.selectTreatmentForPatient")) {
+                runner.run("TreatmentDatabase.selectTreatmentForPatient", params, i ->
+                    treatments.selectTreatmentForPatient(diagnosed.get(i % diagnosed.size()),
+                        1 + (i * 37) % 90, 8 + (i * 13) % 100).size());
+            }
+            if (runner.isSelected("DoctorCompatibility.score")) {
+                // Un patient : score de chacun des médecins, comme lors d'une affectation
+                runner.run("DoctorCompatibility.score", params, i -> {
+                    List<Disease> potential = potentials.get(i % SYMPTOM_MAPS);
+                    long total = 0;
+                    for (int d = 0; d < DOCTORS.length; d++) {
+                        DoctorProfile doctor = DOCTORS[d];
+                        total += DoctorCompatibility.score(doctor.specialty, doctor.expertises, doctor.experience,
+                            DOCTOR_CAPACITY, (i + d) % (DOCTOR_CAPACITY + 1), potential);
+                    }
+                    return total;
+                });
+            }
+        }
+
+        runner.finish(output);
+    }
+
+    /**
+     * Catalogue de la taille demandée : les maladies de la base, puis des variantes
+     */
+    static List<Disease> catalogue(List<Disease> base, int size, Random random) {
+        List<Disease> catalogue = new ArrayList<>(base.subList(0, Math.min(size, base.size())));
+        List<String> vocabulary = new ArrayList<>();
+        for (Disease disease : base) {
+            vocabulary.addAll(disease.getCommonSymptoms());
+        }
+
+        for (int k = catalogue.size(); k < size; k++) {
+            Disease original = base.get(k % base.size());
+            Disease variant = new Disease(String.format("SYN%05d", k), original.getName() + " - variante " + k,
+                original.getDescription(), original.getCategory());
+            List<String> symptoms = new ArrayList<>(original.getCommonSymptoms());
+            Collections.shuffle(symptoms, random);
+            if (symptoms.size() > 2 && random.nextDouble() < 0.3) {
+                symptoms.remove(symptoms.size() - 1);
+            }
+            if (!vocabulary.isEmpty()) {
+                String extra = vocabulary.get(random.nextInt(vocabulary.size()));
+                if (!symptoms.contains(extra)) {
+                    symptoms.add(extra);
+                }
+            }
+            for (String symptom : symptoms) {
+                variant.addCommonSymptom(symptom);
+            }
+            for (String treatment : original.getRecommendedTreatments()) {
+                variant.addRecommendedTreatment(treatment);
+            }
+            catalogue.add(variant);
+        }
+        return catalogue;
+    }
+
+    /**
+     * Réponses au questionnaire de l'infirmier, telles que la réceptionniste les reçoit
+     */
+    static List<HashMap<String, String>> symptomMaps(Random random, int count) {
+        SymptomProfiles profiles = new SymptomProfiles();
+        List<HashMap<String, String>> maps = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            HashMap<String, String> answers = profiles.drawAnswers(random);
+            answers.put("patientId", "bench-" + i);
+            maps.add(answers);
+        }
+        return maps;
+    }
+
+    // Copie des maladies trouvées avec leur score : la recherche suivante réécrit le score des originaux
+    private static List<Disease> snapshot(List<Disease> found) {
+        List<Disease> copies = new ArrayList<>();
+        for (Disease disease : found) {
+            Disease copy = new Disease(disease.getId(), disease.getName(), disease.getDescription(), disease.getCategory());
+            copy.addAdditionalInfo("matchScore", disease.getAdditionalInfo().getOrDefault("matchScore", "0"));
+            copies.add(copy);
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,272 @@
+package medicalclinic.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import jade.core.Profile;
+import jade.core.ProfileImpl;
+import jade.core.Runtime;
+import jade.wrapper.AgentController;
+import jade.wrapper.ContainerController;
+import jade.wrapper.StaleProxyException;
+import medicalclinic.agents.MessageDispatcher;
+import medicalclinic.agents.ReceptionistAgent;
+import medicalclinic.gui.AutomatedPatientView;
+import medicalclinic.gui.HeadlessView;
+import medicalclinic.monitoring.AgentMetrics;
+import medicalclinic.monitoring.MetricsRegistry;
+import medicalclinic.tracing.TraceCollector;
+import medicalclinic.utils.JourneyRecorder;
+import medicalclinic.utils.JourneyRecorder.Stage;
+import medicalclinic.utils.StartSystem;
+import medicalclinic.utils.SymptomProfiles;
+
+/**
+ * Mesure de débit de bout en bout : démarre dans la JVM un conteneur principal JADE avec le personnel
+ * du cabinet, sans affichage, comme {@link StartSystem}, puis fait passer des patients automatisés
+ * par tout le parcours.
+ *
+ * La charge est en boucle fermée : un nouveau patient entre dès qu'un autre sort, pour maintenir
+ * {@code concurrency} patients dans le cabinet. Des patients de chauffe passent d'abord et ne sont pas
+ * comptés. Le rapport donne le débit soutenu (patients par minute), les percentiles des durées entre
+ * étapes du parcours, le nombre de messages ACL traités par patient et la charge de chaque agent du
+ * personnel. Paramètres (propriétés système) :
+ * <ul>
+ * <li>{@code medicalclinic.bench.patients} : patients mesurés (défaut 200)</li>
+ * <li>{@code medicalclinic.bench.warmupPatients} : patients de chauffe (défaut 20)</li>
+ * <li>{@code medicalclinic.bench.concurrency} : patients présents simultanément (défaut 20)</li>
+ * <li>{@code medicalclinic.bench.startupSeconds} : attente de l'inscription du personnel (défaut 5)</li>
+ * <li>{@code medicalclinic.bench.timeoutSeconds} : durée maximale d'une phase (défaut 600)</li>
+ * <li>{@code medicalclinic.bench.seed}, {@code medicalclinic.bench.label} (libellé de l'essai),
+ * {@code medicalclinic.bench.output} (défaut {@code bench-pipeline.json})</li>
+ * </ul>
+ * La configuration du cabinet (infirmiers, accueil réparti, lots...) reste celle des propriétés habituelles.
+ * Sauf s'ils sont fixés explicitement, les répertoires des dossiers ({@code medicalclinic.dataDir}), des
+ * traces et des métriques sont placés dans un répertoire temporaire propre à l'essai : un essai ne
+ * reprend pas l'état laissé par le précédent. Les identifiants des patients portent en outre un
+ * préfixe propre à l'essai.
+ */
+public class PipelineBenchmark {
+    private static final String PREFIX = "medicalclinic.bench.";
+    // Intervalle de vérification des sorties de patients
+    private static final long POLL_MILLIS = 10;
+
+    private final ContainerController container;
+    private final SymptomProfiles profiles = new SymptomProfiles();
+    private final Random random;
+    private final int concurrency;
+    private final long timeoutMillis;
+    private final JourneyRecorder recorder = JourneyRecorder.getInstance();
+    // Préfixe propre à l'essai, pour ne pas retrouver les patients d'un essai précédent
+    private final String runId = Long.toString(System.currentTimeMillis() % 1000000, 36);
+    private int sequence;
+
+    PipelineBenchmark(ContainerController container, long seed, int concurrency, long timeoutMillis) {
+        this.container = container;
+        this.random = new Random(seed);
+        this.concurrency = Math.max(1, concurrency);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int patients = Integer.getInteger(PREFIX + "patients", 200);
+        int warmupPatients = Integer.getInteger(PREFIX + "warmupPatients", 20);
+        int concurrency = Integer.getInteger(PREFIX + "concurrency", 20);
+        long startupMillis = Long.getLong(PREFIX + "startupSeconds", 5) * 1000;
+        long timeoutMillis = Long.getLong(PREFIX + "timeoutSeconds", 600) * 1000;
+        long seed = Long.getLong(PREFIX + "seed", 42);
+        String label = System.getProperty(PREFIX + "label", "");
+        File output = new File(System.getProperty(PREFIX + "output", "bench-pipeline.json"));
+
+        // Tous les agents de la JVM sont sans affichage ; les patients répondent sans délai
+        System.setProperty(HeadlessView.HEADLESS_PROPERTY, "true");
+        System.setProperty(AutomatedPatientView.THINK_MILLIS_PROPERTY, "0");
+
+        // Répertoires de l'essai, avant que le personnel et les registres ne les lisent
+        try {
+            File runDir = Files.createTempDirectory("medicalclinic-bench-").toFile();
+            setDefaultProperty(ReceptionistAgent.DATA_DIR_PROPERTY, new File(runDir, "data"));
+            setDefaultProperty(TraceCollector.DIR_PROPERTY, new File(runDir, "traces"));
+            setDefaultProperty(MetricsRegistry.DIR_PROPERTY, new File(runDir, "metrics"));
+            System.out.println("Répertoire de l'essai : " + runDir.getAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("Impossible de créer le répertoire de l'essai: " + e.getMessage());
+            System.exit(2);
+        }
+
+        Runtime runtime = Runtime.instance();
+        Profile profile = new ProfileImpl();
+        profile.setParameter(Profile.MAIN_HOST, "localhost");
+        profile.setParameter(Profile.GUI, "false");
+        ContainerController container = runtime.createMainContainer(profile);
+
+        int exitCode = 0;
+        try {
+            StartSystem.startClinic(container);
+            // Laisser le personnel s'inscrire et se découvrir avant les premiers patients
+            Thread.sleep(startupMillis);
+
+            PipelineBenchmark benchmark = new PipelineBenchmark(container, seed, concurrency, timeoutMillis);
+            JourneyRecorder recorder = JourneyRecorder.getInstance();
+            recorder.setEnabled(true);
+
+            if (warmupPatients > 0) {
+                System.out.println("Chauffe : " + warmupPatients + " patients");
+                benchmark.runPhase(warmupPatients);
+            }
+            recorder.clear();
+
+            System.out.println("Mesure : " + patients + " patients, " + concurrency + " simultanés");
+            long messagesBefore = MetricsRegistry.getInstance().getTotalMessagesHandled();
+            long start = System.currentTimeMillis();
+            int completed = benchmark.runPhase(patients);
+            long elapsed = System.currentTimeMillis() - start;
+            long messages = MetricsRegistry.getInstance().getTotalMessagesHandled() - messagesBefore;
+
+            JsonObject report = report(label, patients, completed, concurrency, elapsed, messages);
+            System.out.print(recorder.formatSummary());
+            System.out.println(String.format("Débit soutenu : %.1f patients/min, %.1f messages par patient",
+                report.get("patientsPerMinute").getAsDouble(), report.get("messagesPerPatient").getAsDouble()));
+            write(report, output);
+            System.out.println("Résultats écrits dans " + output.getAbsolutePath());
+            if (completed < patients) {
+                System.err.println((patients - completed) + " patient(s) n'ont pas terminé leur parcours");
+                exitCode = 1;
+            }
+        } catch (StaleProxyException e) {
+            System.err.println("Erreur lors du démarrage des agents: " + e.getMessage());
+            exitCode = 2;
+        } catch (IOException e) {
+            System.err.println("Erreur d'écriture des résultats: " + e.getMessage());
+            exitCode = 2;
+        } finally {
+            try {
+                container.kill();
+            } catch (StaleProxyException e) {
+                e.printStackTrace();
+            }
+            runtime.shutDown();
+        }
+        System.exit(exitCode);
+    }
+
+    // Fixe la propriété sauf si elle a été donnée sur la ligne de commande
+    private static void setDefaultProperty(String name, File directory) {
+        if (System.getProperty(name) == null) {
+            System.setProperty(name, directory.getPath());
+        }
+    }
+
+    /**
+     * Fait passer des patients en maintenant la concurrence demandée, jusqu'à leur sortie
+     * @return Nombre de patients sortis du cabinet
+     */
+    int runPhase(int patients) throws InterruptedException {
+        int launched = 0;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        int completed = 0;
+        while (completed < patients && System.currentTimeMillis() < deadline) {
+            completed = recorder.getCompletedCount();
+            while (launched < patients && launched - completed < concurrency) {
+                if (launchPatient()) {
+                    launched++;
+                } else {
+                    // Patient non lancé : il ne sera pas attendu
+                    patients--;
+                }
+            }
+            Thread.sleep(POLL_MILLIS);
+        }
+        return recorder.getCompletedCount();
+    }
+
+    private boolean launchPatient() {
+        String patientId = "bench-" + runId + "-" + (sequence++);
+        String phone = String.format("07%08d", random.nextInt(100000000));
+        try {
+            recorder.mark(patientId, Stage.SPAWNED);
+            AgentController patientAgent = container.createNewAgent(
+                patientId,
+                "medicalclinic.agents.PatientAgent",
+                new Object[] { HeadlessView.HEADLESS_ARGUMENT, phone, profiles.draw(random) });
+            patientAgent.start();
+            return true;
+        } catch (StaleProxyException e) {
+            System.err.println("Impossible de lancer le patient " + patientId + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static JsonObject report(String label, int patients, int completed, int concurrency,
+                                     long elapsedMillis, long messages) {
+        JsonObject report = new JsonObject();
+        report.addProperty("label", label);
+        report.addProperty("patients", patients);
+        report.addProperty("completed", completed);
+        report.addProperty("concurrency", concurrency);
+        report.addProperty("nurses", Integer.getInteger(StartSystem.NURSE_COUNT_PROPERTY,
+            StartSystem.DEFAULT_NURSE_COUNT));
+        report.addProperty("frontDeskShards", Integer.getInteger(StartSystem.FRONT_DESK_SHARDS_PROPERTY, 1));
+        report.addProperty("batchSize", Integer.getInteger(MessageDispatcher.BATCH_SIZE_PROPERTY,
+            MessageDispatcher.DEFAULT_BATCH_SIZE));
+        report.addProperty("durationMillis", elapsedMillis);
+        report.addProperty("patientsPerMinute", elapsedMillis == 0 ? 0.0 : completed * 60000.0 / elapsedMillis);
+        report.addProperty("messagesPerPatient", completed == 0 ? 0.0 : messages / (double) completed);
+
+        // Durées entre étapes successives, puis parcours complet
+        JsonObject stages = new JsonObject();
+        Stage[] all = Stage.values();
+        for (int i = 1; i < all.length; i++) {
+            stages.add(all[i - 1] + "->" + all[i], percentiles(all[i - 1], all[i]));
+        }
+        stages.add("VISIT", percentiles(Stage.SPAWNED, Stage.EXIT));
+        report.add("stagesMillis", stages);
+
+        // Charge du personnel : agents encore présents, hors patients
+        JsonArray agents = new JsonArray();
+        for (AgentMetrics metrics : MetricsRegistry.getInstance().getAgents()) {
+            if ("PatientAgent".equals(metrics.getAgentClass())) {
+                continue;
+            }
+            JsonObject agent = new JsonObject();
+            agent.addProperty("name", metrics.getAgentName());
+            agent.addProperty("class", metrics.getAgentClass());
+            agent.addProperty("messages", metrics.getMessagesHandled());
+            agent.addProperty("busyRatio", metrics.getBusyRatio());
+            agent.addProperty("maxQueueDepth", metrics.getMaxQueueDepth());
+            agents.add(agent);
+        }
+        report.add("agents", agents);
+        return report;
+    }
+
+    private static JsonObject percentiles(Stage from, Stage to) {
+        List<Long> durations = JourneyRecorder.getInstance().durations(from, to);
+        JsonObject stage = new JsonObject();
+        stage.addProperty("n", durations.size());
+        if (!durations.isEmpty()) {
+            stage.addProperty("p50", JourneyRecorder.percentile(durations, 0.50));
+            stage.addProperty("p90", JourneyRecorder.percentile(durations, 0.90));
+            stage.addProperty("p99", JourneyRecorder.percentile(durations, 0.99));
+            stage.addProperty("max", durations.get(durations.size() - 1));
+        }
+        return stage;
+    }
+
+    private static void write(JsonObject report, File output) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(report, writer);
+        }
+    }
+}
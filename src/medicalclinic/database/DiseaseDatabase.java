@@ -3,6 +3,7 @@ package medicalclinic.database;
 import medicalclinic.models.Disease;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 
@@ -15,6 +16,14 @@ public class DiseaseDatabase {
         initializeDiseases();
     }
 
+    // Base limitée au catalogue donné, indépendante de l'instance partagée
+    private DiseaseDatabase(Collection<Disease> catalogue) {
+        diseases = new HashMap<>();
+        for (Disease disease : catalogue) {
+            diseases.put(disease.getId(), disease);
+        }
+    }
+
     public static synchronized DiseaseDatabase getInstance() {
         if (instance == null) {
             instance = new DiseaseDatabase();
@@ -22,6 +31,14 @@ public class DiseaseDatabase {
         return instance;
     }
 
+    /**
+     * Crée une base sur un autre catalogue que celui du cabinet (mesures de performance, simulations).
+     * Les maladies sont partagées, pas copiées.
+     */
+    public static DiseaseDatabase withCatalogue(Collection<Disease> catalogue) {
+        return new DiseaseDatabase(catalogue);
+    }
+
     private void initializeDiseases() {
         // 1. MALADIES INFECTIEUSES TROPICALES
 
@@ -0,0 +1,179 @@
+package medicalclinic.gui;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import jade.core.behaviours.WakerBehaviour;
+import medicalclinic.agents.PatientAgent;
+import medicalclinic.database.DiseaseDatabase;
+import medicalclinic.models.Disease;
+import medicalclinic.utils.JourneyRecorder;
+import medicalclinic.utils.JourneyRecorder.Stage;
+
+/**
+ * Patient view without a display: the forms are answered programmatically.
+ *
+ * Personal information keeps the values already on file and makes up the missing ones, symptoms
+ * are the ones given at creation or those of a disease drawn from the disease database (the draw
+ * depends on the patient id, so a run is reproducible), and the patient leaves the clinic once the
+ * diagnosis is received. An optional think time, {@code medicalclinic.patient.thinkMillis}, delays
+ * each answer. Each step of the journey is reported to the {@link JourneyRecorder}.
+ */
+public class AutomatedPatientView implements PatientView {
+    // System property: delay before answering each form, in milliseconds
+    public static final String THINK_MILLIS_PROPERTY = "medicalclinic.patient.thinkMillis";
+
+    private static final String[] CITIES = {"Paris", "Lyon", "Marseille", "Toulouse", "Lille", "Nantes"};
+
+    private final long thinkMillis;
+    private final boolean echo;
+    private final AtomicLong messages = new AtomicLong();
+    private PatientAgent patientAgent;
+    private Random random = new Random();
+    private String declaredSymptoms;
+
+    public AutomatedPatientView() {
+        this(null);
+    }
+
+    // Symptoms to declare to the nurse, comma-separated; drawn from the disease database if null
+    public AutomatedPatientView(String declaredSymptoms) {
+        this.declaredSymptoms = declaredSymptoms;
+        this.thinkMillis = Long.getLong(THINK_MILLIS_PROPERTY, 0);
+        this.echo = Boolean.getBoolean(HeadlessView.ECHO_PROPERTY);
+    }
+
+    @Override
+    public void setPatientAgent(PatientAgent agent) {
+        this.patientAgent = agent;
+        this.random = new Random(agent.getLocalName().hashCode());
+        if (declaredSymptoms == null) {
+            List<Disease> diseases = DiseaseDatabase.getInstance().getAllDiseases();
+            declaredSymptoms = diseases.isEmpty() ? "fatigue" :
+                String.join(", ", diseases.get(random.nextInt(diseases.size())).getCommonSymptoms());
+        }
+        mark(Stage.AGENT_STARTED);
+    }
+
+    @Override
+    public void displayMessage(String message) {
+        messages.incrementAndGet();
+        if (echo && patientAgent != null) {
+            System.out.println("[" + patientAgent.getLocalName() + "] " + message);
+        }
+    }
+
+    @Override
+    public void updateLocation(String location) {
+        displayMessage("Emplacement: " + location);
+        if (location.startsWith("Salle de consultation")) {
+            mark(Stage.CONSULTATION_ROOM);
+        } else if (location.startsWith("Salle d'attente")) {
+            mark(Stage.WAITING_ROOM);
+        }
+    }
+
+    @Override
+    public void displayPersonalForm(String formJson) {
+        mark(Stage.PERSONAL_FORM);
+        HashMap<String, String> answers = new HashMap<>();
+        for (JsonElement element : JsonParser.parseString(formJson).getAsJsonObject().getAsJsonArray("fields")) {
+            JsonObject field = element.getAsJsonObject();
+            String name = field.get("name").getAsString();
+            // Returning patient: the values on file are kept as they are
+            answers.put(name, field.has("value") ? field.get("value").getAsString() : personalValue(name));
+        }
+        later(() -> patientAgent.fillPersonalForm(answers));
+    }
+
+    @Override
+    public void displayNurseQuestions(String questionsJson) {
+        mark(Stage.NURSE_QUESTIONS);
+        HashMap<String, String> answers = new HashMap<>();
+        for (JsonElement element : JsonParser.parseString(questionsJson).getAsJsonObject().getAsJsonArray("fields")) {
+            String name = element.getAsJsonObject().get("name").getAsString();
+            answers.put(name, symptomValue(name));
+        }
+        later(() -> patientAgent.answerNurseQuestions(answers));
+    }
+
+    @Override
+    public void displayDoctorQuestions(String questionsJson) {
+        mark(Stage.DOCTOR_QUESTIONS);
+        HashMap<String, String> answers = new HashMap<>();
+        for (JsonElement element : JsonParser.parseString(questionsJson).getAsJsonObject().getAsJsonArray("fields")) {
+            String name = element.getAsJsonObject().get("name").getAsString();
+            // Questions about the drawn disease are confirmed, the history questions are not
+            answers.put(name, name.startsWith("disease_") ? "oui" : "non");
+        }
+        later(() -> patientAgent.answerDoctorQuestions(answers));
+    }
+
+    @Override
+    public void displayDiagnosis(String diagnosis) {
+        mark(Stage.DIAGNOSIS);
+        displayMessage(diagnosis);
+        later(() -> {
+            mark(Stage.EXIT);
+            patientAgent.exitSystem();
+        });
+    }
+
+    private String personalValue(String name) {
+        String id = patientAgent.getLocalName();
+        switch (name) {
+            case "firstName": return "Patient";
+            case "lastName": return id;
+            case "birthDate":
+                return String.format("%04d-%02d-%02d",
+                    1940 + random.nextInt(70), 1 + random.nextInt(12), 1 + random.nextInt(28));
+            case "gender": return random.nextBoolean() ? "M" : "F";
+            case "address": return (1 + random.nextInt(200)) + " rue de la République";
+            case "city": return CITIES[random.nextInt(CITIES.length)];
+            case "phone":
+                // Phone given at creation: the one the receptionist uses to recognise the patient
+                return patientAgent.getPhone() != null ?
+                    patientAgent.getPhone() : String.format("06%08d", random.nextInt(100000000));
+            case "email": return id + "@example.org";
+            case "emergencyContact": return "Contact de " + id;
+            default: return "Non renseigné";
+        }
+    }
+
+    private String symptomValue(String name) {
+        switch (name) {
+            case "mainSymptoms":
+                return declaredSymptoms;
+            case "symptomDuration":
+                return (1 + random.nextInt(10)) + " jours";
+            default:
+                return "non";
+        }
+    }
+
+    private void mark(Stage stage) {
+        JourneyRecorder.getInstance().mark(patientAgent.getLocalName(), stage);
+    }
+
+    // Answers after the think time, on the agent thread
+    private void later(Runnable answer) {
+        if (thinkMillis <= 0) {
+            answer.run();
+            return;
+        }
+        patientAgent.addBehaviour(new WakerBehaviour(patientAgent, thinkMillis) {
+            @Override
+            protected void onWake() {
+                answer.run();
+            }
+        });
+    }
+
+    public long getMessages() { return messages.get(); }
+}
@@ -0,0 +1,129 @@
+package medicalclinic.gui;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+import javax.swing.AbstractListModel;
+
+/**
+ * List model updated by difference with the previous content.
+ *
+ * Each element is identified by a key. {@link #update(List)} only removes the elements that
+ * disappeared, inserts the new ones, moves the ones whose position changed and notifies an element
+ * as changed when it is not equal to the previous one. A list of thousands of patients where a single
+ * patient was added produces one insertion event, and the selection is kept by the JList.
+ * Must only be used on the Event Dispatch Thread.
+ */
+public class DiffListModel<T> extends AbstractListModel<T> {
+    private static final long serialVersionUID = 1L;
+
+    private final Function<T, ?> keyFunction;
+    private final List<T> elements = new ArrayList<>();
+
+    public DiffListModel(Function<T, ?> keyFunction) {
+        this.keyFunction = keyFunction;
+    }
+
+    @Override
+    public int getSize() {
+        return elements.size();
+    }
+
+    @Override
+    public T getElementAt(int index) {
+        return elements.get(index);
+    }
+
+    /**
+     * Replaces the content by the given list, firing only the events needed to go from one to the other.
+     * The elements kept in place are the longest run already in the new order; the others are
+     * removed and inserted again at their new position.
+     */
+    public void update(List<T> items) {
+        // Only the first element of a key is kept
+        Map<Object, Integer> newIndexes = new HashMap<>();
+        List<T> newItems = new ArrayList<>(items.size());
+        for (T item : items) {
+            if (newIndexes.putIfAbsent(keyFunction.apply(item), newItems.size()) == null) {
+                newItems.add(item);
+            }
+        }
+
+        boolean[] kept = keptInPlace(newIndexes);
+
+        // Removals, from the end so that indexes stay valid, by contiguous runs
+        int runEnd = -1;
+        for (int i = elements.size() - 1; i >= 0; i--) {
+            if (!kept[i] && runEnd < 0) {
+                runEnd = i;
+            }
+            if (runEnd >= 0 && (kept[i] || i == 0)) {
+                int runStart = kept[i] ? i + 1 : i;
+                elements.subList(runStart, runEnd + 1).clear();
+                fireIntervalRemoved(this, runStart, runEnd);
+                runEnd = -1;
+            }
+        }
+
+        // The remaining elements are in the new order: insert the missing ones, refresh the changed ones
+        for (int i = 0; i < newItems.size(); i++) {
+            T item = newItems.get(i);
+            if (i < elements.size() && keyFunction.apply(item).equals(keyFunction.apply(elements.get(i)))) {
+                if (!Objects.equals(item, elements.get(i))) {
+                    elements.set(i, item);
+                    fireContentsChanged(this, i, i);
+                }
+            } else {
+                elements.add(i, item);
+                fireIntervalAdded(this, i, i);
+            }
+        }
+    }
+
+    // Marks the current elements forming the longest increasing sequence of new positions
+    private boolean[] keptInPlace(Map<Object, Integer> newIndexes) {
+        int size = elements.size();
+        boolean[] kept = new boolean[size];
+        int[] tails = new int[size];
+        int[] previous = new int[size];
+        int[] positions = new int[size];
+        int length = 0;
+
+        for (int i = 0; i < size; i++) {
+            Integer position = newIndexes.get(keyFunction.apply(elements.get(i)));
+            positions[i] = position != null ? position : -1;
+            if (position == null) {
+                continue;
+            }
+            // Binary search of the first tail whose position is not lower
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (positions[tails[middle]] < position) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+            kept[i] = true;
+        }
+        return kept;
+    }
+
+    public List<T> getItems() {
+        return new ArrayList<>(elements);
+    }
+}
@@ -3,36 +3,38 @@ package medicalclinic.gui;
 import java.awt.*;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
-import javax.swing.text.DefaultCaret;
 
 import medicalclinic.agents.DoctorAgent;
 import medicalclinic.models.PatientRecord;
 
-public class DoctorGUI extends JFrame {
+public class DoctorGUI extends JFrame implements DoctorView {
     private static final long serialVersionUID = 1L;
 
     private DoctorAgent doctorAgent;
 
     // Components
-    private JTextArea logArea;
-    private JScrollPane logScrollPane;
+    private LogView logView;
     private JLabel statusLabel;
     private JLabel patientLabel;
     private JLabel specialtyLabel;
     private JLabel roomLabel;
     private JPanel patientInfoPanel;
 
-    // Date format for logs
-    private SimpleDateFormat dateFormat = new SimpleDateFormat("HH:mm:ss");
+    // Time format for logs (thread-safe: messages are stamped on the agent thread)
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    // Agent-to-EDT updates, applied at a capped frame rate
+    private final UiEventBus uiBus;
 
     public DoctorGUI(DoctorAgent agent) {
         this.doctorAgent = agent;
+        this.uiBus = new UiEventBus(lines -> logView.append(lines));
 
         // Setup the frame
         setTitle("Médecin - Cabinet Médical");
@@ -130,20 +132,9 @@ public class DoctorGUI extends JFrame {
             BorderFactory.createEtchedBorder(), "Journal d'activité"));
         logPanel.setBackground(Color.WHITE);
 
-        logArea = new JTextArea();
-        logArea.setEditable(false);
-        logArea.setLineWrap(true);
-        logArea.setWrapStyleWord(true);
-        logArea.setFont(new Font("Monospaced", Font.PLAIN, 14));
-        logArea.setBackground(new Color(250, 250, 250));
-
-        // Make the text area automatically scroll to the bottom
-        DefaultCaret caret = (DefaultCaret) logArea.getCaret();
-        caret.setUpdatePolicy(DefaultCaret.ALWAYS_UPDATE);
-
-        logScrollPane = new JScrollPane(logArea);
-        logScrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
-        logPanel.add(logScrollPane, BorderLayout.CENTER);
+        // Bounded log: only the last rows are kept and only the visible ones are rendered
+        logView = new LogView(new Font("Monospaced", Font.PLAIN, 14), new Color(250, 250, 250));
+        logPanel.add(logView, BorderLayout.CENTER);
 
         // Add panels to split pane
         splitPane.setTopComponent(patientInfoPanel);
@@ -158,16 +149,27 @@ public class DoctorGUI extends JFrame {
 
         // Initialize with a welcome message
         displayMessage("Système démarré. En attente de patients...");
+        uiBus.start();
+    }
+
+    @Override
+    public void dispose() {
+        uiBus.stop();
+        super.dispose();
     }
 
     // Display a message in the log area
     public void displayMessage(String message) {
-        String timestamp = dateFormat.format(new Date());
-        logArea.append("[" + timestamp + "] " + message + "\n");
+        String timestamp = LocalTime.now().format(TIME_FORMAT);
+        uiBus.log("[" + timestamp + "] " + message);
     }
 
     // Update the current patient
     public void setCurrentPatient(String patientId) {
+        uiBus.post("patient", () -> showCurrentPatient(patientId));
+    }
+
+    private void showCurrentPatient(String patientId) {
         if (patientId == null || patientId.isEmpty()) {
             patientLabel.setText("Patient: Aucun");
             statusLabel.setText("Statut: Disponible");
@@ -179,6 +181,10 @@ public class DoctorGUI extends JFrame {
 
     // Display patient information
     public void displayPatientInfo(PatientRecord patientRecord) {
+        uiBus.post("patientInfo", () -> showPatientInfo(patientRecord));
+    }
+
+    private void showPatientInfo(PatientRecord patientRecord) {
         patientInfoPanel.removeAll();
 
         if (patientRecord == null) {
@@ -0,0 +1,15 @@
+package medicalclinic.gui;
+
+import medicalclinic.models.PatientRecord;
+
+/**
+ * What the doctor agent shows to the doctor.
+ * Implemented by the Swing window and by {@link HeadlessView} when no display is used.
+ */
+public interface DoctorView {
+    void displayMessage(String message);
+
+    void displayPatientInfo(PatientRecord patientRecord);
+
+    void dispose();
+}
@@ -0,0 +1,119 @@
+package medicalclinic.gui;
+
+import java.awt.GraphicsEnvironment;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import medicalclinic.models.PatientRecord;
+import medicalclinic.models.WaitingPatientInfo;
+
+/**
+ * View used when an agent runs without a display (server nodes, load tests).
+ *
+ * Nothing is rendered: messages and view updates are only counted, and messages are echoed to the
+ * standard output when {@code medicalclinic.headless.echo} is set. No Swing class is loaded.
+ */
+public class HeadlessView implements ReceptionistView, NurseView, DoctorView {
+    // System property or agent argument selecting the headless mode
+    public static final String HEADLESS_PROPERTY = "medicalclinic.headless";
+    public static final String HEADLESS_ARGUMENT = "headless";
+    // System property echoing the messages to the standard output
+    public static final String ECHO_PROPERTY = "medicalclinic.headless.echo";
+
+    private final String owner;
+    private final boolean echo;
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong updates = new AtomicLong();
+
+    public HeadlessView(String owner) {
+        this.owner = owner;
+        this.echo = Boolean.getBoolean(ECHO_PROPERTY);
+    }
+
+    /**
+     * True if the agent must run without a display: "headless" among its arguments,
+     * the {@code medicalclinic.headless} system property, or a JVM without a display.
+     */
+    public static boolean isRequested(Object[] args) {
+        if (Boolean.getBoolean(HEADLESS_PROPERTY) || GraphicsEnvironment.isHeadless()) {
+            return true;
+        }
+        if (args != null) {
+            for (Object arg : args) {
+                if (HEADLESS_ARGUMENT.equals(arg)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Agent arguments without the "headless" flag, for agents reading their arguments by position
+    public static Object[] withoutFlag(Object[] args) {
+        if (args == null) {
+            return null;
+        }
+        List<Object> remaining = new ArrayList<>(args.length);
+        for (Object arg : args) {
+            if (!HEADLESS_ARGUMENT.equals(arg)) {
+                remaining.add(arg);
+            }
+        }
+        return remaining.toArray();
+    }
+
+    @Override
+    public void displayMessage(String message) {
+        messages.incrementAndGet();
+        if (echo) {
+            System.out.println("[" + owner + "] " + message);
+        }
+    }
+
+    @Override
+    public void updatePatientsList(Collection<String> patientIds) {
+        updates.incrementAndGet();
+    }
+
+    @Override
+    public void updateWaitingPatients(LinkedList<WaitingPatientInfo> waitingPatients) {
+        updates.incrementAndGet();
+    }
+
+    @Override
+    public void updatePatientRecord(PatientRecord record) {
+        updates.incrementAndGet();
+    }
+
+    @Override
+    public void showSearchResults(String query, List<String> patientIds) {
+        updates.incrementAndGet();
+    }
+
+    @Override
+    public void setCurrentPatient(String patientId) {
+        updates.incrementAndGet();
+    }
+
+    @Override
+    public void setStatus(String status) {
+        updates.incrementAndGet();
+    }
+
+    @Override
+    public void displayPatientInfo(PatientRecord patientRecord) {
+        updates.incrementAndGet();
+    }
+
+    @Override
+    public void dispose() {
+        System.out.println(owner + " (sans affichage): " + messages.get() + " messages, "
+            + updates.get() + " mises à jour de l'affichage");
+    }
+
+    public long getMessages() { return messages.get(); }
+    public long getUpdates() { return updates.get(); }
+}
@@ -0,0 +1,97 @@
+package medicalclinic.gui;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.AbstractListModel;
+
+/**
+ * Fixed-capacity ring buffer of log rows, used as the model of a {@link LogView}.
+ *
+ * Rows are stored already formatted; once the buffer is full each new row overwrites the oldest one,
+ * so memory stays flat and an append costs the same after a minute or after a week.
+ * Must only be used on the Event Dispatch Thread.
+ */
+public class LogBuffer extends AbstractListModel<String> {
+    private static final long serialVersionUID = 1L;
+
+    // System property setting the number of rows kept by each log view
+    public static final String CAPACITY_PROPERTY = "medicalclinic.ui.logCapacity";
+    public static final int DEFAULT_CAPACITY = 5000;
+
+    private final String[] rows;
+    private int head;
+    private int size;
+    private long dropped;
+
+    public LogBuffer() {
+        this(Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY));
+    }
+
+    public LogBuffer(int capacity) {
+        this.rows = new String[Math.max(1, capacity)];
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public String getElementAt(int index) {
+        return rows[(head + index) % rows.length];
+    }
+
+    /**
+     * Appends a batch of entries, one row per line of text. Listeners are notified once for the
+     * evicted rows and once for the added rows, whatever the size of the batch.
+     */
+    public void append(List<String> entries) {
+        int sizeBefore = size;
+        int added = 0;
+        for (String entry : entries) {
+            int start = 0;
+            while (start <= entry.length()) {
+                int end = entry.indexOf('\n', start);
+                if (end < 0) {
+                    end = entry.length();
+                }
+                if (end > start) {
+                    if (size < rows.length) {
+                        size++;
+                    } else {
+                        // Full: the oldest row is overwritten
+                        head = (head + 1) % rows.length;
+                    }
+                    rows[(head + size - 1) % rows.length] = entry.substring(start, end);
+                    added++;
+                }
+                start = end + 1;
+            }
+        }
+        if (added == 0) {
+            return;
+        }
+
+        // Rows both added and evicted within the batch were never shown: they are not notified
+        int evicted = Math.min(sizeBefore, sizeBefore + added - size);
+        if (evicted > 0) {
+            fireIntervalRemoved(this, 0, evicted - 1);
+        }
+        fireIntervalAdded(this, sizeBefore - evicted, size - 1);
+        dropped += sizeBefore + added - size;
+    }
+
+    public void clear() {
+        int oldSize = size;
+        Arrays.fill(rows, null);
+        head = 0;
+        size = 0;
+        if (oldSize > 0) {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+    }
+
+    public int getCapacity() { return rows.length; }
+    public long getDropped() { return dropped; }
+}
@@ -0,0 +1,73 @@
+package medicalclinic.gui;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.event.MouseEvent;
+import java.util.List;
+
+import javax.swing.JList;
+import javax.swing.JScrollBar;
+import javax.swing.JScrollPane;
+import javax.swing.ListSelectionModel;
+
+/**
+ * Scrollable log view backed by a {@link LogBuffer}.
+ *
+ * Rows have a fixed height and take the width of the viewport, so the list never measures its
+ * content and only the visible rows are rendered. Rows too long for the window are clipped;
+ * their full text is shown as a tooltip. The view follows new rows while scrolled to the bottom.
+ */
+public class LogView extends JScrollPane {
+    private static final long serialVersionUID = 1L;
+
+    private final LogBuffer buffer;
+    private final JList<String> list;
+
+    public LogView(Font font, Color background) {
+        this.buffer = new LogBuffer();
+        this.list = new JList<String>(buffer) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public boolean getScrollableTracksViewportWidth() {
+                return true;
+            }
+
+            @Override
+            public String getToolTipText(MouseEvent event) {
+                int index = locationToIndex(event.getPoint());
+                return index >= 0 ? buffer.getElementAt(index) : null;
+            }
+        };
+        list.setFont(font);
+        list.setBackground(background);
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setFixedCellHeight(list.getFontMetrics(font).getHeight() + 2);
+        list.setFixedCellWidth(1);
+        list.setToolTipText("");
+
+        setViewportView(list);
+        setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
+        setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
+    }
+
+    // Appends rows on the EDT, scrolling to the last one if the view was already at the bottom
+    public void append(List<String> entries) {
+        JScrollBar bar = getVerticalScrollBar();
+        boolean atBottom = bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum() - list.getFixedCellHeight();
+
+        buffer.append(entries);
+
+        if (atBottom && buffer.getSize() > 0) {
+            list.ensureIndexIsVisible(buffer.getSize() - 1);
+        }
+    }
+
+    public void clear() {
+        buffer.clear();
+    }
+
+    public LogBuffer getBuffer() {
+        return buffer;
+    }
+}
@@ -0,0 +1,15 @@
+package medicalclinic.gui;
+
+/**
+ * What the nurse agent shows to the nurse.
+ * Implemented by the Swing window and by {@link HeadlessView} when no display is used.
+ */
+public interface NurseView {
+    void displayMessage(String message);
+
+    void setCurrentPatient(String patientId);
+
+    void setStatus(String status);
+
+    void dispose();
+}
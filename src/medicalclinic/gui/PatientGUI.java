@@ -6,9 +6,11 @@ import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.util.HashMap;
+import java.util.List;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultCaret;
 
 import com.google.gson.JsonArray;
@@ -18,7 +20,7 @@ import com.google.gson.JsonParser;
 
 import medicalclinic.agents.PatientAgent;
 
-public class PatientGUI extends JFrame {
+public class PatientGUI extends JFrame implements PatientView {
     private static final long serialVersionUID = 1L;
 
     private PatientAgent patientAgent;
@@ -34,15 +36,22 @@ public class PatientGUI extends JFrame {
     private JLabel locationLabel;
     private JTextArea messagesArea;
     private JScrollPane messageScrollPane;
+    // Lines kept in the messages area; the oldest ones are trimmed beyond this
+    private final int maxMessageLines = Math.max(1,
+        Integer.getInteger(LogBuffer.CAPACITY_PROPERTY, LogBuffer.DEFAULT_CAPACITY));
     private JButton submitButton;
 
     // Form data
     private HashMap<String, JComponent> formFields;
     private String currentFormId;
 
+    // Agent-to-EDT updates, applied at a capped frame rate
+    private final UiEventBus uiBus;
+
     public PatientGUI(String patientId) {
         this.patientId = patientId;
         this.formFields = new HashMap<>();
+        this.uiBus = new UiEventBus(this::appendMessages);
 
         // Setup the frame
         setTitle("Patient " + patientId + " - Cabinet Médical");
@@ -143,6 +152,7 @@ public class PatientGUI extends JFrame {
             BorderFactory.createEtchedBorder(), "Messages"));
         messagePanel.setBackground(Color.WHITE);
 
+        // Instructions are long: the text wraps, and only the last lines are kept (see appendMessages)
         messagesArea = new JTextArea();
         messagesArea.setEditable(false);
         messagesArea.setLineWrap(true);
@@ -177,6 +187,13 @@ public class PatientGUI extends JFrame {
 
         // Initialize with a welcome message
         displayMessage("Bienvenue au Cabinet Médical. Veuillez attendre...");
+        uiBus.start();
+    }
+
+    @Override
+    public void dispose() {
+        uiBus.stop();
+        super.dispose();
     }
 
     // Set the patient agent reference
@@ -184,19 +201,42 @@ public class PatientGUI extends JFrame {
         this.patientAgent = agent;
     }
 
+    // Appends a batch of messages on the EDT, then trims the oldest lines beyond the capacity
+    private void appendMessages(List<String> entries) {
+        StringBuilder text = new StringBuilder();
+        for (String entry : entries) {
+            text.append(entry).append('\n');
+        }
+        messagesArea.append(text.toString());
+
+        // The text ends with a newline: the last line reported by the area is empty
+        int excess = messagesArea.getLineCount() - 1 - maxMessageLines;
+        if (excess > 0) {
+            try {
+                messagesArea.replaceRange(null, 0, messagesArea.getLineEndOffset(excess - 1));
+            } catch (BadLocationException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     // Display a message in the messages area
     public void displayMessage(String message) {
-        messagesArea.append(message + "\n\n");
+        uiBus.log(message);
     }
 
     // Update the patient's location
     public void updateLocation(String location) {
-        locationLabel.setText("Emplacement: " + location);
+        uiBus.post("location", () -> locationLabel.setText("Emplacement: " + location));
         displayMessage("Vous êtes maintenant dans: " + location);
     }
 
     // Display the personal information form
     public void displayPersonalForm(String formJson) {
+        uiBus.post("form", () -> showPersonalForm(formJson));
+    }
+
+    private void showPersonalForm(String formJson) {
         clearForm();
 
         try {
@@ -240,6 +280,11 @@ public class PatientGUI extends JFrame {
                     inputComponent = textField;
                 }
 
+                // Value already on file for a returning patient
+                if (field.has("value")) {
+                    ((JTextField) inputComponent).setText(field.get("value").getAsString());
+                }
+
                 fieldPanel.add(fieldLabel, BorderLayout.NORTH);
                 fieldPanel.add(inputComponent, BorderLayout.CENTER);
 
@@ -255,7 +300,16 @@ public class PatientGUI extends JFrame {
             formPanel.revalidate();
             formPanel.repaint();
 
-            displayMessage("Veuillez remplir le formulaire " + title);
+            if (formObj.has("prefilled") && formObj.get("prefilled").getAsBoolean()) {
+                displayMessage("Bon retour ! Vos informations ont été pré-remplies, vérifiez-les et modifiez si nécessaire.");
+                if (formObj.has("recentVisits")) {
+                    for (JsonElement visit : formObj.getAsJsonArray("recentVisits")) {
+                        displayMessage("Consultation précédente : " + visit.getAsString());
+                    }
+                }
+            } else {
+                displayMessage("Veuillez remplir le formulaire " + title);
+            }
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -265,11 +319,15 @@ public class PatientGUI extends JFrame {
 
     // Display questions from the nurse
     public void displayNurseQuestions(String questionsJson) {
-        displayForm("Questionnaire de l'Infirmier", questionsJson);
+        uiBus.post("form", () -> displayForm("Questionnaire de l'Infirmier", questionsJson));
     }
 
     // Display questions from the doctor
     public void displayDoctorQuestions(String questionsJson) {
+        uiBus.post("form", () -> showDoctorQuestions(questionsJson));
+    }
+
+    private void showDoctorQuestions(String questionsJson) {
         System.out.println("PatientGUI: Affichage des questions du médecin");
         System.out.println("Longueur du JSON reçu: " + questionsJson.length());
 
@@ -363,6 +421,10 @@ public class PatientGUI extends JFrame {
 
     // Display the diagnosis from the doctor
     public void displayDiagnosis(String diagnosis) {
+        uiBus.post("form", () -> showDiagnosis(diagnosis));
+    }
+
+    private void showDiagnosis(String diagnosis) {
         clearForm();
 
         JTextArea diagnosisArea = new JTextArea(diagnosis);
@@ -0,0 +1,23 @@
+package medicalclinic.gui;
+
+import medicalclinic.agents.PatientAgent;
+
+/**
+ * What the patient agent shows to the patient, and where the patient's answers come from.
+ * Implemented by the Swing window and by {@link AutomatedPatientView}, which answers the forms itself.
+ */
+public interface PatientView {
+    void setPatientAgent(PatientAgent agent);
+
+    void displayMessage(String message);
+
+    void updateLocation(String location);
+
+    void displayPersonalForm(String formJson);
+
+    void displayNurseQuestions(String questionsJson);
+
+    void displayDoctorQuestions(String questionsJson);
+
+    void displayDiagnosis(String diagnosis);
+}
@@ -1,12 +1,16 @@
 package medicalclinic.gui;
 
 import java.awt.*;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -17,25 +21,28 @@ import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
-import javax.swing.text.DefaultCaret;
 
 import medicalclinic.agents.ReceptionistAgent;
 import medicalclinic.models.Consultation;
+import medicalclinic.models.Disease;
 import medicalclinic.models.PatientRecord;
 import medicalclinic.models.WaitingPatientInfo;
 
-public class ReceptionistGUI extends JFrame {
+public class ReceptionistGUI extends JFrame implements ReceptionistView {
     private static final long serialVersionUID = 1L;
 
     private ReceptionistAgent receptionistAgent;
 
     // Components
-    private JTextArea logArea;
-    private JScrollPane logScrollPane;
+    private LogView logView;
     private JList<String> patientsList;
-    private DefaultListModel<String> patientsListModel;
-    private JList<String> waitingList;
-    private DefaultListModel<String> waitingListModel;
+    private DiffListModel<String> patientsListModel;
+    private JList<WaitingRow> waitingList;
+    private DiffListModel<WaitingRow> waitingListModel;
+
+    // Refresh period of the waiting times shown in the waiting list
+    private static final int WAITING_REFRESH_MS = 30000;
+    private Timer waitingRefreshTimer;
     private JPanel patientDetailsPanel;
     private JLabel statusLabel;
     private JLabel countLabel;
@@ -43,11 +50,15 @@ public class ReceptionistGUI extends JFrame {
     // Current selected patient
     private String selectedPatientId;
 
-    // Date format for logs
-    private SimpleDateFormat dateFormat = new SimpleDateFormat("HH:mm:ss");
+    // Time format for logs (thread-safe: messages are stamped on the agent thread)
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    // Agent-to-EDT updates, applied at a capped frame rate
+    private final UiEventBus uiBus;
 
     public ReceptionistGUI(ReceptionistAgent agent) {
         this.receptionistAgent = agent;
+        this.uiBus = new UiEventBus(lines -> logView.append(lines));
 
         // Setup the frame
         setTitle("Réceptionniste - Cabinet Médical");
@@ -99,6 +110,15 @@ public class ReceptionistGUI extends JFrame {
 
         // Initialize with a welcome message
         displayMessage("Système démarré. En attente de patients...");
+        uiBus.start();
+        waitingRefreshTimer.start();
+    }
+
+    @Override
+    public void dispose() {
+        uiBus.stop();
+        waitingRefreshTimer.stop();
+        super.dispose();
     }
 
     // Create header panel
@@ -141,7 +161,7 @@ public class ReceptionistGUI extends JFrame {
         patientsPanel.setBorder(BorderFactory.createTitledBorder(
             BorderFactory.createEtchedBorder(), "Patients Enregistrés"));
 
-        patientsListModel = new DefaultListModel<>();
+        patientsListModel = new DiffListModel<>(patientId -> patientId);
         patientsList = new JList<>(patientsListModel);
         patientsList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         patientsList.setFont(new Font("Arial", Font.PLAIN, 14));
@@ -169,6 +189,11 @@ public class ReceptionistGUI extends JFrame {
         JButton searchButton = new JButton("Rechercher");
         searchButton.setFont(new Font("Arial", Font.PLAIN, 12));
 
+        // Index lookup on the agent side; an empty query restores the full list
+        ActionListener searchListener = e -> receptionistAgent.searchPatients(searchField.getText());
+        searchField.addActionListener(searchListener);
+        searchButton.addActionListener(searchListener);
+
         searchPanel.add(searchField, BorderLayout.CENTER);
         searchPanel.add(searchButton, BorderLayout.EAST);
 
@@ -179,7 +204,7 @@ public class ReceptionistGUI extends JFrame {
         waitingPanel.setBorder(BorderFactory.createTitledBorder(
             BorderFactory.createEtchedBorder(), "Liste d'Attente"));
 
-        waitingListModel = new DefaultListModel<>();
+        waitingListModel = new DiffListModel<>(row -> row.patientId);
         waitingList = new JList<>(waitingListModel);
         waitingList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         waitingList.setFont(new Font("Arial", Font.PLAIN, 14));
@@ -189,8 +214,7 @@ public class ReceptionistGUI extends JFrame {
             @Override
             public void mouseClicked(MouseEvent e) {
                 if (e.getClickCount() == 2 && waitingList.getSelectedValue() != null) {
-                    String selectedItem = waitingList.getSelectedValue();
-                    String patientId = selectedItem.split(" ")[0];
+                    String patientId = waitingList.getSelectedValue().patientId;
 
                     // Afficher les détails du patient
                     selectedPatientId = patientId;
@@ -211,6 +235,9 @@ public class ReceptionistGUI extends JFrame {
             }
         });
 
+        // Waiting times are computed when a cell is painted: only the visible cells need repainting
+        waitingRefreshTimer = new Timer(WAITING_REFRESH_MS, e -> repaintVisibleWaitingRows());
+
         JScrollPane waitingScrollPane = new JScrollPane(waitingList);
         waitingPanel.add(waitingScrollPane, BorderLayout.CENTER);
 
@@ -243,24 +270,13 @@ public class ReceptionistGUI extends JFrame {
             BorderFactory.createEtchedBorder(), "Journal d'activité"));
         logPanel.setBackground(Color.WHITE);
 
-        logArea = new JTextArea();
-        logArea.setEditable(false);
-        logArea.setLineWrap(true);
-        logArea.setWrapStyleWord(true);
-        logArea.setFont(new Font("Monospaced", Font.PLAIN, 14));
-        logArea.setBackground(new Color(250, 250, 250));
-
-        // Make the text area automatically scroll to the bottom
-        DefaultCaret caret = (DefaultCaret) logArea.getCaret();
-        caret.setUpdatePolicy(DefaultCaret.ALWAYS_UPDATE);
-
-        logScrollPane = new JScrollPane(logArea);
-        logScrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_ALWAYS);
-        logPanel.add(logScrollPane, BorderLayout.CENTER);
+        // Bounded log: only the last rows are kept and only the visible ones are rendered
+        logView = new LogView(new Font("Monospaced", Font.PLAIN, 14), new Color(250, 250, 250));
+        logPanel.add(logView, BorderLayout.CENTER);
 
         // Clear log button
         JButton clearLogButton = new JButton("Effacer le journal");
-        clearLogButton.addActionListener(e -> logArea.setText(""));
+        clearLogButton.addActionListener(e -> logView.clear());
         logPanel.add(clearLogButton, BorderLayout.SOUTH);
 
         // Add panels to right panel with split pane
@@ -277,43 +293,51 @@ public class ReceptionistGUI extends JFrame {
 
     // Display a message in the log area
     public void displayMessage(String message) {
-        String timestamp = dateFormat.format(new Date());
-        logArea.append("[" + timestamp + "] " + message + "\n");
+        String timestamp = LocalTime.now().format(TIME_FORMAT);
+        uiBus.log("[" + timestamp + "] " + message);
     }
 
-    // Update the list of patients
-    public void updatePatientsList(HashMap<String, PatientRecord> patientRecords) {
-        patientsListModel.clear();
+    // Update the list of patients (the ids are copied: the agent keeps mutating its set)
+    public void updatePatientsList(Collection<String> patientIds) {
+        List<String> snapshot = new ArrayList<>(patientIds);
+        uiBus.post("patients", () -> showPatientsList(snapshot));
+    }
 
-        for (String patientId : patientRecords.keySet()) {
-            patientsListModel.addElement(patientId);
-        }
+    private void showPatientsList(List<String> patientIds) {
+        patientsListModel.update(patientIds);
 
-        countLabel.setText("Patients: " + patientRecords.size() + " | En attente: " + waitingListModel.size());
+        countLabel.setText("Patients: " + patientIds.size() + " | En attente: " + waitingListModel.getSize());
     }
 
     // Update the waiting list
     public void updateWaitingPatients(LinkedList<WaitingPatientInfo> waitingPatients) {
-        waitingListModel.clear();
-
+        List<WaitingRow> snapshot = new ArrayList<>(waitingPatients.size());
         for (WaitingPatientInfo info : waitingPatients) {
-            String patientId = info.getPatientId();
-            int waitingTime = info.getWaitingTimeInMinutes();
-            String display = patientId + " (" + waitingTime + " min)";
-
-            if (info.isUrgent()) {
-                display = "⚠️ " + display;
-            }
-
-            waitingListModel.addElement(display);
+            snapshot.add(new WaitingRow(info));
         }
+        uiBus.post("waiting", () -> showWaitingPatients(snapshot));
+    }
+
+    private void showWaitingPatients(List<WaitingRow> waitingPatients) {
+        waitingListModel.update(waitingPatients);
 
         if (countLabel != null) {
-            int patientsCount = patientsListModel.size();
+            int patientsCount = patientsListModel.getSize();
             countLabel.setText("Patients: " + patientsCount + " | En attente: " + waitingPatients.size());
         }
     }
 
+    private void repaintVisibleWaitingRows() {
+        int first = waitingList.getFirstVisibleIndex();
+        int last = waitingList.getLastVisibleIndex();
+        if (first >= 0) {
+            Rectangle bounds = waitingList.getCellBounds(first, last);
+            if (bounds != null) {
+                waitingList.repaint(bounds);
+            }
+        }
+    }
+
     // Display patient details in the details panel
     private void displayPatientDetails(String patientId) {
         patientDetailsPanel.removeAll();
@@ -518,9 +542,12 @@ public class ReceptionistGUI extends JFrame {
         contentPanel.add(diagnosisScroll);
         contentPanel.add(Box.createRigidArea(new Dimension(0, 10)));
 
-        // Disease
-        if (consultation.getDisease() != null) {
-            JLabel diseaseLabel = new JLabel("Maladie: " + consultation.getDisease().getName());
+        // Disease (resolved lazily from the catalogue by id)
+        if (consultation.getDiseaseId() != null) {
+            Disease disease = consultation.getDisease();
+            String diseaseName = disease != null ? disease.getName() : consultation.getDiseaseId();
+            JLabel diseaseLabel = new JLabel("Maladie: " + diseaseName +
+                " (" + consultation.getDiseaseMatchScore() + "% de correspondance)");
             diseaseLabel.setFont(new Font("Arial", Font.BOLD, 14));
             contentPanel.add(diseaseLabel);
             contentPanel.add(Box.createRigidArea(new Dimension(0, 5)));
@@ -559,6 +586,39 @@ public class ReceptionistGUI extends JFrame {
         return panel;
     }
 
+    // Immutable copy of a waiting list entry, taken on the agent thread
+    private static final class WaitingRow {
+        private final String patientId;
+        private final long timeAdded;
+        private final boolean urgent;
+        // Estimated remaining wait when the list was last updated (-1: unknown)
+        private final long estimatedWait;
+        private final long estimatedAt;
+
+        WaitingRow(WaitingPatientInfo info) {
+            this.patientId = info.getPatientId();
+            this.timeAdded = info.getTimeAdded().getTime();
+            this.urgent = info.isUrgent();
+            this.estimatedWait = info.getEstimatedWaitMillis();
+            this.estimatedAt = info.getEstimatedAt();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof WaitingRow)) {
+                return false;
+            }
+            WaitingRow row = (WaitingRow) other;
+            return patientId.equals(row.patientId) && timeAdded == row.timeAdded && urgent == row.urgent &&
+                estimatedWait == row.estimatedWait && estimatedAt == row.estimatedAt;
+        }
+
+        @Override
+        public int hashCode() {
+            return patientId.hashCode();
+        }
+    }
+
     // Patient list cell renderer
     private class PatientListCellRenderer extends DefaultListCellRenderer {
         @Override
@@ -585,11 +645,25 @@ public class ReceptionistGUI extends JFrame {
             JLabel label = (JLabel) super.getListCellRendererComponent(
                 list, value, index, isSelected, cellHasFocus);
 
+            // The waiting time is computed at paint time
+            WaitingRow row = (WaitingRow) value;
+            long now = System.currentTimeMillis();
+            long minutes = (now - row.timeAdded) / 60000;
+            String text = row.patientId + " (" + minutes + " min";
+            if (row.estimatedWait >= 0) {
+                // The estimate counts down between two updates of the list
+                long remaining = Math.max(0, row.estimatedWait - (now - row.estimatedAt));
+                text += ", encore ~" + (remaining + 59999) / 60000 + " min";
+            }
+            text += ")";
+
             // Add visual indication for urgent cases
-            String text = (String) value;
-            if (text.startsWith("⚠️")) {
+            if (row.urgent) {
+                label.setText("⚠️ " + text);
                 label.setForeground(Color.RED);
                 label.setFont(label.getFont().deriveFont(Font.BOLD));
+            } else {
+                label.setText(text);
             }
 
             // Customize appearance
@@ -600,15 +674,27 @@ public class ReceptionistGUI extends JFrame {
         }
     }
 
+    // Show the patients matching a search
+    public void showSearchResults(String query, List<String> patientIds) {
+        uiBus.post("patients", () -> showPatientsList(patientIds));
+        displayMessage(patientIds.size() + " patient(s) trouvé(s) pour \"" + query + "\"");
+    }
+
     // Update patient record
     public void updatePatientRecord(PatientRecord record) {
-        if (record != null && record.getPatientId().equals(selectedPatientId)) {
-            displayPatientDetails(selectedPatientId);
+        if (record == null) {
+            return;
         }
+        String patientId = record.getPatientId();
+        uiBus.post("record", () -> {
+            if (patientId.equals(selectedPatientId)) {
+                displayPatientDetails(selectedPatientId);
+            }
+        });
     }
 
     // Set status
     public void setStatus(String status) {
-        statusLabel.setText("État: " + status);
+        uiBus.post("status", () -> statusLabel.setText("État: " + status));
     }
 }
@@ -0,0 +1,26 @@
+package medicalclinic.gui;
+
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+
+import medicalclinic.models.PatientRecord;
+import medicalclinic.models.WaitingPatientInfo;
+
+/**
+ * What the receptionist agent shows to the front desk.
+ * Implemented by the Swing window and by {@link HeadlessView} when no display is used.
+ */
+public interface ReceptionistView {
+    void displayMessage(String message);
+
+    void updatePatientsList(Collection<String> patientIds);
+
+    void updateWaitingPatients(LinkedList<WaitingPatientInfo> waitingPatients);
+
+    void updatePatientRecord(PatientRecord record);
+
+    void showSearchResults(String query, List<String> patientIds);
+
+    void dispose();
+}
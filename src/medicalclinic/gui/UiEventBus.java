@@ -0,0 +1,124 @@
+package medicalclinic.gui;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import javax.swing.Timer;
+
+/**
+ * Non-blocking bridge between agent threads and the Swing Event Dispatch Thread.
+ *
+ * Agents publish log lines and keyed view updates into lock-free queues and return immediately.
+ * A Swing timer drains both queues on the EDT at most {@code fps} times per second: all pending log
+ * lines are handed to the log view in a single batch, and for keyed updates only the latest one per key is applied
+ * (a waiting list refreshed ten times between two frames is redrawn once).
+ */
+public class UiEventBus {
+    // System property capping the number of frames per second
+    public static final String FPS_PROPERTY = "medicalclinic.ui.fps";
+    public static final int DEFAULT_FPS = 20;
+
+    private static class KeyedUpdate {
+        private final String key;
+        private final Runnable update;
+
+        KeyedUpdate(String key, Runnable update) {
+            this.key = key;
+            this.update = update;
+        }
+    }
+
+    private final ConcurrentLinkedQueue<String> logLines = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<KeyedUpdate> updates = new ConcurrentLinkedQueue<>();
+    private final Consumer<List<String>> logSink;
+    private final Timer timer;
+    // Modal dialogs opened by an update pump events, so the timer may fire while draining
+    private boolean draining;
+
+    // Statistics
+    private final AtomicLong publishedLines = new AtomicLong();
+    private final AtomicLong publishedUpdates = new AtomicLong();
+    private long appliedUpdates;
+    private long frames;
+
+    public UiEventBus(Consumer<List<String>> logSink) {
+        this(logSink, Integer.getInteger(FPS_PROPERTY, DEFAULT_FPS));
+    }
+
+    public UiEventBus(Consumer<List<String>> logSink, int fps) {
+        this.logSink = logSink;
+        this.timer = new Timer(1000 / Math.max(1, Math.min(fps, 1000)), e -> drain());
+        this.timer.setCoalesce(true);
+    }
+
+    public void start() {
+        timer.start();
+    }
+
+    // Stops the timer; pending events are discarded with the window
+    public void stop() {
+        timer.stop();
+    }
+
+    // Queues a log line; callable from any thread
+    public void log(String line) {
+        logLines.add(line);
+        publishedLines.incrementAndGet();
+    }
+
+    /**
+     * Queues a view update; callable from any thread. Updates sharing a key replace each other
+     * until the next frame. The update must not depend on mutable agent state captured by reference.
+     */
+    public void post(String key, Runnable update) {
+        updates.add(new KeyedUpdate(key, update));
+        publishedUpdates.incrementAndGet();
+    }
+
+    // Runs on the EDT at each timer tick
+    private void drain() {
+        if (draining || (logLines.isEmpty() && updates.isEmpty())) {
+            return;
+        }
+        draining = true;
+        try {
+            frames++;
+
+            List<String> batch = new ArrayList<>();
+            String line;
+            while ((line = logLines.poll()) != null) {
+                batch.add(line);
+            }
+            if (!batch.isEmpty()) {
+                logSink.accept(batch);
+            }
+
+            // Keep the latest update per key, ordered by its last publication
+            LinkedHashMap<String, Runnable> latest = new LinkedHashMap<>();
+            KeyedUpdate keyed;
+            while ((keyed = updates.poll()) != null) {
+                latest.remove(keyed.key);
+                latest.put(keyed.key, keyed.update);
+            }
+            for (Runnable update : latest.values()) {
+                try {
+                    update.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+                appliedUpdates++;
+            }
+        } finally {
+            draining = false;
+        }
+    }
+
+    public long getPublishedLines() { return publishedLines.get(); }
+    public long getPublishedUpdates() { return publishedUpdates.get(); }
+    public long getAppliedUpdates() { return appliedUpdates; }
+    public long getFrames() { return frames; }
+}
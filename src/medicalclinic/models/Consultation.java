@@ -1,5 +1,7 @@
 package medicalclinic.models;
 
+import medicalclinic.database.DiseaseDatabase;
+
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
@@ -12,7 +14,12 @@ public class Consultation implements Serializable {
     private Date timestamp;
     private HashMap<String, String> symptoms;
     private List<Medication> prescriptions;
-    private Disease disease;
+    // Référence compacte vers le catalogue : seuls l'identifiant et le score sont sérialisés
+    private String diseaseId;
+    private int diseaseMatchScore;
+    // Nom conservé uniquement pour une maladie absente du catalogue (ex. UNK001)
+    private String diseaseName;
+    private transient Disease disease;
     private String notes;
 
     public Consultation() {
@@ -66,12 +73,40 @@ public class Consultation implements Serializable {
         this.prescriptions = prescriptions;
     }
 
+    // Résout la maladie auprès du catalogue à la première demande
     public Disease getDisease() {
+        if (disease == null && diseaseId != null) {
+            disease = DiseaseDatabase.getInstance().getDisease(diseaseId);
+            if (disease == null && diseaseName != null) {
+                disease = new Disease(diseaseId, diseaseName);
+            }
+        }
         return disease;
     }
 
     public void setDisease(Disease disease) {
         this.disease = disease;
+        this.diseaseId = disease != null ? disease.getId() : null;
+        this.diseaseName = disease != null && DiseaseDatabase.getInstance().getDisease(diseaseId) == null ?
+            disease.getName() : null;
+    }
+
+    public String getDiseaseId() {
+        return diseaseId;
+    }
+
+    public void setDiseaseId(String diseaseId) {
+        this.diseaseId = diseaseId;
+        this.diseaseName = null;
+        this.disease = null;
+    }
+
+    public int getDiseaseMatchScore() {
+        return diseaseMatchScore;
+    }
+
+    public void setDiseaseMatchScore(int diseaseMatchScore) {
+        this.diseaseMatchScore = diseaseMatchScore;
     }
 
     public String getNotes() {
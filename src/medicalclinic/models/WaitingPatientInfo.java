@@ -9,6 +9,10 @@ public class WaitingPatientInfo implements Serializable {
     private HashMap<String, String> symptomsInfo;
     private Date timeAdded;
     private boolean isUrgent;
+    // Attente restante estimée par la réceptionniste (-1 : inconnue), et date de l'estimation.
+    // Recalculée à chaque changement de la liste : ni journalisée ni sauvegardée
+    private transient long estimatedWaitMillis = -1;
+    private transient long estimatedAt;
 
     // Constructeur
     public WaitingPatientInfo(String patientId, HashMap<String, String> symptomsInfo) {
@@ -39,6 +43,19 @@ public class WaitingPatientInfo implements Serializable {
         this.isUrgent = urgent;
     }
 
+    public void setEstimatedWait(long estimatedWaitMillis, long estimatedAt) {
+        this.estimatedWaitMillis = estimatedWaitMillis;
+        this.estimatedAt = estimatedAt;
+    }
+
+    public long getEstimatedWaitMillis() {
+        return estimatedWaitMillis;
+    }
+
+    public long getEstimatedAt() {
+        return estimatedAt;
+    }
+
     // Méthode pour calculer le temps d'attente en millisecondes
     public long getWaitingTime() {
         Date currentTime = new Date();
@@ -70,7 +87,11 @@ public class WaitingPatientInfo implements Serializable {
             description.append(" ⚠️ URGENT");
         }
 
-        description.append(" (").append(getWaitingTimeInMinutes()).append(" min)");
+        description.append(" (").append(getWaitingTimeInMinutes()).append(" min");
+        if (estimatedWaitMillis >= 0) {
+            description.append(", encore ~").append((estimatedWaitMillis + 59999) / 60000).append(" min");
+        }
+        description.append(")");
 
         return description.toString();
     }
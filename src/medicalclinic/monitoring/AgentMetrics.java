@@ -0,0 +1,183 @@
+package medicalclinic.monitoring;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jade.core.Agent;
+
+/**
+ * Mesures d'exécution d'un agent : profondeur de sa boîte aux lettres, temps passé dans chaque
+ * comportement, messages traités par identifiant de conversation et réveils après {@code block()}.
+ *
+ * Les mesures sont écrites par le fil de l'agent et lues par JMX et par l'export CSV du
+ * {@link MetricsRegistry} : tous les compteurs sont atomiques.
+ */
+public class AgentMetrics implements AgentMetricsMBean {
+
+    /**
+     * Durées d'un comportement ou d'une conversation
+     */
+    public static class TimingStats {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long elapsedNanos, boolean failed) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(elapsedNanos);
+            long previous;
+            while (elapsedNanos > (previous = maxNanos.get()) && !maxNanos.compareAndSet(previous, elapsedNanos)) {
+                // Maximum modifié entre-temps : relire
+            }
+            if (failed) {
+                errors.incrementAndGet();
+            }
+        }
+
+        public long getCount() { return count.get(); }
+        public long getErrors() { return errors.get(); }
+        public long getTotalNanos() { return totalNanos.get(); }
+        public long getMaxNanos() { return maxNanos.get(); }
+    }
+
+    private final Agent agent;
+    private final String agentName;
+    private final long startNanos = System.nanoTime();
+
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicLong wakeUps = new AtomicLong();
+    private final AtomicLong emptyWakeUps = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final Map<String, TimingStats> behaviours = new ConcurrentHashMap<>();
+    private final Map<String, TimingStats> conversations = new ConcurrentHashMap<>();
+
+    public AgentMetrics(Agent agent) {
+        this.agent = agent;
+        this.agentName = agent.getLocalName();
+    }
+
+    // Relève la profondeur de la boîte aux lettres, au début de chaque activation
+    public void sampleQueue() {
+        int depth = agent.getCurQueueSize();
+        int previous;
+        while (depth > (previous = maxQueueDepth.get()) && !maxQueueDepth.compareAndSet(previous, depth)) {
+            // Un autre relevé est passé entre-temps : relire
+        }
+    }
+
+    // Réveil d'un comportement bloqué ; vide si aucun message n'était à traiter
+    public void recordWakeUp(boolean empty) {
+        wakeUps.incrementAndGet();
+        if (empty) {
+            emptyWakeUps.incrementAndGet();
+        }
+    }
+
+    // Durée d'un appel à action() d'un comportement
+    public void recordAction(String behaviour, long elapsedNanos) {
+        behaviours.computeIfAbsent(behaviour, b -> new TimingStats()).record(elapsedNanos, false);
+        busyNanos.addAndGet(elapsedNanos);
+    }
+
+    // Traitement d'un message d'une conversation
+    public void recordMessage(String conversationId, long elapsedNanos, boolean failed) {
+        conversations.computeIfAbsent(conversationId, c -> new TimingStats()).record(elapsedNanos, failed);
+    }
+
+    // Exécute le corps d'un comportement en mesurant sa durée
+    public void time(String behaviour, Runnable body) {
+        long start = System.nanoTime();
+        try {
+            body.run();
+        } finally {
+            recordAction(behaviour, System.nanoTime() - start);
+        }
+    }
+
+    public Map<String, TimingStats> getBehaviourStats() {
+        return new TreeMap<>(behaviours);
+    }
+
+    public Map<String, TimingStats> getConversationStats() {
+        return new TreeMap<>(conversations);
+    }
+
+    @Override
+    public String getAgentName() { return agentName; }
+
+    @Override
+    public String getAgentClass() { return agent.getClass().getSimpleName(); }
+
+    @Override
+    public int getQueueDepth() { return agent.getCurQueueSize(); }
+
+    @Override
+    public int getMaxQueueDepth() { return maxQueueDepth.get(); }
+
+    @Override
+    public long getWakeUps() { return wakeUps.get(); }
+
+    @Override
+    public long getEmptyWakeUps() { return emptyWakeUps.get(); }
+
+    @Override
+    public long getMessagesHandled() {
+        long total = 0;
+        for (TimingStats s : conversations.values()) {
+            total += s.getCount();
+        }
+        return total;
+    }
+
+    @Override
+    public long getHandlerErrors() {
+        long total = 0;
+        for (TimingStats s : conversations.values()) {
+            total += s.getErrors();
+        }
+        return total;
+    }
+
+    @Override
+    public double getBusyRatio() {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed <= 0 ? 0.0 : Math.min(1.0, busyNanos.get() / (double) elapsed);
+    }
+
+    @Override
+    public String[] getBehaviourTimings() {
+        return format(getBehaviourStats(), false);
+    }
+
+    @Override
+    public String[] getConversationCounts() {
+        return format(getConversationStats(), true);
+    }
+
+    @Override
+    public void resetMaxima() {
+        maxQueueDepth.set(agent.getCurQueueSize());
+        for (TimingStats s : behaviours.values()) {
+            s.maxNanos.set(0);
+        }
+        for (TimingStats s : conversations.values()) {
+            s.maxNanos.set(0);
+        }
+    }
+
+    private static String[] format(Map<String, TimingStats> stats, boolean withErrors) {
+        String[] lines = new String[stats.size()];
+        int i = 0;
+        for (Map.Entry<String, TimingStats> entry : stats.entrySet()) {
+            TimingStats s = entry.getValue();
+            lines[i++] = String.format("%s : %d, total %.1f ms, max %.2f ms%s", entry.getKey(), s.getCount(),
+                s.getTotalNanos() / 1_000_000.0, s.getMaxNanos() / 1_000_000.0,
+                withErrors ? ", " + s.getErrors() + " erreur(s)" : "");
+        }
+        return lines;
+    }
+}
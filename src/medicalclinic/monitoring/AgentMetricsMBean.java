@@ -0,0 +1,34 @@
+package medicalclinic.monitoring;
+
+/**
+ * Interface JMX des mesures d'un agent, enregistrée sous
+ * {@code medicalclinic:type=Agent,name=<nom local de l'agent>}.
+ */
+public interface AgentMetricsMBean {
+    String getAgentName();
+    String getAgentClass();
+
+    // Boîte aux lettres
+    int getQueueDepth();
+    int getMaxQueueDepth();
+
+    // Réveils du répartiteur après block(), dont ceux sans aucun message à traiter
+    long getWakeUps();
+    long getEmptyWakeUps();
+
+    // Messages traités par le répartiteur, dont ceux dont le gestionnaire a échoué
+    long getMessagesHandled();
+    long getHandlerErrors();
+
+    // Part du temps écoulé depuis le démarrage passée dans les action() mesurées (0 à 1)
+    double getBusyRatio();
+
+    // Une ligne par comportement : appels, temps total et maximal
+    String[] getBehaviourTimings();
+
+    // Une ligne par identifiant de conversation : messages, temps total, erreurs
+    String[] getConversationCounts();
+
+    // Remet à zéro les maxima (file et durées), pour observer une nouvelle période de charge
+    void resetMaxima();
+}
@@ -0,0 +1,197 @@
+package medicalclinic.monitoring;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registre des mesures des agents de la JVM.
+ *
+ * Chaque {@link AgentMetrics} enregistré est publié comme MBean sur le serveur JMX de la plateforme
+ * (visible dans JConsole ou VisualVM) sous {@code medicalclinic:type=Agent,name=<agent>}. Un thread
+ * ajoute périodiquement, et à l'arrêt de la JVM, l'état de tous les agents actifs au fichier
+ * {@code metrics-<pid>.csv} du répertoire {@code medicalclinic.metrics.dir}, une ligne par valeur :
+ * {@code horodatage,agent,classe,mesure,clé,valeur} (la clé est le comportement ou la conversation).
+ */
+public class MetricsRegistry {
+    private static MetricsRegistry instance;
+
+    // Propriétés système
+    public static final String ENABLED_PROPERTY = "medicalclinic.metrics.enabled";
+    public static final String DIR_PROPERTY = "medicalclinic.metrics.dir";
+    public static final String CSV_SECONDS_PROPERTY = "medicalclinic.metrics.csvSeconds";
+    public static final long DEFAULT_CSV_SECONDS = 30;
+
+    private static final String DOMAIN = "medicalclinic";
+
+    private final boolean enabled;
+    private final File directory;
+    private final File csvFile;
+    private final MBeanServer mbeanServer;
+    private final Map<AgentMetrics, ObjectName> registered = new ConcurrentHashMap<>();
+    // Messages traités par les agents déjà arrêtés
+    private final AtomicLong retiredMessages = new AtomicLong();
+    private ScheduledExecutorService exporter;
+
+    private MetricsRegistry() {
+        this.enabled = Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"));
+        this.directory = new File(System.getProperty(DIR_PROPERTY, "metrics"));
+        String jvmName = ManagementFactory.getRuntimeMXBean().getName();
+        int at = jvmName.indexOf('@');
+        this.csvFile = new File(directory, "metrics-" +
+            (at > 0 ? jvmName.substring(0, at) : jvmName.replaceAll("[^A-Za-z0-9]", "_")) + ".csv");
+        this.mbeanServer = ManagementFactory.getPlatformMBeanServer();
+    }
+
+    public static synchronized MetricsRegistry getInstance() {
+        if (instance == null) {
+            instance = new MetricsRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Publie les mesures d'un agent ; un agent de même nom déjà publié est remplacé
+     */
+    public void register(AgentMetrics metrics) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=Agent,name=" + ObjectName.quote(metrics.getAgentName()));
+            synchronized (mbeanServer) {
+                if (mbeanServer.isRegistered(name)) {
+                    mbeanServer.unregisterMBean(name);
+                }
+                mbeanServer.registerMBean(metrics, name);
+            }
+            registered.put(metrics, name);
+        } catch (JMException e) {
+            System.err.println("Impossible de publier les mesures de " + metrics.getAgentName() + ": " + e.getMessage());
+        }
+        startExporter();
+    }
+
+    // Retire les mesures d'un agent qui s'arrête
+    public void unregister(AgentMetrics metrics) {
+        ObjectName name = registered.remove(metrics);
+        if (name == null) {
+            return;
+        }
+        retiredMessages.addAndGet(metrics.getMessagesHandled());
+        try {
+            synchronized (mbeanServer) {
+                if (mbeanServer.isRegistered(name)) {
+                    mbeanServer.unregisterMBean(name);
+                }
+            }
+        } catch (JMException e) {
+            System.err.println("Impossible de retirer les mesures de " + metrics.getAgentName() + ": " + e.getMessage());
+        }
+    }
+
+    // Démarre l'export périodique au premier enregistrement
+    private synchronized void startExporter() {
+        if (exporter != null) {
+            return;
+        }
+        exporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, Long.getLong(CSV_SECONDS_PROPERTY, DEFAULT_CSV_SECONDS));
+        exporter.scheduleWithFixedDelay(this::export, period, period, TimeUnit.SECONDS);
+        java.lang.Runtime.getRuntime().addShutdownHook(new Thread(this::export, "metrics-export-final"));
+    }
+
+    /**
+     * Ajoute au fichier CSV l'état actuel des agents publiés
+     */
+    public synchronized void export() {
+        List<AgentMetrics> agents = new ArrayList<>(registered.keySet());
+        if (agents.isEmpty()) {
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            System.err.println("Impossible de créer le répertoire des mesures: " + directory);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        boolean header = !csvFile.exists();
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(csvFile, true), StandardCharsets.UTF_8))) {
+            if (header) {
+                writer.println("timestamp,agent,class,metric,key,value");
+            }
+            for (AgentMetrics m : agents) {
+                String prefix = now + "," + csv(m.getAgentName()) + "," + m.getAgentClass() + ",";
+                writer.println(prefix + "queueDepth,," + m.getQueueDepth());
+                writer.println(prefix + "maxQueueDepth,," + m.getMaxQueueDepth());
+                writer.println(prefix + "wakeUps,," + m.getWakeUps());
+                writer.println(prefix + "emptyWakeUps,," + m.getEmptyWakeUps());
+                writer.println(prefix + "busyRatio,," + String.format(Locale.ROOT, "%.4f", m.getBusyRatio()));
+                for (Map.Entry<String, AgentMetrics.TimingStats> entry : m.getBehaviourStats().entrySet()) {
+                    String key = csv(entry.getKey());
+                    AgentMetrics.TimingStats s = entry.getValue();
+                    writer.println(prefix + "actions," + key + "," + s.getCount());
+                    writer.println(prefix + "actionNanos," + key + "," + s.getTotalNanos());
+                    writer.println(prefix + "actionMaxNanos," + key + "," + s.getMaxNanos());
+                }
+                for (Map.Entry<String, AgentMetrics.TimingStats> entry : m.getConversationStats().entrySet()) {
+                    String key = csv(entry.getKey());
+                    AgentMetrics.TimingStats s = entry.getValue();
+                    writer.println(prefix + "messages," + key + "," + s.getCount());
+                    writer.println(prefix + "messageNanos," + key + "," + s.getTotalNanos());
+                    writer.println(prefix + "messageErrors," + key + "," + s.getErrors());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Erreur d'export des mesures: " + e.getMessage());
+        }
+    }
+
+    // Champ CSV : entre guillemets s'il contient un séparateur
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    // Agents actuellement publiés
+    public List<AgentMetrics> getAgents() {
+        return new ArrayList<>(registered.keySet());
+    }
+
+    // Messages traités par tous les agents de la JVM, y compris ceux déjà arrêtés
+    public long getTotalMessagesHandled() {
+        long total = retiredMessages.get();
+        for (AgentMetrics metrics : registered.keySet()) {
+            total += metrics.getMessagesHandled();
+        }
+        return total;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
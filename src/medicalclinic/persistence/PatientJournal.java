@@ -0,0 +1,415 @@
+package medicalclinic.persistence;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+
+/**
+ * Journal d'écriture anticipée des modifications de l'accueil.
+ * Chaque entrée est ajoutée à la fin d'un segment (une ligne JSON précédée de sa somme CRC32) ;
+ * un nouveau segment est ouvert à chaque démarrage et lorsque le segment courant dépasse sa taille maximale.
+ *
+ * Les entrées sont numérotées et mises en file par le thread de l'agent, puis écrites par un thread
+ * dédié qui regroupe toutes les entrées disponibles en un seul lot suivi d'un seul {@code fsync}.
+ * Au redémarrage, {@link #recover(long, Consumer)} relit les segments dans l'ordre ; une ligne
+ * incomplète ou corrompue (écriture interrompue) termine la lecture de son segment, et toute entrée
+ * manquante dans la numérotation fait échouer la reprise.
+ *
+ * Un lot dont l'écriture échoue est retiré du segment puis réécrit dans un nouveau segment. Si l'écriture
+ * échoue encore, le journal passe en échec : plus rien n'est écrit ni accepté, afin qu'aucune entrée
+ * ne soit écrite après une entrée perdue ; l'agent doit alors s'arrêter (voir {@link #isFailed()}).
+ */
+public class PatientJournal {
+    // Propriétés système de réglage du journal
+    public static final String SEGMENT_BYTES_PROPERTY = "medicalclinic.journal.segmentBytes";
+    public static final String GROUP_COMMIT_MILLIS_PROPERTY = "medicalclinic.journal.groupCommitMillis";
+    public static final long DEFAULT_SEGMENT_BYTES = 8 * 1024 * 1024;
+    public static final long DEFAULT_GROUP_COMMIT_MILLIS = 2;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    // Tentatives d'écriture d'un lot, chacune dans un nouveau segment, avant de passer en échec
+    private static final int MAX_COMMIT_ATTEMPTS = 3;
+
+    /**
+     * Types d'entrées journalisées.
+     */
+    public enum EntryType {
+        PERSONAL_INFO,   // Informations personnelles ajoutées au dossier
+        SYMPTOMS_INFO,   // Symptômes ajoutés au dossier
+        CONSULTATION,    // Consultation ajoutée à l'historique
+        RECORD,          // Dossier complet remplacé
+        QUEUE_ADD,       // Patient ajouté à la liste d'attente
+        QUEUE_REMOVE     // Patient retiré de la liste d'attente
+    }
+
+    /**
+     * Entrée du journal. Le contenu est figé en JSON au moment de l'ajout.
+     */
+    public static class Entry {
+        private long seq;
+        private long timestamp;
+        private EntryType type;
+        private String patientId;
+        private JsonElement payload;
+
+        Entry(long seq, EntryType type, String patientId, JsonElement payload) {
+            this.seq = seq;
+            this.timestamp = System.currentTimeMillis();
+            this.type = type;
+            this.patientId = patientId;
+            this.payload = payload;
+        }
+
+        public long getSeq() { return seq; }
+        public long getTimestamp() { return timestamp; }
+        public EntryType getType() { return type; }
+        public String getPatientId() { return patientId; }
+        public JsonElement getPayload() { return payload; }
+    }
+
+    private final File directory;
+    private final long segmentBytes;
+    private final long groupCommitMillis;
+    private final Gson gson = new Gson();
+
+    private final LinkedBlockingQueue<Entry> pending = new LinkedBlockingQueue<>();
+    private Thread writerThread;
+    private volatile boolean closing;
+    private volatile boolean rollRequested;
+    private volatile boolean failed;
+    private long nextSeq = 1;
+
+    // État du segment courant (thread d'écriture uniquement)
+    private FileOutputStream segmentStream;
+    private File segmentFile;
+    private long segmentSize;
+
+    // Statistiques (écrites par le thread d'écriture)
+    private volatile long durableSeq;
+    private volatile long writtenEntries;
+    private volatile long commits;
+    private volatile long maxCommitSize;
+    private volatile long writeErrors;
+
+    public PatientJournal(File directory) {
+        this(directory,
+            Long.getLong(SEGMENT_BYTES_PROPERTY, DEFAULT_SEGMENT_BYTES),
+            Long.getLong(GROUP_COMMIT_MILLIS_PROPERTY, DEFAULT_GROUP_COMMIT_MILLIS));
+    }
+
+    public PatientJournal(File directory, long segmentBytes, long groupCommitMillis) {
+        this.directory = directory;
+        this.segmentBytes = Math.max(1024, segmentBytes);
+        this.groupCommitMillis = Math.max(0, groupCommitMillis);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            System.err.println("Impossible de créer le répertoire du journal: " + directory);
+        }
+    }
+
+    /**
+     * Relit les entrées dont le numéro est supérieur à {@code afterSeq} et les transmet dans l'ordre.
+     * Doit être appelé avant {@link #start()} ; retourne le numéro de la dernière entrée lue.
+     * @throws IOException si un segment est illisible, si les premières entrées suivant {@code afterSeq}
+     * ne sont plus dans le journal (segments supprimés après un instantané devenu illisible) ou s'il
+     * manque des entrées entre deux segments : l'état reconstruit serait incomplet
+     */
+    public long recover(long afterSeq, Consumer<Entry> consumer) throws IOException {
+        if (writerThread != null) {
+            throw new IllegalStateException("Le journal est déjà démarré");
+        }
+
+        List<File> segments = listSegments();
+        if (!segments.isEmpty() && firstSeqOf(segments.get(0)) > afterSeq + 1) {
+            throw new IOException("entrées " + (afterSeq + 1) + " à " + (firstSeqOf(segments.get(0)) - 1) +
+                " absentes du journal");
+        }
+
+        long lastSeq = afterSeq;
+        for (File segment : segments) {
+            try (BufferedReader reader = Files.newBufferedReader(segment.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Entry entry = decode(line);
+                    if (entry == null) {
+                        System.err.println("Journal: fin de segment illisible ignorée dans " + segment.getName());
+                        break;
+                    }
+                    if (entry.seq > lastSeq + 1) {
+                        // Lot perdu : rejouer la suite donnerait un état faux sans que rien ne le signale
+                        throw new IOException("entrées " + (lastSeq + 1) + " à " + (entry.seq - 1) +
+                            " absentes du journal (avant " + segment.getName() + ")");
+                    }
+                    if (entry.seq > lastSeq) {
+                        consumer.accept(entry);
+                        lastSeq = entry.seq;
+                    }
+                }
+            }
+        }
+
+        nextSeq = Math.max(nextSeq, lastSeq + 1);
+        durableSeq = nextSeq - 1;
+        return lastSeq;
+    }
+
+    // Vrai si des segments existent déjà sur disque
+    public boolean hasSegments() {
+        return !listSegments().isEmpty();
+    }
+
+    // Démarre le thread d'écriture ; les ajouts ne sont acceptés qu'ensuite
+    public synchronized void start() {
+        if (writerThread != null) {
+            return;
+        }
+        File owner = directory.getAbsoluteFile().getParentFile();
+        writerThread = new Thread(this::writeLoop, "journal-" + (owner != null ? owner.getName() : directory.getName()));
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Met une entrée en file pour écriture et retourne son numéro.
+     * N'effectue aucune entrée-sortie : l'appelant n'est jamais bloqué par le disque.
+     */
+    public long append(EntryType type, String patientId, Object payload) {
+        if (writerThread == null || closing) {
+            throw new IllegalStateException("Le journal n'est pas ouvert");
+        }
+        if (failed) {
+            throw new IllegalStateException("Le journal est en échec, les modifications ne sont plus conservées");
+        }
+        JsonElement element = payload instanceof JsonElement ? (JsonElement) payload : gson.toJsonTree(payload);
+        Entry entry = new Entry(nextSeq++, type, patientId, element);
+        pending.add(entry);
+        return entry.seq;
+    }
+
+    // Demande l'ouverture d'un nouveau segment au prochain lot, pour que les précédents puissent être supprimés
+    public void requestRoll() {
+        rollRequested = true;
+    }
+
+    /**
+     * Supprime les segments dont toutes les entrées ont un numéro inférieur ou égal à {@code seq},
+     * c'est-à-dire ceux couverts par un instantané. Le dernier segment n'est jamais supprimé.
+     * Peut être appelé depuis un autre thread que celui de l'agent.
+     */
+    public int truncateUpTo(long seq) {
+        List<File> segments = listSegments();
+        int deleted = 0;
+        for (int i = 0; i < segments.size() - 1; i++) {
+            // Un segment se termine juste avant la première entrée du suivant
+            if (firstSeqOf(segments.get(i + 1)) - 1 > seq) {
+                break;
+            }
+            if (segments.get(i).delete()) {
+                deleted++;
+            } else {
+                System.err.println("Journal: impossible de supprimer " + segments.get(i).getName());
+            }
+        }
+        return deleted;
+    }
+
+    private static long firstSeqOf(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // Numéro de la dernière entrée attribuée
+    public long getLastSeq() {
+        return nextSeq - 1;
+    }
+
+    /**
+     * Arrête le thread d'écriture après l'écriture des entrées en attente.
+     * Le thread n'est pas interrompu : une interruption pendant {@code force} fermerait le canal.
+     */
+    public void close() {
+        closing = true;
+        Thread thread = writerThread;
+        if (thread == null) {
+            return;
+        }
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Boucle du thread d'écriture : un lot par validation
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>();
+        while (!(closing && pending.isEmpty()) && !failed) {
+            try {
+                Entry first = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Laisser un court délai aux entrées suivantes pour rejoindre le lot
+                if (groupCommitMillis > 0 && !closing) {
+                    Thread.sleep(groupCommitMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                closing = true;
+            }
+            pending.drainTo(batch);
+
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+        closeSegment();
+    }
+
+    // Écrit un lot puis le force sur disque en une seule fois ; en cas d'erreur, le réécrit dans un nouveau segment
+    private void commit(List<Entry> batch) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (Entry entry : batch) {
+            byte[] line = encode(entry).getBytes(StandardCharsets.UTF_8);
+            buffer.write(line, 0, line.length);
+            buffer.write('\n');
+        }
+
+        for (int attempt = 1; attempt <= MAX_COMMIT_ATTEMPTS; attempt++) {
+            long validSize = -1;
+            try {
+                if (segmentStream == null || segmentSize >= segmentBytes || rollRequested) {
+                    rollRequested = false;
+                    openSegment(batch.get(0).seq);
+                }
+                validSize = segmentSize;
+                buffer.writeTo(segmentStream);
+                segmentStream.getChannel().force(false);
+                segmentSize += buffer.size();
+
+                durableSeq = batch.get(batch.size() - 1).seq;
+                writtenEntries += batch.size();
+                commits++;
+                if (batch.size() > maxCommitSize) {
+                    maxCommitSize = batch.size();
+                }
+                return;
+            } catch (IOException e) {
+                writeErrors++;
+                System.err.println("Journal: erreur d'écriture de " + batch.size() + " entrée(s), tentative " +
+                    attempt + "/" + MAX_COMMIT_ATTEMPTS + ": " + e.getMessage());
+                // Retirer la partie du lot déjà écrite, puis réessayer dans un nouveau segment
+                if (validSize >= 0 && !discardTail(validSize)) {
+                    break;
+                }
+                closeSegment();
+                rollRequested = true;
+            }
+        }
+
+        // Écrire les lots suivants laisserait un trou dans la numérotation : le journal s'arrête
+        failed = true;
+        closeSegment();
+        System.err.println("Journal: échec définitif, dernière entrée durable " + durableSeq);
+    }
+
+    // Ramène le segment courant à sa taille avant le lot ; false si c'est impossible
+    private boolean discardTail(long validSize) {
+        try {
+            segmentStream.getChannel().truncate(validSize);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Journal: impossible de tronquer " + segmentFile.getName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void openSegment(long firstSeq) throws IOException {
+        closeSegment();
+        File file = new File(directory, String.format("%s%020d%s", SEGMENT_PREFIX, firstSeq, SEGMENT_SUFFIX));
+        segmentStream = new FileOutputStream(file, true);
+        segmentFile = file;
+        segmentSize = file.length();
+    }
+
+    private void closeSegment() {
+        if (segmentStream != null) {
+            try {
+                segmentStream.getChannel().force(false);
+                segmentStream.close();
+            } catch (IOException e) {
+                System.err.println("Journal: erreur de fermeture du segment: " + e.getMessage());
+            }
+        }
+        segmentStream = null;
+        segmentSize = 0;
+    }
+
+    // Segments présents sur disque, dans l'ordre de leur première entrée
+    List<File> listSegments() {
+        File[] files = directory.listFiles((dir, name) ->
+            name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(files, (a, b) -> a.getName().compareTo(b.getName()));
+        return new ArrayList<>(Arrays.asList(files));
+    }
+
+    // Format d'une ligne : CRC32 hexadécimal du JSON, espace, JSON de l'entrée
+    private String encode(Entry entry) {
+        String json = gson.toJson(entry);
+        CRC32 crc = new CRC32();
+        crc.update(json.getBytes(StandardCharsets.UTF_8));
+        return String.format("%08x", crc.getValue()) + " " + json;
+    }
+
+    private Entry decode(String line) {
+        int space = line.indexOf(' ');
+        if (space != 8) {
+            return null;
+        }
+        String json = line.substring(space + 1);
+        CRC32 crc = new CRC32();
+        crc.update(json.getBytes(StandardCharsets.UTF_8));
+        try {
+            if (Long.parseLong(line.substring(0, space), 16) != crc.getValue()) {
+                return null;
+            }
+            return gson.fromJson(json, Entry.class);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    public String formatStats() {
+        return String.format("Journal : %d entrée(s) en %d validation(s), lot max %d, dernière entrée durable %d/%d, %d erreur(s)%n",
+            writtenEntries, commits, maxCommitSize, durableSeq, getLastSeq(), writeErrors);
+    }
+
+    public long getDurableSeq() { return durableSeq; }
+    public long getWrittenEntries() { return writtenEntries; }
+    public long getCommits() { return commits; }
+    public long getMaxCommitSize() { return maxCommitSize; }
+    public long getWriteErrors() { return writeErrors; }
+    // Vrai si un lot n'a pas pu être écrit : l'état en mémoire n'est plus couvert par le journal
+    public boolean isFailed() { return failed; }
+}
@@ -0,0 +1,437 @@
+package medicalclinic.persistence;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.text.Normalizer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+
+import medicalclinic.models.PatientRecord;
+
+/**
+ * Stockage des dossiers patients à deux niveaux.
+ * Les dossiers récemment utilisés restent en mémoire dans la limite d'un poids maximal
+ * (un point par dossier plus un point par consultation) ; au-delà, les moins récemment
+ * utilisés sont écrits sur disque (un fichier JSON par patient) et rechargés à la demande.
+ * Seuls les identifiants de tous les patients connus et les index secondaires (nom de famille,
+ * date de naissance, téléphone) restent en mémoire ; les recherches ne chargent aucun dossier.
+ */
+public class PatientRecordStore {
+    // Propriété système fixant le poids maximal des dossiers gardés en mémoire
+    public static final String MAX_HOT_WEIGHT_PROPERTY = "medicalclinic.records.maxHotWeight";
+    public static final long DEFAULT_MAX_HOT_WEIGHT = 5000;
+
+    // Nombre maximal de résultats d'une recherche
+    public static final int DEFAULT_SEARCH_LIMIT = 50;
+
+    private static final String RECORD_SUFFIX = ".json";
+
+    private final File directory;
+    private final long maxHotWeight;
+    private final Gson gson = new Gson();
+
+    // Niveau chaud, dans l'ordre d'accès (le plus ancien en tête)
+    private final LinkedHashMap<String, PatientRecord> hot = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Integer> weights = new LinkedHashMap<>();
+    private final Set<String> dirty = new HashSet<>();
+    private final LinkedHashSet<String> knownIds = new LinkedHashSet<>();
+    private long hotWeight;
+
+    // Index secondaires et clés indexées par patient (pour retirer les anciennes valeurs)
+    private final SecondaryIndex lastNameIndex = new SecondaryIndex();
+    private final SecondaryIndex birthDateIndex = new SecondaryIndex();
+    private final SecondaryIndex phoneIndex = new SecondaryIndex();
+    private final HashMap<String, String[]> indexedKeys = new HashMap<>();
+
+    // Statistiques
+    private long hits;
+    private long coldLoads;
+    private long evictions;
+    private long spills;
+
+    public PatientRecordStore(File directory) {
+        this(directory, Long.getLong(MAX_HOT_WEIGHT_PROPERTY, DEFAULT_MAX_HOT_WEIGHT));
+    }
+
+    public PatientRecordStore(File directory, long maxHotWeight) {
+        this.directory = directory;
+        this.maxHotWeight = Math.max(1, maxHotWeight);
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            System.err.println("Impossible de créer le répertoire des dossiers: " + directory);
+        }
+
+        // Les dossiers déjà sur disque restent connus sans être chargés
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(RECORD_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                knownIds.add(decode(name.substring(0, name.length() - RECORD_SUFFIX.length())));
+            }
+        }
+    }
+
+    // Retourne le dossier d'un patient, rechargé depuis le disque si nécessaire ; null s'il est inconnu
+    public PatientRecord get(String patientId) {
+        PatientRecord record = hot.get(patientId);
+        if (record != null) {
+            hits++;
+            return record;
+        }
+
+        if (!knownIds.contains(patientId)) {
+            return null;
+        }
+
+        record = readRecord(patientId);
+        if (record != null) {
+            coldLoads++;
+            admit(patientId, record);
+        }
+        return record;
+    }
+
+    /**
+     * Enregistre un dossier nouveau ou modifié. Doit être appelé après chaque modification
+     * d'un dossier obtenu par {@link #get(String)} pour qu'elle soit conservée à l'éviction.
+     */
+    public void put(PatientRecord record) {
+        String patientId = record.getPatientId();
+        knownIds.add(patientId);
+        dirty.add(patientId);
+        index(record);
+
+        if (hot.containsKey(patientId)) {
+            hot.put(patientId, record);
+            hotWeight -= weights.get(patientId);
+            int weight = weightOf(record);
+            weights.put(patientId, weight);
+            hotWeight += weight;
+            evictIfNeeded();
+        } else {
+            admit(patientId, record);
+        }
+    }
+
+    /**
+     * Recherche de patients depuis l'interface : identifiant exact, date de naissance
+     * (si la saisie contient / ou -), début du numéro de téléphone (saisie numérique)
+     * ou début du nom de famille.
+     */
+    public List<String> search(String query, int limit) {
+        List<String> result = new ArrayList<>();
+        if (query == null || query.trim().isEmpty()) {
+            return result;
+        }
+        String trimmed = query.trim();
+        if (knownIds.contains(trimmed)) {
+            result.add(trimmed);
+        }
+
+        List<String> matches;
+        if (trimmed.matches("[0-9]{1,4}[/-][0-9/-]*")) {
+            matches = new ArrayList<>(birthDateIndex.get(normalizeDigits(trimmed)));
+        } else if (trimmed.matches("[0-9 +.()-]+")) {
+            matches = phoneIndex.findByPrefix(normalizeDigits(trimmed), limit);
+        } else {
+            matches = lastNameIndex.findByPrefix(normalizeName(trimmed), limit);
+        }
+
+        for (String patientId : matches) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (!result.contains(patientId)) {
+                result.add(patientId);
+            }
+        }
+        return result;
+    }
+
+    public List<String> findByLastName(String prefix) {
+        return lastNameIndex.findByPrefix(normalizeName(prefix), DEFAULT_SEARCH_LIMIT);
+    }
+
+    public Set<String> findByBirthDate(String birthDate) {
+        return birthDateIndex.get(normalizeDigits(birthDate));
+    }
+
+    public Set<String> findByPhone(String phone) {
+        return phoneIndex.get(normalizeDigits(phone));
+    }
+
+    /**
+     * Cherche un patient déjà connu sous un autre identifiant : même nom de famille et
+     * même date de naissance, ou même nom de famille et même téléphone.
+     * Retourne null si aucun dossier ne correspond.
+     */
+    public String findReturningPatient(String patientId, Map<String, String> personalInfo) {
+        String lastName = normalizeName(personalInfo.get("lastName"));
+        if (lastName == null || lastName.isEmpty()) {
+            return null;
+        }
+
+        List<Set<String>> candidateSets = new ArrayList<>();
+        candidateSets.add(birthDateIndex.get(normalizeDigits(personalInfo.get("birthDate"))));
+        candidateSets.add(phoneIndex.get(normalizeDigits(personalInfo.get("phone"))));
+
+        for (Set<String> candidates : candidateSets) {
+            for (String candidate : candidates) {
+                String[] keys = indexedKeys.get(candidate);
+                if (!candidate.equals(patientId) && keys != null && lastName.equals(keys[0])) {
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Indexe les dossiers sur disque qui ne le sont pas encore : répertoire hérité d'une exécution
+     * sans journal ni instantané, ou dossiers écrits sur disque avant l'existence du journal.
+     */
+    public void rebuildIndexes() {
+        for (String patientId : knownIds) {
+            if (indexedKeys.containsKey(patientId)) {
+                continue;
+            }
+            PatientRecord record = hot.get(patientId);
+            if (record == null) {
+                record = readRecord(patientId);
+            }
+            if (record != null) {
+                index(record);
+            }
+        }
+    }
+
+    // Met à jour les index avec les valeurs actuelles d'un dossier
+    private void index(PatientRecord record) {
+        String patientId = record.getPatientId();
+        Map<String, String> personalInfo = record.getPersonalInfo();
+        String[] keys = personalInfo == null ? new String[3] : new String[] {
+            normalizeName(personalInfo.get("lastName")),
+            normalizeDigits(personalInfo.get("birthDate")),
+            normalizeDigits(personalInfo.get("phone"))
+        };
+
+        String[] previous = indexedKeys.put(patientId, keys);
+        if (previous != null) {
+            lastNameIndex.remove(previous[0], patientId);
+            birthDateIndex.remove(previous[1], patientId);
+            phoneIndex.remove(previous[2], patientId);
+        }
+        lastNameIndex.add(keys[0], patientId);
+        birthDateIndex.add(keys[1], patientId);
+        phoneIndex.add(keys[2], patientId);
+    }
+
+    // Nom sans accents ni majuscules, pour des recherches insensibles à la saisie
+    static String normalizeName(String name) {
+        if (name == null) {
+            return null;
+        }
+        String stripped = Normalizer.normalize(name.trim(), Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return stripped.toLowerCase(Locale.ROOT);
+    }
+
+    // Ne garde que les chiffres (téléphones et dates saisis avec des séparateurs différents)
+    static String normalizeDigits(String value) {
+        return value == null ? null : value.replaceAll("[^0-9]", "");
+    }
+
+    public boolean contains(String patientId) {
+        return knownIds.contains(patientId);
+    }
+
+    // Identifiants de tous les patients connus, en mémoire ou sur disque
+    public Set<String> getPatientIds() {
+        return Collections.unmodifiableSet(knownIds);
+    }
+
+    public int size() {
+        return knownIds.size();
+    }
+
+    // Écrit sur disque tous les dossiers modifiés encore en mémoire
+    public void flush() {
+        for (String patientId : new HashSet<>(dirty)) {
+            PatientRecord record = hot.get(patientId);
+            if (record != null) {
+                spill(patientId, record);
+            }
+        }
+    }
+
+    /**
+     * Copie instantanée des dossiers pour un instantané pris en arrière-plan.
+     * Seuls les dossiers modifiés depuis leur dernière écriture sont copiés en JSON ; les autres
+     * sont déjà sur disque, écrits de façon durable, et ne sont désignés que par leur identifiant.
+     */
+    public static class RecordsCopy {
+        private final LinkedHashMap<String, JsonElement> dirtyRecords;
+        private final List<String> storedIds;
+
+        RecordsCopy(LinkedHashMap<String, JsonElement> dirtyRecords, List<String> storedIds) {
+            this.dirtyRecords = dirtyRecords;
+            this.storedIds = storedIds;
+        }
+
+        public Map<String, JsonElement> getDirtyRecords() { return dirtyRecords; }
+        public List<String> getStoredIds() { return storedIds; }
+        public int size() { return dirtyRecords.size() + storedIds.size(); }
+    }
+
+    // Copie cohérente des dossiers modifiés ; à appeler sur le thread de l'agent
+    public RecordsCopy copyForSnapshot() {
+        LinkedHashMap<String, JsonElement> dirtyRecords = new LinkedHashMap<>();
+        List<String> storedIds = new ArrayList<>();
+        for (String patientId : knownIds) {
+            PatientRecord record = dirty.contains(patientId) ? hot.get(patientId) : null;
+            if (record != null) {
+                dirtyRecords.put(patientId, gson.toJsonTree(record));
+            } else {
+                storedIds.add(patientId);
+            }
+        }
+        return new RecordsCopy(dirtyRecords, storedIds);
+    }
+
+    private void admit(String patientId, PatientRecord record) {
+        hot.put(patientId, record);
+        int weight = weightOf(record);
+        weights.put(patientId, weight);
+        hotWeight += weight;
+        evictIfNeeded();
+    }
+
+    // Évince les dossiers les moins récemment utilisés jusqu'à revenir sous la limite
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<String, PatientRecord>> it = hot.entrySet().iterator();
+        // Le dossier le plus récent est toujours conservé, même s'il dépasse seul la limite
+        while (hotWeight > maxHotWeight && hot.size() > 1 && it.hasNext()) {
+            Map.Entry<String, PatientRecord> eldest = it.next();
+            String patientId = eldest.getKey();
+
+            if (dirty.contains(patientId) && !spill(patientId, eldest.getValue())) {
+                // Écriture impossible : on garde le dossier plutôt que de le perdre
+                continue;
+            }
+
+            it.remove();
+            hotWeight -= weights.remove(patientId);
+            evictions++;
+        }
+    }
+
+    /**
+     * Écrit un dossier sur disque (fichier temporaire forcé sur disque puis renommage) ;
+     * retourne false en cas d'échec. Un dossier écrit est durable : les instantanés ne le
+     * recopient pas et le journal qui le précède peut être supprimé.
+     */
+    private boolean spill(String patientId, PatientRecord record) {
+        File target = fileFor(patientId);
+        File temp = new File(directory, target.getName() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp)) {
+            Writer writer = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+            gson.toJson(record, writer);
+            writer.flush();
+            stream.getChannel().force(false);
+        } catch (IOException e) {
+            System.err.println("Erreur d'écriture du dossier " + patientId + ": " + e.getMessage());
+            return false;
+        }
+
+        try {
+            Files.move(temp.toPath(), target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Erreur d'écriture du dossier " + patientId + ": " + e.getMessage());
+            return false;
+        }
+        forceDirectory();
+
+        dirty.remove(patientId);
+        spills++;
+        return true;
+    }
+
+    // Force sur disque l'entrée du répertoire créée par le renommage (sans effet sur les systèmes qui l'ignorent)
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Répertoire non ouvrable en lecture (Windows) : rien de plus à forcer
+        }
+    }
+
+    private PatientRecord readRecord(String patientId) {
+        File file = fileFor(patientId);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, PatientRecord.class);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Erreur de lecture du dossier " + patientId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private File fileFor(String patientId) {
+        return new File(directory, encode(patientId) + RECORD_SUFFIX);
+    }
+
+    private static int weightOf(PatientRecord record) {
+        return 1 + (record.getConsultationHistory() != null ? record.getConsultationHistory().size() : 0);
+    }
+
+    private static String encode(String patientId) {
+        try {
+            return URLEncoder.encode(patientId, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(String fileName) {
+        try {
+            return URLDecoder.decode(fileName, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public long getHotWeight() { return hotWeight; }
+    public long getMaxHotWeight() { return maxHotWeight; }
+    public int getHotCount() { return hot.size(); }
+    public long getHits() { return hits; }
+    public long getColdLoads() { return coldLoads; }
+    public long getEvictions() { return evictions; }
+    public long getSpills() { return spills; }
+    public int getIndexedNameCount() { return lastNameIndex.keyCount(); }
+}
@@ -0,0 +1,63 @@
+package medicalclinic.persistence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Index secondaire trié : clé normalisée vers les identifiants des patients.
+ * L'arbre permet une recherche exacte ou par préfixe sans parcourir tous les dossiers.
+ */
+class SecondaryIndex {
+    private final TreeMap<String, Set<String>> entries = new TreeMap<>();
+
+    void add(String key, String patientId) {
+        if (key == null || key.isEmpty()) {
+            return;
+        }
+        entries.computeIfAbsent(key, k -> new LinkedHashSet<>(2)).add(patientId);
+    }
+
+    void remove(String key, String patientId) {
+        if (key == null || key.isEmpty()) {
+            return;
+        }
+        Set<String> ids = entries.get(key);
+        if (ids != null && ids.remove(patientId) && ids.isEmpty()) {
+            entries.remove(key);
+        }
+    }
+
+    Set<String> get(String key) {
+        Set<String> ids = entries.get(key);
+        return ids != null ? Collections.unmodifiableSet(ids) : Collections.<String>emptySet();
+    }
+
+    // Identifiants dont la clé commence par le préfixe, dans l'ordre des clés
+    List<String> findByPrefix(String prefix, int limit) {
+        List<String> result = new ArrayList<>();
+        if (prefix == null || prefix.isEmpty()) {
+            return result;
+        }
+        for (Map.Entry<String, Set<String>> entry : entries.tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            for (String patientId : entry.getValue()) {
+                if (result.size() >= limit) {
+                    return result;
+                }
+                result.add(patientId);
+            }
+        }
+        return result;
+    }
+
+    int keyCount() {
+        return entries.size();
+    }
+}
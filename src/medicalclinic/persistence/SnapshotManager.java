@@ -0,0 +1,337 @@
+package medicalclinic.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import medicalclinic.models.PatientRecord;
+
+/**
+ * Instantanés compressés de l'état de l'accueil, écrits en arrière-plan.
+ *
+ * L'état est copié sur le thread de l'agent (médecins, liste d'attente, copie JSON des seuls dossiers
+ * modifiés depuis leur dernière écriture) puis écrit par un thread dédié, en flux, dans un fichier
+ * {@code snapshot-<seq>.json.gz}. Les autres dossiers sont déjà durables sur disque : l'instantané n'en
+ * garde que les identifiants, si bien que sa taille suit le nombre de dossiers modifiés et non le
+ * nombre de patients connus. L'instantané écrit est relu ; les instantanés antérieurs au précédent et
+ * les segments du journal couverts par ce précédent sont ensuite supprimés : si le dernier instantané
+ * devient illisible, le précédent et la suite du journal permettent encore de tout reconstruire.
+ * Au redémarrage, seules les entrées postérieures à l'instantané chargé sont rejouées.
+ */
+public class SnapshotManager {
+    // Version du format ; un instantané d'une autre version est ignoré au chargement.
+    // La version 1 (tous les dossiers recopiés) reste lisible.
+    public static final int FORMAT_VERSION = 2;
+    private static final int FIRST_READABLE_VERSION = 1;
+
+    // Propriétés système : nombre d'entrées ou délai déclenchant un nouvel instantané
+    public static final String MIN_ENTRIES_PROPERTY = "medicalclinic.snapshot.minEntries";
+    public static final String PERIOD_SECONDS_PROPERTY = "medicalclinic.snapshot.periodSeconds";
+    public static final long DEFAULT_MIN_ENTRIES = 1000;
+    public static final long DEFAULT_PERIOD_SECONDS = 300;
+
+    // Instantanés conservés : le dernier et le précédent, recours si le dernier est illisible
+    private static final int RETAINED_SNAPSHOTS = 2;
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".json.gz";
+
+    private final File directory;
+    private final PatientJournal journal;
+    private final PatientRecordStore records;
+    private final Gson gson = new Gson();
+    private final ExecutorService executor;
+    private final long minEntries;
+    private final long periodMillis;
+
+    private volatile boolean inProgress;
+    private volatile long lastSnapshotSeq;
+    private volatile long lastSnapshotMillis;
+    private volatile long lastDurationMillis;
+    private volatile long snapshotsWritten;
+
+    public SnapshotManager(File directory, PatientJournal journal, PatientRecordStore records) {
+        this.directory = directory;
+        this.journal = journal;
+        this.records = records;
+        this.lastSnapshotMillis = System.currentTimeMillis();
+        this.minEntries = Math.max(1, Long.getLong(MIN_ENTRIES_PROPERTY, DEFAULT_MIN_ENTRIES));
+        this.periodMillis = Math.max(1, Long.getLong(PERIOD_SECONDS_PROPERTY, DEFAULT_PERIOD_SECONDS)) * 1000;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            System.err.println("Impossible de créer le répertoire des instantanés: " + directory);
+        }
+
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            File owner = directory.getAbsoluteFile().getParentFile();
+            Thread thread = new Thread(runnable, "snapshot-" + (owner != null ? owner.getName() : directory.getName()));
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Contenu d'un instantané entièrement lu et validé
+    private static class Contents {
+        private long seq;
+        private JsonObject state;
+        private final List<PatientRecord> records = new ArrayList<>();
+        private final List<String> storedIds = new ArrayList<>();
+    }
+
+    /**
+     * Charge le dernier instantané lisible : l'objet d'état (sans les dossiers) est transmis à
+     * {@code stateConsumer}, puis chaque dossier modifié à {@code recordConsumer}.
+     * Chaque instantané est lu une seule fois, jusqu'au bout, avant d'être transmis : un fichier
+     * illisible ne transmet rien, et le précédent est essayé. Les dossiers désignés par identifiant
+     * doivent se trouver dans le stockage des dossiers ; un dossier absent est signalé.
+     * Retourne le numéro de la dernière entrée du journal qu'il couvre, ou 0 s'il n'y en a pas.
+     */
+    public long load(Consumer<JsonObject> stateConsumer, Consumer<PatientRecord> recordConsumer) {
+        File[] files = listSnapshots();
+        for (int i = files.length - 1; i >= 0; i--) {
+            Contents contents;
+            try {
+                contents = read(files[i]);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Instantané illisible ignoré " + files[i].getName() + ": " + e.getMessage());
+                continue;
+            }
+
+            if (contents.state != null) {
+                stateConsumer.accept(contents.state);
+            }
+            for (PatientRecord record : contents.records) {
+                recordConsumer.accept(record);
+            }
+            int missing = 0;
+            for (String patientId : contents.storedIds) {
+                if (!records.contains(patientId)) {
+                    missing++;
+                }
+            }
+            if (missing > 0) {
+                System.err.println("Instantané " + files[i].getName() + ": " + missing +
+                    " dossier(s) absent(s) du répertoire des dossiers");
+            }
+            lastSnapshotSeq = contents.seq;
+            return contents.seq;
+        }
+        return 0;
+    }
+
+    // Lit l'instantané en flux jusqu'au bout ; seuls les dossiers modifiés sont gardés en mémoire
+    private Contents read(File file) throws IOException {
+        try (JsonReader reader = new JsonReader(new InputStreamReader(
+                new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))), StandardCharsets.UTF_8))) {
+            reader.beginObject();
+
+            // L'en-tête est écrit en premier : version et numéro d'entrée
+            if (!"version".equals(reader.nextName())) {
+                throw new IOException("en-tête d'instantané incomplet");
+            }
+            int version = reader.nextInt();
+            if (version < FIRST_READABLE_VERSION || version > FORMAT_VERSION) {
+                throw new IOException("version d'instantané non prise en charge: " + version);
+            }
+            if (!"seq".equals(reader.nextName())) {
+                throw new IOException("en-tête d'instantané incomplet");
+            }
+            Contents contents = new Contents();
+            contents.seq = reader.nextLong();
+
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("state".equals(name)) {
+                    contents.state = JsonParser.parseReader(reader).getAsJsonObject();
+                } else if ("records".equals(name)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        contents.records.add(gson.fromJson(reader, PatientRecord.class));
+                    }
+                    reader.endArray();
+                } else if ("storedIds".equals(name)) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        contents.storedIds.add(reader.nextString());
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return contents;
+        }
+    }
+
+    public boolean hasSnapshots() {
+        return listSnapshots().length > 0;
+    }
+
+    /**
+     * Vrai si un instantané devrait être pris : assez d'entrées depuis le dernier,
+     * ou au moins une entrée et la période écoulée. Borne ainsi la durée du rejeu au redémarrage.
+     */
+    public boolean isDue(long lastSeq) {
+        long pendingEntries = lastSeq - lastSnapshotSeq;
+        if (inProgress || pendingEntries <= 0) {
+            return false;
+        }
+        return pendingEntries >= minEntries || System.currentTimeMillis() - lastSnapshotMillis >= periodMillis;
+    }
+
+    /**
+     * Lance l'écriture d'un instantané en arrière-plan à partir de copies prises sur le thread de l'agent.
+     * Retourne false si un instantané est déjà en cours d'écriture.
+     */
+    public boolean takeSnapshot(long seq, JsonObject state, PatientRecordStore.RecordsCopy recordsCopy) {
+        if (inProgress || seq <= lastSnapshotSeq) {
+            return false;
+        }
+        inProgress = true;
+        // Les entrées suivantes iront dans un nouveau segment, supprimable au prochain instantané
+        journal.requestRoll();
+
+        executor.execute(() -> {
+            long start = System.currentTimeMillis();
+            try {
+                File file = write(seq, state, recordsCopy);
+                verify(file);
+                lastSnapshotSeq = seq;
+                snapshotsWritten++;
+                journal.truncateUpTo(deleteOlderSnapshots());
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Erreur d'écriture de l'instantané " + seq + ": " + e.getMessage());
+            } finally {
+                lastDurationMillis = System.currentTimeMillis() - start;
+                lastSnapshotMillis = System.currentTimeMillis();
+                inProgress = false;
+            }
+        });
+        return true;
+    }
+
+    // Écrit l'instantané dans un fichier temporaire, le force sur disque puis le renomme
+    private File write(long seq, JsonObject state, PatientRecordStore.RecordsCopy recordsCopy) throws IOException {
+        File target = new File(directory, String.format("%s%020d%s", SNAPSHOT_PREFIX, seq, SNAPSHOT_SUFFIX));
+        File temp = new File(directory, target.getName() + ".tmp");
+
+        FileOutputStream fileStream = new FileOutputStream(temp);
+        GZIPOutputStream gzipStream = new GZIPOutputStream(new BufferedOutputStream(fileStream));
+        try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(gzipStream, StandardCharsets.UTF_8))) {
+            writer.beginObject();
+            writer.name("version").value(FORMAT_VERSION);
+            writer.name("seq").value(seq);
+            writer.name("takenAt").value(System.currentTimeMillis());
+            writer.name("state");
+            gson.toJson(state, writer);
+
+            writer.name("records").beginArray();
+            for (JsonElement record : recordsCopy.getDirtyRecords().values()) {
+                gson.toJson(record, writer);
+            }
+            writer.endArray();
+
+            // Dossiers durables sur disque : identifiants seulement
+            writer.name("storedIds").beginArray();
+            for (String patientId : recordsCopy.getStoredIds()) {
+                writer.value(patientId);
+            }
+            writer.endArray();
+            writer.endObject();
+
+            // Terminer la compression avant de forcer le fichier sur disque
+            writer.flush();
+            gzipStream.finish();
+            gzipStream.flush();
+            fileStream.getChannel().force(false);
+        }
+
+        Files.move(temp.toPath(), target.toPath(),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    // Relit l'instantané écrit ; un fichier illisible est supprimé et ne remplace rien
+    private void verify(File file) throws IOException {
+        try {
+            read(file);
+        } catch (IOException | RuntimeException e) {
+            if (!file.delete()) {
+                System.err.println("Impossible de supprimer l'instantané " + file.getName());
+            }
+            throw new IOException("relecture impossible: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Supprime les instantanés au-delà des {@link #RETAINED_SNAPSHOTS} plus récents
+     * @return Numéro d'entrée du plus ancien instantané conservé : le journal est utile au-delà
+     */
+    private long deleteOlderSnapshots() {
+        File[] files = listSnapshots();
+        int firstRetained = Math.max(0, files.length - RETAINED_SNAPSHOTS);
+        for (int i = 0; i < firstRetained; i++) {
+            if (!files[i].delete()) {
+                System.err.println("Impossible de supprimer l'instantané " + files[i].getName());
+            }
+        }
+        return files.length == 0 ? 0 : seqOf(files[firstRetained]);
+    }
+
+    private static long seqOf(File snapshot) {
+        String name = snapshot.getName();
+        return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+    }
+
+    // Instantanés présents sur disque, du plus ancien au plus récent
+    private File[] listSnapshots() {
+        File[] files = directory.listFiles((dir, name) ->
+            name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files, (a, b) -> a.getName().compareTo(b.getName()));
+        return files;
+    }
+
+    // Attend la fin de l'instantané en cours
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isInProgress() { return inProgress; }
+    public long getLastSnapshotSeq() { return lastSnapshotSeq; }
+    public long getLastSnapshotMillis() { return lastSnapshotMillis; }
+    public long getLastDurationMillis() { return lastDurationMillis; }
+    public long getSnapshotsWritten() { return snapshotsWritten; }
+}
@@ -0,0 +1,493 @@
+package medicalclinic.simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import medicalclinic.agents.DoctorAgent;
+import medicalclinic.agents.DoctorCompatibility;
+import medicalclinic.agents.NursePool;
+import medicalclinic.agents.TriageRules;
+import medicalclinic.agents.WaitTimePredictor;
+import medicalclinic.database.DiseaseDatabase;
+import medicalclinic.models.Disease;
+import medicalclinic.tracing.LatencyHistogram;
+import medicalclinic.utils.LoadGenerator;
+import medicalclinic.utils.StartSystem;
+import medicalclinic.utils.SymptomProfiles;
+
+/**
+ * Simulation du cabinet sur une horloge virtuelle, sans agents JADE ni messages.
+ *
+ * Les décisions sont prises par le même code que les agents : répartition des patients entre
+ * infirmiers ({@link NursePool}), règles d'urgence de l'infirmier ({@link TriageRules}), choix du
+ * médecin par score de compatibilité ({@link DoctorCompatibility}) avec la liste d'attente de la
+ * réceptionniste (cas urgents en tête, premier patient servi dès qu'une place se libère). Seules les
+ * durées humaines sont tirées au hasard (loi log-normale) : formulaire d'accueil, triage, consultation.
+ * L'attente annoncée aux patients mis en liste d'attente ({@link WaitTimePredictor}) est comparée à
+ * leur attente réelle. Un mois de fonctionnement se simule en quelques secondes, ce qui permet de comparer des effectifs
+ * et des politiques d'affectation. Paramètres (propriétés système) :
+ * <ul>
+ * <li>{@code medicalclinic.sim.days} (défaut 30), {@code medicalclinic.sim.openHours} : heures d'ouverture par jour (défaut 10)</li>
+ * <li>{@code medicalclinic.sim.process} : arrivées {@code diurnal} (défaut), {@code poisson} ou {@code burst} ;
+ * {@code medicalclinic.sim.ratePerHour} : débit moyen, ou de pointe pour {@code diurnal} (défaut 12)</li>
+ * <li>{@code medicalclinic.sim.returningRatio} : patients déjà connus, sans formulaire (défaut 0.3)</li>
+ * <li>{@code medicalclinic.sim.formMinutes}, {@code medicalclinic.sim.triageMinutes},
+ * {@code medicalclinic.sim.consultationMinutes} : durées moyennes (défauts 3, 6, 15) ;
+ * {@code medicalclinic.sim.variability} : écart type du logarithme des durées (défaut 0.5)</li>
+ * <li>{@code medicalclinic.sim.nurses} : infirmiers (défaut : comme StartSystem) ;
+ * {@code medicalclinic.sim.doctors} : médecins par spécialité, par exemple {@code "generaliste=3,cardiologue=1"}
+ * (défaut : les médecins de StartSystem) ; {@code medicalclinic.sim.maxConsultations} : consultations
+ * simultanées par médecin (défaut : comme les agents)</li>
+ * <li>{@code medicalclinic.sim.assignment} : {@code compatibility} (défaut, comme la réceptionniste)
+ * ou {@code leastLoaded} (médecin ayant le plus de places libres)</li>
+ * <li>{@code medicalclinic.sim.seed}, {@code medicalclinic.sim.output} (fichier CSV des parcours, facultatif)</li>
+ * </ul>
+ */
+public class ClinicSimulator {
+    private static final String PREFIX = "medicalclinic.sim.";
+    private static final long MINUTE = 60_000L;
+    private static final long DAY = 24 * 60 * MINUTE;
+
+    // Politique de choix du médecin
+    public enum Assignment { COMPATIBILITY, LEAST_LOADED }
+
+    private static class SimPatient {
+        private final String id;
+        private final HashMap<String, String> answers;
+        private final boolean returning;
+        private List<Disease> potentialDiseases;
+        private boolean urgent;
+        private String nurseId;
+        private String doctorId;
+        private long arrival;
+        private long inWaitingRoom;
+        private long triageStart;
+        private long triageEnd;
+        private long consultationStart;
+        private long departure;
+        // Attente annoncée à la mise en liste d'attente, -1 si le patient n'a pas attendu
+        private long predictedWait = -1;
+
+        SimPatient(String id, HashMap<String, String> answers, boolean returning) {
+            this.id = id;
+            this.answers = answers;
+            this.returning = returning;
+        }
+    }
+
+    private static class SimNurse {
+        private final String id;
+        private final ArrayDeque<SimPatient> queue = new ArrayDeque<>();
+        private SimPatient current;
+        private long busyMillis;
+        private long completed;
+
+        SimNurse(String id) {
+            this.id = id;
+        }
+    }
+
+    private static class SimDoctor {
+        private final String id;
+        private final String specialty;
+        private final int experience;
+        private final int capacity;
+        private int load;
+        private long busySlotMillis;
+        private long consultations;
+
+        SimDoctor(String id, String specialty, int experience, int capacity) {
+            this.id = id;
+            this.specialty = specialty;
+            this.experience = experience;
+            this.capacity = capacity;
+        }
+    }
+
+    // Configuration
+    private final int days;
+    private final long openMillis;
+    private final LoadGenerator.ArrivalProcess arrivals;
+    private final double returningRatio;
+    private final double formMinutes;
+    private final double triageMinutes;
+    private final double consultationMinutes;
+    private final double variability;
+    private final Assignment assignment;
+
+    // État
+    private final SimulationClock clock = new SimulationClock();
+    private final Random random;
+    private final SymptomProfiles profiles = new SymptomProfiles();
+    private final DiseaseDatabase diseases = DiseaseDatabase.getInstance();
+    private final NursePool nursePool = new NursePool();
+    private final WaitTimePredictor predictor = new WaitTimePredictor();
+    private final Map<String, SimNurse> nurses = new LinkedHashMap<>();
+    private final List<SimDoctor> doctors = new ArrayList<>();
+    private final LinkedList<SimPatient> waitingPatients = new LinkedList<>();
+    private final List<SimPatient> patients = new ArrayList<>();
+
+    // Mesures
+    private final LatencyHistogram nurseWait = new LatencyHistogram();
+    private final LatencyHistogram doctorWait = new LatencyHistogram();
+    private final LatencyHistogram urgentDoctorWait = new LatencyHistogram();
+    private final LatencyHistogram visit = new LatencyHistogram();
+    private final LatencyHistogram predictionError = new LatencyHistogram();
+    private final long[] lastDepartureByDay;
+    private int maxWaitingList;
+    private long urgentCount;
+
+    public ClinicSimulator(long seed, int nurseCount, List<String[]> doctorSpecs, int maxConsultations) {
+        this.random = new Random(seed);
+        this.days = Math.max(1, Integer.getInteger(PREFIX + "days", 30));
+        this.openMillis = (long) (Double.parseDouble(System.getProperty(PREFIX + "openHours", "10")) * 60 * MINUTE);
+        double ratePerMinute = Double.parseDouble(System.getProperty(PREFIX + "ratePerHour", "12")) / 60.0;
+        this.arrivals = LoadGenerator.createProcess(System.getProperty(PREFIX + "process", "diurnal"),
+            ratePerMinute, openMillis);
+        this.returningRatio = Double.parseDouble(System.getProperty(PREFIX + "returningRatio", "0.3"));
+        this.formMinutes = Double.parseDouble(System.getProperty(PREFIX + "formMinutes", "3"));
+        this.triageMinutes = Double.parseDouble(System.getProperty(PREFIX + "triageMinutes", "6"));
+        this.consultationMinutes = Double.parseDouble(System.getProperty(PREFIX + "consultationMinutes", "15"));
+        this.variability = Double.parseDouble(System.getProperty(PREFIX + "variability", "0.5"));
+        this.assignment = "leastLoaded".equals(System.getProperty(PREFIX + "assignment")) ?
+            Assignment.LEAST_LOADED : Assignment.COMPATIBILITY;
+        this.lastDepartureByDay = new long[days];
+
+        for (int i = 1; i <= Math.max(1, nurseCount); i++) {
+            SimNurse nurse = new SimNurse("nurse" + i);
+            nurses.put(nurse.id, nurse);
+            nursePool.addNurse(nurse.id);
+        }
+        for (String[] spec : doctorSpecs) {
+            SimDoctor doctor = new SimDoctor(spec[0], spec[1], Integer.parseInt(spec[2]), Math.max(1, maxConsultations));
+            doctors.add(doctor);
+            predictor.registerDoctor(doctor.id, doctor.specialty, doctor.capacity);
+        }
+    }
+
+    public static void main(String[] args) {
+        long seed = Long.getLong(PREFIX + "seed", 42);
+        int nurseCount = Integer.getInteger(PREFIX + "nurses",
+            Integer.getInteger(StartSystem.NURSE_COUNT_PROPERTY, StartSystem.DEFAULT_NURSE_COUNT));
+        int maxConsultations = Integer.getInteger(PREFIX + "maxConsultations",
+            Integer.getInteger(DoctorAgent.MAX_CONSULTATIONS_PROPERTY, DoctorAgent.DEFAULT_MAX_CONSULTATIONS));
+        List<String[]> doctorSpecs = parseDoctors(System.getProperty(PREFIX + "doctors"));
+
+        ClinicSimulator simulator = new ClinicSimulator(seed, nurseCount, doctorSpecs, maxConsultations);
+        long start = System.currentTimeMillis();
+        simulator.run();
+        long elapsed = System.currentTimeMillis() - start;
+
+        System.out.print(simulator.formatSummary());
+        System.out.println(String.format("Simulation : %d événements en %.2f s",
+            simulator.clock.getProcessedEvents(), elapsed / 1000.0));
+
+        String output = System.getProperty(PREFIX + "output");
+        if (output != null) {
+            try {
+                simulator.writeCsv(new File(output));
+                System.out.println("Parcours écrits dans " + new File(output).getAbsolutePath());
+            } catch (IOException e) {
+                System.err.println("Erreur d'écriture des parcours: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Médecins à simuler : identifiant, spécialité, expérience. Sans description, ceux de StartSystem ;
+     * sinon "spécialité=nombre", avec l'expérience du premier médecin de cette spécialité dans StartSystem
+     */
+    static List<String[]> parseDoctors(String spec) {
+        List<String[]> result = new ArrayList<>();
+        if (spec == null || spec.trim().isEmpty()) {
+            for (String[] doctor : StartSystem.DOCTOR_ROSTER) {
+                result.add(new String[] {doctor[0], doctor[1], doctor[4]});
+            }
+            return result;
+        }
+
+        int index = 0;
+        for (String part : spec.split(",")) {
+            int separator = part.indexOf('=');
+            String specialty = (separator > 0 ? part.substring(0, separator) : part).trim();
+            int count = separator > 0 ? Integer.parseInt(part.substring(separator + 1).trim()) : 1;
+            String experience = "5";
+            for (String[] doctor : StartSystem.DOCTOR_ROSTER) {
+                if (doctor[1].equals(specialty)) {
+                    experience = doctor[4];
+                    break;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                result.add(new String[] {"doctor" + (index++), specialty, experience});
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Simule toutes les journées
+     */
+    public void run() {
+        for (int day = 0; day < days; day++) {
+            long dayStart = day * DAY;
+            clock.scheduleAt(dayStart, () -> scheduleArrivals(dayStart));
+        }
+        clock.run();
+    }
+
+    // Programme les arrivées de la journée, pendant les heures d'ouverture
+    private void scheduleArrivals(long dayStart) {
+        long elapsed = 0;
+        while (true) {
+            elapsed += arrivals.nextDelayMillis(random, elapsed);
+            if (elapsed >= openMillis) {
+                return;
+            }
+            SimPatient patient = new SimPatient("patient" + patients.size(), profiles.drawAnswers(random),
+                random.nextDouble() < returningRatio);
+            patients.add(patient);
+            clock.scheduleAt(dayStart + elapsed, () -> arrive(patient));
+        }
+    }
+
+    // Arrivée à l'accueil : les nouveaux patients remplissent le formulaire d'informations personnelles
+    private void arrive(SimPatient patient) {
+        patient.arrival = clock.now();
+        long formMillis = patient.returning ? 0 : duration(formMinutes);
+        clock.schedule(formMillis, () -> enterWaitingRoom(patient));
+    }
+
+    // Salle d'attente : la réceptionniste confie le patient à l'infirmier le moins chargé
+    private void enterWaitingRoom(SimPatient patient) {
+        patient.inWaitingRoom = clock.now();
+        SimNurse nurse = nurses.get(nursePool.assign(patient.id));
+        patient.nurseId = nurse.id;
+        nurse.queue.add(patient);
+        if (nurse.current == null) {
+            startTriage(nurse);
+        } else {
+            reportNurse(nurse);
+        }
+    }
+
+    private void startTriage(SimNurse nurse) {
+        SimPatient patient = nurse.queue.poll();
+        nurse.current = patient;
+        patient.triageStart = clock.now();
+        nurseWait.record(patient.triageStart - patient.inWaitingRoom);
+        reportNurse(nurse);
+        clock.schedule(duration(triageMinutes), () -> endTriage(nurse));
+    }
+
+    // Fin du triage : urgence évaluée par les règles de l'infirmier, puis affectation à un médecin
+    private void endTriage(SimNurse nurse) {
+        SimPatient patient = nurse.current;
+        patient.triageEnd = clock.now();
+        nurse.busyMillis += patient.triageEnd - patient.triageStart;
+        nurse.completed++;
+        nurse.current = null;
+        nursePool.complete(patient.id);
+        reportNurse(nurse);
+
+        patient.urgent = TriageRules.isUrgent(patient.answers);
+        if (patient.urgent) {
+            urgentCount++;
+        }
+        patient.potentialDiseases = snapshot(diseases.findDiseasesBySymptoms(patient.answers));
+
+        SimDoctor doctor = selectDoctor(patient);
+        if (doctor != null) {
+            startConsultation(doctor, patient);
+        } else if (patient.urgent) {
+            // Cas urgent : en tête de la liste d'attente
+            waitingPatients.addFirst(patient);
+            patient.predictedWait = predictor.estimateWaitMillis(0);
+        } else {
+            waitingPatients.addLast(patient);
+            patient.predictedWait = predictor.estimateWaitMillis(waitingPatients.size() - 1);
+        }
+        maxWaitingList = Math.max(maxWaitingList, waitingPatients.size());
+
+        if (!nurse.queue.isEmpty()) {
+            startTriage(nurse);
+        }
+    }
+
+    // Charge rapportée par l'infirmier à la réceptionniste
+    private void reportNurse(SimNurse nurse) {
+        long averageTriage = nurse.completed == 0 ? 0 : nurse.busyMillis / nurse.completed;
+        nursePool.updateStatus(nurse.id, nurse.queue.size() + (nurse.current != null ? 1 : 0),
+            averageTriage, nurse.completed);
+    }
+
+    /**
+     * Médecin ayant une place libre, selon la politique d'affectation ; null si tous sont occupés
+     */
+    private SimDoctor selectDoctor(SimPatient patient) {
+        SimDoctor best = null;
+        int bestScore = 0;
+        for (SimDoctor doctor : doctors) {
+            if (doctor.load >= doctor.capacity) {
+                continue;
+            }
+            int score = DoctorCompatibility.score(doctor.specialty, Collections.<String>emptyList(),
+                doctor.experience, doctor.capacity, doctor.capacity - doctor.load, patient.potentialDiseases);
+            boolean better;
+            if (best == null) {
+                better = true;
+            } else if (assignment == Assignment.LEAST_LOADED && doctor.load != best.load) {
+                better = doctor.load < best.load;
+            } else {
+                better = score > bestScore;
+            }
+            if (better) {
+                best = doctor;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private void startConsultation(SimDoctor doctor, SimPatient patient) {
+        doctor.load++;
+        patient.doctorId = doctor.id;
+        patient.consultationStart = clock.now();
+        doctorWait.record(patient.consultationStart - patient.triageEnd);
+        if (patient.urgent) {
+            urgentDoctorWait.record(patient.consultationStart - patient.triageEnd);
+        }
+        if (patient.predictedWait >= 0) {
+            predictionError.record(Math.abs(patient.consultationStart - patient.triageEnd - patient.predictedWait));
+        }
+        predictor.consultationStarted(doctor.id, patient.id, clock.now());
+        long consultationMillis = DoctorAgent.GREETING_DELAY_MS + DoctorAgent.QUESTIONS_DELAY_MS
+            + duration(consultationMinutes);
+        clock.schedule(consultationMillis, () -> endConsultation(doctor, patient));
+    }
+
+    // Fin de consultation : la place libérée est proposée à la liste d'attente
+    private void endConsultation(SimDoctor doctor, SimPatient patient) {
+        doctor.load--;
+        doctor.consultations++;
+        patient.departure = clock.now();
+        doctor.busySlotMillis += patient.departure - patient.consultationStart;
+        predictor.consultationCompleted(doctor.id, patient.id, clock.now());
+        visit.record(patient.departure - patient.arrival);
+        int day = (int) Math.min(days - 1, patient.arrival / DAY);
+        lastDepartureByDay[day] = Math.max(lastDepartureByDay[day], patient.departure);
+
+        manageWaitingList();
+    }
+
+    // Comme la réceptionniste : le premier patient en attente est affecté tant qu'un médecin est libre
+    private void manageWaitingList() {
+        while (!waitingPatients.isEmpty()) {
+            SimPatient first = waitingPatients.getFirst();
+            SimDoctor doctor = selectDoctor(first);
+            if (doctor == null) {
+                return;
+            }
+            waitingPatients.removeFirst();
+            startConsultation(doctor, first);
+        }
+    }
+
+    // Durée humaine tirée selon une loi log-normale de moyenne donnée
+    private long duration(double meanMinutes) {
+        if (meanMinutes <= 0) {
+            return 0;
+        }
+        double mu = Math.log(meanMinutes) - variability * variability / 2;
+        return (long) (Math.exp(mu + variability * random.nextGaussian()) * MINUTE);
+    }
+
+    // Copie des maladies trouvées avec leur score : la recherche suivante réécrit le score des originaux
+    private static List<Disease> snapshot(List<Disease> found) {
+        List<Disease> copies = new ArrayList<>();
+        for (Disease disease : found) {
+            Disease copy = new Disease(disease.getId(), disease.getName(), disease.getDescription(), disease.getCategory());
+            copy.addAdditionalInfo("matchScore", disease.getAdditionalInfo().getOrDefault("matchScore", "0"));
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    /**
+     * Résumé de la simulation : attentes, occupation du personnel, dépassements d'horaire
+     */
+    public String formatSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("Simulation de %d jour(s), %.1f h d'ouverture, %d infirmier(s), %d médecin(s), affectation %s%n",
+            days, openMillis / 3_600_000.0, nurses.size(), doctors.size(), assignment));
+        summary.append(String.format("Patients : %d arrivés, %d sortis, %d urgent(s), liste d'attente max %d%n",
+            patients.size(), visit.getCount(), urgentCount, maxWaitingList));
+        summary.append(String.format("  %-32s %8s %8s %8s %8s %8s%n", "durées (min)", "n", "moy", "p50", "p90", "max"));
+        appendMinutes(summary, "attente infirmier", nurseWait);
+        appendMinutes(summary, "attente médecin", doctorWait);
+        appendMinutes(summary, "attente médecin (urgents)", urgentDoctorWait);
+        appendMinutes(summary, "visite complète", visit);
+        appendMinutes(summary, "écart attente annoncée/réelle", predictionError);
+
+        double nurseCapacity = (double) openMillis * days;
+        for (SimNurse nurse : nurses.values()) {
+            summary.append(String.format("  %-12s %6d triage(s), occupation %5.1f %%%n",
+                nurse.id, nurse.completed, 100.0 * nurse.busyMillis / nurseCapacity));
+        }
+        for (SimDoctor doctor : doctors) {
+            summary.append(String.format("  %-12s %-18s %6d consultation(s), occupation %5.1f %%%n",
+                doctor.id, doctor.specialty, doctor.consultations,
+                100.0 * doctor.busySlotMillis / (nurseCapacity * doctor.capacity)));
+        }
+
+        long totalOvertime = 0;
+        long maxOvertime = 0;
+        for (int day = 0; day < days; day++) {
+            long closing = day * DAY + openMillis;
+            long overtime = Math.max(0, lastDepartureByDay[day] - closing);
+            totalOvertime += overtime;
+            maxOvertime = Math.max(maxOvertime, overtime);
+        }
+        summary.append(String.format("Dépassement après la fermeture : moyenne %.0f min, max %.0f min%n",
+            totalOvertime / (double) days / MINUTE, maxOvertime / (double) MINUTE));
+        return summary.toString();
+    }
+
+    private static void appendMinutes(StringBuilder summary, String label, LatencyHistogram histogram) {
+        summary.append(String.format("  %-32s %8d %8.1f %8.1f %8.1f %8.1f%n", label, histogram.getCount(),
+            histogram.getMean() / MINUTE, histogram.percentile(0.50) / (double) MINUTE,
+            histogram.percentile(0.90) / (double) MINUTE, histogram.getMax() / (double) MINUTE));
+    }
+
+    /**
+     * Écrit un parcours par ligne, dates en minutes depuis l'ouverture du jour d'arrivée
+     */
+    public void writeCsv(File file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(file, StandardCharsets.UTF_8.name())) {
+            writer.println("patientId,day,urgent,nurse,doctor,arrival,waitingRoom,triageStart,triageEnd,consultationStart,departure");
+            for (SimPatient p : patients) {
+                long dayStart = (p.arrival / DAY) * DAY;
+                writer.println(p.id + "," + (p.arrival / DAY) + "," + p.urgent + "," + p.nurseId + "," +
+                    (p.doctorId != null ? p.doctorId : "") + "," + minutes(p.arrival, dayStart) + "," +
+                    minutes(p.inWaitingRoom, dayStart) + "," + minutes(p.triageStart, dayStart) + "," +
+                    minutes(p.triageEnd, dayStart) + "," + minutes(p.consultationStart, dayStart) + "," +
+                    minutes(p.departure, dayStart));
+            }
+        }
+    }
+
+    private static String minutes(long time, long dayStart) {
+        return time == 0 ? "" : String.format(java.util.Locale.ROOT, "%.2f", (time - dayStart) / (double) MINUTE);
+    }
+}
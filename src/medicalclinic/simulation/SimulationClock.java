@@ -0,0 +1,69 @@
+package medicalclinic.simulation;
+
+import java.util.PriorityQueue;
+
+/**
+ * Horloge virtuelle d'une simulation à événements discrets.
+ *
+ * Les événements sont exécutés dans l'ordre de leur date, et dans l'ordre de leur programmation à
+ * date égale, ce qui rend une simulation reproductible. Le temps avance d'un événement à l'autre :
+ * aucune attente réelle n'a lieu, quelle que soit la durée simulée.
+ */
+public class SimulationClock {
+
+    private static class Event implements Comparable<Event> {
+        private final long time;
+        private final long sequence;
+        private final Runnable action;
+
+        Event(long time, long sequence, Runnable action) {
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private long now;
+    private long sequence;
+    private long processedEvents;
+
+    // Date courante, en millisecondes depuis le début de la simulation
+    public long now() {
+        return now;
+    }
+
+    // Programme une action après un délai
+    public void schedule(long delayMillis, Runnable action) {
+        scheduleAt(now + Math.max(0, delayMillis), action);
+    }
+
+    // Programme une action à une date ; une date passée est ramenée à la date courante
+    public void scheduleAt(long time, Runnable action) {
+        events.add(new Event(Math.max(now, time), sequence++, action));
+    }
+
+    /**
+     * Exécute les événements jusqu'à épuisement
+     * @return Date du dernier événement
+     */
+    public long run() {
+        Event event;
+        while ((event = events.poll()) != null) {
+            now = event.time;
+            event.action.run();
+            processedEvents++;
+        }
+        return now;
+    }
+
+    public long getProcessedEvents() {
+        return processedEvents;
+    }
+}
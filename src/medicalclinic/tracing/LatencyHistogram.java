@@ -0,0 +1,82 @@
+package medicalclinic.tracing;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogramme de durées en millisecondes, à classes logarithmiques.
+ *
+ * Les valeurs inférieures à 16 ms ont chacune leur classe ; au-delà, chaque puissance de deux est
+ * découpée en 16 classes, soit une erreur relative d'au plus 6,25 % sur les percentiles, pour une
+ * taille fixe quel que soit le nombre de valeurs. L'enregistrement est sans verrou.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Jusqu'à 2^40 ms, soit plus de 30 ans
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long millis) {
+        long value = Math.max(0, millis);
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long previous;
+        while (value > (previous = max.get()) && !max.compareAndSet(previous, value)) {
+            // Un autre thread a relevé le maximum entre-temps : relire
+        }
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_EXPONENT);
+        int subBucket = (int) (Math.min(value >>> (exponent - SUB_BUCKET_BITS), 2L * SUB_BUCKETS - 1)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // Plus grande valeur de la classe
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Valeur sous laquelle se trouve la fraction demandée des durées (0.5 pour la médiane),
+     * bornée par le maximum observé
+     */
+    public long percentile(double fraction) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(bucket), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public long getCount() { return count.get(); }
+    public long getMax() { return max.get(); }
+
+    public double getMean() {
+        long total = count.get();
+        return total == 0 ? 0.0 : sum.get() / (double) total;
+    }
+}
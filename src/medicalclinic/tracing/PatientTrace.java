@@ -0,0 +1,67 @@
+package medicalclinic.tracing;
+
+import java.util.EnumMap;
+
+/**
+ * Trace de la visite d'un patient, tenue par son agent.
+ *
+ * Chaque étape commence et se termine sur un événement vu par le patient (réception d'un
+ * formulaire, déplacement, envoi de réponses) ; sa durée est transmise au {@link TraceCollector}.
+ * Seul le premier passage par une étape est compté. Les réponses aux formulaires peuvent être
+ * envoyées depuis l'interface graphique : les méthodes sont synchronisées.
+ */
+public class PatientTrace {
+    // Étapes de la visite
+    public enum Stage {
+        // Arrivée jusqu'à la réception du formulaire d'informations personnelles
+        CONNECTION,
+        // Formulaire reçu jusqu'à l'envoi en salle d'attente
+        FORM_COMPLETION,
+        // Salle d'attente jusqu'à l'envoi des réponses à l'infirmier
+        TRIAGE,
+        // Réponses à l'infirmier jusqu'à l'affectation à un médecin
+        ASSIGNMENT,
+        // Affectation jusqu'à l'entrée en salle de consultation
+        WAITING,
+        // Entrée en salle jusqu'à l'envoi des réponses au médecin
+        CONSULTATION,
+        // Réponses au médecin jusqu'à la réception du diagnostic
+        DIAGNOSIS,
+        // Visite complète
+        VISIT
+    }
+
+    // Préfixe des étapes dans les histogrammes
+    private static final String STAGE_PREFIX = "patient/";
+
+    private final String traceId;
+    private final EnumMap<Stage, Long> started = new EnumMap<>(Stage.class);
+    private final EnumMap<Stage, Boolean> ended = new EnumMap<>(Stage.class);
+
+    public PatientTrace(String patientId) {
+        this.traceId = TraceCollector.getInstance().newTraceId(patientId);
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public synchronized void begin(Stage stage) {
+        started.putIfAbsent(stage, System.currentTimeMillis());
+    }
+
+    public synchronized void end(Stage stage) {
+        Long start = started.get(stage);
+        if (start == null || ended.putIfAbsent(stage, Boolean.TRUE) != null) {
+            return;
+        }
+        TraceCollector.getInstance().record(traceId, STAGE_PREFIX + stage.name(), start,
+            System.currentTimeMillis() - start);
+    }
+
+    // Termine une étape et commence la suivante au même instant
+    public synchronized void next(Stage ending, Stage starting) {
+        end(ending);
+        begin(starting);
+    }
+}
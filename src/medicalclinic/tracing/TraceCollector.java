@@ -0,0 +1,209 @@
+package medicalclinic.tracing;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collecte des durées des étapes du parcours des patients, pour toute la JVM.
+ *
+ * Chaque visite porte un identifiant de trace, transmis dans le paramètre {@link #TRACE_PARAM} de
+ * tous les messages ACL qui la concernent. Les durées sont regroupées par étape dans des histogrammes
+ * et les étapes individuelles sont conservées jusqu'au prochain export. Un thread exporte
+ * périodiquement, et à l'arrêt de la JVM, dans le répertoire {@code medicalclinic.trace.dir} :
+ * <ul>
+ * <li>{@code trace-<pid>-histograms.txt} : percentiles par étape, réécrit à chaque export ;</li>
+ * <li>{@code trace-<pid>-spans.csv} : une ligne par étape (trace, étape, début, durée), complété à chaque export.</li>
+ * </ul>
+ */
+public class TraceCollector {
+    private static TraceCollector instance;
+
+    // Paramètre des messages ACL portant l'identifiant de trace de la visite
+    public static final String TRACE_PARAM = "X-clinic-trace";
+
+    // Propriétés système
+    public static final String ENABLED_PROPERTY = "medicalclinic.trace.enabled";
+    public static final String DIR_PROPERTY = "medicalclinic.trace.dir";
+    public static final String EXPORT_SECONDS_PROPERTY = "medicalclinic.trace.exportSeconds";
+    public static final long DEFAULT_EXPORT_SECONDS = 60;
+    // Étapes individuelles conservées entre deux exports ; au-delà, seuls les histogrammes sont tenus
+    private static final int MAX_PENDING_SPANS = 100000;
+
+    private static class Span {
+        private final String traceId;
+        private final String stage;
+        private final long startMillis;
+        private final long durationMillis;
+
+        Span(String traceId, String stage, long startMillis, long durationMillis) {
+            this.traceId = traceId;
+            this.stage = stage;
+            this.startMillis = startMillis;
+            this.durationMillis = durationMillis;
+        }
+    }
+
+    private final boolean enabled;
+    private final File directory;
+    private final String filePrefix;
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Span> pendingSpans = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicLong droppedSpans = new AtomicLong();
+    private final AtomicLong traceSequence = new AtomicLong();
+    private ScheduledExecutorService exporter;
+
+    private TraceCollector() {
+        this.enabled = Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY, "true"));
+        this.directory = new File(System.getProperty(DIR_PROPERTY, "traces"));
+        String jvmName = ManagementFactory.getRuntimeMXBean().getName();
+        int at = jvmName.indexOf('@');
+        this.filePrefix = "trace-" + (at > 0 ? jvmName.substring(0, at) : jvmName.replaceAll("[^A-Za-z0-9]", "_"));
+    }
+
+    public static synchronized TraceCollector getInstance() {
+        if (instance == null) {
+            instance = new TraceCollector();
+        }
+        return instance;
+    }
+
+    // Nouvel identifiant de trace, préfixé par le patient pour que les agents puissent l'associer à son AID
+    public String newTraceId(String patientId) {
+        return patientId + "-" + Long.toString(System.currentTimeMillis(), 36)
+            + Long.toString(traceSequence.incrementAndGet(), 36);
+    }
+
+    // Vrai si la trace appartient à ce patient
+    public static boolean isTraceOf(String traceId, String patientId) {
+        return traceId != null && patientId != null && traceId.startsWith(patientId + "-");
+    }
+
+    /**
+     * Enregistre la durée d'une étape d'une visite
+     */
+    public void record(String traceId, String stage, long startMillis, long durationMillis) {
+        if (!enabled) {
+            return;
+        }
+        histograms.computeIfAbsent(stage, s -> new LatencyHistogram()).record(durationMillis);
+        if (traceId != null) {
+            if (pendingCount.incrementAndGet() <= MAX_PENDING_SPANS) {
+                pendingSpans.add(new Span(traceId, stage, startMillis, durationMillis));
+            } else {
+                pendingCount.decrementAndGet();
+                droppedSpans.incrementAndGet();
+            }
+        }
+        startExporter();
+    }
+
+    // Démarre l'export périodique au premier enregistrement
+    private synchronized void startExporter() {
+        if (exporter != null) {
+            return;
+        }
+        exporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "trace-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, Long.getLong(EXPORT_SECONDS_PROPERTY, DEFAULT_EXPORT_SECONDS));
+        exporter.scheduleWithFixedDelay(this::export, period, period, TimeUnit.SECONDS);
+        java.lang.Runtime.getRuntime().addShutdownHook(new Thread(this::export, "trace-export-final"));
+    }
+
+    /**
+     * Écrit les histogrammes et ajoute les étapes en attente au fichier CSV
+     */
+    public synchronized void export() {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            System.err.println("Impossible de créer le répertoire des traces: " + directory);
+            return;
+        }
+        try {
+            writeHistograms();
+            appendSpans();
+        } catch (IOException e) {
+            System.err.println("Erreur d'export des traces: " + e.getMessage());
+        }
+    }
+
+    private void writeHistograms() throws IOException {
+        File target = new File(directory, filePrefix + "-histograms.txt");
+        File temp = new File(directory, target.getName() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+            writer.write(formatHistograms());
+        }
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void appendSpans() throws IOException {
+        List<Span> spans = new ArrayList<>();
+        Span span;
+        while ((span = pendingSpans.poll()) != null) {
+            pendingCount.decrementAndGet();
+            spans.add(span);
+        }
+        if (spans.isEmpty()) {
+            return;
+        }
+
+        File target = new File(directory, filePrefix + "-spans.csv");
+        boolean header = !target.exists();
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(target, true), StandardCharsets.UTF_8))) {
+            if (header) {
+                writer.println("traceId,stage,startMillis,durationMillis");
+            }
+            for (Span s : spans) {
+                writer.println(s.traceId + "," + s.stage + "," + s.startMillis + "," + s.durationMillis);
+            }
+        }
+    }
+
+    /**
+     * Percentiles par étape, une ligne par étape, dans l'ordre alphabétique
+     */
+    public String formatHistograms() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("%-48s %8s %9s %9s %9s %9s %9s%n",
+            "étape", "n", "moy(ms)", "p50", "p90", "p99", "max"));
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            LatencyHistogram h = entry.getValue();
+            summary.append(String.format("%-48s %8d %9.1f %9d %9d %9d %9d%n", entry.getKey(), h.getCount(),
+                h.getMean(), h.percentile(0.50), h.percentile(0.90), h.percentile(0.99), h.getMax()));
+        }
+        if (droppedSpans.get() > 0) {
+            summary.append(String.format("%d étape(s) non écrite(s) dans le CSV (file pleine)%n", droppedSpans.get()));
+        }
+        return summary.toString();
+    }
+
+    public LatencyHistogram getHistogram(String stage) {
+        return histograms.get(stage);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
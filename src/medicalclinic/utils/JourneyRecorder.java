@@ -0,0 +1,150 @@
+package medicalclinic.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Enregistrement du parcours des patients simulés, de leur création à leur sortie du cabinet.
+ *
+ * Chaque patient note l'instant où il atteint chaque étape depuis son propre thread ; le générateur
+ * de charge lit les parcours à la fin de l'essai pour en tirer les temps d'attente entre étapes.
+ * L'enregistrement n'est actif que pendant un essai de charge.
+ */
+public class JourneyRecorder {
+    private static JourneyRecorder instance;
+
+    // Étapes du parcours, dans l'ordre attendu
+    public enum Stage {
+        SPAWNED, AGENT_STARTED, PERSONAL_FORM, WAITING_ROOM, NURSE_QUESTIONS,
+        CONSULTATION_ROOM, DOCTOR_QUESTIONS, DIAGNOSIS, EXIT
+    }
+
+    private final Map<String, AtomicLongArray> journeys = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+
+    private JourneyRecorder() {
+    }
+
+    public static synchronized JourneyRecorder getInstance() {
+        if (instance == null) {
+            instance = new JourneyRecorder();
+        }
+        return instance;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Note l'étape atteinte ; seul le premier passage par une étape est retenu
+    public void mark(String patientId, Stage stage) {
+        if (!enabled) {
+            return;
+        }
+        AtomicLongArray journey = journeys.computeIfAbsent(patientId,
+            id -> new AtomicLongArray(Stage.values().length));
+        journey.compareAndSet(stage.ordinal(), 0, System.currentTimeMillis());
+    }
+
+    public int getJourneyCount() {
+        return journeys.size();
+    }
+
+    public int getCompletedCount() {
+        int completed = 0;
+        for (AtomicLongArray journey : journeys.values()) {
+            if (journey.get(Stage.EXIT.ordinal()) != 0) {
+                completed++;
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Durées entre deux étapes, en millisecondes, pour les patients ayant atteint les deux
+     */
+    public List<Long> durations(Stage from, Stage to) {
+        List<Long> durations = new ArrayList<>();
+        for (AtomicLongArray journey : journeys.values()) {
+            long start = journey.get(from.ordinal());
+            long end = journey.get(to.ordinal());
+            if (start != 0 && end != 0) {
+                durations.add(end - start);
+            }
+        }
+        Collections.sort(durations);
+        return durations;
+    }
+
+    /**
+     * Résumé des temps entre étapes successives et du parcours complet
+     */
+    public String formatSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("Parcours: %d patients, %d terminés%n", getJourneyCount(), getCompletedCount()));
+        Stage[] stages = Stage.values();
+        for (int i = 1; i < stages.length; i++) {
+            summary.append(formatDurations(stages[i - 1] + " -> " + stages[i], durations(stages[i - 1], stages[i])));
+        }
+        summary.append(formatDurations("Parcours complet", durations(Stage.SPAWNED, Stage.EXIT)));
+        return summary.toString();
+    }
+
+    private static String formatDurations(String label, List<Long> sorted) {
+        if (sorted.isEmpty()) {
+            return String.format("  %-40s aucun%n", label);
+        }
+        return String.format("  %-40s n=%-6d p50=%7d ms  p95=%7d ms  max=%7d ms%n", label, sorted.size(),
+            percentile(sorted, 0.50), percentile(sorted, 0.95), sorted.get(sorted.size() - 1));
+    }
+
+    // Percentile d'une liste triée (0.5 pour la médiane)
+    public static long percentile(List<Long> sorted, double fraction) {
+        int index = (int) Math.ceil(fraction * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+
+    /**
+     * Écrit un parcours par ligne : instants de chaque étape relatifs à la création du patient
+     * (vide si l'étape n'a pas été atteinte)
+     */
+    public void writeCsv(File file) throws IOException {
+        try (PrintWriter writer = new PrintWriter(file, StandardCharsets.UTF_8.name())) {
+            StringBuilder header = new StringBuilder("patientId");
+            for (Stage stage : Stage.values()) {
+                header.append(',').append(stage.name());
+            }
+            writer.println(header);
+
+            for (Map.Entry<String, AtomicLongArray> entry : journeys.entrySet()) {
+                AtomicLongArray journey = entry.getValue();
+                long origin = journey.get(Stage.SPAWNED.ordinal());
+                StringBuilder line = new StringBuilder(entry.getKey());
+                for (Stage stage : Stage.values()) {
+                    long time = journey.get(stage.ordinal());
+                    line.append(',');
+                    if (time != 0 && origin != 0) {
+                        line.append(time - origin);
+                    }
+                }
+                writer.println(line);
+            }
+        }
+    }
+
+    public void clear() {
+        journeys.clear();
+    }
+}
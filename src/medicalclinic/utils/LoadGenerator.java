@@ -0,0 +1,230 @@
+package medicalclinic.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import jade.core.Profile;
+import jade.core.ProfileImpl;
+import jade.core.Runtime;
+import jade.wrapper.AgentController;
+import jade.wrapper.ContainerController;
+import jade.wrapper.StaleProxyException;
+import medicalclinic.gui.HeadlessView;
+import medicalclinic.utils.JourneyRecorder.Stage;
+
+/**
+ * Générateur de charge : lance des patients automatisés, sans interface graphique, selon un processus
+ * d'arrivée choisi, puis mesure leur parcours dans le cabinet.
+ *
+ * Le système (StartSystem) doit déjà tourner sur l'hôte local. Paramètres (propriétés système) :
+ * <ul>
+ * <li>{@code medicalclinic.load.process} : {@code poisson} (défaut), {@code burst} ou {@code diurnal}</li>
+ * <li>{@code medicalclinic.load.patients} : nombre de patients (défaut 1000)</li>
+ * <li>{@code medicalclinic.load.ratePerMinute} : débit moyen, ou débit de pointe pour {@code diurnal} (défaut 60)</li>
+ * <li>{@code medicalclinic.load.burstSize} : patients arrivant ensemble pour {@code burst} (défaut 50)</li>
+ * <li>{@code medicalclinic.load.dayMinutes} : durée d'une journée simulée pour {@code diurnal} (défaut 60)</li>
+ * <li>{@code medicalclinic.load.returningRatio} : part de patients déjà venus (défaut 0.1)</li>
+ * <li>{@code medicalclinic.load.seed}, {@code medicalclinic.load.drainSeconds},
+ * {@code medicalclinic.load.output} (fichier CSV des parcours)</li>
+ * </ul>
+ * Les symptômes déclarés sont tirés par {@link SymptomProfiles}.
+ */
+public class LoadGenerator {
+    private static final String PREFIX = "medicalclinic.load.";
+
+    /**
+     * Processus d'arrivée : délai avant le prochain patient, en fonction du temps écoulé depuis le début
+     */
+    public interface ArrivalProcess {
+        long nextDelayMillis(Random random, long elapsedMillis);
+    }
+
+    // Arrivées indépendantes à débit constant : délais exponentiels
+    static class PoissonArrivals implements ArrivalProcess {
+        private final double ratePerMilli;
+
+        PoissonArrivals(double ratePerMinute) {
+            this.ratePerMilli = ratePerMinute / 60000.0;
+        }
+
+        @Override
+        public long nextDelayMillis(Random random, long elapsedMillis) {
+            return exponential(random, ratePerMilli);
+        }
+    }
+
+    // Groupes de patients arrivant au même instant, au débit moyen demandé
+    static class BurstArrivals implements ArrivalProcess {
+        private final int burstSize;
+        private final long periodMillis;
+        private int remainingInBurst;
+
+        BurstArrivals(double ratePerMinute, int burstSize) {
+            this.burstSize = Math.max(1, burstSize);
+            this.periodMillis = (long) (this.burstSize * 60000.0 / ratePerMinute);
+            this.remainingInBurst = this.burstSize;
+        }
+
+        @Override
+        public long nextDelayMillis(Random random, long elapsedMillis) {
+            if (--remainingInBurst > 0) {
+                return 0;
+            }
+            remainingInBurst = burstSize;
+            return periodMillis;
+        }
+    }
+
+    /**
+     * Journée type condensée : pointe le matin, seconde vague en début d'après-midi, creux ailleurs.
+     * Processus de Poisson non homogène simulé par amincissement : des candidats sont tirés au débit
+     * de pointe et acceptés avec la probabilité débit courant / débit de pointe.
+     */
+    static class DiurnalArrivals implements ArrivalProcess {
+        private final double peakRatePerMilli;
+        private final long dayMillis;
+        private final double maxShape;
+
+        DiurnalArrivals(double peakRatePerMinute, long dayMillis) {
+            this.peakRatePerMilli = peakRatePerMinute / 60000.0;
+            this.dayMillis = Math.max(1, dayMillis);
+            double max = 0;
+            for (int i = 0; i <= 1000; i++) {
+                max = Math.max(max, shape(i / 1000.0));
+            }
+            this.maxShape = max;
+        }
+
+        // Intensité relative à un instant de la journée (0 = ouverture, 1 = fermeture)
+        static double shape(double time) {
+            double morning = (time - 0.15) / 0.08;
+            double afternoon = (time - 0.55) / 0.10;
+            return 0.15 + Math.exp(-morning * morning) + 0.5 * Math.exp(-afternoon * afternoon);
+        }
+
+        @Override
+        public long nextDelayMillis(Random random, long elapsedMillis) {
+            long delay = 0;
+            while (true) {
+                delay += exponential(random, peakRatePerMilli);
+                double time = ((elapsedMillis + delay) % dayMillis) / (double) dayMillis;
+                if (random.nextDouble() * maxShape < shape(time)) {
+                    return delay;
+                }
+            }
+        }
+    }
+
+    private static long exponential(Random random, double ratePerMilli) {
+        return (long) (-Math.log(1.0 - random.nextDouble()) / ratePerMilli);
+    }
+
+    static ArrivalProcess createProcess(String name, double ratePerMinute) {
+        return createProcess(name, ratePerMinute, Integer.getInteger(PREFIX + "dayMinutes", 60) * 60000L);
+    }
+
+    // Processus d'arrivée par son nom ; dayMillis est la durée de la journée du processus "diurnal"
+    public static ArrivalProcess createProcess(String name, double ratePerMinute, long dayMillis) {
+        switch (name) {
+            case "burst":
+                return new BurstArrivals(ratePerMinute, Integer.getInteger(PREFIX + "burstSize", 50));
+            case "diurnal":
+                return new DiurnalArrivals(ratePerMinute, dayMillis);
+            case "poisson":
+                return new PoissonArrivals(ratePerMinute);
+            default:
+                throw new IllegalArgumentException("Processus d'arrivée inconnu: " + name);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String processName = System.getProperty(PREFIX + "process", "poisson");
+        int patients = Integer.getInteger(PREFIX + "patients", 1000);
+        double ratePerMinute = Double.parseDouble(System.getProperty(PREFIX + "ratePerMinute", "60"));
+        double returningRatio = Double.parseDouble(System.getProperty(PREFIX + "returningRatio", "0.1"));
+        long seed = Long.getLong(PREFIX + "seed", 42);
+        long drainMillis = Long.getLong(PREFIX + "drainSeconds", 600) * 1000;
+        File output = new File(System.getProperty(PREFIX + "output", "load-journeys.csv"));
+
+        ArrivalProcess process = createProcess(processName, ratePerMinute);
+        SymptomProfiles profiles = new SymptomProfiles();
+        Random random = new Random(seed);
+        String runId = Long.toString(System.currentTimeMillis() % 1000000, 36);
+
+        System.out.println("Générateur de charge: " + patients + " patients, arrivées " + processName
+            + ", " + ratePerMinute + " patients/min, " + profiles.getDiseaseCount() + " profils de maladies");
+
+        // Tous les patients de cette JVM sont automatisés ; leur parcours est enregistré
+        System.setProperty(HeadlessView.HEADLESS_PROPERTY, "true");
+        JourneyRecorder recorder = JourneyRecorder.getInstance();
+        recorder.setEnabled(true);
+
+        Runtime runtime = Runtime.instance();
+        Profile profile = new ProfileImpl();
+        profile.setParameter(Profile.MAIN_HOST, "localhost");
+        ContainerController container = runtime.createAgentContainer(profile);
+
+        List<String> knownPhones = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        long nextArrival = 0;
+        int launched = 0;
+
+        for (int i = 0; i < patients; i++) {
+            nextArrival += process.nextDelayMillis(random, nextArrival);
+            long wait = start + nextArrival - System.currentTimeMillis();
+            if (wait > 0) {
+                Thread.sleep(wait);
+            }
+
+            // Une partie des patients revient avec le téléphone d'un patient précédent
+            String phone;
+            if (!knownPhones.isEmpty() && random.nextDouble() < returningRatio) {
+                phone = knownPhones.get(random.nextInt(knownPhones.size()));
+            } else {
+                phone = String.format("07%08d", random.nextInt(100000000));
+                knownPhones.add(phone);
+            }
+
+            String patientId = "load-" + runId + "-" + i;
+            try {
+                recorder.mark(patientId, Stage.SPAWNED);
+                AgentController patientAgent = container.createNewAgent(
+                    patientId,
+                    "medicalclinic.agents.PatientAgent",
+                    new Object[] { HeadlessView.HEADLESS_ARGUMENT, phone, profiles.draw(random) });
+                patientAgent.start();
+                launched++;
+            } catch (StaleProxyException e) {
+                System.err.println("Impossible de lancer le patient " + patientId + ": " + e.getMessage());
+            }
+
+            if (launched > 0 && launched % 100 == 0) {
+                System.out.println(launched + " patients lancés, " + recorder.getCompletedCount() + " sortis");
+            }
+        }
+
+        // Attendre la sortie des derniers patients
+        long drainDeadline = System.currentTimeMillis() + drainMillis;
+        while (recorder.getCompletedCount() < launched && System.currentTimeMillis() < drainDeadline) {
+            Thread.sleep(1000);
+        }
+
+        System.out.println("Essai terminé en " + (System.currentTimeMillis() - start) / 1000 + " s");
+        System.out.print(recorder.formatSummary());
+        try {
+            recorder.writeCsv(output);
+            System.out.println("Parcours écrits dans " + output.getAbsolutePath());
+        } catch (IOException e) {
+            System.err.println("Erreur d'écriture des parcours: " + e.getMessage());
+        }
+
+        try {
+            container.kill();
+        } catch (StaleProxyException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -6,12 +6,44 @@ import jade.core.Runtime;
 import jade.wrapper.AgentController;
 import jade.wrapper.ContainerController;
 import jade.wrapper.StaleProxyException;
+import medicalclinic.gui.HeadlessView;
 
 /**
  * Classe utilitaire pour démarrer le système multi-agents du cabinet médical
  * Cette classe lance les agents principaux : Réceptionniste, Infirmier et Médecins
+ *
+ * Fichiers écrits par le cabinet, relatifs au répertoire courant sauf indication contraire
+ * (propriétés système) :
+ * <ul>
+ * <li>{@code medicalclinic.dataDir} : dossiers patients, journal et instantanés de chaque
+ * réceptionniste, dans un sous-répertoire à son nom (défaut {@code data})</li>
+ * <li>{@code medicalclinic.trace.dir} : traces des parcours patients (défaut {@code traces})</li>
+ * <li>{@code medicalclinic.metrics.dir} : métriques des agents (défaut {@code metrics})</li>
+ * </ul>
+ * L'état d'accueil est repris au redémarrage depuis {@code medicalclinic.dataDir} : supprimer ce
+ * répertoire pour repartir d'un cabinet vide.
  */
 public class StartSystem {
+    // Nombre d'infirmiers à démarrer (propriété système)
+    public static final String NURSE_COUNT_PROPERTY = "medicalclinic.nurses";
+    public static final int DEFAULT_NURSE_COUNT = 2;
+    // Nombre de réceptionnistes ; au-delà de 1, l'accueil est réparti par hachage cohérent
+    public static final String FRONT_DESK_SHARDS_PROPERTY = "medicalclinic.frontDesk.shards";
+
+    // Médecins du cabinet : identifiant, spécialité, salle, qualification, années d'expérience
+    public static final String[][] DOCTOR_ROSTER = {
+        // Médecins généralistes
+        {"doctor0", "generaliste", "100", "Médecin généraliste", "15"},
+        {"doctor4", "generaliste", "104", "Médecin généraliste", "8"},
+        // Spécialistes
+        {"doctor1", "cardiologue", "101", "Spécialiste en cardiologie", "12"},
+        {"doctor2", "pneumologue", "102", "Spécialiste en pneumologie", "10"},
+        {"doctor3", "gastroenterologue", "103", "Spécialiste en gastroentérologie", "7"},
+        {"doctor5", "infectiologue", "105", "Spécialiste en maladies infectieuses", "9"},
+        {"doctor6", "neurologue", "106", "Spécialiste en neurologie", "11"},
+        {"doctor7", "endocrinologue", "107", "Spécialiste en endocrinologie", "6"}
+    };
+
     public static void main(String[] args) {
         System.out.println("Démarrage du système multi-agents du Cabinet Médical...");
 
@@ -19,12 +51,38 @@ public class StartSystem {
         Runtime runtime = Runtime.instance();
         Profile profile = new ProfileImpl();
         profile.setParameter(Profile.MAIN_HOST, "localhost");
-        profile.setParameter(Profile.GUI, "true"); // Active l'interface d'administration JADE
+        // Mode sans affichage ("headless" en argument) : transmis à tous les agents de la JVM
+        boolean headless = HeadlessView.isRequested(args);
+        if (headless) {
+            System.setProperty(HeadlessView.HEADLESS_PROPERTY, "true");
+        }
+        // Active l'interface d'administration JADE, sauf en mode sans affichage
+        profile.setParameter(Profile.GUI, String.valueOf(!headless));
 
         // Créer le conteneur principal
         ContainerController container = runtime.createMainContainer(profile);
 
         try {
+            startClinic(container);
+
+            System.out.println("\nSystème multi-agents du Cabinet Médical démarré avec succès!");
+            System.out.println("Pour lancer un patient, exécutez la classe PatientLauncher ou StartPatient.");
+
+        } catch (StaleProxyException e) {
+            System.err.println("Erreur lors du démarrage des agents: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Démarre le personnel du cabinet dans un conteneur : réceptionniste(s), infirmiers et médecins
+     */
+    public static void startClinic(ContainerController container) throws StaleProxyException {
+        int frontDeskShards = Integer.getInteger(FRONT_DESK_SHARDS_PROPERTY, 1);
+        if (frontDeskShards > 1) {
+            // Accueil réparti : plusieurs réceptionnistes et un routeur qui oriente les patients
+            createShardedFrontDesk(container, frontDeskShards);
+        } else {
             // Créer l'agent réceptionniste
             System.out.println("Création de l'agent Réceptionniste...");
             AgentController receptionistAgent = container.createNewAgent(
@@ -33,26 +91,51 @@ public class StartSystem {
                 null);
             receptionistAgent.start();
             System.out.println("Agent Réceptionniste démarré.");
+        }
 
-            // Créer l'agent infirmier
-            System.out.println("Création de l'agent Infirmier...");
+        // Créer le groupe d'agents infirmiers
+        System.out.println("Création des agents Infirmiers...");
+        createNurses(container, Integer.getInteger(NURSE_COUNT_PROPERTY, DEFAULT_NURSE_COUNT));
+
+        // Créer plusieurs agents médecins avec différentes spécialités et expérience
+        System.out.println("Création des agents Médecins...");
+        createDoctors(container);
+    }
+
+    /**
+     * Crée les réceptionnistes d'un accueil réparti et le routeur qui répartit les patients entre elles
+     */
+    private static void createShardedFrontDesk(ContainerController container, int shards)
+        throws StaleProxyException {
+        System.out.println("Création de " + shards + " agents Réceptionnistes (accueil réparti)...");
+        for (int i = 1; i <= shards; i++) {
+            AgentController receptionistAgent = container.createNewAgent(
+                "receptionist" + i,
+                "medicalclinic.agents.ReceptionistAgent",
+                new Object[] {"sharded"});
+            receptionistAgent.start();
+            System.out.println("Agent Réceptionniste receptionist" + i + " démarré.");
+        }
+
+        AgentController routerAgent = container.createNewAgent(
+            "receptionist-router",
+            "medicalclinic.agents.FrontDeskRouterAgent",
+            null);
+        routerAgent.start();
+        System.out.println("Routeur d'accueil démarré.");
+    }
+
+    /**
+     * Crée le groupe d'infirmiers ; la réceptionniste répartit les patients entre eux
+     */
+    private static void createNurses(ContainerController container, int count) throws StaleProxyException {
+        for (int i = 1; i <= Math.max(1, count); i++) {
             AgentController nurseAgent = container.createNewAgent(
-                "nurse",
+                "nurse" + i,
                 "medicalclinic.agents.NurseAgent",
                 null);
             nurseAgent.start();
-            System.out.println("Agent Infirmier démarré.");
-
-            // Créer plusieurs agents médecins avec différentes spécialités et expérience
-            System.out.println("Création des agents Médecins...");
-            createDoctors(container);
-
-            System.out.println("\nSystème multi-agents du Cabinet Médical démarré avec succès!");
-            System.out.println("Pour lancer un patient, exécutez la classe PatientLauncher ou StartPatient.");
-
-        } catch (StaleProxyException e) {
-            System.err.println("Erreur lors du démarrage des agents: " + e.getMessage());
-            e.printStackTrace();
+            System.out.println("Agent Infirmier nurse" + i + " démarré.");
         }
     }
 
@@ -60,17 +143,9 @@ public class StartSystem {
      * Crée les agents médecins avec leurs spécialités et expertises
      */
     private static void createDoctors(ContainerController container) throws StaleProxyException {
-        // Médecins généralistes
-        createDoctor(container, "doctor0", "generaliste", "100", "Médecin généraliste", "15");
-        createDoctor(container, "doctor4", "generaliste", "104", "Médecin généraliste", "8");
-
-        // Spécialistes
-        createDoctor(container, "doctor1", "cardiologue", "101", "Spécialiste en cardiologie", "12");
-        createDoctor(container, "doctor2", "pneumologue", "102", "Spécialiste en pneumologie", "10");
-        createDoctor(container, "doctor3", "gastroenterologue", "103", "Spécialiste en gastroentérologie", "7");
-        createDoctor(container, "doctor5", "infectiologue", "105", "Spécialiste en maladies infectieuses", "9");
-        createDoctor(container, "doctor6", "neurologue", "106", "Spécialiste en neurologie", "11");
-        createDoctor(container, "doctor7", "endocrinologue", "107", "Spécialiste en endocrinologie", "6");
+        for (String[] doctor : DOCTOR_ROSTER) {
+            createDoctor(container, doctor[0], doctor[1], doctor[2], doctor[3], doctor[4]);
+        }
     }
 
     /**
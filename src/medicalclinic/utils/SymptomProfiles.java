@@ -0,0 +1,138 @@
+package medicalclinic.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import medicalclinic.database.DiseaseDatabase;
+import medicalclinic.models.Disease;
+
+/**
+ * Distribution des symptômes déclarés par les patients simulés, construite à partir de la base des maladies.
+ *
+ * Une maladie est tirée selon le poids de sa catégorie ({@code medicalclinic.load.categoryWeights},
+ * par exemple {@code "Infectieuses=3,Respiratoires=2"} ; poids 1 par défaut), puis le patient
+ * déclare une partie de ses symptômes courants, parfois accompagnée d'un symptôme d'une autre maladie.
+ */
+public class SymptomProfiles {
+    // Propriété système : poids des catégories de maladies
+    public static final String CATEGORY_WEIGHTS_PROPERTY = "medicalclinic.load.categoryWeights";
+    // Probabilité d'ajouter un symptôme sans rapport avec la maladie tirée
+    private static final double NOISE_PROBABILITY = 0.2;
+
+    private final List<Disease> diseases = new ArrayList<>();
+    private final double[] cumulativeWeights;
+    private final List<String> allSymptoms = new ArrayList<>();
+
+    public SymptomProfiles() {
+        this(parseWeights(System.getProperty(CATEGORY_WEIGHTS_PROPERTY, "")));
+    }
+
+    public SymptomProfiles(Map<String, Double> categoryWeights) {
+        for (Disease disease : DiseaseDatabase.getInstance().getAllDiseases()) {
+            if (!disease.getCommonSymptoms().isEmpty()) {
+                diseases.add(disease);
+                allSymptoms.addAll(disease.getCommonSymptoms());
+            }
+        }
+
+        cumulativeWeights = new double[diseases.size()];
+        double total = 0;
+        for (int i = 0; i < diseases.size(); i++) {
+            total += Math.max(0, categoryWeights.getOrDefault(diseases.get(i).getCategory(), 1.0));
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    // "Catégorie=poids,Catégorie=poids"
+    static Map<String, Double> parseWeights(String spec) {
+        Map<String, Double> weights = new HashMap<>();
+        for (String part : spec.split(",")) {
+            int separator = part.indexOf('=');
+            if (separator > 0) {
+                try {
+                    weights.put(part.substring(0, separator).trim(),
+                        Double.parseDouble(part.substring(separator + 1).trim()));
+                } catch (NumberFormatException e) {
+                    System.err.println("Poids de catégorie ignoré: " + part);
+                }
+            }
+        }
+        return weights;
+    }
+
+    // Tire une maladie selon les poids des catégories
+    public Disease drawDisease(Random random) {
+        if (diseases.isEmpty() || cumulativeWeights[cumulativeWeights.length - 1] <= 0) {
+            return null;
+        }
+        double target = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (target < cumulativeWeights[i]) {
+                return diseases.get(i);
+            }
+        }
+        return diseases.get(diseases.size() - 1);
+    }
+
+    /**
+     * Symptômes déclarés par un patient : au moins la moitié des symptômes courants de la maladie tirée,
+     * dans un ordre quelconque, séparés par des virgules
+     */
+    public String draw(Random random) {
+        Disease disease = drawDisease(random);
+        if (disease == null) {
+            return "fatigue";
+        }
+
+        List<String> symptoms = new ArrayList<>(disease.getCommonSymptoms());
+        Collections.shuffle(symptoms, random);
+        int minimum = (symptoms.size() + 1) / 2;
+        List<String> declared = new ArrayList<>(symptoms.subList(0, minimum + random.nextInt(symptoms.size() - minimum + 1)));
+
+        if (random.nextDouble() < NOISE_PROBABILITY) {
+            String noise = allSymptoms.get(random.nextInt(allSymptoms.size()));
+            if (!declared.contains(noise)) {
+                declared.add(noise);
+            }
+        }
+        return String.join(", ", declared);
+    }
+
+    /**
+     * Réponses complètes au questionnaire de l'infirmier : symptômes principaux tirés par {@link #draw},
+     * autres réponses le plus souvent négatives. Quelques pour cent des patients donnent une réponse
+     * que les règles de triage jugent urgente (douleur de 9 ou 10, forte fièvre, respiration très difficile).
+     */
+    public HashMap<String, String> drawAnswers(Random random) {
+        HashMap<String, String> answers = new HashMap<>();
+        answers.put("mainSymptoms", draw(random));
+        answers.put("symptomDuration", (1 + random.nextInt(14)) + " jours");
+        answers.put("painLocation", random.nextBoolean() ? "non" : "abdomen");
+        answers.put("painIntensity", String.valueOf(Math.min(10, (int) Math.abs(random.nextGaussian() * 3.5))));
+        double fever = random.nextDouble();
+        answers.put("fever", fever < 0.03 ? "oui, 40" : fever < 0.4 ? "oui, 38,5" : "non");
+        double breathing = random.nextDouble();
+        answers.put("breathing", breathing < 0.01 ? "très difficile" :
+            breathing < 0.2 ? "essoufflement à l'effort" : "normale");
+        answers.put("coughing", random.nextDouble() < 0.3 ? "toux sèche" : "non");
+        answers.put("digestive", random.nextDouble() < 0.3 ? "nausées" : "non");
+        answers.put("skin", random.nextDouble() < 0.1 ? "démangeaisons" : "non");
+        answers.put("allergies", "non");
+        answers.put("currentMedications", random.nextBoolean() ? "aucun" : "paracétamol");
+        answers.put("recentTravel", random.nextDouble() < 0.2 ? "oui, zone rurale" : "non");
+        answers.put("chronic", "non");
+        answers.put("weightChange", "non");
+        answers.put("sleeping", random.nextDouble() < 0.2 ? "insomnie" : "non");
+        answers.put("headache", random.nextDouble() < 0.4 ? "oui" : "non");
+        answers.put("additionalInfo", "");
+        return answers;
+    }
+
+    public int getDiseaseCount() {
+        return diseases.size();
+    }
+}
@@ -0,0 +1,341 @@
+package medicalclinic.persistence;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import com.google.gson.JsonObject;
+
+import medicalclinic.models.PatientRecord;
+
+/**
+ * Tests de reprise de l'état de l'accueil : journal, instantanés et dossiers sur disque.
+ * Chaque test travaille dans un répertoire temporaire. Le programme se termine avec le code 1
+ * si un test échoue.
+ */
+public class PersistenceRecoveryTest {
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Tests de reprise de l'état de l'accueil");
+        System.out.println("--------------------------------------");
+
+        run("Relecture du journal", PersistenceRecoveryTest::testJournalRoundTrip);
+        run("Fin de segment illisible", PersistenceRecoveryTest::testTornTail);
+        run("Trou dans le journal", PersistenceRecoveryTest::testJournalGap);
+        run("Entrées manquantes entre deux segments", PersistenceRecoveryTest::testJournalHole);
+        run("Dernier instantané illisible", PersistenceRecoveryTest::testCorruptLatestSnapshot);
+        run("Reprise sur les dossiers existants", PersistenceRecoveryTest::testRestoreOverColdRecords);
+
+        System.out.println("--------------------------------------");
+        if (failures > 0) {
+            System.out.println(failures + " test(s) en échec.");
+            System.exit(1);
+        }
+        System.out.println("Tous les tests sont passés.");
+    }
+
+    private interface TestCase {
+        void run(File directory) throws Exception;
+    }
+
+    private static void run(String name, TestCase test) {
+        File directory = null;
+        try {
+            directory = Files.createTempDirectory("medicalclinic-test-").toFile();
+            test.run(directory);
+            System.out.println("OK     " + name);
+        } catch (Throwable e) {
+            failures++;
+            System.out.println("ÉCHEC  " + name + ": " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    // Entrées écrites puis relues dans l'ordre, avec leur type, patient et contenu
+    private static void testJournalRoundTrip(File directory) throws Exception {
+        PatientJournal journal = openJournal(directory);
+        for (int i = 1; i <= 5; i++) {
+            JsonObject payload = new JsonObject();
+            payload.addProperty("index", i);
+            journal.append(PatientJournal.EntryType.PERSONAL_INFO, "patient" + i, payload);
+        }
+        journal.close();
+
+        List<PatientJournal.Entry> entries = new ArrayList<>();
+        long lastSeq = new PatientJournal(directory).recover(0, entries::add);
+
+        check(lastSeq == 5, "dernière entrée " + lastSeq + " au lieu de 5");
+        check(entries.size() == 5, entries.size() + " entrées relues au lieu de 5");
+        for (int i = 0; i < entries.size(); i++) {
+            PatientJournal.Entry entry = entries.get(i);
+            check(entry.getSeq() == i + 1, "numéro " + entry.getSeq() + " à la position " + i);
+            check(entry.getType() == PatientJournal.EntryType.PERSONAL_INFO, "type " + entry.getType());
+            check(("patient" + (i + 1)).equals(entry.getPatientId()), "patient " + entry.getPatientId());
+            check(entry.getPayload().getAsJsonObject().get("index").getAsInt() == i + 1, "contenu altéré");
+        }
+
+        // Seules les entrées postérieures au numéro donné sont transmises
+        entries.clear();
+        new PatientJournal(directory).recover(3, entries::add);
+        check(entries.size() == 2 && entries.get(0).getSeq() == 4, "reprise après l'entrée 3 incorrecte");
+    }
+
+    // Une ligne tronquée par un arrêt brutal est ignorée, les entrées complètes sont conservées
+    private static void testTornTail(File directory) throws Exception {
+        PatientJournal journal = openJournal(directory);
+        for (int i = 1; i <= 3; i++) {
+            journal.append(PatientJournal.EntryType.QUEUE_ADD, "patient" + i, new JsonObject());
+        }
+        journal.close();
+
+        List<File> segments = journal.listSegments();
+        File last = segments.get(segments.size() - 1);
+        try (FileOutputStream out = new FileOutputStream(last, true)) {
+            out.write("0badc0de {\"seq\":4,\"type\":\"QUEU".getBytes(StandardCharsets.UTF_8));
+        }
+
+        List<PatientJournal.Entry> entries = new ArrayList<>();
+        PatientJournal reopened = new PatientJournal(directory);
+        long lastSeq = reopened.recover(0, entries::add);
+        check(lastSeq == 3, "dernière entrée " + lastSeq + " au lieu de 3");
+        check(entries.size() == 3, entries.size() + " entrées relues au lieu de 3");
+
+        // La numérotation reprend après la dernière entrée valide
+        reopened.start();
+        long seq = reopened.append(PatientJournal.EntryType.QUEUE_REMOVE, "patient1", new JsonObject());
+        reopened.close();
+        check(seq == 4, "nouvelle entrée numérotée " + seq + " au lieu de 4");
+    }
+
+    // Des entrées manquantes avant le premier segment empêchent la reprise
+    private static void testJournalGap(File directory) throws Exception {
+        PatientJournal journal = openJournal(directory);
+        appendAndWait(journal, 1, 3);
+        journal.requestRoll();
+        appendAndWait(journal, 4, 6);
+        journal.close();
+
+        List<File> segments = journal.listSegments();
+        check(segments.size() == 2, segments.size() + " segments au lieu de 2");
+        check(segments.get(0).delete(), "suppression du premier segment impossible");
+
+        try {
+            new PatientJournal(directory).recover(0, entry -> { });
+            throw new AssertionError("la reprise aurait dû être refusée");
+        } catch (IOException expected) {
+            // Entrées 1 à 3 absentes
+        }
+
+        // Un instantané couvrant les entrées supprimées permet la reprise
+        List<PatientJournal.Entry> entries = new ArrayList<>();
+        long lastSeq = new PatientJournal(directory).recover(3, entries::add);
+        check(lastSeq == 6 && entries.size() == 3, "reprise après l'entrée 3 incorrecte");
+    }
+
+    // Des entrées manquantes entre deux segments empêchent aussi la reprise
+    private static void testJournalHole(File directory) throws Exception {
+        PatientJournal journal = openJournal(directory);
+        appendAndWait(journal, 1, 3);
+        journal.requestRoll();
+        appendAndWait(journal, 4, 6);
+        journal.requestRoll();
+        appendAndWait(journal, 7, 9);
+        journal.close();
+
+        List<File> segments = journal.listSegments();
+        check(segments.size() == 3, segments.size() + " segments au lieu de 3");
+        check(segments.get(1).delete(), "suppression du segment intermédiaire impossible");
+
+        List<PatientJournal.Entry> entries = new ArrayList<>();
+        try {
+            new PatientJournal(directory).recover(0, entries::add);
+            throw new AssertionError("la reprise aurait dû être refusée");
+        } catch (IOException expected) {
+            // Entrées 4 à 6 absentes
+        }
+        check(entries.size() == 3, "seules les entrées précédant le trou auraient dû être lues");
+    }
+
+    /**
+     * Deux instantanés pris, le plus récent rendu illisible : le précédent est chargé et les
+     * segments du journal qui le suivent sont encore présents. Sans aucun instantané lisible,
+     * la reprise est refusée.
+     */
+    private static void testCorruptLatestSnapshot(File directory) throws Exception {
+        File journalDir = new File(directory, "journal");
+        File snapshotDir = new File(directory, "snapshots");
+        PatientRecordStore records = new PatientRecordStore(new File(directory, "records"));
+        PatientJournal journal = openJournal(journalDir);
+        SnapshotManager snapshots = new SnapshotManager(snapshotDir, journal, records);
+
+        records.put(newRecord("patient1", "Durand", "0611111111"));
+        appendAndWait(journal, 1, 3);
+        takeSnapshot(snapshots, 3, 1, records);
+
+        records.put(newRecord("patient2", "Martin", "0622222222"));
+        appendAndWait(journal, 4, 6);
+        takeSnapshot(snapshots, 6, 2, records);
+
+        appendAndWait(journal, 7, 8);
+        journal.close();
+        snapshots.close();
+
+        File[] files = snapshotDir.listFiles((dir, name) -> name.endsWith(".json.gz"));
+        check(files != null && files.length == 2, "deux instantanés devraient être conservés");
+        File latest = new File(snapshotDir, String.format("snapshot-%020d.json.gz", 6));
+        try (RandomAccessFile file = new RandomAccessFile(latest, "rw")) {
+            file.seek(file.length() / 2);
+            file.write(new byte[] {0, 1, 2, 3, 4, 5, 6, 7});
+            file.setLength(file.length() - 4);
+        }
+
+        // Le dernier instantané est écarté sans rien transmettre, le précédent est chargé
+        List<JsonObject> states = new ArrayList<>();
+        List<String> restored = new ArrayList<>();
+        PatientJournal reopened = new PatientJournal(journalDir);
+        SnapshotManager reloaded = new SnapshotManager(snapshotDir, reopened, records);
+        long snapshotSeq = reloaded.load(states::add, record -> restored.add(record.getPatientId()));
+        reloaded.close();
+
+        check(snapshotSeq == 3, "instantané chargé " + snapshotSeq + " au lieu de 3");
+        check(states.size() == 1 && states.get(0).get("generation").getAsInt() == 1,
+            "état transmis incorrect: " + states);
+        check(restored.size() == 1 && "patient1".equals(restored.get(0)), "dossiers transmis: " + restored);
+
+        List<PatientJournal.Entry> entries = new ArrayList<>();
+        long lastSeq = reopened.recover(snapshotSeq, entries::add);
+        check(lastSeq == 8 && entries.size() == 5, "entrées 4 à 8 attendues, " + entries.size() + " relues");
+
+        // Plus aucun instantané lisible : le journal seul ne couvre plus les premières entrées
+        check(new File(snapshotDir, String.format("snapshot-%020d.json.gz", 3)).delete(),
+            "suppression de l'instantané précédent impossible");
+        SnapshotManager empty = new SnapshotManager(snapshotDir, new PatientJournal(journalDir), records);
+        check(empty.load(state -> { }, record -> { }) == 0, "aucun instantané ne devrait être chargé");
+        empty.close();
+        try {
+            new PatientJournal(journalDir).recover(0, entry -> { });
+            throw new AssertionError("la reprise aurait dû être refusée");
+        } catch (IOException expected) {
+            // Entrées 1 à 3 supprimées après le premier instantané
+        }
+    }
+
+    /**
+     * Un instantané ne recopie que les dossiers modifiés depuis leur écriture sur disque. Repris sur le
+     * répertoire des dossiers, il ne réécrit que ceux-là ; les autres, y compris ceux écrits avant le
+     * journal, restent tels quels et indexés.
+     */
+    private static void testRestoreOverColdRecords(File directory) throws Exception {
+        File recordsDir = new File(directory, "records");
+        File snapshotDir = new File(directory, "snapshots");
+        PatientRecordStore previous = new PatientRecordStore(recordsDir);
+        PatientRecord updated = newRecord("patient2", "Martin", "0622222222");
+        previous.put(newRecord("patient1", "Durand", "0611111111"));
+        previous.put(updated);
+        previous.put(newRecord("legacy", "Bernard", "0633333333"));
+        previous.flush();
+
+        HashMap<String, String> newPhone = new HashMap<>();
+        newPhone.put("phone", "0699999999");
+        updated.updatePersonalInfo(newPhone);
+        previous.put(updated);
+
+        PatientRecordStore.RecordsCopy copy = previous.copyForSnapshot();
+        check(copy.getDirtyRecords().size() == 1 && copy.getDirtyRecords().containsKey("patient2"),
+            "seul le dossier modifié devrait être copié: " + copy.getDirtyRecords().keySet());
+        check(copy.getStoredIds().size() == 2, copy.getStoredIds().size() + " identifiants au lieu de 2");
+
+        PatientJournal journal = openJournal(new File(directory, "journal"));
+        SnapshotManager snapshots = new SnapshotManager(snapshotDir, journal, previous);
+        appendAndWait(journal, 1, 1);
+        takeSnapshot(snapshots, 1, 1, previous);
+        journal.close();
+        snapshots.close();
+
+        // Redémarrage : le dossier modifié n'a jamais été écrit, seul l'instantané le contient
+        PatientRecordStore store = new PatientRecordStore(recordsDir);
+        SnapshotManager reloaded = new SnapshotManager(snapshotDir, new PatientJournal(new File(directory, "journal")), store);
+        check(reloaded.load(state -> { }, store::put) == 1, "instantané non chargé");
+        reloaded.close();
+        store.rebuildIndexes();
+        store.flush();
+
+        check(store.getSpills() == 1, store.getSpills() + " dossier(s) réécrit(s) au lieu de 1");
+        check(store.size() == 3, store.size() + " dossiers connus au lieu de 3");
+        check(store.findByPhone("0699999999").contains("patient2"), "nouveau téléphone non indexé");
+        check(!store.findByPhone("0622222222").contains("patient2"), "ancien téléphone encore indexé");
+        check(store.findByPhone("0611111111").contains("patient1"), "dossier non modifié non indexé");
+        check(store.findByPhone("0633333333").contains("legacy"), "dossier hérité non indexé");
+        check("0699999999".equals(new PatientRecordStore(recordsDir).get("patient2").getPersonalInfo().get("phone")),
+            "dossier modifié non écrit sur disque");
+    }
+
+    private static PatientJournal openJournal(File directory) throws IOException {
+        PatientJournal journal = new PatientJournal(directory, 1024, 0);
+        journal.recover(0, entry -> { });
+        journal.start();
+        return journal;
+    }
+
+    // Ajoute les entrées de numéros donnés et attend qu'elles soient sur disque
+    private static void appendAndWait(PatientJournal journal, long from, long to) throws InterruptedException {
+        for (long seq = from; seq <= to; seq++) {
+            long assigned = journal.append(PatientJournal.EntryType.QUEUE_ADD, "patient" + seq, new JsonObject());
+            check(assigned == seq, "entrée numérotée " + assigned + " au lieu de " + seq);
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (journal.getDurableSeq() < to) {
+            check(System.currentTimeMillis() < deadline, "entrées non écrites après 5 s");
+            Thread.sleep(5);
+        }
+    }
+
+    private static void takeSnapshot(SnapshotManager snapshots, long seq, int generation,
+                                     PatientRecordStore records) throws InterruptedException {
+        JsonObject state = new JsonObject();
+        state.addProperty("generation", generation);
+        check(snapshots.takeSnapshot(seq, state, records.copyForSnapshot()), "instantané " + seq + " refusé");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (snapshots.isInProgress() || snapshots.getLastSnapshotSeq() < seq) {
+            check(System.currentTimeMillis() < deadline, "instantané " + seq + " non écrit après 5 s");
+            Thread.sleep(5);
+        }
+    }
+
+    private static PatientRecord newRecord(String patientId, String lastName, String phone) {
+        PatientRecord record = new PatientRecord(patientId);
+        HashMap<String, String> info = new HashMap<>();
+        info.put("lastName", lastName);
+        info.put("phone", phone);
+        record.updatePersonalInfo(info);
+        return record;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        if (file == null) {
+            return;
+        }
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}